@@ -0,0 +1,103 @@
+package br.com.biroska.futronic.sdkHelper.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.base.FutronicSimulatedBackend;
+import br.com.biroska.futronic.sdkHelper.callbacks.ICallBack;
+import br.com.biroska.futronic.sdkHelper.data.identification.FutronicIdentification;
+import br.com.biroska.futronic.sdkHelper.data.proccess.FTR_PROGRESS;
+import br.com.biroska.futronic.sdkHelper.enums.DispatchOverflowPolicy;
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * Latency of one capture of <code>m_Frames</code> frames as seen by the 
+ * capture thread, with a call-back which spends <code>m_CallBackCost</code>
+ * units of CPU per frame.
+ *
+ * <code>sync</code> raises the events on the capture thread; the other values
+ * of <code>m_Dispatch</code> use the asynchronous dispatch with that overflow
+ * policy. The time includes the flush of the queued events before completion.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CallBackDispatchBenchmark
+{
+    @Param( { "sync", "drop_oldest_frame", "latest_frame_only" } )
+    public String m_Dispatch;
+
+    @Param( { "0", "10000" } )
+    public long m_CallBackCost;
+
+    @Param( { "20" } )
+    public int m_Frames;
+
+    @Setup
+    public void Setup()
+        throws FutronicException
+    {
+        FutronicSimulatedBackend backend = new FutronicSimulatedBackend();
+        backend.setFramesPerCapture( m_Frames );
+        FutronicSdkBase.setBackend( backend );
+
+        m_Identification = new FutronicIdentification();
+        m_Identification.setReuseFrameImage( true );
+        if( !"sync".equals( m_Dispatch ) )
+            m_Identification.setDispatchPolicy( DispatchOverflowPolicy.valueOf( m_Dispatch ) );
+
+        m_CallBack = new ICallBack()
+        {
+            public void OnPutOn( FTR_PROGRESS Progress )
+            {
+            }
+
+            public void OnTakeOff( FTR_PROGRESS Progress )
+            {
+            }
+
+            public void UpdateScreenImage( BufferedImage Bitmap )
+            {
+                Blackhole.consumeCPU( m_CallBackCost );
+            }
+
+            public boolean OnFakeSource( FTR_PROGRESS Progress )
+            {
+                return false;
+            }
+        };
+    }
+
+    @TearDown
+    public void TearDown()
+    {
+        m_Identification.Dispose();
+    }
+
+    @Benchmark
+    public int capture()
+    {
+        return m_Identification.GetBaseTemplateAsync( m_CallBack, LockContentionBenchmark.DIRECT ).join().getRetCode();
+    }
+
+    private FutronicIdentification m_Identification;
+    private ICallBack m_CallBack;
+}
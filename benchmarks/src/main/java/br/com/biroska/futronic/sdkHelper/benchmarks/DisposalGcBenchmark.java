@@ -0,0 +1,97 @@
+package br.com.biroska.futronic.sdkHelper.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.base.FutronicSimulatedBackend;
+import br.com.biroska.futronic.sdkHelper.data.verification.FutronicVerification;
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * GC cost of many short-lived <code>FutronicVerification</code> instances.
+ *
+ * <ul>
+ * <li><code>close</code>: the instance is closed by try-with-resources, so 
+ * its clean-up registration is dropped at once.</li>
+ * <li><code>leak</code>: the instance is not disposed and is released by the
+ * clean-up thread after it becomes unreachable.</li>
+ * <li><code>finalize</code>: the instance also has a <code>finalize</code> 
+ * method which disposes it, as the former <code>FutronicSdkBase</code> did.
+ * A finalizable instance survives one more GC cycle and is finalized by one
+ * thread.</li>
+ * </ul>
+ * Run with <code>-prof gc</code> to see the allocation rate and the GC time.
+ * The leak warnings are logged with <code>java.util.logging</code>; the fork
+ * turns the logger off.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx256m", "-Djava.util.logging.config.file=/dev/null" } )
+public class DisposalGcBenchmark
+{
+    @Param( { "close", "leak", "finalize" } )
+    public String m_Mode;
+
+    @Setup
+    public void Setup()
+    {
+        FutronicSimulatedBackend backend = new FutronicSimulatedBackend();
+        backend.setFramesPerCapture( 1 );
+        backend.setFrameSize( 1, 1 );
+        FutronicSdkBase.setBackend( backend );
+
+        m_Template = FutronicSimulatedBackend.SyntheticTemplate( 0 );
+    }
+
+    @Benchmark
+    public int createVerification()
+        throws FutronicException
+    {
+        if( "close".equals( m_Mode ) )
+        {
+            try( FutronicVerification verification = new FutronicVerification( m_Template ) )
+            {
+                return verification.getFARN();
+            }
+        }
+        if( "leak".equals( m_Mode ) )
+            return new FutronicVerification( m_Template ).getFARN();
+        return new FinalizableVerification( m_Template ).getFARN();
+    }
+
+    /**
+     * The verification disposed by <code>finalize</code>, as the instances 
+     * which were not disposed before the clean-up thread was added.
+     */
+    private static final class FinalizableVerification extends FutronicVerification
+    {
+        FinalizableVerification( byte[] Template )
+            throws FutronicException
+        {
+            super( Template );
+        }
+
+        @SuppressWarnings( "deprecation" )
+        protected void finalize()
+        {
+            Dispose();
+        }
+    }
+
+    private byte[] m_Template;
+}
@@ -0,0 +1,85 @@
+package br.com.biroska.futronic.sdkHelper.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.biroska.futronic.sdkHelper.frame.FtrFrameConverter;
+
+/**
+ * Time per frame of the frame to image conversion done in <code>cbControl</code>.
+ *
+ * <code>legacySetElem</code> is the conversion used before the 
+ * <code>FtrFrameConverter</code>: a new image and one <code>setElem</code> 
+ * call per pixel. Run with <code>-prof gc</code> to compare the allocation 
+ * rate (<code>gc.alloc.rate.norm</code> is the number of bytes per frame).
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class FrameConversionBenchmark
+{
+    /**
+     * Frame resolution: FS80/FS88 and FS50 scanners.
+     */
+    @Param( { "320x480", "480x640" } )
+    public String m_Resolution;
+
+    @Setup
+    public void Setup()
+    {
+        String[] rgSize = m_Resolution.split( "x" );
+        m_Width = Integer.parseInt( rgSize[0] );
+        m_Height = Integer.parseInt( rgSize[1] );
+        m_Bitmap = new byte[ m_Width * m_Height ];
+        new Random( 1 ).nextBytes( m_Bitmap );
+        m_NewImage = new FtrFrameConverter( false );
+        m_ReusedImage = new FtrFrameConverter( true );
+    }
+
+    @Benchmark
+    public BufferedImage legacySetElem()
+    {
+        BufferedImage hImage = new BufferedImage( m_Width, m_Height, BufferedImage.TYPE_BYTE_GRAY );
+        DataBuffer db1 = hImage.getRaster().getDataBuffer();
+        for( int i = 0; i < db1.getSize(); i++ )
+        {
+            db1.setElem( i, m_Bitmap[i] );
+        }
+        return hImage;
+    }
+
+    @Benchmark
+    public BufferedImage bulkCopyNewImage()
+    {
+        return m_NewImage.Convert( m_Bitmap, m_Width, m_Height );
+    }
+
+    @Benchmark
+    public BufferedImage bulkCopyReusedImage()
+    {
+        return m_ReusedImage.Convert( m_Bitmap, m_Width, m_Height );
+    }
+
+    private int m_Width;
+    private int m_Height;
+    private byte[] m_Bitmap;
+    private FtrFrameConverter m_NewImage;
+    private FtrFrameConverter m_ReusedImage;
+}
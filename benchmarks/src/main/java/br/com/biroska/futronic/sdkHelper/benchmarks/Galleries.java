@@ -0,0 +1,44 @@
+package br.com.biroska.futronic.sdkHelper.benchmarks;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSimulatedBackend;
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+
+/**
+ * Builds synthetic galleries for the benchmarks.
+ */
+final class Galleries
+{
+    private Galleries()
+    {
+    }
+
+    /**
+     * Builds a gallery of synthetic templates of the fingers 0 .. nSize-1.
+     * The key of a record is its finger number, 8 bytes big endian.
+     */
+    static FtrIdentifyRecord[] Synthetic( int nSize )
+    {
+        FtrIdentifyRecord[] rgRecords = new FtrIdentifyRecord[ nSize ];
+        for( int i = 0; i < nSize; i++ )
+        {
+            rgRecords[i] = new FtrIdentifyRecord();
+            rgRecords[i].m_KeyValue = Key( i );
+            rgRecords[i].m_Template = FutronicSimulatedBackend.SyntheticTemplate( i );
+        }
+        return rgRecords;
+    }
+
+    /**
+     * Returns the key of a finger number: 8 bytes big endian.
+     */
+    static byte[] Key( long nFinger )
+    {
+        byte[] Key = new byte[8];
+        for( int i = 7; i >= 0; i-- )
+        {
+            Key[i] = (byte)nFinger;
+            nFinger >>>= 8;
+        }
+        return Key;
+    }
+}
@@ -0,0 +1,88 @@
+package br.com.biroska.futronic.sdkHelper.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSimulatedBackend;
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+
+/**
+ * Cost of preparing a gallery for <code>IdentifyProcess</code>.
+ *
+ * <code>buildRecords</code> builds the <code>FtrIdentifyRecord[]</code> from 
+ * keys and templates kept by the caller, as done before every identification 
+ * when the gallery comes from another store. <code>marshalRecords</code> does
+ * the work of the JNI layer without the native library: it walks the object 
+ * array, reads both byte arrays of every record and copies them into one 
+ * native buffer.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx6g" } )
+public class GalleryMarshallingBenchmark
+{
+    @Param( { "1000", "10000", "100000", "1000000" } )
+    public int m_GallerySize;
+
+    @Setup
+    public void Setup()
+    {
+        m_Keys = new byte[ m_GallerySize ][];
+        m_Templates = new byte[ m_GallerySize ][];
+        long nTotal = 0;
+        for( int i = 0; i < m_GallerySize; i++ )
+        {
+            m_Keys[i] = Galleries.Key( i );
+            m_Templates[i] = FutronicSimulatedBackend.SyntheticTemplate( i );
+            nTotal += m_Keys[i].length + m_Templates[i].length;
+        }
+        m_Records = buildRecords();
+        m_Native = ByteBuffer.allocateDirect( (int)nTotal );
+    }
+
+    @Benchmark
+    public FtrIdentifyRecord[] buildRecords()
+    {
+        FtrIdentifyRecord[] rgRecords = new FtrIdentifyRecord[ m_GallerySize ];
+        for( int i = 0; i < m_GallerySize; i++ )
+        {
+            FtrIdentifyRecord record = new FtrIdentifyRecord();
+            record.m_KeyValue = m_Keys[i].clone();
+            record.m_Template = m_Templates[i].clone();
+            rgRecords[i] = record;
+        }
+        return rgRecords;
+    }
+
+    @Benchmark
+    public ByteBuffer marshalRecords()
+    {
+        m_Native.clear();
+        for( FtrIdentifyRecord record : m_Records )
+        {
+            m_Native.put( record.m_KeyValue );
+            m_Native.put( record.m_Template );
+        }
+        return m_Native;
+    }
+
+    private byte[][] m_Keys;
+    private byte[][] m_Templates;
+    private FtrIdentifyRecord[] m_Records;
+    private ByteBuffer m_Native;
+}
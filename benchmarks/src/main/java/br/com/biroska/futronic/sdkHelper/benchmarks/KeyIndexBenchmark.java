@@ -0,0 +1,103 @@
+package br.com.biroska.futronic.sdkHelper.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.biroska.futronic.sdkHelper.data.gallery.FtrKeyIndex;
+
+/**
+ * Key to record number lookups with <code>FtrKeyIndex</code> and with a
+ * <code>HashMap&lt;String, Integer&gt;</code> of the same 8 byte keys.
+ *
+ * <code>buildIndex</code> and <code>buildHashMap</code> create presized
+ * structures, so with <code>-prof gc</code> their
+ * <code>gc.alloc.rate.norm</code> is the memory of m_Size entries (at 1M:
+ * 46 MB for the index, 107 MB for the map).
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 2, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g" } )
+public class KeyIndexBenchmark
+{
+    @Param( { "10000", "1000000" } )
+    public int m_Size;
+
+    @Setup
+    public void Setup()
+    {
+        m_Keys = new byte[ m_Size ][];
+        for( int i = 0; i < m_Size; i++ )
+            m_Keys[i] = Galleries.Key( i * 7919L );
+        m_Index = buildIndex();
+        m_Map = buildHashMap();
+    }
+
+    @Benchmark
+    public int lookupIndex()
+    {
+        return m_Index.IndexOf( NextKey() );
+    }
+
+    @Benchmark
+    public int lookupHashMap()
+    {
+        return m_Map.get( new String( NextKey(), StandardCharsets.ISO_8859_1 ) ).intValue();
+    }
+
+    @Benchmark
+    public byte[] slotToKey()
+    {
+        m_Next = (m_Next + 1) % m_Size;
+        return m_Index.getKey( m_Next );
+    }
+
+    @Benchmark
+    @BenchmarkMode( Mode.SingleShotTime )
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public FtrKeyIndex buildIndex()
+    {
+        FtrKeyIndex Index = new FtrKeyIndex( m_Size );
+        for( int i = 0; i < m_Size; i++ )
+            Index.Put( m_Keys[i], i );
+        return Index;
+    }
+
+    @Benchmark
+    @BenchmarkMode( Mode.SingleShotTime )
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public Map<String, Integer> buildHashMap()
+    {
+        Map<String, Integer> Map = new HashMap<String, Integer>( m_Size * 4 / 3 + 1 );
+        for( int i = 0; i < m_Size; i++ )
+            Map.put( new String( m_Keys[i], StandardCharsets.ISO_8859_1 ), Integer.valueOf( i ) );
+        return Map;
+    }
+
+    private byte[] NextKey()
+    {
+        m_Next = (m_Next + 1) % m_Size;
+        return m_Keys[ m_Next ];
+    }
+
+    private byte[][] m_Keys;
+    private FtrKeyIndex m_Index;
+    private Map<String, Integer> m_Map;
+    private int m_Next;
+}
@@ -0,0 +1,85 @@
+package br.com.biroska.futronic.sdkHelper.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.biroska.futronic.sdkHelper.data.gallery.FtrLiveGallery;
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+
+/**
+ * Cost of publishing one change of a gallery to the identifications.
+ *
+ * <code>rebuildRecords</code> builds a new <code>FtrIdentifyRecord[]</code>
+ * with copies of all keys and templates, as done for every change before
+ * <code>FtrLiveGallery</code>. <code>addAndSnapshot</code> adds a record and
+ * builds the record array of the new snapshot, <code>replaceAndSnapshot</code>
+ * removes the oldest record and adds a new one (a tombstone, compacted in the
+ * background).
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 2, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g" } )
+public class LiveGalleryBenchmark
+{
+    @Param( { "300000" } )
+    public int m_GallerySize;
+
+    @Setup
+    public void Setup()
+    {
+        m_Records = Galleries.Synthetic( m_GallerySize );
+        m_Gallery = new FtrLiveGallery();
+        for( FtrIdentifyRecord record : m_Records )
+            m_Gallery.Add( record.m_KeyValue, record.m_Template );
+        m_Gallery.getSnapshot().toRecords();
+        m_Oldest = 0;
+        m_Next = m_GallerySize;
+    }
+
+    @Benchmark
+    public FtrIdentifyRecord[] rebuildRecords()
+    {
+        FtrIdentifyRecord[] rgRecords = new FtrIdentifyRecord[ m_GallerySize ];
+        for( int i = 0; i < m_GallerySize; i++ )
+        {
+            rgRecords[i] = new FtrIdentifyRecord();
+            rgRecords[i].m_KeyValue = m_Records[i].m_KeyValue.clone();
+            rgRecords[i].m_Template = m_Records[i].m_Template.clone();
+        }
+        return rgRecords;
+    }
+
+    @Benchmark
+    public FtrIdentifyRecord[] addAndSnapshot()
+    {
+        m_Gallery.Add( Galleries.Key( m_Next++ ), m_Records[0].m_Template );
+        return m_Gallery.getSnapshot().toRecords();
+    }
+
+    @Benchmark
+    public FtrIdentifyRecord[] replaceAndSnapshot()
+    {
+        m_Gallery.Remove( Galleries.Key( m_Oldest++ ) );
+        m_Gallery.Add( Galleries.Key( m_Next++ ), m_Records[0].m_Template );
+        return m_Gallery.getSnapshot().toRecords();
+    }
+
+    private FtrIdentifyRecord[] m_Records;
+    private FtrLiveGallery m_Gallery;
+    private long m_Oldest;
+    private long m_Next;
+}
@@ -0,0 +1,122 @@
+package br.com.biroska.futronic.sdkHelper.benchmarks;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.biroska.futronic.sdkHelper.base.FtrSdkLocks;
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.base.FutronicSimulatedBackend;
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyResult;
+import br.com.biroska.futronic.sdkHelper.data.identification.FutronicIdentification;
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * Throughput of a mixed workload: threads capturing base templates (each 
+ * capture waits <code>m_CaptureLatency</code> ms per frame) and threads 
+ * identifying a stored probe against a gallery.
+ *
+ * With <code>m_bExclusive = true</code> all operations share one lock, as 
+ * with the former <code>m_SyncRoot</code> monitor, and the identifications 
+ * wait behind the captures. With <code>false</code> the captures take the 
+ * capture lock and the identifications take match permits.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 2, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class LockContentionBenchmark
+{
+    /**
+     * Runs the operation in the calling thread.
+     */
+    static final Executor DIRECT = new Executor()
+    {
+        public void execute( Runnable command )
+        {
+            command.run();
+        }
+    };
+
+    @State( Scope.Benchmark )
+    public static class Sdk
+    {
+        @Param( { "true", "false" } )
+        public boolean m_bExclusive;
+
+        @Param( { "5" } )
+        public long m_CaptureLatency;
+
+        @Param( { "10000" } )
+        public int m_GallerySize;
+
+        @Setup
+        public void Setup()
+        {
+            FutronicSimulatedBackend backend = new FutronicSimulatedBackend();
+            backend.setCaptureLatency( m_CaptureLatency );
+            FutronicSdkBase.setBackend( backend );
+            FtrSdkLocks.setExclusive( m_bExclusive );
+
+            m_Gallery = Galleries.Synthetic( m_GallerySize );
+            m_Probe = FutronicSimulatedBackend.SyntheticTemplate( -1 );
+        }
+
+        FtrIdentifyRecord[] m_Gallery;
+        byte[] m_Probe;
+    }
+
+    @State( Scope.Thread )
+    public static class Operation
+    {
+        @Setup
+        public void Setup( Sdk sdk )
+            throws FutronicException
+        {
+            m_Identification = new FutronicIdentification();
+            m_Identification.setBaseTemplate( sdk.m_Probe );
+            m_Result = new FtrIdentifyResult();
+        }
+
+        @TearDown
+        public void TearDown()
+        {
+            m_Identification.Dispose();
+        }
+
+        FutronicIdentification m_Identification;
+        FtrIdentifyResult m_Result;
+    }
+
+    @Benchmark
+    @Group( "mixed" )
+    @GroupThreads( 2 )
+    public int capture( Operation op )
+    {
+        return op.m_Identification.GetBaseTemplateAsync( null, DIRECT ).join().getRetCode();
+    }
+
+    @Benchmark
+    @Group( "mixed" )
+    @GroupThreads( 4 )
+    public int match( Sdk sdk, Operation op )
+    {
+        return op.m_Identification.Identification( sdk.m_Gallery, op.m_Result );
+    }
+}
@@ -0,0 +1,142 @@
+package br.com.biroska.futronic.sdkHelper.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicOperationPool;
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.base.FutronicSimulatedBackend;
+import br.com.biroska.futronic.sdkHelper.base.IOperationFactory;
+import br.com.biroska.futronic.sdkHelper.callbacks.NullCallBack;
+import br.com.biroska.futronic.sdkHelper.data.identification.FutronicIdentification;
+import br.com.biroska.futronic.sdkHelper.data.verification.FutronicVerification;
+import br.com.biroska.futronic.sdkHelper.data.verification.IVerificationCallBack;
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * Overhead of the Java side of an operation with a one-frame simulated 
+ * capture: creating and disposing an operation object or taking it from a
+ * pool and returning it, starting an 
+ * operation and waiting for its completion, and reading the result 
+ * template (which is cloned on every call).
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class OperationLifecycleBenchmark
+{
+    @Setup
+    public void Setup()
+        throws FutronicException
+    {
+        FutronicSimulatedBackend backend = new FutronicSimulatedBackend();
+        backend.setFramesPerCapture( 1 );
+        backend.setFrameSize( 1, 1 );
+        FutronicSdkBase.setBackend( backend );
+
+        m_Template = FutronicSimulatedBackend.SyntheticTemplate( 0 );
+        m_Verification = new FutronicVerification( m_Template );
+        m_Identification = new FutronicIdentification();
+        m_Identification.setBaseTemplate( m_Template );
+        m_Pool = new FutronicOperationPool<FutronicVerification>( new IOperationFactory<FutronicVerification>()
+        {
+            public FutronicVerification Create()
+                throws FutronicException
+            {
+                return new FutronicVerification( m_Template );
+            }
+        }, 4 );
+    }
+
+    @TearDown
+    public void TearDown()
+    {
+        m_Verification.Dispose();
+        m_Identification.Dispose();
+        m_Pool.Dispose();
+    }
+
+    @Benchmark
+    public boolean createAndDispose()
+        throws FutronicException
+    {
+        FutronicVerification verification = new FutronicVerification( m_Template );
+        verification.Dispose();
+        return verification.getClass() != null;
+    }
+
+    @Benchmark
+    public boolean acquireAndRelease()
+        throws FutronicException
+    {
+        FutronicVerification verification = m_Pool.Acquire();
+        verification.setTemplate( m_Template );
+        m_Pool.Release( verification );
+        return verification.getClass() != null;
+    }
+
+    @Benchmark
+    public int startOnScheduler()
+        throws InterruptedException
+    {
+        final CountDownLatch done = new CountDownLatch( 1 );
+        final AtomicInteger nResult = new AtomicInteger();
+        m_Verification.Verification( new Completion( done, nResult ) );
+        done.await();
+        return nResult.get();
+    }
+
+    @Benchmark
+    public int startInCallingThread()
+    {
+        return m_Verification.VerificationAsync( null, LockContentionBenchmark.DIRECT ).join().getRetCode();
+    }
+
+    @Benchmark
+    public byte[] getBaseTemplate()
+    {
+        return m_Identification.getBaseTemplate();
+    }
+
+    /**
+     * Releases the benchmark thread when the verification is completed.
+     */
+    private static class Completion extends NullCallBack implements IVerificationCallBack
+    {
+        Completion( CountDownLatch Done, AtomicInteger Result )
+        {
+            m_Done = Done;
+            m_Result = Result;
+        }
+
+        public void OnVerificationComplete( boolean bSuccess, int nResult, boolean bVerificationSuccess )
+        {
+            m_Result.set( nResult );
+            m_Done.countDown();
+        }
+
+        private final CountDownLatch m_Done;
+        private final AtomicInteger m_Result;
+    }
+
+    private byte[] m_Template;
+    private FutronicVerification m_Verification;
+    private FutronicIdentification m_Identification;
+    private FutronicOperationPool<FutronicVerification> m_Pool;
+}
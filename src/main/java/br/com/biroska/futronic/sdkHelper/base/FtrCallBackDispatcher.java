@@ -0,0 +1,424 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import br.com.biroska.futronic.sdkHelper.data.proccess.FTR_PROGRESS;
+import br.com.biroska.futronic.sdkHelper.enums.DispatchOverflowPolicy;
+
+/**
+ * Delivers the call-back events of an operation on its own consumer thread.
+ *
+ * The capture thread publishes events and returns at once. The "put on" and
+ * "take off" events go to a bounded ring and are never dropped: if that ring
+ * is full, the capture thread waits. Frames are copied to recycled buffers
+ * and go to a second ring, which drops the oldest frame when it is full
+ * (<code>drop_oldest_frame</code>) or keeps only the latest frame
+ * (<code>latest_frame_only</code>). The consumer thread delivers the events
+ * in the order they were published.
+ *
+ * There is one producer (the thread of the operation) and one consumer, so
+ * both rings are single-producer single-consumer rings without locks.
+ *
+ * The consumer thread stops after a second without events and the next event
+ * starts a new one. So an idle dispatcher holds no thread, and an abandoned
+ * operation does not stay reachable from a parked consumer thread (see the
+ * leak check of <code>FutronicSdkBase</code>).
+ */
+public class FtrCallBackDispatcher
+{
+    /**
+     * Capacity of the ring for the "put on" and "take off" events.
+     */
+    private static final int SIGNAL_CAPACITY = 64;
+
+    /**
+     * Time without events after which the consumer thread stops, in nanoseconds.
+     */
+    private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toNanos( 1 );
+
+    /**
+     * Creates a new instance of FtrCallBackDispatcher.
+     *
+     * @param Operation the operation which events are dispatched.
+     * @param Policy the frame overflow policy.
+     * @param nCapacity number of frames kept for the <code>drop_oldest_frame</code>
+     * policy.
+     */
+    FtrCallBackDispatcher( FutronicSdkBase Operation, DispatchOverflowPolicy Policy, int nCapacity )
+    {
+        int nFrames = (Policy == DispatchOverflowPolicy.latest_frame_only) ? 1 : Integer.highestOneBit( Math.max( 1, nCapacity - 1 ) ) << 1;
+        m_Operation = Operation;
+        m_Policy = Policy;
+        m_Signals = new FtrSpscRing<Signal>( SIGNAL_CAPACITY );
+        m_Frames = new AtomicReferenceArray<Frame>( nFrames );
+        m_FrameMask = nFrames - 1;
+        m_FrameTail = new AtomicLong();
+        m_FrameHead = 0;
+        m_FreeFrames = new FtrSpscRing<Frame>( nFrames + 2 );
+        m_SpareFrame = null;
+        m_Sequence = 0;
+        m_DroppedFrames = new AtomicLong();
+        m_bBusy = false;
+        m_bStop = false;
+        m_bRunning = new AtomicBoolean();
+        m_Consumer = null;
+    }
+
+    /**
+     * Publishes the "put on" or "take off" event. Called by the capture thread.
+     *
+     * @param nSignal <code>FTR_SIGNAL_TOUCH_SENSOR</code> or <code>FTR_SIGNAL_TAKE_OFF</code>.
+     * @param Progress the current progress data. It is copied.
+     */
+    void PublishSignal( int nSignal, FTR_PROGRESS Progress )
+    {
+        Signal signal = new Signal( m_Sequence++, nSignal, Progress );
+        while( !m_Signals.Offer( signal ) )
+        {
+            Wake();
+            LockSupport.parkNanos( 50000L );
+        }
+        Wake();
+    }
+
+    /**
+     * Publishes a frame. Called by the capture thread.
+     *
+     * @param pBitmap the frame data. It is copied.
+     * @param Width the frame width.
+     * @param Height the frame height.
+     */
+    void PublishFrame( byte[] pBitmap, int Width, int Height )
+    {
+        Frame frame = m_SpareFrame;
+        m_SpareFrame = null;
+        if( frame == null )
+            frame = m_FreeFrames.Poll();
+        if( frame == null )
+            frame = new Frame();
+        frame.Set( m_Sequence++, pBitmap, Width, Height );
+
+        long nTail = m_FrameTail.get();
+        frame.m_Position = nTail;
+        Frame prev = m_Frames.getAndSet( (int)(nTail & m_FrameMask), frame );
+        m_FrameTail.lazySet( nTail + 1 );
+        if( prev != null )
+        {
+            m_DroppedFrames.incrementAndGet();
+            m_SpareFrame = prev;
+        }
+        Wake();
+    }
+
+    /**
+     * Waits until all published events are delivered.
+     *
+     * @param nTimeout maximal wait time in milliseconds.
+     *
+     * @return <code>true</code> if all events are delivered.
+     */
+    boolean Flush( long nTimeout )
+    {
+        long nDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( nTimeout );
+        while( m_bBusy || !IsEmpty() )
+        {
+            if( (System.nanoTime() - nDeadline) >= 0 )
+                return false;
+            LockSupport.unpark( m_Consumer );
+            LockSupport.parkNanos( 100000L );
+        }
+        return true;
+    }
+
+    /**
+     * Stops the consumer thread. The events which are not delivered are dropped.
+     */
+    void Shutdown()
+    {
+        Thread consumer = m_Consumer;
+        m_bStop = true;
+        if( consumer == null )
+            return;
+        LockSupport.unpark( consumer );
+        if( consumer != Thread.currentThread() )
+        {
+            try
+            {
+                consumer.join( 1000 );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * get the frame overflow policy.
+     */
+    public DispatchOverflowPolicy getPolicy()
+    {
+        return m_Policy;
+    }
+
+    /**
+     * get the number of dropped frames.
+     */
+    public long getDroppedFrames()
+    {
+        return m_DroppedFrames.get();
+    }
+
+    /**
+     * Wakes the consumer thread up after an event is published, or starts a
+     * new one if it has stopped. Called by the capture thread.
+     */
+    private void Wake()
+    {
+        if( m_bStop )
+            return;
+        if( !m_bRunning.compareAndSet( false, true ) )
+        {
+            LockSupport.unpark( m_Consumer );
+            return;
+        }
+        Thread consumer = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                Consume();
+            }
+        }, "Call-back dispatch" );
+        consumer.setDaemon( true );
+        m_Consumer = consumer;
+        consumer.start();
+    }
+
+    /**
+     * The consumer thread loop.
+     */
+    private void Consume()
+    {
+        Frame pending = null;
+        while( !m_bStop )
+        {
+            m_bBusy = true;
+            if( pending == null )
+                pending = TakeFrame();
+
+            Signal signal = m_Signals.Peek();
+            try
+            {
+                if( (signal != null) && ((pending == null) || (signal.m_Sequence < pending.m_Sequence)) )
+                {
+                    m_Signals.Poll();
+                    DeliverSignal( signal );
+                    continue;
+                }
+
+                if( pending != null )
+                {
+                    Frame frame = pending;
+                    pending = null;
+                    m_Operation.DeliverFrame( frame.m_Bitmap, frame.m_Width, frame.m_Height );
+                    m_FreeFrames.Offer( frame );
+                    continue;
+                }
+            }
+            catch( RuntimeException e )
+            {
+                // an exception of the call-back must not stop the delivery of
+                // the next events
+                continue;
+            }
+
+            m_bBusy = false;
+            if( !IsEmpty() )
+                continue;
+            LockSupport.parkNanos( this, IDLE_TIMEOUT );
+            if( !IsEmpty() || m_bStop )
+                continue;
+
+            // idle: stop, unless an event came before the running flag was
+            // cleared and no new thread was started for it
+            m_bRunning.set( false );
+            if( IsEmpty() || !m_bRunning.compareAndSet( false, true ) )
+                return;
+        }
+        m_bBusy = false;
+    }
+
+    /**
+     * Returns <code>true</code> if no event is waiting for the consumer thread.
+     */
+    private boolean IsEmpty()
+    {
+        return m_Signals.IsEmpty() && (m_FrameHead >= m_FrameTail.get());
+    }
+
+    /**
+     * Takes the oldest frame from the frame ring. Called only by the consumer
+     * thread.
+     *
+     * @return the frame or null if the ring is empty.
+     */
+    private Frame TakeFrame()
+    {
+        while( true )
+        {
+            long nTail = m_FrameTail.get();
+            if( m_FrameHead >= nTail )
+                return null;
+            if( nTail - m_FrameHead > m_FrameMask + 1 )
+                m_FrameHead = nTail - m_FrameMask - 1;
+
+            int nIndex = (int)(m_FrameHead & m_FrameMask);
+            Frame frame = m_Frames.get( nIndex );
+            if( (frame != null) && m_Frames.compareAndSet( nIndex, frame, null ) )
+            {
+                // the producer may have replaced the frame before the
+                // compareAndSet, the frames before it are skipped
+                m_FrameHead = Math.max( m_FrameHead, frame.m_Position ) + 1;
+                return frame;
+            }
+            m_FrameHead++;
+        }
+    }
+
+    private void DeliverSignal( Signal signal )
+    {
+        switch( signal.m_Signal )
+        {
+        case FutronicSdkBase.FTR_SIGNAL_TOUCH_SENSOR:
+            m_Operation.m_CallBack.OnPutOn( signal.m_Progress );
+            break;
+
+        case FutronicSdkBase.FTR_SIGNAL_TAKE_OFF:
+            m_Operation.m_CallBack.OnTakeOff( signal.m_Progress );
+            break;
+
+        default:
+            break;
+        }
+    }
+
+    /**
+     * The "put on" or "take off" event.
+     */
+    private static final class Signal
+    {
+        Signal( long nSequence, int nSignal, FTR_PROGRESS Progress )
+        {
+            m_Sequence = nSequence;
+            m_Signal = nSignal;
+            m_Progress = new FTR_PROGRESS();
+            m_Progress.m_Count = Progress.m_Count;
+            m_Progress.m_bIsRepeated = Progress.m_bIsRepeated;
+            m_Progress.m_Total = Progress.m_Total;
+        }
+
+        final long m_Sequence;
+        final int m_Signal;
+        final FTR_PROGRESS m_Progress;
+    }
+
+    /**
+     * The frame event with its own copy of the frame data.
+     */
+    private static final class Frame
+    {
+        void Set( long nSequence, byte[] pBitmap, int Width, int Height )
+        {
+            int nSize = Width * Height;
+            if( (m_Bitmap == null) || (m_Bitmap.length != nSize) )
+                m_Bitmap = new byte[ nSize ];
+            System.arraycopy( pBitmap, 0, m_Bitmap, 0, Math.min( pBitmap.length, nSize ) );
+            m_Sequence = nSequence;
+            m_Width = Width;
+            m_Height = Height;
+        }
+
+        long m_Sequence;
+        long m_Position;
+        byte[] m_Bitmap;
+        int m_Width;
+        int m_Height;
+    }
+
+    /**
+     * The operation which events are dispatched.
+     */
+    private final FutronicSdkBase m_Operation;
+
+    /**
+     * The frame overflow policy.
+     */
+    private final DispatchOverflowPolicy m_Policy;
+
+    /**
+     * The "put on" and "take off" events.
+     */
+    private final FtrSpscRing<Signal> m_Signals;
+
+    /**
+     * The frame ring. The producer replaces the oldest frame when it is full.
+     */
+    private final AtomicReferenceArray<Frame> m_Frames;
+
+    private final int m_FrameMask;
+
+    /**
+     * Position of the next frame. Written only by the producer.
+     */
+    private final AtomicLong m_FrameTail;
+
+    /**
+     * Position of the oldest frame not taken yet. Written only by the consumer.
+     */
+    private volatile long m_FrameHead;
+
+    /**
+     * Frames returned by the consumer for reuse.
+     */
+    private final FtrSpscRing<Frame> m_FreeFrames;
+
+    /**
+     * The last dropped frame, kept by the producer for reuse.
+     */
+    private Frame m_SpareFrame;
+
+    /**
+     * Sequence number of the next event. Used only by the producer.
+     */
+    private long m_Sequence;
+
+    /**
+     * Number of dropped frames.
+     */
+    private final AtomicLong m_DroppedFrames;
+
+    /**
+     * <code>true</code> while the consumer thread delivers events.
+     */
+    private volatile boolean m_bBusy;
+
+    /**
+     * <code>true</code> if the consumer thread should stop.
+     */
+    private volatile boolean m_bStop;
+
+    /**
+     * <code>true</code> while a consumer thread runs.
+     */
+    private final AtomicBoolean m_bRunning;
+
+    /**
+     * The last started consumer thread. It is started on the first event after
+     * an idle time.
+     */
+    private volatile Thread m_Consumer;
+}
@@ -0,0 +1,130 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+/**
+ * The cancellation request and the deadline of one operation.
+ *
+ * A new token is created when an operation starts (see 
+ * <code>FutronicSdkBase.getCancellationToken</code>). Any thread may cancel it;
+ * the state is volatile, so the operation thread sees the request at its next
+ * check: the next call-back of a capture or the next step of an 
+ * identification. The token is also cancelled when its deadline passes. The
+ * check compares the deadline with <code>System.nanoTime</code>, so no timer
+ * thread is needed.
+ *
+ * The token remembers when the cancellation was requested, which is used to
+ * measure the time until the operation returns (see 
+ * <code>OperationPhase.cancellation</code>).
+ */
+public final class FtrCancellationToken
+{
+    /**
+     * Creates a new instance of FtrCancellationToken.
+     *
+     * @param nTimeout the timeout of the operation in milliseconds, or 0 if 
+     * the operation has no deadline.
+     *
+     * @exception IllegalArgumentException nTimeout is negative.
+     */
+    public FtrCancellationToken( long nTimeout )
+        throws IllegalArgumentException
+    {
+        if( nTimeout < 0 )
+            throw new IllegalArgumentException( "The argument nTimeout has invalid value" );
+        m_nTimeout = nTimeout;
+        m_nDeadline = (nTimeout > 0) ? System.nanoTime() + nTimeout * 1000000L : 0;
+        m_bCancelled = false;
+        m_bExpired = false;
+        m_nCancelTime = 0;
+    }
+
+    /**
+     * Requests the cancellation. Only the first request is remembered.
+     */
+    public void Cancel()
+    {
+        Cancel( System.nanoTime(), false );
+    }
+
+    /**
+     * Returns <code>true</code> if the cancellation is requested or the 
+     * deadline has passed.
+     */
+    public boolean isCancelled()
+    {
+        if( m_bCancelled )
+            return true;
+        if( (m_nTimeout > 0) && (System.nanoTime() - m_nDeadline >= 0) )
+        {
+            Cancel( m_nDeadline, true );
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if the token is cancelled because the 
+     * deadline has passed.
+     */
+    public boolean isExpired()
+    {
+        return isCancelled() && m_bExpired;
+    }
+
+    /**
+     * Gets the timeout of the operation in milliseconds, or 0 if the 
+     * operation has no deadline.
+     */
+    public long getTimeout()
+    {
+        return m_nTimeout;
+    }
+
+    /**
+     * Gets the time of the cancellation request, in the units of 
+     * <code>System.nanoTime</code>. For an expired token it is the deadline.
+     *
+     * @exception IllegalStateException the token is not cancelled.
+     */
+    public long getCancelTime()
+        throws IllegalStateException
+    {
+        if( !isCancelled() )
+            throw new IllegalStateException( "The token is not cancelled" );
+        return m_nCancelTime;
+    }
+
+    private synchronized void Cancel( long nTime, boolean bExpired )
+    {
+        if( m_bCancelled )
+            return;
+        m_nCancelTime = nTime;
+        m_bExpired = bExpired;
+        // the flag is written last, so a thread which sees it sees the time
+        m_bCancelled = true;
+    }
+
+    /**
+     * The timeout in milliseconds or 0.
+     */
+    private final long m_nTimeout;
+
+    /**
+     * The deadline in the units of <code>System.nanoTime</code>.
+     */
+    private final long m_nDeadline;
+
+    /**
+     * <code>true</code> if the cancellation is requested.
+     */
+    private volatile boolean m_bCancelled;
+
+    /**
+     * <code>true</code> if the token is cancelled by the deadline.
+     */
+    private volatile boolean m_bExpired;
+
+    /**
+     * The time of the cancellation request.
+     */
+    private volatile long m_nCancelTime;
+}
@@ -0,0 +1,47 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the worker threads of the operation scheduler.
+ *
+ * This is the Java 8 version: it creates named daemon platform threads. The 
+ * jar contains another version of this class in META-INF/versions/21, which 
+ * can create virtual threads on Java 21 or newer if the system property 
+ * <code>futronic.virtualThreads</code> is <code>true</code>.
+ */
+final class FtrOperationThreads
+{
+    private FtrOperationThreads()
+    {
+    }
+
+    /**
+     * Returns <code>true</code> if the workers are virtual threads.
+     */
+    static boolean IsVirtual()
+    {
+        return false;
+    }
+
+    /**
+     * Creates a factory of named daemon threads.
+     *
+     * @param szName the thread name prefix. The threads are named 
+     * "szName-1", "szName-2" and so on.
+     */
+    static ThreadFactory NewThreadFactory( final String szName )
+    {
+        final AtomicInteger nCounter = new AtomicInteger();
+        return new ThreadFactory()
+        {
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread( r, szName + "-" + nCounter.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        };
+    }
+}
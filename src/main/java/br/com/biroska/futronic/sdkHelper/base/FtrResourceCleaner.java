@@ -0,0 +1,104 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs a clean-up action when an object becomes unreachable.
+ *
+ * This is the Java 8 version: the objects are tracked with phantom 
+ * references and the actions are run by one daemon thread. The jar contains
+ * another version of this class in META-INF/versions/21, which uses 
+ * <code>java.lang.ref.Cleaner</code>.
+ *
+ * Unlike <code>finalize</code>, the tracked object is not resurrected and is
+ * collected in one GC cycle. The action must not refer to the tracked 
+ * object, otherwise the object never becomes unreachable.
+ */
+final class FtrResourceCleaner
+{
+    private FtrResourceCleaner()
+    {
+    }
+
+    /**
+     * Registers an object and its clean-up action.
+     *
+     * @param Owner the tracked object.
+     * @param Action the action run when the object becomes unreachable.
+     *
+     * @return the registration. Running it runs the action at most once and
+     * stops tracking the object.
+     */
+    static Runnable Register( Object Owner, Runnable Action )
+    {
+        Registration registration = new Registration( Owner, Action );
+        m_Registrations.add( registration );
+        return registration;
+    }
+
+    /**
+     * The phantom reference of a tracked object. The set of registrations 
+     * keeps it reachable until it is run.
+     */
+    private static final class Registration extends PhantomReference<Object> implements Runnable
+    {
+        Registration( Object Owner, Runnable Action )
+        {
+            super( Owner, m_Queue );
+            m_Action = Action;
+        }
+
+        public void run()
+        {
+            if( !m_Registrations.remove( this ) )
+                return;
+            clear();
+            m_Action.run();
+        }
+
+        private final Runnable m_Action;
+    }
+
+    /**
+     * The clean-up thread loop.
+     */
+    private static void Clean()
+    {
+        while( true )
+        {
+            try
+            {
+                ((Registration)m_Queue.remove()).run();
+            }
+            catch( InterruptedException e )
+            {
+                // the daemon thread ends with the VM only
+            }
+            catch( RuntimeException e )
+            {
+                // an action must not stop the thread
+            }
+        }
+    }
+
+    private static final ReferenceQueue<Object> m_Queue = new ReferenceQueue<Object>();
+
+    private static final Set<Registration> m_Registrations = Collections.newSetFromMap( new ConcurrentHashMap<Registration, Boolean>() );
+
+    static
+    {
+        Thread thread = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                Clean();
+            }
+        }, "Futronic cleaner" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+}
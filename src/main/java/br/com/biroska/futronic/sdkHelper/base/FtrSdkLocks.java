@@ -0,0 +1,232 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Synchronizes the usage of the SDK from any Java-wrapper class.
+ *
+ * The operations are split into two kinds:
+ * <table>
+ * <thead>
+ *  <tr>
+ *      <td>Kind</td>
+ *      <td>Native calls</td>
+ *      <td>Synchronization</td>
+ *  </tr>
+ * </thead>
+ * <tr>
+ *      <td>Capture</td>
+ *      <td><code>FutronicEnroll</code>, <code>GetBaseTemplateProcess</code></td>
+ *      <td>One capture at a time. The capture lock is taken by frame 
+ *      source, but every instance uses the same frame source 
+ *      (<code>FSD_FUTRONIC_USB</code>), so there is a single capture lock.
+ *      It does not tell two scanners apart.</td>
+ *  </tr>
+ * <tr>
+ *      <td>Match</td>
+ *      <td><code>IdentifyProcess</code></td>
+ *      <td>At most <code>MatchConcurrency</code> matches at a time.</td>
+ *  </tr>
+ * <tr>
+ *      <td>Capture and match</td>
+ *      <td><code>VerificationProcess</code></td>
+ *      <td>The capture lock, then a match permit: the native verification
+ *      captures and then matches with the process-wide settings.</td>
+ *  </tr>
+ * <tr>
+ *      <td>Library</td>
+ *      <td><code>FutronicInitialize</code>, <code>FutronicTerminate</code></td>
+ *      <td>Not thread-safe, serialized by the initialization lock of
+ *      <code>FutronicSdkBase</code>.</td>
+ *  </tr>
+ * <tr>
+ *      <td>Information</td>
+ *      <td><code>FutronicIsTrial</code>, <code>FutronicIdentificationsLeft</code></td>
+ *      <td>Read-only, thread-safe, not synchronized.</td>
+ *  </tr>
+ * </table>
+ * The native identification sets the process-wide SDK parameters (FARN,
+ * fast mode, version) before matching, so two native identifications with
+ * different settings must not overlap: the JNI backend allows one match at a
+ * time. Whether the native library tolerates a match while another call
+ * waits for a finger is not known, so the backend tells whether it needs
+ * the exclusive mode, in which one lock is used for all calls (see
+ * <code>IFutronicBackend.isExclusive</code>). The JNI backend needs it; the
+ * simulated backend does not.
+ *
+ * The locks are always taken in the same order: the capture lock before the
+ * match permit.
+ *
+ * Use the locks with try-with-resources:
+ * <pre>
+ * try( FtrSdkLocks.Permit permit = FtrSdkLocks.Capture( m_FrameSource ) )
+ * {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class FtrSdkLocks
+{
+    private FtrSdkLocks()
+    {
+    }
+
+    /**
+     * Takes the capture lock of a frame source. Waits until the lock is free.
+     *
+     * The frame source is the type of the source, not a particular device: 
+     * all instances pass <code>FSD_FUTRONIC_USB</code>, so all captures of
+     * the process wait for the same lock.
+     *
+     * @param nFrameSource the frame source.
+     *
+     * @return the permit which releases the lock when closed.
+     */
+    public static Permit Capture( int nFrameSource )
+    {
+        ReentrantLock lock = m_bExclusive ? m_ExclusiveLock : getCaptureLock( nFrameSource );
+        lock.lock();
+        return new Permit( lock, null );
+    }
+
+    /**
+     * Takes a match permit. Waits until a permit is free.
+     *
+     * @return the permit which is released when closed.
+     *
+     * @exception InterruptedException the calling thread is interrupted while
+     * waiting.
+     */
+    public static Permit Match()
+        throws InterruptedException
+    {
+        if( m_bExclusive )
+        {
+            m_ExclusiveLock.lockInterruptibly();
+            return new Permit( m_ExclusiveLock, null );
+        }
+        Semaphore permits = m_MatchPermits;
+        permits.acquire();
+        return new Permit( null, permits );
+    }
+
+    /**
+     * Gets the maximal number of matches running at the same time.
+     */
+    public static int getMatchConcurrency()
+    {
+        return m_MatchConcurrency;
+    }
+
+    /**
+     * Sets the maximal number of matches running at the same time.
+     *
+     * It is set from the backend by <code>FutronicSdkBase.setBackend</code>.
+     * The matches which are already running are not affected.
+     *
+     * @param nMatchConcurrency new value.
+     *
+     * @exception IllegalArgumentException the argument is less than 1.
+     */
+    public static synchronized void setMatchConcurrency( int nMatchConcurrency )
+        throws IllegalArgumentException
+    {
+        if( nMatchConcurrency < 1 )
+            throw new IllegalArgumentException( "The argument nMatchConcurrency has invalid value" );
+        if( nMatchConcurrency == m_MatchConcurrency )
+            return;
+        m_MatchConcurrency = nMatchConcurrency;
+        m_MatchPermits = new Semaphore( nMatchConcurrency, true );
+    }
+
+    /**
+     * Returns <code>true</code> if one lock is used for all captures and
+     * matches.
+     */
+    public static boolean isExclusive()
+    {
+        return m_bExclusive;
+    }
+
+    /**
+     * Enables or disables the exclusive mode, in which one lock is used for
+     * all captures and matches, as with the former <code>m_SyncRoot</code>
+     * monitor. Change it only when no operation is running.
+     *
+     * It is set from the backend by <code>FutronicSdkBase.setBackend</code>.
+     *
+     * @param bExclusive new value
+     */
+    public static void setExclusive( boolean bExclusive )
+    {
+        m_bExclusive = bExclusive;
+    }
+
+    private static ReentrantLock getCaptureLock( int nFrameSource )
+    {
+        Integer nKey = Integer.valueOf( nFrameSource );
+        ReentrantLock lock = m_CaptureLocks.get( nKey );
+        if( lock == null )
+        {
+            ReentrantLock newLock = new ReentrantLock( true );
+            lock = m_CaptureLocks.putIfAbsent( nKey, newLock );
+            if( lock == null )
+                lock = newLock;
+        }
+        return lock;
+    }
+
+    /**
+     * The taken lock or match permit. Closing it releases the lock or permit.
+     */
+    public static final class Permit implements AutoCloseable
+    {
+        private Permit( ReentrantLock Lock, Semaphore Permits )
+        {
+            m_Lock = Lock;
+            m_Permits = Permits;
+        }
+
+        /**
+         * Releases the lock or permit.
+         */
+        public void close()
+        {
+            if( m_Lock != null )
+                m_Lock.unlock();
+            if( m_Permits != null )
+                m_Permits.release();
+        }
+
+        private final ReentrantLock m_Lock;
+        private final Semaphore m_Permits;
+    }
+
+    /**
+     * The capture locks by frame source.
+     */
+    private static final ConcurrentMap<Integer, ReentrantLock> m_CaptureLocks = new ConcurrentHashMap<Integer, ReentrantLock>();
+
+    /**
+     * The lock used for all calls in the exclusive mode.
+     */
+    private static final ReentrantLock m_ExclusiveLock = new ReentrantLock( true );
+
+    /**
+     * <code>true</code> if one lock is used for all captures and matches.
+     */
+    private static volatile boolean m_bExclusive = false;
+
+    /**
+     * Maximal number of matches running at the same time.
+     */
+    private static volatile int m_MatchConcurrency = 1;
+
+    /**
+     * The match permits.
+     */
+    private static volatile Semaphore m_MatchPermits = new Semaphore( 1, true );
+}
@@ -0,0 +1,83 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring for one producer thread and one consumer thread.
+ */
+final class FtrSpscRing<T>
+{
+    /**
+     * Creates a new ring. The capacity is rounded up to a power of two.
+     *
+     * @param nCapacity minimal capacity.
+     */
+    FtrSpscRing( int nCapacity )
+    {
+        int nSize = Integer.highestOneBit( Math.max( 1, nCapacity - 1 ) ) << 1;
+        m_Slots = new AtomicReferenceArray<T>( nSize );
+        m_Mask = nSize - 1;
+        m_Head = new AtomicLong();
+        m_Tail = new AtomicLong();
+    }
+
+    /**
+     * Adds an element. Called only by the producer thread.
+     *
+     * @return <code>false</code> if the ring is full.
+     */
+    boolean Offer( T Element )
+    {
+        long nTail = m_Tail.get();
+        if( nTail - m_Head.get() > m_Mask )
+            return false;
+        m_Slots.lazySet( (int)(nTail & m_Mask), Element );
+        m_Tail.lazySet( nTail + 1 );
+        return true;
+    }
+
+    /**
+     * Returns the oldest element without removing it. Called only by the 
+     * consumer thread.
+     *
+     * @return the element or null if the ring is empty.
+     */
+    T Peek()
+    {
+        long nHead = m_Head.get();
+        if( nHead >= m_Tail.get() )
+            return null;
+        return m_Slots.get( (int)(nHead & m_Mask) );
+    }
+
+    /**
+     * Removes the oldest element. Called only by the consumer thread.
+     *
+     * @return the element or null if the ring is empty.
+     */
+    T Poll()
+    {
+        long nHead = m_Head.get();
+        if( nHead >= m_Tail.get() )
+            return null;
+        int nIndex = (int)(nHead & m_Mask);
+        T Element = m_Slots.get( nIndex );
+        m_Slots.lazySet( nIndex, null );
+        m_Head.lazySet( nHead + 1 );
+        return Element;
+    }
+
+    /**
+     * Returns <code>true</code> if the ring is empty.
+     */
+    boolean IsEmpty()
+    {
+        return m_Head.get() >= m_Tail.get();
+    }
+
+    private final AtomicReferenceArray<T> m_Slots;
+    private final int m_Mask;
+    private final AtomicLong m_Head;
+    private final AtomicLong m_Tail;
+}
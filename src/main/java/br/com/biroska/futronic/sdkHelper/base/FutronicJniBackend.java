@@ -0,0 +1,84 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyResult;
+
+/**
+ * The backend that calls the ftrJSDK native library.
+ *
+ * The native functions are declared in <code>FutronicSdkBase</code>, because
+ * the native library binds them by that class name. The library is loaded when
+ * this class is initialized, so it is not required if another backend is used.
+ */
+public class FutronicJniBackend implements IFutronicBackend
+{
+    static
+    {
+        System.loadLibrary( "ftrJSDK" );
+    }
+
+    /** Creates a new instance of FutronicJniBackend */
+    public FutronicJniBackend()
+    {
+    }
+
+    public int Initialize( FutronicSdkBase Operation )
+    {
+        return Operation.FutronicInitialize();
+    }
+
+    public void Terminate( FutronicSdkBase Operation )
+    {
+        Operation.FutronicTerminate();
+    }
+
+    public int Enroll( FutronicSdkBase Operation )
+    {
+        return Operation.FutronicEnroll();
+    }
+
+    public int Verify( FutronicSdkBase Operation )
+    {
+        return Operation.VerificationProcess();
+    }
+
+    public int GetBaseTemplate( FutronicSdkBase Operation )
+    {
+        return Operation.GetBaseTemplateProcess();
+    }
+
+    public int Identify( FutronicSdkBase Operation, FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+    {
+        int nResult = Operation.IdentifyProcess( rgTemplates, Result );
+        Result.m_FARNValue = (Result.m_Index >= 0) ? Operation.m_FARN : -1;
+        return nResult;
+    }
+
+    /**
+     * The native identification sets process-wide SDK parameters, so only one
+     * identification may run at a time.
+     */
+    public int getMatchConcurrency()
+    {
+        return 1;
+    }
+
+    /**
+     * It is not known whether the native library tolerates a match while 
+     * another call waits for a finger, so all calls are serialized.
+     */
+    public boolean isExclusive()
+    {
+        return true;
+    }
+
+    public boolean IsTrial( FutronicSdkBase Operation )
+    {
+        return Operation.FutronicIsTrial();
+    }
+
+    public int IdentificationsLeft( FutronicSdkBase Operation )
+    {
+        return Operation.FutronicIdentificationsLeft();
+    }
+}
@@ -0,0 +1,286 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * A pool of reusable operation objects (enrollment, verification, 
+ * identification) of one class.
+ *
+ * Creating an operation object takes the library reference lock and, for 
+ * the first object, initializes the library. The pool keeps the released 
+ * objects and gives them out again, so under load the objects are created 
+ * once. A released object is reset with <code>Reset</code>, so the next user
+ * gets the default settings and sets its own template and settings:
+ * <pre>
+ * FutronicOperationPool&lt;FutronicVerification&gt; pool = 
+ *     new FutronicOperationPool&lt;FutronicVerification&gt;( new IOperationFactory&lt;FutronicVerification&gt;()
+ *     {
+ *         public FutronicVerification Create() throws FutronicException
+ *         {
+ *             return new FutronicVerification( new byte[0] );
+ *         }
+ *     }, 16 );
+ *
+ * FutronicVerification verification = pool.Acquire();
+ * try
+ * {
+ *     verification.setTemplate( Template );
+ *     verification.setFARN( 166 );
+ *     ...
+ * }
+ * finally
+ * {
+ *     pool.Release( verification );
+ * }
+ * </pre>
+ * The pool does not limit the number of objects in use; it only limits the
+ * number of idle objects. All methods are thread-safe.
+ */
+public class FutronicOperationPool<T extends FutronicSdkBase> implements AutoCloseable
+{
+    /**
+     * Creates a new instance of FutronicOperationPool. No object is created.
+     *
+     * @param Factory the factory of the objects (can not be NULL).
+     * @param nMaxIdle maximal number of idle objects kept by the pool. The 
+     * objects released when the pool is full are disposed.
+     *
+     * @exception NullPointerException a null reference parameter Factory is
+     * passed to the function.
+     * @exception IllegalArgumentException nMaxIdle is less than 1.
+     */
+    public FutronicOperationPool( IOperationFactory<T> Factory, int nMaxIdle )
+        throws NullPointerException, IllegalArgumentException
+    {
+        if( Factory == null )
+            throw new NullPointerException( "A null reference parameter Factory is passed to the function." );
+        if( nMaxIdle < 1 )
+            throw new IllegalArgumentException( "The argument nMaxIdle has invalid value" );
+        m_Factory = Factory;
+        m_MaxIdle = nMaxIdle;
+        m_Idle = new ConcurrentLinkedDeque<T>();
+        m_IdleCount = new AtomicInteger();
+        m_Active = Collections.newSetFromMap( new ConcurrentHashMap<T, Boolean>() );
+        m_CreatedCount = new AtomicLong();
+        m_ReusedCount = new AtomicLong();
+        m_DiscardedCount = new AtomicLong();
+        m_bDispose = false;
+    }
+
+    /**
+     * Takes an idle object or creates a new one if there is no idle object.
+     *
+     * @return the object in the <code>ready_to_process</code> state with the 
+     * default settings. It must be returned with <code>Release</code>.
+     *
+     * @exception IllegalStateException the pool is disposed.
+     * @exception FutronicException error occurs during SDK initialization.
+     */
+    public T Acquire()
+        throws IllegalStateException, FutronicException
+    {
+        CheckDispose();
+
+        // the last released object is taken first, its data is likely cached
+        T Operation = m_Idle.pollFirst();
+        if( Operation != null )
+        {
+            m_IdleCount.decrementAndGet();
+            m_ReusedCount.incrementAndGet();
+        }
+        else
+        {
+            Operation = m_Factory.Create();
+            m_CreatedCount.incrementAndGet();
+        }
+        m_Active.add( Operation );
+        return Operation;
+    }
+
+    /**
+     * Returns an object to the pool.
+     *
+     * The object is reset and kept for the next <code>Acquire</code>. It is 
+     * disposed instead if it is still running an operation, if it is already
+     * disposed, if the pool is full or if the pool is disposed.
+     *
+     * An object may be released once per <code>Acquire</code>: released 
+     * twice, it would be kept twice and given to two users at the same time.
+     *
+     * @param Operation the object taken by <code>Acquire</code> (can not be 
+     * NULL).
+     *
+     * @exception NullPointerException a null reference parameter Operation is
+     * passed to the function.
+     * @exception IllegalArgumentException the object is not in use: it is 
+     * already released or it is not taken from this pool.
+     */
+    public void Release( T Operation )
+        throws NullPointerException, IllegalArgumentException
+    {
+        if( Operation == null )
+            throw new NullPointerException( "A null reference parameter Operation is passed to the function." );
+        if( !m_Active.remove( Operation ) )
+            throw new IllegalArgumentException( "The object is already released or is not taken from the pool." );
+
+        if( !m_bDispose && (m_IdleCount.incrementAndGet() <= m_MaxIdle) )
+        {
+            try
+            {
+                Operation.Reset();
+                m_Idle.offerFirst( Operation );
+                // the pool may be disposed while the object is returned
+                if( m_bDispose && m_Idle.remove( Operation ) )
+                {
+                    m_IdleCount.decrementAndGet();
+                    Discard( Operation );
+                }
+                return;
+            }
+            catch( IllegalStateException e )
+            {
+                // running or disposed
+            }
+        }
+        m_IdleCount.decrementAndGet();
+        Discard( Operation );
+    }
+
+    /**
+     * Disposes the idle objects. The objects in use are disposed when they 
+     * are released.
+     */
+    public void Dispose()
+    {
+        m_bDispose = true;
+        T Operation;
+        while( (Operation = m_Idle.pollFirst()) != null )
+        {
+            m_IdleCount.decrementAndGet();
+            Discard( Operation );
+        }
+    }
+
+    /**
+     * Disposes the pool as <code>Dispose</code>, so it may be used with 
+     * try-with-resources.
+     */
+    public void close()
+    {
+        Dispose();
+    }
+
+    /**
+     * Gets the maximal number of idle objects.
+     */
+    public int getMaxIdle()
+    {
+        return m_MaxIdle;
+    }
+
+    /**
+     * Gets the number of idle objects.
+     */
+    public int getIdleCount()
+    {
+        return Math.max( 0, m_IdleCount.get() );
+    }
+
+    /**
+     * Gets the number of objects taken and not released.
+     */
+    public int getActiveCount()
+    {
+        return m_Active.size();
+    }
+
+    /**
+     * Gets the number of objects created by the pool.
+     */
+    public long getCreatedCount()
+    {
+        return m_CreatedCount.get();
+    }
+
+    /**
+     * Gets the number of <code>Acquire</code> calls served by an idle object.
+     */
+    public long getReusedCount()
+    {
+        return m_ReusedCount.get();
+    }
+
+    /**
+     * Gets the number of objects disposed by the pool.
+     */
+    public long getDiscardedCount()
+    {
+        return m_DiscardedCount.get();
+    }
+
+    /**
+     * Returns the share of <code>Acquire</code> calls served by an idle 
+     * object, between 0 and 1.
+     */
+    public double getHitRate()
+    {
+        long nReused = m_ReusedCount.get();
+        long nTotal = nReused + m_CreatedCount.get();
+        return (nTotal == 0) ? 0 : (double)nReused / nTotal;
+    }
+
+    public String toString()
+    {
+        return String.format( "idle=%d active=%d created=%d reused=%d discarded=%d hit=%.1f%%",
+                              getIdleCount(), getActiveCount(), getCreatedCount(),
+                              getReusedCount(), getDiscardedCount(), getHitRate() * 100 );
+    }
+
+    private void Discard( T Operation )
+    {
+        m_DiscardedCount.incrementAndGet();
+        Operation.Dispose();
+    }
+
+    private void CheckDispose()
+        throws IllegalStateException
+    {
+        if( m_bDispose )
+            throw new IllegalStateException( "The pool disposed" );
+    }
+
+    private final IOperationFactory<T> m_Factory;
+
+    private final int m_MaxIdle;
+
+    /**
+     * The idle objects, the last released first.
+     */
+    private final ConcurrentLinkedDeque<T> m_Idle;
+
+    /**
+     * Number of the idle objects, including the objects being returned.
+     */
+    private final AtomicInteger m_IdleCount;
+
+    /**
+     * The objects taken and not released. The operation objects do not 
+     * override <code>equals</code>, so the set compares identities.
+     */
+    private final Set<T> m_Active;
+
+    private final AtomicLong m_CreatedCount;
+
+    private final AtomicLong m_ReusedCount;
+
+    private final AtomicLong m_DiscardedCount;
+
+    private volatile boolean m_bDispose;
+}
@@ -0,0 +1,184 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the operations (enrollment, verification, "get base template") on a
+ * bounded set of worker threads instead of a new thread per operation.
+ *
+ * The scheduler has a fixed number of named daemon workers and a bounded
+ * queue. When all workers are busy and the queue is full, a new operation is
+ * rejected with <code>RejectedExecutionException</code>. On Java 21 or newer
+ * the workers may be virtual threads on request (see 
+ * <code>FtrOperationThreads</code>).
+ *
+ * All operations use the default scheduler unless another one is set with
+ * <code>FutronicSdkBase.setScheduler</code>. The scheduler is also an
+ * <code>Executor</code>, so it may be passed to the future-based operations.
+ */
+public class FutronicOperationScheduler implements Executor
+{
+    /**
+     * The default scheduler. It is created on first use.
+     */
+    private static FutronicOperationScheduler m_Default = null;
+
+    /**
+     * Gets the default scheduler. It is created on first use with one worker
+     * per processor (at least 2) and a queue of 64 operations.
+     */
+    public static synchronized FutronicOperationScheduler getDefault()
+    {
+        if( (m_Default == null) || m_Default.isShutdown() )
+        {
+            int nWorkers = Math.max( 2, Runtime.getRuntime().availableProcessors() );
+            m_Default = new FutronicOperationScheduler( "Futronic operation", nWorkers, 64 );
+        }
+        return m_Default;
+    }
+
+    /**
+     * Sets the default scheduler. The previous default scheduler is not shut
+     * down.
+     *
+     * @param Scheduler new default scheduler (can not be NULL).
+     *
+     * @exception NullPointerException a null reference parameter Scheduler is
+     * passed to the function.
+     */
+    public static synchronized void setDefault( FutronicOperationScheduler Scheduler )
+        throws NullPointerException
+    {
+        if( Scheduler == null )
+            throw new NullPointerException( "A null reference parameter Scheduler is passed to the function." );
+        m_Default = Scheduler;
+    }
+
+    /**
+     * Creates a new instance of FutronicOperationScheduler.
+     *
+     * @param szName the name prefix of the worker threads.
+     * @param nWorkers number of worker threads.
+     * @param nQueueSize maximum number of operations waiting for a worker.
+     *
+     * @exception IllegalArgumentException nWorkers or nQueueSize is less than 1.
+     */
+    public FutronicOperationScheduler( String szName, int nWorkers, int nQueueSize )
+        throws IllegalArgumentException
+    {
+        if( nWorkers < 1 )
+            throw new IllegalArgumentException( "The argument nWorkers has invalid value" );
+        if( nQueueSize < 1 )
+            throw new IllegalArgumentException( "The argument nQueueSize has invalid value" );
+        m_Executor = new ThreadPoolExecutor( nWorkers, nWorkers,
+                                             30, TimeUnit.SECONDS,
+                                             new ArrayBlockingQueue<Runnable>( nQueueSize ),
+                                             FtrOperationThreads.NewThreadFactory( szName ),
+                                             new ThreadPoolExecutor.AbortPolicy() );
+        m_Executor.allowCoreThreadTimeOut( true );
+    }
+
+    /**
+     * Submits an operation.
+     *
+     * @param Operation the operation.
+     *
+     * @return the future of the operation.
+     *
+     * @exception RejectedExecutionException all workers are busy and the queue
+     * is full, or the scheduler is shut down.
+     */
+    public Future<?> Submit( Runnable Operation )
+        throws RejectedExecutionException
+    {
+        return m_Executor.submit( Operation );
+    }
+
+    public void execute( Runnable command )
+        throws RejectedExecutionException
+    {
+        m_Executor.execute( command );
+    }
+
+    /**
+     * Stops accepting new operations. The submitted operations are completed.
+     */
+    public void Shutdown()
+    {
+        m_Executor.shutdown();
+    }
+
+    /**
+     * Stops accepting new operations, interrupts the running operations and
+     * drops the queued ones.
+     */
+    public void ShutdownNow()
+    {
+        m_Executor.shutdownNow();
+    }
+
+    /**
+     * Waits until all operations are completed after the shutdown.
+     *
+     * @param nTimeout maximal wait time in milliseconds.
+     *
+     * @return <code>true</code> if the scheduler is terminated.
+     *
+     * @exception InterruptedException the calling thread is interrupted.
+     */
+    public boolean AwaitTermination( long nTimeout )
+        throws InterruptedException
+    {
+        return m_Executor.awaitTermination( nTimeout, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Returns <code>true</code> if the scheduler is shut down.
+     */
+    public boolean isShutdown()
+    {
+        return m_Executor.isShutdown();
+    }
+
+    /**
+     * Returns <code>true</code> if the workers are virtual threads.
+     */
+    public boolean isVirtual()
+    {
+        return FtrOperationThreads.IsVirtual();
+    }
+
+    /**
+     * Gets the number of running operations.
+     */
+    public int getActiveCount()
+    {
+        return m_Executor.getActiveCount();
+    }
+
+    /**
+     * Gets the number of operations waiting for a worker.
+     */
+    public int getQueuedCount()
+    {
+        return m_Executor.getQueue().size();
+    }
+
+    /**
+     * Gets the number of completed operations.
+     */
+    public long getCompletedCount()
+    {
+        return m_Executor.getCompletedTaskCount();
+    }
+
+    /**
+     * The pool of worker threads.
+     */
+    private final ThreadPoolExecutor m_Executor;
+}
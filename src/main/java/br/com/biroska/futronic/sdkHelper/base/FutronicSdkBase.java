@@ -1,23 +1,53 @@
 package br.com.biroska.futronic.sdkHelper.base;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import br.com.biroska.futronic.sdkHelper.callbacks.ICallBack;
+import br.com.biroska.futronic.sdkHelper.callbacks.IRawFrameCallBack;
 import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
 import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyResult;
 import br.com.biroska.futronic.sdkHelper.data.proccess.FTR_PROGRESS;
+import br.com.biroska.futronic.sdkHelper.enums.DispatchOverflowPolicy;
 import br.com.biroska.futronic.sdkHelper.enums.EnrollmentState;
 import br.com.biroska.futronic.sdkHelper.enums.FarnValues;
+import br.com.biroska.futronic.sdkHelper.enums.OperationKind;
+import br.com.biroska.futronic.sdkHelper.enums.OperationPhase;
 import br.com.biroska.futronic.sdkHelper.enums.VersionCompatible;
 import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+import br.com.biroska.futronic.sdkHelper.frame.FtrFrameConverter;
+import br.com.biroska.futronic.sdkHelper.metrics.FtrLatencyHistogram;
+import br.com.biroska.futronic.sdkHelper.metrics.FtrMetricsRegistry;
 
 /**
  * Base class for any Java-wrapper class. It initialize and terminate the FTRAPI.dll library.
  *
+ * All calls to the library go through the backend (see <code>IFutronicBackend</code>).
+ * The default backend is <code>FutronicJniBackend</code>.
+ *
+ * An instance holds a reference to the library until it is disposed, so it
+ * should be used with try-with-resources or disposed explicitly. An instance
+ * which becomes unreachable without <code>Dispose</code> is reported as a 
+ * leak to the <code>java.util.logging</code> logger of this class, and its 
+ * reference is released by a clean-up thread. Set the system property
+ * <code>futronic.leakTrace</code> to <code>true</code> to log where the
+ * leaked instances were created.
+ *
  * @author Shustikov
  */
-public abstract class FutronicSdkBase
+public abstract class FutronicSdkBase implements AutoCloseable
 {
     /**
      * Base value for the error codes.
@@ -132,13 +162,276 @@ public abstract class FutronicSdkBase
     private static Object m_InitLock = new Object();
 
     /**
-     * This object synchronizes the FTRAPI.dll usage from any Java-wrapper class.
+     * The backend which is initialized while no instance exists, or null. 
+     * It is kept warm for the keep-alive time (see 
+     * <code>FutronicSession.setKeepAlive</code>) or left by a leaked last 
+     * instance. The next instance uses it without initializing it again.
+     */
+    private static IFutronicBackend m_IdleBackend = null;
+
+    /**
+     * The disposed instance used to terminate the idle backend, or null if
+     * the backend was left by a leaked instance and cannot be terminated.
+     */
+    private static FutronicSdkBase m_IdleOperation = null;
+
+    /**
+     * The number of the current idle period. The delayed termination of an
+     * earlier period does nothing.
+     */
+    private static long m_IdleGeneration = 0;
+
+    /**
+     * How long the library stays initialized after the last instance is 
+     * disposed, in milliseconds.
+     */
+    private static long m_KeepAlive = 0;
+
+    /**
+     * Runs the delayed terminations. It is created on first use.
+     */
+    private static ScheduledExecutorService m_KeepAliveTimer = null;
+
+    /**
+     * Durations of the library initializations and terminations.
+     */
+    private static final FtrLatencyHistogram m_InitializeTime = new FtrLatencyHistogram();
+    private static final FtrLatencyHistogram m_TerminateTime = new FtrLatencyHistogram();
+
+    /**
+     * Number of the instances released by the clean-up thread.
+     */
+    private static final AtomicLong m_LeakCount = new AtomicLong();
+
+    /**
+     * <code>true</code> to record where the instances are created.
+     */
+    private static final boolean LEAK_TRACE = Boolean.getBoolean( "futronic.leakTrace" );
+
+    private static final Logger m_Logger = Logger.getLogger( FutronicSdkBase.class.getName() );
+
+    /**
+     * This object synchronized the FTRAPI.dll usage from any Java-wrapper class.
+     *
+     * @deprecated the operations are synchronized by <code>FtrSdkLocks</code>:
+     * by a single capture lock for captures and by a limited number of 
+     * permits for matches. No SDK call takes this monitor any more, so it 
+     * guards nothing: code which synchronizes on it is no longer serialized
+     * with the SDK calls. Use <code>FtrSdkLocks.Capture</code> or
+     * <code>FtrSdkLocks.Match</code> instead, or 
+     * <code>FtrSdkLocks.setExclusive</code> to restore one lock for all 
+     * calls. The object is kept only for source compatibility.
      */
+    @Deprecated
     public static Object m_SyncRoot = new Object();
-    
-    static
+
+    /**
+     * The backend used by new instances. If it is null, the 
+     * <code>FutronicJniBackend</code> is created on first use.
+     */
+    private static IFutronicBackend m_SdkBackend = null;
+
+    /**
+     * Gets the backend used by new instances.
+     *
+     * @return the current backend. The <code>FutronicJniBackend</code> is 
+     * created (and the native library is loaded) if no backend was set.
+     */
+    public static IFutronicBackend getBackend()
+    {
+        synchronized ( m_InitLock )
+        {
+            if( m_SdkBackend == null )
+            {
+                m_SdkBackend = new FutronicJniBackend();
+                FtrSdkLocks.setMatchConcurrency( m_SdkBackend.getMatchConcurrency() );
+                FtrSdkLocks.setExclusive( m_SdkBackend.isExclusive() );
+            }
+            return m_SdkBackend;
+        }
+    }
+
+    /**
+     * Sets the backend used by new instances.
+     *
+     * The backend can be changed only when no instance of any Java-wrapper 
+     * class exists.
+     *
+     * @param Backend new backend (can not be NULL).
+     *
+     * @exception IllegalStateException some instances are not disposed.
+     * @exception NullPointerException a null reference parameter Backend is 
+     * passed to the function.
+     */
+    public static void setBackend( IFutronicBackend Backend )
+        throws IllegalStateException, NullPointerException
+    {
+        if( Backend == null )
+            throw new NullPointerException( "A null reference parameter Backend is passed to the function." );
+        synchronized ( m_InitLock )
+        {
+            if( m_RefCount != 0 )
+                throw new IllegalStateException( "The backend cannot be changed while some instances are not disposed." );
+            if( m_IdleBackend != Backend )
+                TerminateIdle();
+            m_SdkBackend = Backend;
+            FtrSdkLocks.setMatchConcurrency( Backend.getMatchConcurrency() );
+            FtrSdkLocks.setExclusive( Backend.isExclusive() );
+        }
+    }
+
+    /**
+     * Initializes the backend for the first instance, or takes the idle 
+     * backend if it is the same. Called with the initialization lock held.
+     *
+     * @return the Futronic SDK return code.
+     */
+    private static int AcquireLibrary( FutronicSdkBase Operation )
+    {
+        if( m_IdleBackend == Operation.m_Backend )
+        {
+            m_IdleBackend = null;
+            m_IdleOperation = null;
+            m_IdleGeneration++;
+            return RETCODE_OK;
+        }
+        TerminateIdle();
+
+        long nStart = System.nanoTime();
+        int nResult = Operation.m_Backend.Initialize( Operation );
+        m_InitializeTime.Record( System.nanoTime() - nStart );
+        return nResult;
+    }
+
+    /**
+     * Terminates the backend after the last instance is disposed, or keeps 
+     * it idle for the keep-alive time. Called with the initialization lock 
+     * held.
+     *
+     * @param Operation the disposed instance, or null if the last instance 
+     * is leaked and the backend cannot be terminated.
+     * @param Backend the backend of the last instance.
+     */
+    private static void ReleaseLibrary( FutronicSdkBase Operation, IFutronicBackend Backend )
+    {
+        if( (Operation != null) && (m_KeepAlive == 0) )
+        {
+            TerminateLibrary( Operation );
+            return;
+        }
+
+        m_IdleBackend = Backend;
+        m_IdleOperation = Operation;
+        final long nGeneration = ++m_IdleGeneration;
+        if( Operation == null )
+            return;
+
+        if( m_KeepAliveTimer == null )
+        {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor( 1, FtrOperationThreads.NewThreadFactory( "Futronic keep-alive" ) );
+            timer.setRemoveOnCancelPolicy( true );
+            m_KeepAliveTimer = timer;
+        }
+        m_KeepAliveTimer.schedule( new Runnable()
+        {
+            public void run()
+            {
+                synchronized ( m_InitLock )
+                {
+                    if( (m_RefCount == 0) && (m_IdleGeneration == nGeneration) )
+                        TerminateIdle();
+                }
+            }
+        }, m_KeepAlive, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Terminates the idle backend at once, if it can be terminated. Called 
+     * with the initialization lock held.
+     */
+    private static void TerminateIdle()
+    {
+        FutronicSdkBase Operation = m_IdleOperation;
+        m_IdleBackend = null;
+        m_IdleOperation = null;
+        m_IdleGeneration++;
+        if( Operation != null )
+            TerminateLibrary( Operation );
+    }
+
+    private static void TerminateLibrary( FutronicSdkBase Operation )
+    {
+        long nStart = System.nanoTime();
+        Operation.m_Backend.Terminate( Operation );
+        m_TerminateTime.Record( System.nanoTime() - nStart );
+    }
+
+    /**
+     * Gets how long the library stays initialized after the last instance is
+     * disposed. See <code>FutronicSession.setKeepAlive</code>.
+     */
+    static long getKeepAlive()
+    {
+        synchronized ( m_InitLock )
+        {
+            return m_KeepAlive;
+        }
+    }
+
+    /**
+     * Sets how long the library stays initialized after the last instance is
+     * disposed. See <code>FutronicSession.setKeepAlive</code>.
+     */
+    static void setKeepAlive( long nKeepAlive )
+    {
+        synchronized ( m_InitLock )
+        {
+            m_KeepAlive = nKeepAlive;
+            if( (nKeepAlive == 0) && (m_RefCount == 0) )
+                TerminateIdle();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the library is initialized: some instance
+     * exists or the library is kept warm.
+     */
+    static boolean isLibraryInitialized()
+    {
+        synchronized ( m_InitLock )
+        {
+            return (m_RefCount != 0) || (m_IdleBackend != null);
+        }
+    }
+
+    /**
+     * Gets the number of instances which are not disposed.
+     */
+    static int getReferenceCount()
+    {
+        synchronized ( m_InitLock )
+        {
+            return m_RefCount;
+        }
+    }
+
+    static FtrLatencyHistogram getInitializeTime()
+    {
+        return m_InitializeTime;
+    }
+
+    static FtrLatencyHistogram getTerminateTime()
+    {
+        return m_TerminateTime;
+    }
+
+    /**
+     * Gets the number of instances which were not disposed and were released
+     * by the clean-up thread.
+     */
+    public static long getLeakCount()
     {
-        System.loadLibrary( "ftrJSDK" );
+        return m_LeakCount.get();
     }
 
     /**
@@ -248,10 +541,11 @@ public abstract class FutronicSdkBase
     {
         synchronized ( m_InitLock )
         {
-            if( m_RefCount == 0)
+            m_Backend = getBackend();
+            if( m_RefCount == 0 )
             {
                 int nResult;
-                nResult = FutronicInitialize();
+                nResult = AcquireLibrary( this );
                 if( nResult != RETCODE_OK )
                 {
                     throw new FutronicException( nResult, SdkRetCode2Message( nResult ) );
@@ -259,26 +553,132 @@ public abstract class FutronicSdkBase
             }
             m_RefCount++;
         }
+        m_LeakCheck = new LeakCheck( getClass().getName(), m_Backend );
+        m_Cleanup = FtrResourceCleaner.Register( this, m_LeakCheck );
         m_bDispose = false;
         m_bFakeDetection = false;
         m_bFFDControl = true;
         m_bCancel = true;
+        m_Timeout = 0;
+        m_CancelToken = new FtrCancellationToken( 0 );
         m_FarnLevel = FarnValues.farn_normal;
         m_Version = VersionCompatible.ftr_version_current;
         m_bFastMode = false;
         m_InternalVersion = FTR_VERSION_CURRENT;
         m_FARN = rgFARN[ m_FarnLevel.ordinal() ];
         m_State = EnrollmentState.ready_to_process;
-        m_WorkedThread = null;
+        m_WorkedTask = null;
+        m_Scheduler = FutronicOperationScheduler.getDefault();
+        m_FrameConverter = new FtrFrameConverter( false );
+        m_DispatchPolicy = null;
+        m_DispatchCapacity = 8;
+        m_Metrics = FtrMetricsRegistry.getDefault();
+        m_bTimed = false;
+        m_Dispatcher = null;
     }
     
     /**
      * This function should be called to abort current process (enrollment, 
      * identification etc.).
+     *
+     * It may be called from any thread. A capture returns 
+     * <code>RETCODE_CANCELED_BY_USER</code> at the next call-back from the
+     * SDK; an identification stops before its next match.
      */
     public void OnCalcel()
     {
         m_bCancel = true;
+        m_CancelToken.Cancel();
+    }
+
+    /**
+     * Aborts the current process and waits until it returns.
+     *
+     * Only the operations started on the scheduler or on an executor are 
+     * waited for; an operation running in a calling thread is cancelled but
+     * not waited for.
+     *
+     * @param nTimeout maximal wait time in milliseconds.
+     *
+     * @return <code>true</code> if no operation is running any more, 
+     * <code>false</code> if the operation does not return in time.
+     *
+     * @exception IllegalArgumentException nTimeout is negative.
+     */
+    public boolean Cancel( long nTimeout )
+        throws IllegalArgumentException
+    {
+        if( nTimeout < 0 )
+            throw new IllegalArgumentException( "The argument nTimeout has invalid value" );
+
+        OnCalcel();
+
+        Future<?> task = m_WorkedTask;
+        if( (task == null) || task.isDone() )
+            return true;
+        try
+        {
+            task.get( nTimeout, TimeUnit.MILLISECONDS );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch( ExecutionException e )
+        {
+        }
+        catch( CancellationException e )
+        {
+        }
+        catch( TimeoutException e )
+        {
+        }
+        return task.isDone();
+    }
+
+    /**
+     * get the timeout of the operations in milliseconds. 0 means that the 
+     * operations have no deadline.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public long getTimeout()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_Timeout;
+    }
+
+    /**
+     * set the timeout of the operations in milliseconds.
+     *
+     * Every operation started after the call has a deadline: when the 
+     * timeout elapses, the operation is cancelled as by <code>OnCalcel</code>
+     * and returns <code>RETCODE_CANCELED_BY_USER</code>. The running 
+     * operation is not affected.
+     *
+     * @param nTimeout new value, 0 to disable the deadline.
+     *
+     * @exception IllegalStateException the object disposed.
+     * @exception IllegalArgumentException nTimeout is negative.
+     */
+    public void setTimeout( long nTimeout )
+        throws IllegalStateException, IllegalArgumentException
+    {
+        CheckDispose();
+        if( nTimeout < 0 )
+            throw new IllegalArgumentException( "The argument nTimeout has invalid value" );
+        m_Timeout = nTimeout;
+    }
+
+    /**
+     * get the cancellation token of the current operation, or of the last 
+     * one if no operation is running. Cancelling it is the same as 
+     * <code>OnCalcel</code> for this operation only.
+     */
+    public FtrCancellationToken getCancellationToken()
+    {
+        return m_CancelToken;
     }
 
     /**
@@ -440,7 +840,7 @@ public abstract class FutronicSdkBase
     public boolean IsTrial()
     {
         CheckDispose();
-        return FutronicIsTrial();
+        return m_Backend.IsTrial( this );
     }
 
     /**
@@ -455,7 +855,7 @@ public abstract class FutronicSdkBase
     public int getIdentificationsLeft()
     {
         CheckDispose();
-        return FutronicIdentificationsLeft();
+        return m_Backend.IdentificationsLeft( this );
     }
 
     /**
@@ -536,74 +936,335 @@ public abstract class FutronicSdkBase
     }
 
     /**
-     * Clean all allocated resources
+     * get the "Reuse Frame Image" property value
      *
-     * Decrements the reference count for the library.
-     * If the reference count on the library falls to 0, the SDK library
-     * is uninitialized.
+     * @exception IllegalStateException the object disposed.
      */
-    public void Dispose()
+    public boolean getReuseFrameImage()
+        throws IllegalStateException
     {
-        if( m_bDispose )
-            return;
-
-        
-        if( (m_WorkedThread != null) && m_WorkedThread.isAlive() )
-        {
-            m_bCancel = true;
-            try
-            {
-                m_WorkedThread.join( 3000 );
-                if( m_WorkedThread.isAlive() )
-                    m_WorkedThread.interrupt();
-                m_WorkedThread = null;
-            }
-            catch( InterruptedException e )
-            {
-                m_WorkedThread.interrupt();
-                m_WorkedThread = null;
-            }
-        }
+        CheckDispose();
+        return m_FrameConverter.getReuseImage();
+    }
 
-        synchronized ( m_InitLock )
-        {
-            m_RefCount--;
+    /**
+     * set the "Reuse Frame Image" property value
+     *
+     * Set to <code>true</code>, if you want to receive the same 
+     * <code>BufferedImage</code> instance in every <code>UpdateScreenImage</code>
+     * event for frames of the same resolution. No memory is allocated per 
+     * frame, but the image is overwritten by the next frame, so the caller 
+     * must draw or copy it before the event returns.
+     *
+     * @param bReuseFrameImage new value
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     */
+    public void setReuseFrameImage( boolean bReuseFrameImage )
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+        m_FrameConverter.setReuseImage( bReuseFrameImage );
+    }
 
-            if( m_RefCount == 0 )
-                FutronicTerminate();
-        }
+    /**
+     * get the scheduler which runs the operations
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public FutronicOperationScheduler getScheduler()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_Scheduler;
+    }
 
-        m_bDispose = true;
+    /**
+     * set the scheduler which runs the operations
+     *
+     * The default value is <code>FutronicOperationScheduler.getDefault()</code>.
+     *
+     * @param Scheduler new scheduler (can not be NULL).
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     * @exception NullPointerException a null reference parameter Scheduler is
+     * passed to the function.
+     */
+    public void setScheduler( FutronicOperationScheduler Scheduler )
+        throws IllegalStateException, NullPointerException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+        if( Scheduler == null )
+            throw new NullPointerException( "A null reference parameter Scheduler is passed to the function." );
+        m_Scheduler = Scheduler;
     }
 
     /**
-     * State callback function. It's called from native code.
+     * get the "Dispatch Policy" property value
      *
-     * @param Progress data capture progress information.
-     * @param StateMask a bit mask indicating what arguments are provided.
-     * @param Signal this signal should be used to interact with a user.
-     * @param BitmapWidth contain a width of the bitmap to be displayed.
-     * @param BitmapHeight contain a height of the bitmap to be displayed.
-     * @param pBitmap contain a bitmap data.
+     * @return the frame overflow policy of the asynchronous call-back dispatch
+     * or null if the call-back events are raised synchronously.
      *
-     * @return user response value
+     * @exception IllegalStateException the object disposed.
      */
-    protected int cbControl( FTR_PROGRESS Progress, int StateMask, int Signal,
-                             int BitmapWidth, int BitmapHeight,
-                             byte[] pBitmap )
+    public DispatchOverflowPolicy getDispatchPolicy()
+        throws IllegalStateException
     {
-        int nRetCode = FTR_CONTINUE;
+        CheckDispose();
+        return m_DispatchPolicy;
+    }
 
-        if( (StateMask & FTR_STATE_SIGNAL_PROVIDED) != 0 )
-        {
-            switch( Signal )
-            {
-            case FTR_SIGNAL_TOUCH_SENSOR:
-                m_CallBack.OnPutOn( Progress );
+    /**
+     * set the "Dispatch Policy" property value
+     *
+     * By default the call-back events are raised on the capture thread, so a 
+     * slow call-back stalls the capture. If a policy is set, the 
+     * <code>OnPutOn</code>, <code>OnTakeOff</code> and <code>UpdateScreenImage</code>
+     * events are queued and raised on a dedicated thread. The "put on" and 
+     * "take off" events are never dropped; frames are dropped according to 
+     * the policy. The <code>OnFakeSource</code> event is always raised on the 
+     * capture thread, because its result is needed at once. The completion 
+     * event is raised after all queued events are delivered.
+     *
+     * @param Policy the frame overflow policy or null to raise the events 
+     * synchronously.
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     */
+    public void setDispatchPolicy( DispatchOverflowPolicy Policy )
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+        m_DispatchPolicy = Policy;
+        ShutdownDispatcher();
+    }
+
+    /**
+     * get the number of frames queued for the <code>drop_oldest_frame</code>
+     * dispatch policy.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public int getDispatchCapacity()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_DispatchCapacity;
+    }
+
+    /**
+     * set the number of frames queued for the <code>drop_oldest_frame</code>
+     * dispatch policy. The value is rounded up to a power of two.
+     *
+     * @param nCapacity new value, between 1 and 1024.
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     * @exception IllegalArgumentException the argument nCapacity has invalid 
+     * value.
+     */
+    public void setDispatchCapacity( int nCapacity )
+        throws IllegalStateException, IllegalArgumentException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+        if( nCapacity < 1 || nCapacity > 1024 )
+            throw new IllegalArgumentException( "The argument nCapacity has invalid value" );
+        m_DispatchCapacity = nCapacity;
+        ShutdownDispatcher();
+    }
+
+    /**
+     * Gets the number of frames dropped by the asynchronous call-back dispatch.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public long getDroppedFrames()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        FtrCallBackDispatcher dispatcher = m_Dispatcher;
+        return (dispatcher != null) ? dispatcher.getDroppedFrames() : 0;
+    }
+
+    /**
+     * get the registry which receives the latencies of the operations.
+     * Returns null if the latencies are not recorded.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public FtrMetricsRegistry getMetrics()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_Metrics;
+    }
+
+    /**
+     * set the registry which receives the latencies of the operations.
+     *
+     * The default value is <code>FtrMetricsRegistry.getDefault()</code>.
+     *
+     * @param Metrics new registry. Set to null to stop recording the 
+     * latencies of this object.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     */
+    public void setMetrics( FtrMetricsRegistry Metrics )
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( (m_State != EnrollmentState.ready_to_process) && (m_State != EnrollmentState.ready_to_continue) )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+        m_Metrics = Metrics;
+    }
+
+    /**
+     * Clean all allocated resources
+     *
+     * Decrements the reference count for the library.
+     * If the reference count on the library falls to 0, the SDK library
+     * is uninitialized.
+     *
+     * A running operation is cancelled and waited for up to 3 seconds.
+     */
+    public void Dispose()
+    {
+        Dispose( 3000 );
+    }
+
+    /**
+     * Clean all allocated resources
+     *
+     * A running operation is cancelled and waited for up to nTimeout 
+     * milliseconds. If it does not return in time, its worker thread is 
+     * interrupted and the resources are released anyway.
+     *
+     * @param nTimeout maximal wait time in milliseconds.
+     *
+     * @exception IllegalArgumentException nTimeout is negative.
+     */
+    public void Dispose( long nTimeout )
+        throws IllegalArgumentException
+    {
+        if( m_bDispose )
+            return;
+
+        Future<?> task = m_WorkedTask;
+        if( (task != null) && !Cancel( nTimeout ) )
+            task.cancel( true );
+        m_WorkedTask = null;
+
+        ShutdownDispatcher();
+
+        synchronized ( m_InitLock )
+        {
+            m_RefCount--;
+
+            if( m_RefCount == 0 )
+                ReleaseLibrary( this, m_Backend );
+        }
+
+        m_LeakCheck.m_bDisposed = true;
+        m_Cleanup.run();
+        m_bDispose = true;
+    }
+
+    /**
+     * Restores the default settings, so the object may be reused for another
+     * operation instead of creating a new instance (see 
+     * <code>FutronicOperationPool</code>).
+     *
+     * The FARN level, fast mode, version, fake detection and timeout are set
+     * to their default values, and the object returns to the 
+     * <code>ready_to_process</code> state. The scheduler, the metrics 
+     * registry and the call-back dispatch settings are kept.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. An operation is running.
+     */
+    public void Reset()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( (m_State != EnrollmentState.ready_to_process) && (m_State != EnrollmentState.ready_to_continue) )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "An operation is running." );
+        m_bFakeDetection = false;
+        m_bFFDControl = true;
+        m_bCancel = true;
+        m_Timeout = 0;
+        m_CancelToken = new FtrCancellationToken( 0 );
+        m_FarnLevel = FarnValues.farn_normal;
+        m_Version = VersionCompatible.ftr_version_current;
+        m_bFastMode = false;
+        m_InternalVersion = FTR_VERSION_CURRENT;
+        m_FARN = rgFARN[ m_FarnLevel.ordinal() ];
+        m_State = EnrollmentState.ready_to_process;
+        m_WorkedTask = null;
+        m_CallBack = null;
+    }
+
+    /**
+     * Disposes the object as <code>Dispose</code>, so the object may be used
+     * with try-with-resources.
+     */
+    public void close()
+    {
+        Dispose();
+    }
+
+    /**
+     * State callback function. It's called from native code.
+     *
+     * @param Progress data capture progress information.
+     * @param StateMask a bit mask indicating what arguments are provided.
+     * @param Signal this signal should be used to interact with a user.
+     * @param BitmapWidth contain a width of the bitmap to be displayed.
+     * @param BitmapHeight contain a height of the bitmap to be displayed.
+     * @param pBitmap contain a bitmap data.
+     *
+     * @return user response value
+     */
+    protected int cbControl( FTR_PROGRESS Progress, int StateMask, int Signal,
+                             int BitmapWidth, int BitmapHeight,
+                             byte[] pBitmap )
+    {
+        int nRetCode = FTR_CONTINUE;
+        FtrCallBackDispatcher dispatcher = getDispatcher();
+
+        if( (StateMask & FTR_STATE_SIGNAL_PROVIDED) != 0 )
+        {
+            switch( Signal )
+            {
+            case FTR_SIGNAL_TOUCH_SENSOR:
+                if( m_bTimed && (m_nPutOnTime == 0) )
+                    m_nPutOnTime = System.nanoTime();
+                if( dispatcher != null )
+                    dispatcher.PublishSignal( Signal, Progress );
+                else
+                    m_CallBack.OnPutOn( Progress );
                 break;
 
             case FTR_SIGNAL_TAKE_OFF:
-                m_CallBack.OnTakeOff( Progress );
+                if( m_bTimed && (m_nPutOnTime != 0) )
+                {
+                    m_nWaitTime += System.nanoTime() - m_nPutOnTime;
+                    m_nPutOnTime = 0;
+                }
+                if( dispatcher != null )
+                    dispatcher.PublishSignal( Signal, Progress );
+                else
+                    m_CallBack.OnTakeOff( Progress );
                 break;
 
             case FTR_SIGNAL_FAKE_SOURCE:
@@ -619,19 +1280,15 @@ public abstract class FutronicSdkBase
 
         if( (StateMask & FTR_STATE_FRAME_PROVIDED) != 0 )
         {
-            BufferedImage hImage = new BufferedImage( BitmapWidth, 
-                                                      BitmapHeight,
-                                                      BufferedImage.TYPE_BYTE_GRAY );
-            DataBuffer db1 = hImage.getRaster().getDataBuffer();
-            for( int i = 0; i < db1.getSize(); i++ )
-            {
-                db1.setElem( i, pBitmap[i] );
-            }
-
-            m_CallBack.UpdateScreenImage( hImage );
+            if( m_bTimed )
+                m_nLastFrameTime = System.nanoTime();
+            if( dispatcher != null )
+                dispatcher.PublishFrame( pBitmap, BitmapWidth, BitmapHeight );
+            else
+                DeliverFrame( pBitmap, BitmapWidth, BitmapHeight );
         }
 
-        if( m_bCancel )
+        if( m_bCancel || m_CancelToken.isCancelled() )
         {
             nRetCode = FTR_CANCEL;
             m_bCancel = false;
@@ -641,12 +1298,305 @@ public abstract class FutronicSdkBase
     }
 
 
-    protected void finalize()
+    /**
+     * Starts measuring the phases of a capture. Called by the operation thread
+     * before the native call.
+     */
+    protected void BeginCapture()
     {
-        if( !m_bDispose )
-            Dispose();
+        FtrMetricsRegistry metrics = m_Metrics;
+        m_bTimed = (metrics != null) && metrics.isEnabled();
+        if( !m_bTimed )
+            return;
+        m_nPutOnTime = 0;
+        m_nWaitTime = 0;
+        m_nLastFrameTime = 0;
+        m_nCaptureStart = System.nanoTime();
     }
-    
+
+    /**
+     * Stops measuring the phases of a capture and records them (see 
+     * <code>OperationPhase</code>). Called by the operation thread after the
+     * native call.
+     *
+     * @param Kind the operation kind.
+     * @param nRetCode the return code of the native call.
+     */
+    protected void EndCapture( OperationKind Kind, int nRetCode )
+    {
+        if( !m_bTimed )
+            return;
+        m_bTimed = false;
+        long nEnd = System.nanoTime();
+        long nWait = m_nWaitTime;
+        if( m_nPutOnTime != 0 )
+            nWait += nEnd - m_nPutOnTime;
+        long nLastFrame = (m_nLastFrameTime != 0) ? m_nLastFrameTime : nEnd;
+
+        RecordLatency( Kind, OperationPhase.wait_for_finger, nRetCode, nWait );
+        RecordLatency( Kind, OperationPhase.capture, nRetCode, Math.max( 0, nLastFrame - m_nCaptureStart - nWait ) );
+        RecordLatency( Kind, OperationPhase.extraction, nRetCode, nEnd - nLastFrame );
+        RecordLatency( Kind, OperationPhase.total, nRetCode, nEnd - m_nCaptureStart );
+    }
+
+    /**
+     * Records the latency of a phase in the registry of this object, if any.
+     *
+     * @param Kind the operation kind.
+     * @param Phase the phase.
+     * @param nRetCode the return code of the operation.
+     * @param nNanos the latency in nanoseconds.
+     */
+    protected void RecordLatency( OperationKind Kind, OperationPhase Phase, int nRetCode, long nNanos )
+    {
+        FtrMetricsRegistry metrics = m_Metrics;
+        if( metrics == null )
+            return;
+        metrics.Record( Kind, Phase, nRetCode, nNanos );
+
+        // the end of a cancelled operation
+        FtrCancellationToken token = m_CancelToken;
+        if( (Phase == OperationPhase.total) && token.isCancelled() )
+            metrics.Record( Kind, OperationPhase.cancellation, nRetCode, Math.max( 0, System.nanoTime() - token.getCancelTime() ) );
+    }
+
+    /**
+     * Starts a new operation: clears the cancellation request and creates 
+     * the cancellation token with the deadline of the operation. Called in 
+     * the calling thread before the operation is started.
+     */
+    protected void ResetCancel()
+    {
+        m_bCancel = false;
+        m_CancelToken = new FtrCancellationToken( m_Timeout );
+    }
+
+    /**
+     * Returns <code>true</code> if the current operation is cancelled by 
+     * <code>OnCalcel</code> or by its deadline.
+     */
+    protected boolean isCancelRequested()
+    {
+        return m_CancelToken.isCancelled();
+    }
+
+    /**
+     * Records a value which is not a latency in the registry of this object,
+     * if any.
+     *
+     * @param szName the name of the value.
+     * @param nValue the value.
+     */
+    protected void RecordValue( String szName, long nValue )
+    {
+        FtrMetricsRegistry metrics = m_Metrics;
+        if( metrics != null )
+            metrics.RecordValue( szName, nValue );
+    }
+
+    /**
+     * Runs an operation on the executor and returns its future.
+     *
+     * The caller must set the state of the operation before and the task 
+     * must restore it. If the executor rejects the task, the exception is 
+     * passed to the caller, which should restore the state.
+     *
+     * @param executor the executor that runs the task (can not be NULL).
+     * @param task the operation.
+     *
+     * @return the future completed with the result of the task or with its 
+     * exception.
+     *
+     * @exception RejectedExecutionException the task cannot be accepted for
+     * execution.
+     */
+    protected <T> CompletableFuture<T> RunAsync( Executor executor, final Callable<T> task )
+    {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        executor.execute( new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    future.complete( task.call() );
+                }
+                catch( Throwable e )
+                {
+                    future.completeExceptionally( e );
+                }
+            }
+        } );
+        m_WorkedTask = future;
+        return future;
+    }
+
+    /**
+     * Starts an asynchronous operation: sets the state of the running 
+     * operation, starts a new operation (see <code>ResetCancel</code>) and 
+     * runs the task on the executor.
+     *
+     * When the task ends, the queued call-back events are delivered and the
+     * state is set to <code>getIdleState</code>. If the executor rejects the
+     * task, the previous state is restored and the exception is passed to 
+     * the caller. The caller checks the state and the other arguments before.
+     *
+     * @param executor the executor that runs the task (can not be NULL).
+     * @param RunState the state while the task runs.
+     * @param task the operation.
+     *
+     * @return the future completed with the result of the task or with its 
+     * exception.
+     *
+     * @exception NullPointerException a null reference parameter executor is 
+     * passed to the function.
+     *
+     * @exception RejectedExecutionException the task cannot be accepted for
+     * execution.
+     */
+    protected <T> CompletableFuture<T> StartAsync( Executor executor, EnrollmentState RunState, final Callable<T> task )
+        throws NullPointerException, RejectedExecutionException
+    {
+        if( executor == null )
+            throw new NullPointerException( "A null reference parameter executor is passed to the function." );
+
+        EnrollmentState PrevState = m_State;
+        m_State = RunState;
+        ResetCancel();
+
+        try
+        {
+            return RunAsync( executor, new Callable<T>()
+            {
+                public T call()
+                    throws Exception
+                {
+                    try
+                    {
+                        return task.call();
+                    }
+                    finally
+                    {
+                        FlushCallBacks();
+                        m_State = getIdleState();
+                        m_bCancel = false;
+                    }
+                }
+            } );
+        }
+        catch( RejectedExecutionException e )
+        {
+            m_State = PrevState;
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the state of the object when no operation is running. It is set 
+     * by <code>StartAsync</code> when the operation ends.
+     */
+    protected EnrollmentState getIdleState()
+    {
+        return EnrollmentState.ready_to_process;
+    }
+
+    /**
+     * Waits until the asynchronous call-back dispatch delivers all queued 
+     * events. It should be called before the completion event is raised.
+     */
+    protected void FlushCallBacks()
+    {
+        FtrCallBackDispatcher dispatcher = m_Dispatcher;
+        if( dispatcher != null )
+            dispatcher.Flush( 3000 );
+    }
+
+    /**
+     * Returns the asynchronous call-back dispatcher or null if the call-back 
+     * events are raised synchronously. The dispatcher is created on first use.
+     */
+    private FtrCallBackDispatcher getDispatcher()
+    {
+        if( m_DispatchPolicy == null )
+            return null;
+        if( m_Dispatcher == null )
+            m_Dispatcher = new FtrCallBackDispatcher( this, m_DispatchPolicy, m_DispatchCapacity );
+        return m_Dispatcher;
+    }
+
+    /**
+     * Stops the asynchronous call-back dispatcher.
+     */
+    private void ShutdownDispatcher()
+    {
+        FtrCallBackDispatcher dispatcher = m_Dispatcher;
+        m_Dispatcher = null;
+        if( dispatcher != null )
+            dispatcher.Shutdown();
+    }
+
+    /**
+     * Passes a frame to the call-back interface.
+     *
+     * If the call-back interface implements <code>IRawFrameCallBack</code>, 
+     * the raw frame is passed first. The frame is converted to an image only 
+     * if the "Show the current fingerprint image" event should be raised.
+     *
+     * @param pBitmap contain a bitmap data.
+     * @param BitmapWidth contain a width of the bitmap.
+     * @param BitmapHeight contain a height of the bitmap.
+     */
+    protected void DeliverFrame( byte[] pBitmap, int BitmapWidth, int BitmapHeight )
+    {
+        if( m_CallBack instanceof IRawFrameCallBack )
+        {
+            if( !((IRawFrameCallBack)m_CallBack).OnRawFrame( pBitmap, BitmapWidth, BitmapHeight ) )
+                return;
+        }
+        m_CallBack.UpdateScreenImage( m_FrameConverter.Convert( pBitmap, BitmapWidth, BitmapHeight ) );
+    }
+
+    /**
+     * Returns the template which the backend process works with: the source 
+     * template of the verification or the base template of the identification.
+     *
+     * The native backend reads the fields of the class directly; this 
+     * function is used by other backends.
+     *
+     * @return the template or null if the operation has no such template.
+     */
+    protected byte[] getProcessTemplate()
+    {
+        return null;
+    }
+
+    /**
+     * Receives the template built by the backend: the enrollment template or
+     * the base template of the identification.
+     *
+     * The native backend writes the fields of the class directly; this 
+     * function is used by other backends.
+     *
+     * @param Template the new template.
+     * @param Quality estimation of the template quality, from 1 to 10.
+     */
+    protected void setProcessTemplate( byte[] Template, int Quality )
+    {
+    }
+
+    /**
+     * Receives the verification result built by the backend.
+     *
+     * The native backend writes the fields of the class directly; this 
+     * function is used by other backends.
+     *
+     * @param bResult <code>true</code> if the templates are matched.
+     * @param FARNValue the achieved FARN value.
+     */
+    protected void setVerificationResult( boolean bResult, int FARNValue )
+    {
+    }
+
     /**
      * If the class is disposed, this function raises an exception.
      *
@@ -664,6 +1614,59 @@ public abstract class FutronicSdkBase
         }
     }
         
+    /**
+     * The clean-up action of an instance. It releases the library reference
+     * of an instance which becomes unreachable without <code>Dispose</code>.
+     * It must not refer to the instance.
+     */
+    private static final class LeakCheck implements Runnable
+    {
+        LeakCheck( String szClassName, IFutronicBackend Backend )
+        {
+            m_szClassName = szClassName;
+            m_Backend = Backend;
+            m_CreatedAt = LEAK_TRACE ? new Throwable( "The instance was created here" ) : null;
+            m_bDisposed = false;
+        }
+
+        public void run()
+        {
+            if( m_bDisposed )
+                return;
+
+            m_LeakCount.incrementAndGet();
+            if( m_CreatedAt != null )
+                m_Logger.log( Level.WARNING, "An instance of " + m_szClassName + " was not disposed", m_CreatedAt );
+            else
+                m_Logger.log( Level.WARNING, "An instance of " + m_szClassName + " was not disposed" +
+                                             " (set futronic.leakTrace=true to see where it was created)" );
+
+            synchronized ( m_InitLock )
+            {
+                m_RefCount--;
+
+                if( m_RefCount == 0 )
+                    ReleaseLibrary( null, m_Backend );
+            }
+        }
+
+        private final String m_szClassName;
+        private final IFutronicBackend m_Backend;
+        private final Throwable m_CreatedAt;
+        private volatile boolean m_bDisposed;
+    }
+
+    /**
+     * The clean-up action of this instance.
+     */
+    private final LeakCheck m_LeakCheck;
+
+    /**
+     * The registration of the clean-up action. Running it stops tracking 
+     * this instance.
+     */
+    private final Runnable m_Cleanup;
+
     /**
      * <code>true</code> if the object disposed explicitly by calling 
      * <code>Dispose</code> method, otherwise <code>false</code>.
@@ -692,7 +1695,20 @@ public abstract class FutronicSdkBase
      * modify this variable directly. Use the <code>OnCancel</code> method.
      * The default value is <code>true</code>.
      */
-    protected boolean m_bCancel;
+    protected volatile boolean m_bCancel;
+
+    /**
+     * The cancellation token of the current operation. Use the 
+     * <code>ResetCancel</code> method to start a new one.
+     */
+    protected volatile FtrCancellationToken m_CancelToken;
+
+    /**
+     * The timeout of the operations in milliseconds, 0 if there is no 
+     * deadline. You cannot modify this variable directly. Use the 
+     * <code>getTimeout</code> and <code>setTimeout</code> methods.
+     */
+    protected volatile long m_Timeout;
 
     /**
      * Current False Accepting Ratio value. Contains only one of
@@ -731,9 +1747,14 @@ public abstract class FutronicSdkBase
     protected final int m_FrameSource = FSD_FUTRONIC_USB;
 
     /**
-     * Reference to the operation thread: capture, enrollment etc.
+     * Reference to the running operation: capture, enrollment etc.
      */
-    protected Thread m_WorkedThread;
+    protected volatile Future<?> m_WorkedTask;
+
+    /**
+     * The scheduler which runs the operations of this instance.
+     */
+    protected FutronicOperationScheduler m_Scheduler;
     
     protected ICallBack m_CallBack;
 
@@ -742,8 +1763,69 @@ public abstract class FutronicSdkBase
      */
     protected EnrollmentState m_State;
 
+    /**
+     * The backend which does the operations of this instance.
+     */
+    protected IFutronicBackend m_Backend;
+
+    /**
+     * Converts the frames to images for the <code>UpdateScreenImage</code> event.
+     */
+    protected FtrFrameConverter m_FrameConverter;
+
+    /**
+     * The frame overflow policy of the asynchronous call-back dispatch. If it
+     * is null, the call-back events are raised synchronously.
+     */
+    private DispatchOverflowPolicy m_DispatchPolicy;
+
+    /**
+     * Number of frames queued for the <code>drop_oldest_frame</code> policy.
+     */
+    private int m_DispatchCapacity;
+
+    /**
+     * The asynchronous call-back dispatcher. It is created on first use.
+     */
+    private volatile FtrCallBackDispatcher m_Dispatcher;
+
+    /**
+     * The registry which receives the latencies. If it is null, the 
+     * latencies are not recorded.
+     */
+    private volatile FtrMetricsRegistry m_Metrics;
+
+    // Phase timestamps of the current capture. They are used only by the
+    // operation thread, which also runs cbControl.
+
+    /**
+     * <code>true</code> if the current capture is measured.
+     */
+    private boolean m_bTimed;
+
+    private long m_nCaptureStart;
+
+    /**
+     * Time of the pending "put on" event or 0.
+     */
+    private long m_nPutOnTime;
+
+    /**
+     * Sum of the times from "put on" to "take off".
+     */
+    private long m_nWaitTime;
+
+    /**
+     * Time of the last frame or 0.
+     */
+    private long m_nLastFrameTime;
+
     ///////////////////////////////////////////////////////////////////////////
     // Native API of ftrJSDKHelper library
+    //
+    // The functions are called only by FutronicJniBackend, which loads the
+    // library. Use m_Backend instead of calling them directly. See
+    // FtrSdkLocks for the thread safety of each function.
     ///////////////////////////////////////////////////////////////////////////
  
     /**
@@ -0,0 +1,166 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+import br.com.biroska.futronic.sdkHelper.metrics.FtrLatencyHistogram;
+
+/**
+ * A long-lived session which keeps the FTRAPI library initialized.
+ *
+ * The library is initialized when the first Java-wrapper object is created
+ * and terminated when the last one is disposed. If the objects are created 
+ * per request, the number of objects keeps bouncing between 0 and 1 and the
+ * library is terminated and initialized again and again. A session holds a 
+ * library reference until it is closed, so the operation objects created 
+ * and disposed meanwhile do not initialize or terminate the library:
+ * <pre>
+ * try( FutronicSession session = new FutronicSession() )
+ * {
+ *     ... create, use and dispose operation objects ...
+ * }
+ * </pre>
+ * The keep-alive time (see <code>setKeepAlive</code>) keeps the library 
+ * warm after the last object or session is closed. The library is 
+ * terminated only if no object is created during that time.
+ *
+ * The static methods report how often and how long the library was 
+ * initialized and terminated.
+ */
+public class FutronicSession implements AutoCloseable
+{
+    /**
+     * Creates a new session and initializes the library if it is not 
+     * initialized yet.
+     *
+     * @exception FutronicException error occurs during SDK initialization. To 
+     * get error code, see <code>getErrorCode</code> of FutronicException class.
+     */
+    public FutronicSession()
+        throws FutronicException
+    {
+        m_Anchor = new Anchor();
+    }
+
+    /**
+     * Releases the library reference of the session. The library is 
+     * terminated if no other object exists, after the keep-alive time.
+     */
+    public void Dispose()
+    {
+        m_Anchor.Dispose();
+    }
+
+    /**
+     * Disposes the session as <code>Dispose</code>, so it may be used with 
+     * try-with-resources.
+     */
+    public void close()
+    {
+        Dispose();
+    }
+
+    /**
+     * Returns <code>true</code> if the session is not disposed.
+     */
+    public boolean isOpen()
+    {
+        return !m_Anchor.isDisposed();
+    }
+
+    /**
+     * Gets how long the library stays initialized after the last object is 
+     * disposed, in milliseconds.
+     */
+    public static long getKeepAlive()
+    {
+        return FutronicSdkBase.getKeepAlive();
+    }
+
+    /**
+     * Sets how long the library stays initialized after the last object 
+     * (operation object or session) is disposed. An object created during 
+     * this time uses the initialized library. The default value is 0: the 
+     * library is terminated at once.
+     *
+     * @param nKeepAlive new value in milliseconds. The value 0 also 
+     * terminates the library now if no object exists.
+     *
+     * @exception IllegalArgumentException nKeepAlive is negative.
+     */
+    public static void setKeepAlive( long nKeepAlive )
+        throws IllegalArgumentException
+    {
+        if( nKeepAlive < 0 )
+            throw new IllegalArgumentException( "The argument nKeepAlive has invalid value" );
+        FutronicSdkBase.setKeepAlive( nKeepAlive );
+    }
+
+    /**
+     * Returns <code>true</code> if the library is initialized now: some 
+     * object exists or the library is kept warm.
+     */
+    public static boolean isInitialized()
+    {
+        return FutronicSdkBase.isLibraryInitialized();
+    }
+
+    /**
+     * Gets the number of objects (operation objects and sessions) which hold
+     * a library reference.
+     */
+    public static int getReferenceCount()
+    {
+        return FutronicSdkBase.getReferenceCount();
+    }
+
+    /**
+     * Gets the number of library initializations.
+     */
+    public static long getInitializeCount()
+    {
+        return FutronicSdkBase.getInitializeTime().getCount();
+    }
+
+    /**
+     * Gets the number of library terminations.
+     */
+    public static long getTerminateCount()
+    {
+        return FutronicSdkBase.getTerminateTime().getCount();
+    }
+
+    /**
+     * Gets the durations of the library initializations in nanoseconds.
+     */
+    public static FtrLatencyHistogram getInitializeTime()
+    {
+        return FutronicSdkBase.getInitializeTime();
+    }
+
+    /**
+     * Gets the durations of the library terminations in nanoseconds.
+     */
+    public static FtrLatencyHistogram getTerminateTime()
+    {
+        return FutronicSdkBase.getTerminateTime();
+    }
+
+    /**
+     * The object which holds the library reference of the session. It does
+     * no operation.
+     */
+    private static final class Anchor extends FutronicSdkBase
+    {
+        Anchor()
+            throws FutronicException
+        {
+            super();
+        }
+
+        boolean isDisposed()
+        {
+            return m_bDispose;
+        }
+    }
+
+    private final Anchor m_Anchor;
+}
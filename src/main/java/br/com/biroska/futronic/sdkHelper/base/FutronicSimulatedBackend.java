@@ -0,0 +1,531 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyResult;
+import br.com.biroska.futronic.sdkHelper.data.proccess.FTR_PROGRESS;
+
+/**
+ * The pure Java backend that simulates the scanner and the matcher.
+ *
+ * It is deterministic: the simulated user always puts the finger selected with
+ * <code>setFinger</code>, every capture delivers <code>FramesPerCapture</code>
+ * synthetic frames with <code>CaptureLatency</code> milliseconds between them,
+ * and the captured template is the synthetic template of that finger with
+ * <code>NoiseRate</code> per mille of bytes changed. The sequence of captured
+ * templates depends only on the finger and on the number of captures done by
+ * this backend.
+ *
+ * Two templates are compared by <code>Score</code>. The score is between 0
+ * and 1000, and two templates match if the score is not less than the FARN
+ * value of the operation. Templates of different fingers score about 0,
+ * captures of the same finger score about <code>1000 - NoiseRate</code>.
+ * In fast mode only every second byte is compared.
+ *
+ * The backend does not require the ftrJSDK native library, so it may be used
+ * to test, benchmark and profile the Java side on any machine.
+ */
+public class FutronicSimulatedBackend implements IFutronicBackend
+{
+    /**
+     * Default size of the synthetic template in bytes.
+     */
+    public static final int DEFAULT_TEMPLATE_SIZE = 512;
+
+    /**
+     * Creates a new instance of FutronicSimulatedBackend with default settings:
+     * 5 frames per capture, no capture latency, 320x480 frames, 5% noise.
+     */
+    public FutronicSimulatedBackend()
+    {
+        m_CaptureLatency = 0;
+        m_FramesPerCapture = 5;
+        m_FrameWidth = 320;
+        m_FrameHeight = 480;
+        m_TemplateSize = DEFAULT_TEMPLATE_SIZE;
+        m_NoiseRate = 50;
+        m_FingerId = 0;
+        m_Frame = null;
+        m_Captures = new AtomicLong();
+        m_Initializations = new AtomicLong();
+    }
+
+    /**
+     * Builds the synthetic template of a finger.
+     *
+     * @param nFingerId the finger identifier.
+     * @param nSize the template size in bytes.
+     *
+     * @return the synthetic template. The same finger always gives the same
+     * template.
+     */
+    public static byte[] SyntheticTemplate( long nFingerId, int nSize )
+    {
+        byte[] Template = new byte[ nSize ];
+        new Random( nFingerId ).nextBytes( Template );
+        return Template;
+    }
+
+    /**
+     * Builds the synthetic template of a finger with the default size.
+     *
+     * @param nFingerId the finger identifier.
+     */
+    public static byte[] SyntheticTemplate( long nFingerId )
+    {
+        return SyntheticTemplate( nFingerId, DEFAULT_TEMPLATE_SIZE );
+    }
+
+    /**
+     * Compares two templates.
+     *
+     * @param Probe the first template.
+     * @param Source the second template.
+     * @param bFastMode <code>true</code> to compare only every second byte.
+     *
+     * @return the score between 0 and 1000. The score 0 corresponds to random
+     * templates, 1000 to equal templates.
+     */
+    public static int Score( byte[] Probe, byte[] Source, boolean bFastMode )
+    {
+        int nLength = Math.min( Probe.length, Source.length );
+        int nStep = bFastMode ? 2 : 1;
+        int nCompared = 0;
+        int nEqual = 0;
+        for( int i = 0; i < nLength; i += nStep )
+        {
+            if( Probe[i] == Source[i] )
+                nEqual++;
+            nCompared++;
+        }
+        return Score( nEqual, nCompared );
+    }
+
+    /**
+     * Converts the number of equal bytes to the score.
+     */
+    private static int Score( int nEqual, int nCompared )
+    {
+        if( nCompared == 0 )
+            return 0;
+
+        // remove the expected number of random coincidences (1 of 256)
+        double fRandom = nCompared / 256.0;
+        double fScore = 1000.0 * (nEqual - fRandom) / (nCompared - fRandom);
+        if( fScore < 0 )
+            return 0;
+        return (int)Math.min( 1000, fScore );
+    }
+
+    public int Initialize( FutronicSdkBase Operation )
+    {
+        m_Initializations.incrementAndGet();
+        return FutronicSdkBase.RETCODE_OK;
+    }
+
+    public void Terminate( FutronicSdkBase Operation )
+    {
+    }
+
+    public int Enroll( FutronicSdkBase Operation )
+    {
+        int nResult = Capture( Operation );
+        if( nResult == FutronicSdkBase.RETCODE_OK )
+            Operation.setProcessTemplate( CaptureTemplate(), Math.max( 1, 10 - m_NoiseRate / 100 ) );
+        return nResult;
+    }
+
+    public int Verify( FutronicSdkBase Operation )
+    {
+        int nResult = Capture( Operation );
+        if( nResult == FutronicSdkBase.RETCODE_OK )
+        {
+            byte[] Source = Operation.getProcessTemplate();
+            if( Source == null )
+                return FutronicSdkBase.RETCODE_INVALID_ARG;
+            int nScore = Score( CaptureTemplate(), Source, Operation.m_bFastMode );
+            Operation.setVerificationResult( nScore >= Operation.m_FARN, nScore );
+        }
+        return nResult;
+    }
+
+    public int GetBaseTemplate( FutronicSdkBase Operation )
+    {
+        int nResult = Capture( Operation );
+        if( nResult == FutronicSdkBase.RETCODE_OK )
+            Operation.setProcessTemplate( CaptureTemplate(), 0 );
+        return nResult;
+    }
+
+    public int Identify( FutronicSdkBase Operation, FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+    {
+        return Identify( Operation, rgTemplates, 0, rgTemplates.length, Result );
+    }
+
+    /**
+     * Matches the range in place, without copying it.
+     */
+    public int Identify( FutronicSdkBase Operation, FtrIdentifyRecord[] rgTemplates, int nFrom, int nCount, FtrIdentifyResult Result )
+    {
+        return Identify( Operation, rgTemplates, nFrom, nCount, Operation.m_FARN, Operation.m_bFastMode, Result );
+    }
+
+    /**
+     * Matches the range in place with the given settings; the operation is
+     * not changed, so several matches may run at a time.
+     */
+    public int Identify( FutronicSdkBase Operation, FtrIdentifyRecord[] rgTemplates, int nFrom, int nCount,
+                         int nFARN, boolean bFastMode, FtrIdentifyResult Result )
+    {
+        byte[] Probe = Operation.getProcessTemplate();
+        if( Probe == null )
+            return FutronicSdkBase.RETCODE_INVALID_PURPOSE;
+
+        Result.m_Index = -1;
+        Result.m_FARNValue = -1;
+        for( int i = 0; i < nCount; i++ )
+        {
+            if( ((i & 0x3FF) == 0) && Thread.currentThread().isInterrupted() )
+                return FutronicSdkBase.RETCODE_CANCELED_BY_USER;
+            byte[] Source = rgTemplates[ nFrom + i ].m_Template;
+            if( Source == null )
+                continue;
+            int nScore = Score( Probe, Source, bFastMode );
+            if( nScore >= nFARN )
+            {
+                Result.m_Index = i;
+                Result.m_FARNValue = nScore;
+                break;
+            }
+        }
+        return FutronicSdkBase.RETCODE_OK;
+    }
+
+    /**
+     * The simulated matcher is thread-safe; one identification per processor 
+     * may run at a time.
+     */
+    public int getMatchConcurrency()
+    {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * The simulated captures and matches do not share any state.
+     */
+    public boolean isExclusive()
+    {
+        return false;
+    }
+
+    public boolean IsTrial( FutronicSdkBase Operation )
+    {
+        return false;
+    }
+
+    public int IdentificationsLeft( FutronicSdkBase Operation )
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Simulates one capture: raises the "put on" signal, delivers the frames
+     * and raises the "take off" signal.
+     *
+     * @return the Futronic SDK return code.
+     */
+    protected int Capture( FutronicSdkBase Operation )
+    {
+        byte[] pBitmap = getFrame();
+        FTR_PROGRESS Progress = new FTR_PROGRESS();
+        Progress.m_Total = m_FramesPerCapture;
+
+        for( int i = 0; i < m_FramesPerCapture; i++ )
+        {
+            Progress.m_Count = i + 1;
+            Progress.m_bIsRepeated = false;
+
+            int StateMask = FutronicSdkBase.FTR_STATE_FRAME_PROVIDED;
+            int Signal = 0;
+            if( i == 0 )
+            {
+                StateMask |= FutronicSdkBase.FTR_STATE_SIGNAL_PROVIDED;
+                Signal = FutronicSdkBase.FTR_SIGNAL_TOUCH_SENSOR;
+            }
+            else if( i == m_FramesPerCapture - 1 )
+            {
+                StateMask |= FutronicSdkBase.FTR_STATE_SIGNAL_PROVIDED;
+                Signal = FutronicSdkBase.FTR_SIGNAL_TAKE_OFF;
+            }
+
+            if( m_CaptureLatency > 0 )
+            {
+                try
+                {
+                    Thread.sleep( m_CaptureLatency );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return FutronicSdkBase.RETCODE_CANCELED_BY_USER;
+                }
+            }
+
+            if( Operation.cbControl( Progress, StateMask, Signal, m_FrameWidth, m_FrameHeight, pBitmap ) == FutronicSdkBase.FTR_CANCEL )
+                return FutronicSdkBase.RETCODE_CANCELED_BY_USER;
+        }
+        return FutronicSdkBase.RETCODE_OK;
+    }
+
+    /**
+     * Builds the next captured template of the current finger.
+     */
+    protected byte[] CaptureTemplate()
+    {
+        long nCapture = m_Captures.incrementAndGet();
+        byte[] Template = SyntheticTemplate( m_FingerId, m_TemplateSize );
+        Random noise = new Random( m_FingerId * 31 + nCapture );
+        for( int i = 0; i < Template.length; i++ )
+        {
+            if( noise.nextInt( 1000 ) < m_NoiseRate )
+                Template[i] = (byte)noise.nextInt( 256 );
+        }
+        return Template;
+    }
+
+    /**
+     * Returns the synthetic frame. The same array is passed to every call of
+     * <code>cbControl</code>, the receiver must not modify it.
+     */
+    private synchronized byte[] getFrame()
+    {
+        if( (m_Frame == null) || (m_Frame.length != m_FrameWidth * m_FrameHeight) )
+        {
+            byte[] Frame = new byte[ m_FrameWidth * m_FrameHeight ];
+            int cx = m_FrameWidth / 2;
+            int cy = m_FrameHeight / 2;
+            for( int y = 0; y < m_FrameHeight; y++ )
+            {
+                for( int x = 0; x < m_FrameWidth; x++ )
+                {
+                    // concentric ridges around the frame center
+                    double r = Math.sqrt( (x - cx) * (x - cx) + (y - cy) * (y - cy) );
+                    Frame[ y * m_FrameWidth + x ] = (byte)(128 + 127 * Math.sin( r / 3.0 ));
+                }
+            }
+            m_Frame = Frame;
+        }
+        return m_Frame;
+    }
+
+    /**
+     * get the delay between two frames in milliseconds.
+     */
+    public long getCaptureLatency()
+    {
+        return m_CaptureLatency;
+    }
+
+    /**
+     * set the delay between two frames in milliseconds.
+     *
+     * @param nCaptureLatency new value
+     *
+     * @exception IllegalArgumentException the argument is negative.
+     */
+    public void setCaptureLatency( long nCaptureLatency )
+        throws IllegalArgumentException
+    {
+        if( nCaptureLatency < 0 )
+            throw new IllegalArgumentException( "The argument nCaptureLatency has invalid value" );
+        m_CaptureLatency = nCaptureLatency;
+    }
+
+    /**
+     * get the number of frames delivered by one capture.
+     */
+    public int getFramesPerCapture()
+    {
+        return m_FramesPerCapture;
+    }
+
+    /**
+     * set the number of frames delivered by one capture.
+     *
+     * @param nFramesPerCapture new value
+     *
+     * @exception IllegalArgumentException the argument is less than 1.
+     */
+    public void setFramesPerCapture( int nFramesPerCapture )
+        throws IllegalArgumentException
+    {
+        if( nFramesPerCapture < 1 )
+            throw new IllegalArgumentException( "The argument nFramesPerCapture has invalid value" );
+        m_FramesPerCapture = nFramesPerCapture;
+    }
+
+    /**
+     * set the size of the synthetic frames.
+     *
+     * @param nWidth frame width.
+     * @param nHeight frame height.
+     *
+     * @exception IllegalArgumentException an argument is less than 1.
+     */
+    public synchronized void setFrameSize( int nWidth, int nHeight )
+        throws IllegalArgumentException
+    {
+        if( nWidth < 1 || nHeight < 1 )
+            throw new IllegalArgumentException( "The frame size has invalid value" );
+        m_FrameWidth = nWidth;
+        m_FrameHeight = nHeight;
+    }
+
+    /**
+     * get the frame width.
+     */
+    public int getFrameWidth()
+    {
+        return m_FrameWidth;
+    }
+
+    /**
+     * get the frame height.
+     */
+    public int getFrameHeight()
+    {
+        return m_FrameHeight;
+    }
+
+    /**
+     * get the size of the captured templates in bytes.
+     */
+    public int getTemplateSize()
+    {
+        return m_TemplateSize;
+    }
+
+    /**
+     * set the size of the captured templates in bytes.
+     *
+     * @param nTemplateSize new value
+     *
+     * @exception IllegalArgumentException the argument is less than 1.
+     */
+    public void setTemplateSize( int nTemplateSize )
+        throws IllegalArgumentException
+    {
+        if( nTemplateSize < 1 )
+            throw new IllegalArgumentException( "The argument nTemplateSize has invalid value" );
+        m_TemplateSize = nTemplateSize;
+    }
+
+    /**
+     * get the number of bytes per mille changed in a captured template.
+     */
+    public int getNoiseRate()
+    {
+        return m_NoiseRate;
+    }
+
+    /**
+     * set the number of bytes per mille changed in a captured template.
+     *
+     * @param nNoiseRate new value between 0 and 1000.
+     *
+     * @exception IllegalArgumentException the argument has invalid value.
+     */
+    public void setNoiseRate( int nNoiseRate )
+        throws IllegalArgumentException
+    {
+        if( nNoiseRate < 0 || nNoiseRate > 1000 )
+            throw new IllegalArgumentException( "The argument nNoiseRate has invalid value" );
+        m_NoiseRate = nNoiseRate;
+    }
+
+    /**
+     * get the finger which the simulated user puts on the scanner.
+     */
+    public long getFinger()
+    {
+        return m_FingerId;
+    }
+
+    /**
+     * set the finger which the simulated user puts on the scanner.
+     *
+     * @param nFingerId the finger identifier, see <code>SyntheticTemplate</code>.
+     */
+    public void setFinger( long nFingerId )
+    {
+        m_FingerId = nFingerId;
+    }
+
+    /**
+     * get the number of captured templates.
+     */
+    public long getCaptureCount()
+    {
+        return m_Captures.get();
+    }
+
+    /**
+     * get the number of backend initializations.
+     */
+    public long getInitializeCount()
+    {
+        return m_Initializations.get();
+    }
+
+    /**
+     * The delay between two frames in milliseconds.
+     */
+    private volatile long m_CaptureLatency;
+
+    /**
+     * Number of frames delivered by one capture.
+     */
+    private volatile int m_FramesPerCapture;
+
+    /**
+     * Width of the synthetic frame.
+     */
+    private volatile int m_FrameWidth;
+
+    /**
+     * Height of the synthetic frame.
+     */
+    private volatile int m_FrameHeight;
+
+    /**
+     * Size of the captured templates in bytes.
+     */
+    private volatile int m_TemplateSize;
+
+    /**
+     * Number of bytes per mille changed in a captured template.
+     */
+    private volatile int m_NoiseRate;
+
+    /**
+     * The finger which the simulated user puts on the scanner.
+     */
+    private volatile long m_FingerId;
+
+    /**
+     * The synthetic frame. It is built on first use.
+     */
+    private byte[] m_Frame;
+
+    /**
+     * Number of captured templates.
+     */
+    private final AtomicLong m_Captures;
+
+    /**
+     * Number of backend initializations.
+     */
+    private final AtomicLong m_Initializations;
+}
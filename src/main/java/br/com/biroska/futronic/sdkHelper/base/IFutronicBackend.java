@@ -0,0 +1,181 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.Arrays;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyResult;
+
+/**
+ * The interface specify the device and matcher backend used by any 
+ * Java-wrapper class.
+ *
+ * The backend does the real work of the operations: it captures frames from 
+ * the device, calls <code>cbControl</code> of the operation for every frame 
+ * and signal, builds templates and matches them. The default backend is 
+ * <code>FutronicJniBackend</code>, which calls the ftrJSDK native library. 
+ * <code>FutronicSimulatedBackend</code> works without the library and the 
+ * scanner. The backend is selected with <code>FutronicSdkBase.setBackend</code>.
+ *
+ * A backend which is not native must pass the results to the operation through
+ * <code>setProcessTemplate</code> and <code>setVerificationResult</code>, and
+ * must read the source or base template with <code>getProcessTemplate</code>.
+ */
+public interface IFutronicBackend
+{
+    /**
+     * Activates the backend. It's called when the first operation is created.
+     *
+     * @param Operation the operation that activates the backend.
+     *
+     * @return the Futronic SDK return code.
+     */
+    public int Initialize( FutronicSdkBase Operation );
+
+    /**
+     * Deactivates the backend. It's called when the last operation is disposed.
+     *
+     * @param Operation the operation that deactivates the backend.
+     */
+    public void Terminate( FutronicSdkBase Operation );
+
+    /**
+     * Does the enrollment operation.
+     *
+     * @param Operation the enrollment operation.
+     *
+     * @return the Futronic SDK return code.
+     */
+    public int Enroll( FutronicSdkBase Operation );
+
+    /**
+     * Does the verification operation.
+     *
+     * @param Operation the verification operation.
+     *
+     * @return the Futronic SDK return code.
+     */
+    public int Verify( FutronicSdkBase Operation );
+
+    /**
+     * Does the enrollment operation for the identification purpose.
+     *
+     * @param Operation the identification operation.
+     *
+     * @return the Futronic SDK return code.
+     */
+    public int GetBaseTemplate( FutronicSdkBase Operation );
+
+    /**
+     * Compares the base template of the operation against a set of source 
+     * templates.
+     *
+     * @param Operation the identification operation.
+     * @param rgTemplates the set of source templates.
+     * @param Result If the function succeeds, field <code>m_Index</code> contains an 
+     * index of the matched record (the first element has an index 0) or -1, if
+     * no matching source templates are detected.
+     *
+     * @return the Futronic SDK return code.
+     */
+    public int Identify( FutronicSdkBase Operation, FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result );
+
+    /**
+     * Compares the base template of the operation against a range of a set 
+     * of source templates.
+     *
+     * The default implementation calls <code>Identify</code> with a copy of 
+     * the range, or with the whole set if the range covers it. A backend 
+     * which can match a range in place should override it.
+     *
+     * @param Operation the identification operation.
+     * @param rgTemplates the set of source templates.
+     * @param nFrom the index of the first record of the range.
+     * @param nCount the number of records in the range.
+     * @param Result If the function succeeds, field <code>m_Index</code> contains an 
+     * index of the matched record relative to nFrom or -1, if no matching 
+     * source templates are detected.
+     *
+     * @return the Futronic SDK return code.
+     */
+    public default int Identify( FutronicSdkBase Operation, FtrIdentifyRecord[] rgTemplates, int nFrom, int nCount, FtrIdentifyResult Result )
+    {
+        if( (nFrom == 0) && (nCount == rgTemplates.length) )
+            return Identify( Operation, rgTemplates, Result );
+        return Identify( Operation, Arrays.copyOfRange( rgTemplates, nFrom, nFrom + nCount ), Result );
+    }
+
+    /**
+     * Compares the base template of the operation against a range of a set 
+     * of source templates with the given FARN value and fast mode instead of
+     * the settings of the operation, for example in a stage of the cascaded
+     * identification.
+     *
+     * The native library reads the settings from the operation it is called
+     * with, so the default implementation sets them on the operation for the
+     * call and restores them afterwards. This is correct only if the backend
+     * runs one match at a time (see <code>getMatchConcurrency</code>) and the
+     * caller holds the match permit; a backend which runs several must 
+     * override it.
+     *
+     * @param Operation the identification operation.
+     * @param rgTemplates the set of source templates.
+     * @param nFrom the index of the first record of the range.
+     * @param nCount the number of records in the range.
+     * @param nFARN the FARN value of the match.
+     * @param bFastMode the fast mode of the match.
+     * @param Result If the function succeeds, field <code>m_Index</code> contains an 
+     * index of the matched record relative to nFrom or -1, if no matching 
+     * source templates are detected.
+     *
+     * @return the Futronic SDK return code.
+     */
+    public default int Identify( FutronicSdkBase Operation, FtrIdentifyRecord[] rgTemplates, int nFrom, int nCount,
+                                 int nFARN, boolean bFastMode, FtrIdentifyResult Result )
+    {
+        int nPrevFARN = Operation.m_FARN;
+        boolean bPrevFastMode = Operation.m_bFastMode;
+        if( (nFARN == nPrevFARN) && (bFastMode == bPrevFastMode) )
+            return Identify( Operation, rgTemplates, nFrom, nCount, Result );
+
+        Operation.m_FARN = nFARN;
+        Operation.m_bFastMode = bFastMode;
+        try
+        {
+            return Identify( Operation, rgTemplates, nFrom, nCount, Result );
+        }
+        finally
+        {
+            Operation.m_FARN = nPrevFARN;
+            Operation.m_bFastMode = bPrevFastMode;
+        }
+    }
+
+    /**
+     * Gets the maximal number of identifications which the backend can do at 
+     * the same time. See <code>FtrSdkLocks</code>.
+     */
+    public int getMatchConcurrency();
+
+    /**
+     * Returns <code>true</code> if the captures and the matches of the 
+     * backend must not overlap, so one lock is used for all of them. See 
+     * <code>FtrSdkLocks.setExclusive</code>.
+     */
+    public boolean isExclusive();
+
+    /**
+     * Gets a value that indicates whether a backend is trial version.
+     *
+     * @param Operation the calling operation.
+     */
+    public boolean IsTrial( FutronicSdkBase Operation );
+
+    /**
+     * Gets a value that specify identification limit value.
+     *
+     * @param Operation the calling operation.
+     *
+     * @return identification limit value. Integer.MAX_VALUE is "no limits".
+     */
+    public int IdentificationsLeft( FutronicSdkBase Operation );
+}
@@ -0,0 +1,20 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * The interface creates the operation objects of a 
+ * <code>FutronicOperationPool</code>.
+ */
+public interface IOperationFactory<T extends FutronicSdkBase>
+{
+    /**
+     * Creates a new operation object.
+     *
+     * @return the new object.
+     *
+     * @exception FutronicException error occurs during SDK initialization.
+     */
+    public T Create()
+        throws FutronicException;
+}
@@ -0,0 +1,28 @@
+package br.com.biroska.futronic.sdkHelper.callbacks;
+
+/**
+ * The interface specify the raw frame call-back event.
+ *
+ * If the call-back object passed to an operation also implements this 
+ * interface, every frame is first passed as raw bytes. The caller which does 
+ * not need AWT images may skip the creation of the <code>BufferedImage</code>.
+ */
+public interface IRawFrameCallBack
+{
+    /**
+     * The "Raw fingerprint frame" event.
+     *
+     * The frame array belongs to the caller of the event. It is valid only 
+     * during the call and must not be modified; copy it or wrap it with
+     * <code>java.nio.ByteBuffer.wrap</code> and copy the data before the 
+     * function returns.
+     *
+     * @param pBitmap the frame data, one byte per pixel, row by row.
+     * @param Width the frame width.
+     * @param Height the frame height.
+     *
+     * @return <code>true</code> if the "Show the current fingerprint image" 
+     * event should be raised for this frame too, otherwise is <code>false</code>.
+     */
+    public boolean OnRawFrame( byte[] pBitmap, int Width, int Height );
+}
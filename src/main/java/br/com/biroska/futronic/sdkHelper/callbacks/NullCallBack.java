@@ -0,0 +1,42 @@
+package br.com.biroska.futronic.sdkHelper.callbacks;
+
+import java.awt.image.BufferedImage;
+
+import br.com.biroska.futronic.sdkHelper.data.proccess.FTR_PROGRESS;
+
+/**
+ * The call-back which ignores all events. It is used by the future-based 
+ * operations when the caller does not pass a call-back.
+ */
+public class NullCallBack implements ICallBack
+{
+    /**
+     * The shared instance. The class has no state.
+     */
+    public static final NullCallBack INSTANCE = new NullCallBack();
+
+    /** Creates a new instance of NullCallBack */
+    public NullCallBack()
+    {
+    }
+
+    public void OnPutOn( FTR_PROGRESS Progress )
+    {
+    }
+
+    public void OnTakeOff( FTR_PROGRESS Progress )
+    {
+    }
+
+    public void UpdateScreenImage( BufferedImage Bitmap )
+    {
+    }
+
+    /**
+     * @return always <code>false</code>: the operation continues.
+     */
+    public boolean OnFakeSource( FTR_PROGRESS Progress )
+    {
+        return false;
+    }
+}
@@ -0,0 +1,467 @@
+package br.com.biroska.futronic.sdkHelper.data.gallery;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+import br.com.biroska.futronic.sdkHelper.enums.VersionCompatible;
+
+/**
+ * A read-only gallery stored in a file and memory-mapped.
+ *
+ * Opening the file maps it and checks the header and the key index; the
+ * templates are read from the mapped memory on demand, so a large gallery is
+ * ready at once and its pages are loaded by the operating system when used.
+ * The records are stored in ascending key order and looked up by binary 
+ * search in the mapped index, without building heap structures.
+ *
+ * The file format (big-endian):
+ * <table>
+ * <thead>
+ *  <tr>
+ *      <td>Region</td>
+ *      <td>Content</td>
+ *  </tr>
+ * </thead>
+ * <tr>
+ *      <td>Header, 64 bytes</td>
+ *      <td>magic "FTRGALRY", format version (int), record count (int), 
+ *      index offset (long), blob offset (long), blob length (long), CRC32 of 
+ *      the index (int), CRC32 of the preceding header bytes (int), zero 
+ *      padding.</td>
+ *  </tr>
+ * <tr>
+ *      <td>Key index, 40 bytes per record</td>
+ *      <td>key length (byte), <code>VersionCompatible</code> ordinal of the
+ *      template (byte), 2 reserved bytes, template length (int), template 
+ *      offset in the blob (long), CRC32 of the template (int), 4 reserved 
+ *      bytes, key padded with zeros to 16 bytes.</td>
+ *  </tr>
+ * <tr>
+ *      <td>Template blob</td>
+ *      <td>The templates one after another.</td>
+ *  </tr>
+ * </table>
+ * The checksum of a template is checked each time it is read; use 
+ * <code>Verify</code> to check all templates at once. The index and the 
+ * blob are mapped separately and each must be smaller than 2 GB.
+ *
+ * The mapping saves heap only between identifications. The native matcher
+ * takes the records as a Java array, so <code>toRecords</code> reads and 
+ * copies every key and template onto the heap for each identification, and
+ * the backend marshals them all again. The array is not kept after the call.
+ *
+ * The class is thread-safe. The gallery never changes; its version is a 
+ * number taken when the file is opened, different for every opened gallery
+ * (also for the same file opened twice), so a result cache does not mix up 
+ * two files.
+ */
+public class FtrGalleryFile implements ITemplateGallery, Closeable
+{
+    /**
+     * The current format version.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = { 'F', 'T', 'R', 'G', 'A', 'L', 'R', 'Y' };
+
+    private static final int HEADER_SIZE = 64;
+
+    private static final int HEADER_CRC_OFFSET = 44;
+
+    private static final int ENTRY_SIZE = 40;
+
+    private static final int ENTRY_KEY_OFFSET = 24;
+
+    /**
+     * The last version given to an opened gallery.
+     */
+    private static final AtomicLong m_LastVersion = new AtomicLong();
+
+    /**
+     * Writes all records of a gallery to a file. All templates are marked 
+     * with the same version.
+     *
+     * @param file the file. It is created or overwritten.
+     * @param Gallery the gallery (can not be NULL).
+     * @param Version the version of the templates (can not be NULL).
+     *
+     * @exception IOException an I/O error occurs.
+     */
+    public static void Save( File file, ITemplateGallery Gallery, VersionCompatible Version )
+        throws IOException
+    {
+        if( Version == null )
+            throw new NullPointerException( "A null reference parameter Version is passed to the function." );
+        FtrIdentifyRecord[] rgRecords = Gallery.toRecords();
+        VersionCompatible[] rgVersions = new VersionCompatible[ rgRecords.length ];
+        Arrays.fill( rgVersions, Version );
+        Save( file, rgRecords, rgVersions );
+    }
+
+    /**
+     * Writes records to a file.
+     *
+     * @param file the file. It is created or overwritten.
+     * @param rgRecords the records. The keys must be unique and have 1 to 16 
+     * bytes.
+     * @param rgVersions the version of each template.
+     *
+     * @exception IOException an I/O error occurs.
+     * @exception IllegalArgumentException the arrays have different lengths, 
+     * a key has invalid length or two records have the same key.
+     */
+    public static void Save( File file, FtrIdentifyRecord[] rgRecords, VersionCompatible[] rgVersions )
+        throws IOException, IllegalArgumentException
+    {
+        if( rgRecords.length != rgVersions.length )
+            throw new IllegalArgumentException( "The arguments rgRecords and rgVersions have different lengths" );
+
+        final FtrIdentifyRecord[] rgSource = rgRecords;
+        Integer[] rgOrder = new Integer[ rgRecords.length ];
+        for( int i = 0; i < rgOrder.length; i++ )
+        {
+            byte[] KeyValue = rgRecords[i].m_KeyValue;
+            if( (KeyValue == null) || (KeyValue.length == 0) || (KeyValue.length > FtrTemplateGallery.MAX_KEY_LENGTH) )
+                throw new IllegalArgumentException( "The key of record " + i + " has invalid length" );
+            rgOrder[i] = Integer.valueOf( i );
+        }
+        Arrays.sort( rgOrder, new Comparator<Integer>()
+        {
+            public int compare( Integer a, Integer b )
+            {
+                return CompareKeys( rgSource[ a.intValue() ].m_KeyValue, rgSource[ b.intValue() ].m_KeyValue );
+            }
+        } );
+
+        ByteBuffer index = ByteBuffer.allocate( rgRecords.length * ENTRY_SIZE );
+        CRC32 crc = new CRC32();
+        long nBlobLength = 0;
+        for( int i = 0; i < rgOrder.length; i++ )
+        {
+            int nRecord = rgOrder[i].intValue();
+            byte[] KeyValue = rgRecords[ nRecord ].m_KeyValue;
+            byte[] Template = rgRecords[ nRecord ].m_Template;
+            if( (i > 0) && (CompareKeys( KeyValue, rgRecords[ rgOrder[i - 1].intValue() ].m_KeyValue ) == 0) )
+                throw new IllegalArgumentException( "Two records have the same key" );
+            crc.reset();
+            crc.update( Template, 0, Template.length );
+
+            index.put( (byte)KeyValue.length );
+            index.put( (byte)rgVersions[ nRecord ].ordinal() );
+            index.putShort( (short)0 );
+            index.putInt( Template.length );
+            index.putLong( nBlobLength );
+            index.putInt( (int)crc.getValue() );
+            index.putInt( 0 );
+            index.put( KeyValue );
+            for( int j = KeyValue.length; j < FtrTemplateGallery.MAX_KEY_LENGTH; j++ )
+                index.put( (byte)0 );
+            nBlobLength += Template.length;
+        }
+
+        crc.reset();
+        crc.update( index.array(), 0, index.capacity() );
+        ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+        header.put( MAGIC );
+        header.putInt( FORMAT_VERSION );
+        header.putInt( rgRecords.length );
+        header.putLong( HEADER_SIZE );
+        header.putLong( HEADER_SIZE + (long)index.capacity() );
+        header.putLong( nBlobLength );
+        header.putInt( (int)crc.getValue() );
+        crc.reset();
+        crc.update( header.array(), 0, HEADER_CRC_OFFSET );
+        header.putInt( (int)crc.getValue() );
+
+        OutputStream out = new BufferedOutputStream( new FileOutputStream( file ), 1 << 16 );
+        try
+        {
+            out.write( header.array() );
+            out.write( index.array() );
+            for( int i = 0; i < rgOrder.length; i++ )
+                out.write( rgRecords[ rgOrder[i].intValue() ].m_Template );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Opens and maps a gallery file.
+     *
+     * @param file the file.
+     *
+     * @return the gallery.
+     *
+     * @exception IOException an I/O error occurs, or the file is not a 
+     * gallery file, has an unsupported format version or a wrong checksum.
+     */
+    public static FtrGalleryFile Open( File file )
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try
+        {
+            FtrGalleryFile gallery = new FtrGalleryFile( raf.getChannel() );
+            raf = null;
+            return gallery;
+        }
+        finally
+        {
+            if( raf != null )
+                raf.close();
+        }
+    }
+
+    private FtrGalleryFile( FileChannel channel )
+        throws IOException
+    {
+        m_Channel = channel;
+        long nFileSize = channel.size();
+        if( nFileSize < HEADER_SIZE )
+            throw new IOException( "The file is not a gallery file" );
+
+        MappedByteBuffer header = channel.map( FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE );
+        byte[] Magic = new byte[ MAGIC.length ];
+        header.get( Magic );
+        if( !Arrays.equals( Magic, MAGIC ) )
+            throw new IOException( "The file is not a gallery file" );
+        byte[] HeaderBytes = new byte[ HEADER_CRC_OFFSET ];
+        ((Buffer)header).position( 0 );
+        header.get( HeaderBytes );
+        CRC32 crc = new CRC32();
+        crc.update( HeaderBytes, 0, HeaderBytes.length );
+        if( header.getInt( HEADER_CRC_OFFSET ) != (int)crc.getValue() )
+            throw new IOException( "The header checksum is wrong" );
+
+        int nFormatVersion = header.getInt( 8 );
+        if( nFormatVersion != FORMAT_VERSION )
+            throw new IOException( "Unsupported format version " + nFormatVersion );
+        m_Size = header.getInt( 12 );
+        long nIndexOffset = header.getLong( 16 );
+        long nBlobOffset = header.getLong( 24 );
+        long nBlobLength = header.getLong( 32 );
+        long nIndexLength = (long)m_Size * ENTRY_SIZE;
+        if( (m_Size < 0) || (nIndexLength > Integer.MAX_VALUE) || (nBlobLength > Integer.MAX_VALUE)
+            || (nIndexOffset + nIndexLength > nBlobOffset) || (nBlobOffset + nBlobLength > nFileSize) )
+            throw new IOException( "The file is truncated or too large" );
+
+        m_Index = channel.map( FileChannel.MapMode.READ_ONLY, nIndexOffset, nIndexLength );
+        m_Blob = channel.map( FileChannel.MapMode.READ_ONLY, nBlobOffset, nBlobLength );
+
+        byte[] Chunk = new byte[ 1 << 16 ];
+        ByteBuffer view = m_Index.duplicate();
+        crc.reset();
+        while( view.hasRemaining() )
+        {
+            int nLength = Math.min( Chunk.length, view.remaining() );
+            view.get( Chunk, 0, nLength );
+            crc.update( Chunk, 0, nLength );
+        }
+        if( header.getInt( 40 ) != (int)crc.getValue() )
+            throw new IOException( "The index checksum is wrong" );
+        m_Version = m_LastVersion.incrementAndGet();
+    }
+
+    /**
+     * Checks the checksums of all templates.
+     *
+     * @return the number of the first record with a wrong checksum or -1, if
+     * all templates are valid.
+     */
+    public int Verify()
+    {
+        for( int i = 0; i < m_Size; i++ )
+        {
+            if( !CheckTemplate( i, ReadTemplate( i ) ) )
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the version of a template.
+     *
+     * @param nIndex the record number.
+     *
+     * @exception IndexOutOfBoundsException the record does not exist.
+     * @exception IllegalStateException the file has an unknown version value.
+     */
+    public VersionCompatible getTemplateVersion( int nIndex )
+        throws IndexOutOfBoundsException, IllegalStateException
+    {
+        CheckIndex( nIndex );
+        int nVersion = m_Index.get( nIndex * ENTRY_SIZE + 1 );
+        VersionCompatible[] rgValues = VersionCompatible.values();
+        if( (nVersion < 0) || (nVersion >= rgValues.length) )
+            throw new IllegalStateException( "Record " + nIndex + " has an unknown template version" );
+        return rgValues[ nVersion ];
+    }
+
+    public int getSize()
+    {
+        return m_Size;
+    }
+
+    public long getVersion()
+    {
+        return m_Version;
+    }
+
+    public byte[] getKey( int nIndex )
+    {
+        CheckIndex( nIndex );
+        int nEntry = nIndex * ENTRY_SIZE;
+        byte[] KeyValue = new byte[ m_Index.get( nEntry ) ];
+        ByteBuffer view = m_Index.duplicate();
+        ((Buffer)view).position( nEntry + ENTRY_KEY_OFFSET );
+        view.get( KeyValue );
+        return KeyValue;
+    }
+
+    /**
+     * Gets the template of a record.
+     *
+     * @param nIndex the record number.
+     *
+     * @return a copy of the template.
+     *
+     * @exception IndexOutOfBoundsException the record does not exist.
+     * @exception IllegalStateException the template has a wrong checksum.
+     */
+    public byte[] getTemplate( int nIndex )
+        throws IndexOutOfBoundsException, IllegalStateException
+    {
+        CheckIndex( nIndex );
+        byte[] Template = ReadTemplate( nIndex );
+        if( !CheckTemplate( nIndex, Template ) )
+            throw new IllegalStateException( "The template of record " + nIndex + " has a wrong checksum" );
+        return Template;
+    }
+
+    public int IndexOf( byte[] KeyValue )
+    {
+        if( (KeyValue == null) || (KeyValue.length == 0) || (KeyValue.length > FtrTemplateGallery.MAX_KEY_LENGTH) )
+            return -1;
+        int nLow = 0;
+        int nHigh = m_Size - 1;
+        while( nLow <= nHigh )
+        {
+            int nMiddle = (nLow + nHigh) >>> 1;
+            int nCompare = CompareKeys( getKey( nMiddle ), KeyValue );
+            if( nCompare < 0 )
+                nLow = nMiddle + 1;
+            else if( nCompare > 0 )
+                nHigh = nMiddle - 1;
+            else
+                return nMiddle;
+        }
+        return -1;
+    }
+
+    /**
+     * Copies all records onto the heap and checks the template checksums. 
+     * Every call builds a new array.
+     *
+     * @exception IllegalStateException a template has a wrong checksum.
+     */
+    public FtrIdentifyRecord[] toRecords()
+        throws IllegalStateException
+    {
+        FtrIdentifyRecord[] rgRecords = new FtrIdentifyRecord[ m_Size ];
+        for( int i = 0; i < m_Size; i++ )
+        {
+            FtrIdentifyRecord record = new FtrIdentifyRecord();
+            record.m_KeyValue = getKey( i );
+            record.m_Template = getTemplate( i );
+            rgRecords[i] = record;
+        }
+        return rgRecords;
+    }
+
+    /**
+     * Closes the file. The mapped memory is released by the garbage 
+     * collector.
+     */
+    public void close()
+        throws IOException
+    {
+        m_Channel.close();
+    }
+
+    private void CheckIndex( int nIndex )
+    {
+        if( (nIndex < 0) || (nIndex >= m_Size) )
+            throw new IndexOutOfBoundsException( "Record " + nIndex + " does not exist" );
+    }
+
+    private byte[] ReadTemplate( int nIndex )
+    {
+        int nEntry = nIndex * ENTRY_SIZE;
+        byte[] Template = new byte[ m_Index.getInt( nEntry + 4 ) ];
+        ByteBuffer view = m_Blob.duplicate();
+        ((Buffer)view).position( (int)m_Index.getLong( nEntry + 8 ) );
+        view.get( Template );
+        return Template;
+    }
+
+    private boolean CheckTemplate( int nIndex, byte[] Template )
+    {
+        CRC32 crc = new CRC32();
+        crc.update( Template, 0, Template.length );
+        return m_Index.getInt( nIndex * ENTRY_SIZE + 16 ) == (int)crc.getValue();
+    }
+
+    /**
+     * Compares keys as unsigned bytes; a shorter key is less than a longer 
+     * key with the same beginning.
+     */
+    static int CompareKeys( byte[] a, byte[] b )
+    {
+        int nLength = Math.min( a.length, b.length );
+        for( int i = 0; i < nLength; i++ )
+        {
+            int nCompare = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if( nCompare != 0 )
+                return nCompare;
+        }
+        return a.length - b.length;
+    }
+
+    private final FileChannel m_Channel;
+
+    /**
+     * Number of records.
+     */
+    private final int m_Size;
+
+    /**
+     * The mapped key index.
+     */
+    private final MappedByteBuffer m_Index;
+
+    /**
+     * The mapped template blob.
+     */
+    private final MappedByteBuffer m_Blob;
+
+    /**
+     * The version of this opened gallery.
+     */
+    private final long m_Version;
+}
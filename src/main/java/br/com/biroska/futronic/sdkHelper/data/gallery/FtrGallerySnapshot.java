@@ -0,0 +1,159 @@
+package br.com.biroska.futronic.sdkHelper.data.gallery;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+
+/**
+ * An immutable view of a <code>FtrLiveGallery</code> at one version (see
+ * <code>FtrLiveGallery.getSnapshot</code>).
+ *
+ * The snapshot shares the record segments with the gallery: it reads the
+ * slots appended before it and treats a slot as live if the record was not
+ * removed at its version. Later additions, removals and compactions of the
+ * gallery do not change it.
+ *
+ * The records are numbered in the order they were added, without the removed
+ * ones. The record array (<code>toRecords</code>) is built on the first use
+ * from the shared record objects, without copying the keys and templates;
+ * if the previous snapshot has its array and the gallery was only appended
+ * since, the array is extended instead. The key index for
+ * <code>IndexOf</code> is built on the first use.
+ *
+ * The class is thread-safe.
+ */
+public final class FtrGallerySnapshot implements ITemplateGallery
+{
+    FtrGallerySnapshot( FtrIdentifyRecord[][] rgSegments, AtomicLongArray[] rgDeletedAt, int nCount, int nSize,
+                        long nVersion, FtrGallerySnapshot Previous )
+    {
+        m_Segments = rgSegments;
+        m_DeletedAt = rgDeletedAt;
+        m_Count = nCount;
+        m_Size = nSize;
+        m_Version = nVersion;
+        m_Previous = Previous;
+    }
+
+    public int getSize()
+    {
+        return m_Size;
+    }
+
+    public long getVersion()
+    {
+        return m_Version;
+    }
+
+    public byte[] getKey( int nIndex )
+    {
+        return Record( nIndex ).m_KeyValue.clone();
+    }
+
+    public byte[] getTemplate( int nIndex )
+    {
+        return Record( nIndex ).m_Template.clone();
+    }
+
+    public synchronized int IndexOf( byte[] KeyValue )
+    {
+        if( m_Index == null )
+        {
+            FtrIdentifyRecord[] rgRecords = toRecords();
+            FtrKeyIndex Index = new FtrKeyIndex( rgRecords.length );
+            for( int i = 0; i < rgRecords.length; i++ )
+                Index.Put( rgRecords[i].m_KeyValue, i );
+            m_Index = Index;
+        }
+        return m_Index.IndexOf( KeyValue );
+    }
+
+    public synchronized FtrIdentifyRecord[] toRecords()
+    {
+        if( m_Records != null )
+            return m_Records;
+
+        FtrIdentifyRecord[] rgRecords = new FtrIdentifyRecord[ m_Size ];
+        int nFrom = 0;
+        int nSize = 0;
+        FtrGallerySnapshot Previous = m_Previous;
+        FtrIdentifyRecord[] rgPrevious = (Previous != null) ? Previous.getBuiltRecords() : null;
+        if( rgPrevious != null )
+        {
+            // only appended since the previous snapshot
+            System.arraycopy( rgPrevious, 0, rgRecords, 0, rgPrevious.length );
+            nFrom = Previous.m_Count;
+            nSize = rgPrevious.length;
+        }
+
+        for( int nSlot = nFrom; nSlot < m_Count; nSlot++ )
+        {
+            if( IsLive( nSlot ) )
+                rgRecords[ nSize++ ] = m_Segments[ nSlot >>> FtrLiveGallery.SEGMENT_SHIFT ][ nSlot & FtrLiveGallery.SEGMENT_MASK ];
+        }
+        m_Records = rgRecords;
+        m_Previous = null;
+        return rgRecords;
+    }
+
+    /**
+     * Gets the number of slots of the snapshot, removed records included.
+     */
+    public int getSlotCount()
+    {
+        return m_Count;
+    }
+
+    /**
+     * Returns the record array if it is built, without building it.
+     */
+    synchronized FtrIdentifyRecord[] getBuiltRecords()
+    {
+        return m_Records;
+    }
+
+    private boolean IsLive( int nSlot )
+    {
+        return m_DeletedAt[ nSlot >>> FtrLiveGallery.SEGMENT_SHIFT ].get( nSlot & FtrLiveGallery.SEGMENT_MASK ) > m_Version;
+    }
+
+    private FtrIdentifyRecord Record( int nIndex )
+    {
+        if( (nIndex < 0) || (nIndex >= m_Size) )
+            throw new IndexOutOfBoundsException( "Record " + nIndex + " does not exist" );
+        return toRecords()[ nIndex ];
+    }
+
+    public String toString()
+    {
+        return "FtrGallerySnapshot[version=" + m_Version + ", size=" + m_Size + ", slots=" + m_Count + "]";
+    }
+
+    // The segments of the gallery at the time of the snapshot. Only the
+    // slots below m_Count are read.
+
+    private final FtrIdentifyRecord[][] m_Segments;
+    private final AtomicLongArray[] m_DeletedAt;
+
+    /**
+     * Number of slots, removed records included.
+     */
+    private final int m_Count;
+
+    /**
+     * Number of live records.
+     */
+    private final int m_Size;
+
+    private final long m_Version;
+
+    /**
+     * The previous snapshot if the gallery was only appended since it, until
+     * the record array is built.
+     */
+    private FtrGallerySnapshot m_Previous;
+
+    private FtrIdentifyRecord[] m_Records;
+
+    private FtrKeyIndex m_Index;
+}
@@ -0,0 +1,407 @@
+package br.com.biroska.futronic.sdkHelper.data.gallery;
+
+import java.util.Arrays;
+
+/**
+ * An index of record keys (see <code>FtrIdentifyRecord.m_KeyValue</code>) to
+ * slots, for example record numbers, and back.
+ *
+ * A key of up to 16 bytes is packed into two <code>long</code> values and its
+ * length, so the index keeps no object per entry. The keys are stored in an
+ * open addressing hash table with linear probing; a removed key leaves a
+ * tombstone which is reused by a later insertion and dropped when the table is
+ * rebuilt. The table grows when the entries and tombstones fill 3/4 of it. A
+ * second table gives the table position by slot, so the key of a slot is
+ * found without a search.
+ *
+ * The memory is <code>getMemorySize</code> bytes: 21 bytes per table position
+ * and 4 bytes per slot. A million 8 byte keys take 46 MB (2^21 positions);
+ * a <code>HashMap&lt;String, Integer&gt;</code> with the same keys takes
+ * about 107 MB of heap (see <code>KeyIndexBenchmark</code>).
+ *
+ * The class is not thread-safe.
+ */
+public final class FtrKeyIndex
+{
+    /**
+     * The maximum key length.
+     */
+    public static final int MAX_KEY_LENGTH = 16;
+
+    /**
+     * Creates a new empty instance of FtrKeyIndex.
+     */
+    public FtrKeyIndex()
+    {
+        this( 16 );
+    }
+
+    /**
+     * Creates a new empty instance of FtrKeyIndex for the expected number
+     * of keys.
+     *
+     * @param nExpectedSize the number of keys the index holds without growing.
+     *
+     * @exception IllegalArgumentException nExpectedSize is negative.
+     */
+    public FtrKeyIndex( int nExpectedSize )
+        throws IllegalArgumentException
+    {
+        if( nExpectedSize < 0 )
+            throw new IllegalArgumentException( "The argument nExpectedSize has invalid value" );
+        Allocate( TableCapacity( nExpectedSize ) );
+        m_Positions = new int[ Math.max( 16, nExpectedSize ) ];
+        Arrays.fill( m_Positions, EMPTY );
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param KeyValue the key of 1 to 16 bytes (can not be NULL).
+     * @param nSlot the slot of the key, not less than 0.
+     *
+     * @exception NullPointerException a null reference parameter KeyValue is
+     * passed to the function.
+     * @exception IllegalArgumentException the key has invalid length, the slot
+     * is negative or used by another key, or the key already exists.
+     */
+    public void Put( byte[] KeyValue, int nSlot )
+        throws NullPointerException, IllegalArgumentException
+    {
+        CheckKey( KeyValue );
+        if( nSlot < 0 )
+            throw new IllegalArgumentException( "The argument nSlot has invalid value" );
+        if( (nSlot < m_Positions.length) && (m_Positions[ nSlot ] != EMPTY) )
+            throw new IllegalArgumentException( "The slot " + nSlot + " is already used" );
+
+        long nHigh = High( KeyValue );
+        long nLow = Low( KeyValue );
+        int nLength = KeyValue.length;
+        if( Find( nHigh, nLow, nLength ) >= 0 )
+            throw new IllegalArgumentException( "The key already exists" );
+
+        if( m_Size + m_Tombstones + 1 > m_Threshold )
+            Rehash( (m_Size + 1 > m_Threshold / 2) ? m_Slots.length * 2 : m_Slots.length );
+
+        int nPosition = Insert( nHigh, nLow, nLength, nSlot );
+        EnsureSlots( nSlot + 1 );
+        m_Positions[ nSlot ] = nPosition;
+        m_Size++;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param KeyValue the key.
+     *
+     * @return the slot of the removed key or -1, if there is no such key.
+     */
+    public int Remove( byte[] KeyValue )
+    {
+        if( !IsValidKey( KeyValue ) )
+            return -1;
+        int nPosition = Find( High( KeyValue ), Low( KeyValue ), KeyValue.length );
+        if( nPosition < 0 )
+            return -1;
+
+        int nSlot = m_Slots[ nPosition ];
+        m_Slots[ nPosition ] = TOMBSTONE;
+        m_Positions[ nSlot ] = EMPTY;
+        m_Size--;
+        m_Tombstones++;
+        return nSlot;
+    }
+
+    /**
+     * Moves the key of a slot to another slot, without a search.
+     *
+     * @param nFrom the slot of the key.
+     * @param nTo the new slot, which must be free.
+     *
+     * @exception IllegalArgumentException the slot nFrom has no key or the slot
+     * nTo is negative or used.
+     */
+    public void Move( int nFrom, int nTo )
+        throws IllegalArgumentException
+    {
+        int nPosition = PositionOf( nFrom );
+        if( nPosition < 0 )
+            throw new IllegalArgumentException( "The slot " + nFrom + " has no key" );
+        if( nTo < 0 )
+            throw new IllegalArgumentException( "The argument nTo has invalid value" );
+        if( nTo == nFrom )
+            return;
+        if( PositionOf( nTo ) >= 0 )
+            throw new IllegalArgumentException( "The slot " + nTo + " is already used" );
+
+        EnsureSlots( nTo + 1 );
+        m_Slots[ nPosition ] = nTo;
+        m_Positions[ nTo ] = nPosition;
+        m_Positions[ nFrom ] = EMPTY;
+    }
+
+    /**
+     * Removes all keys. The allocated memory is kept.
+     */
+    public void Clear()
+    {
+        Arrays.fill( m_Slots, EMPTY );
+        Arrays.fill( m_Positions, EMPTY );
+        m_Size = 0;
+        m_Tombstones = 0;
+    }
+
+    /**
+     * Gets the slot of a key.
+     *
+     * @param KeyValue the key.
+     *
+     * @return the slot or -1, if there is no such key.
+     */
+    public int IndexOf( byte[] KeyValue )
+    {
+        if( !IsValidKey( KeyValue ) )
+            return -1;
+        int nPosition = Find( High( KeyValue ), Low( KeyValue ), KeyValue.length );
+        return (nPosition < 0) ? -1 : m_Slots[ nPosition ];
+    }
+
+    /**
+     * Gets the key of a slot.
+     *
+     * @param nSlot the slot.
+     *
+     * @return a new array with the key or null, if the slot has no key.
+     */
+    public byte[] getKey( int nSlot )
+    {
+        int nPosition = PositionOf( nSlot );
+        if( nPosition < 0 )
+            return null;
+
+        byte[] KeyValue = new byte[ m_Lengths[ nPosition ] ];
+        long nHigh = m_Keys[ 2 * nPosition ];
+        long nLow = m_Keys[ 2 * nPosition + 1 ];
+        for( int i = 0; i < KeyValue.length; i++ )
+        {
+            long nWord = (i < 8) ? nHigh : nLow;
+            KeyValue[i] = (byte)(nWord >>> (56 - 8 * (i & 7)));
+        }
+        return KeyValue;
+    }
+
+    /**
+     * Gets the number of keys.
+     */
+    public int getSize()
+    {
+        return m_Size;
+    }
+
+    /**
+     * Gets the number of positions of the hash table.
+     */
+    public int getCapacity()
+    {
+        return m_Slots.length;
+    }
+
+    /**
+     * Gets the number of tombstones of removed keys in the hash table.
+     */
+    public int getTombstones()
+    {
+        return m_Tombstones;
+    }
+
+    /**
+     * Gets the size of the arrays of the index in bytes, without the object
+     * and array headers.
+     */
+    public long getMemorySize()
+    {
+        return 8L * m_Keys.length + 4L * m_Slots.length + m_Lengths.length + 4L * m_Positions.length;
+    }
+
+    /**
+     * Returns the table position of a slot or -1.
+     */
+    private int PositionOf( int nSlot )
+    {
+        if( (nSlot < 0) || (nSlot >= m_Positions.length) )
+            return -1;
+        return m_Positions[ nSlot ];
+    }
+
+    /**
+     * Returns the table position of a key or -1.
+     */
+    private int Find( long nHigh, long nLow, int nLength )
+    {
+        int nMask = m_Slots.length - 1;
+        int nPosition = Hash( nHigh, nLow, nLength ) & nMask;
+        while( true )
+        {
+            int nSlot = m_Slots[ nPosition ];
+            if( nSlot == EMPTY )
+                return -1;
+            if( (nSlot != TOMBSTONE) && (m_Lengths[ nPosition ] == nLength) &&
+                (m_Keys[ 2 * nPosition ] == nHigh) && (m_Keys[ 2 * nPosition + 1 ] == nLow) )
+                return nPosition;
+            nPosition = (nPosition + 1) & nMask;
+        }
+    }
+
+    /**
+     * Stores a key which is not in the table at the first free position
+     * (empty or tombstone) of its probe sequence.
+     */
+    private int Insert( long nHigh, long nLow, int nLength, int nSlot )
+    {
+        int nMask = m_Slots.length - 1;
+        int nPosition = Hash( nHigh, nLow, nLength ) & nMask;
+        while( m_Slots[ nPosition ] >= 0 )
+            nPosition = (nPosition + 1) & nMask;
+
+        if( m_Slots[ nPosition ] == TOMBSTONE )
+            m_Tombstones--;
+        m_Keys[ 2 * nPosition ] = nHigh;
+        m_Keys[ 2 * nPosition + 1 ] = nLow;
+        m_Lengths[ nPosition ] = (byte)nLength;
+        m_Slots[ nPosition ] = nSlot;
+        return nPosition;
+    }
+
+    /**
+     * Rebuilds the table with the given capacity without the tombstones.
+     */
+    private void Rehash( int nCapacity )
+    {
+        long[] rgKeys = m_Keys;
+        int[] rgSlots = m_Slots;
+        byte[] rgLengths = m_Lengths;
+        Allocate( nCapacity );
+        for( int i = 0; i < rgSlots.length; i++ )
+        {
+            int nSlot = rgSlots[i];
+            if( nSlot >= 0 )
+                m_Positions[ nSlot ] = Insert( rgKeys[ 2 * i ], rgKeys[ 2 * i + 1 ], rgLengths[i], nSlot );
+        }
+    }
+
+    private void Allocate( int nCapacity )
+    {
+        m_Keys = new long[ 2 * nCapacity ];
+        m_Slots = new int[ nCapacity ];
+        m_Lengths = new byte[ nCapacity ];
+        Arrays.fill( m_Slots, EMPTY );
+        m_Threshold = (int)(nCapacity * 3L / 4);
+        m_Tombstones = 0;
+    }
+
+    private void EnsureSlots( int nCapacity )
+    {
+        if( nCapacity <= m_Positions.length )
+            return;
+        int nOldCapacity = m_Positions.length;
+        int nNewCapacity = (int)Math.min( Integer.MAX_VALUE - 8, Math.max( (long)nCapacity, 2L * nOldCapacity ) );
+        m_Positions = Arrays.copyOf( m_Positions, nNewCapacity );
+        Arrays.fill( m_Positions, nOldCapacity, nNewCapacity, EMPTY );
+    }
+
+    /**
+     * Returns the smallest power of two table capacity holding nSize keys
+     * under the load factor 3/4.
+     */
+    private static int TableCapacity( int nSize )
+    {
+        int nCapacity = 16;
+        while( nCapacity * 3L / 4 < nSize )
+            nCapacity *= 2;
+        return nCapacity;
+    }
+
+    private static void CheckKey( byte[] KeyValue )
+    {
+        if( KeyValue == null )
+            throw new NullPointerException( "A null reference parameter KeyValue is passed to the function." );
+        if( !IsValidKey( KeyValue ) )
+            throw new IllegalArgumentException( "The argument KeyValue has invalid length" );
+    }
+
+    private static boolean IsValidKey( byte[] KeyValue )
+    {
+        return (KeyValue != null) && (KeyValue.length > 0) && (KeyValue.length <= MAX_KEY_LENGTH);
+    }
+
+    /**
+     * Packs the bytes 0..7 of a key, big endian, padded with zeros.
+     */
+    private static long High( byte[] KeyValue )
+    {
+        return Pack( KeyValue, 0 );
+    }
+
+    /**
+     * Packs the bytes 8..15 of a key, big endian, padded with zeros.
+     */
+    private static long Low( byte[] KeyValue )
+    {
+        return Pack( KeyValue, 8 );
+    }
+
+    private static long Pack( byte[] KeyValue, int nFrom )
+    {
+        long nWord = 0;
+        for( int i = 0; i < 8; i++ )
+        {
+            int nByte = (nFrom + i < KeyValue.length) ? (KeyValue[ nFrom + i ] & 0xFF) : 0;
+            nWord = (nWord << 8) | nByte;
+        }
+        return nWord;
+    }
+
+    private static int Hash( long nHigh, long nLow, int nLength )
+    {
+        long h = (nHigh * 0x9E3779B97F4A7C15L + nLow) * 0xC2B2AE3D27D4EB4FL + nLength;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return (int)(h ^ (h >>> 33));
+    }
+
+    /**
+     * The slot value of a free table position.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The slot value of a table position of a removed key.
+     */
+    private static final int TOMBSTONE = -2;
+
+    // The hash table: the packed key (two longs per position), the key
+    // length and the slot, EMPTY or TOMBSTONE by table position.
+
+    private long[] m_Keys;
+    private byte[] m_Lengths;
+    private int[] m_Slots;
+
+    /**
+     * The table positions by slot, EMPTY for a slot without a key.
+     */
+    private int[] m_Positions;
+
+    /**
+     * Number of keys.
+     */
+    private int m_Size;
+
+    /**
+     * Number of tombstones.
+     */
+    private int m_Tombstones;
+
+    /**
+     * The number of keys and tombstones which causes a rebuild of the table.
+     */
+    private int m_Threshold;
+}
@@ -0,0 +1,438 @@
+package br.com.biroska.futronic.sdkHelper.data.gallery;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+
+/**
+ * A gallery for frequent additions and removals while identifications are
+ * running.
+ *
+ * The records are appended to fixed size segments, so an addition does not
+ * copy the gallery. A removal does not move records either: it stores the
+ * version of the removal for the slot of the record (a tombstone). The
+ * identifications use snapshots (<code>getSnapshot</code>): a snapshot sees
+ * the slots appended before it, and the records not removed at its version,
+ * so it stays consistent while the gallery changes.
+ *
+ * When the tombstones take a quarter of the slots, the gallery is compacted
+ * on the compaction executor: the live records are copied to new segments
+ * without holding the gallery lock, and the changes made meanwhile are
+ * applied at the end. Snapshots taken before keep the old segments.
+ *
+ * The record objects are shared by the gallery and all its snapshots and
+ * must not be modified.
+ *
+ * The class is thread-safe.
+ */
+public class FtrLiveGallery
+{
+    /**
+     * Number of slots in a segment.
+     */
+    public static final int SEGMENT_SIZE = 4096;
+
+    static final int SEGMENT_SHIFT = 12;
+
+    static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * Creates a new empty instance of FtrLiveGallery. The gallery is compacted
+     * on the common <code>ForkJoinPool</code>.
+     */
+    public FtrLiveGallery()
+    {
+        m_Segments = new FtrIdentifyRecord[ 16 ][];
+        m_DeletedAt = new AtomicLongArray[ 16 ];
+        m_Index = new FtrKeyIndex();
+        m_Executor = ForkJoinPool.commonPool();
+        m_Count = 0;
+        m_Size = 0;
+        m_Version = 0;
+        m_Generation = 0;
+        m_bCompacting = false;
+        m_Compactions = 0;
+        m_Snapshot = null;
+        m_bAppendOnly = false;
+    }
+
+    /**
+     * Adds a record. The key and the template are copied.
+     *
+     * @param KeyValue the key of 1 to 16 bytes (can not be NULL).
+     * @param Template the template (can not be NULL).
+     *
+     * @return the version of the gallery with the record.
+     *
+     * @exception NullPointerException a null reference parameter KeyValue or
+     * Template is passed to the function.
+     * @exception IllegalArgumentException the key has invalid length or a
+     * record with the key already exists.
+     */
+    public synchronized long Add( byte[] KeyValue, byte[] Template )
+        throws NullPointerException, IllegalArgumentException
+    {
+        if( KeyValue == null )
+            throw new NullPointerException( "A null reference parameter KeyValue is passed to the function." );
+        if( Template == null )
+            throw new NullPointerException( "A null reference parameter Template is passed to the function." );
+        if( (KeyValue.length == 0) || (KeyValue.length > FtrKeyIndex.MAX_KEY_LENGTH) )
+            throw new IllegalArgumentException( "The argument KeyValue has invalid length" );
+        if( m_Index.IndexOf( KeyValue ) >= 0 )
+            throw new IllegalArgumentException( "A record with the key already exists" );
+
+        FtrIdentifyRecord record = new FtrIdentifyRecord();
+        record.m_KeyValue = KeyValue.clone();
+        record.m_Template = Template.clone();
+
+        m_Index.Put( record.m_KeyValue, m_Count );
+        Append( record, Long.MAX_VALUE );
+        m_Size++;
+        return ++m_Version;
+    }
+
+    /**
+     * Removes the record with the key. The snapshots taken before still
+     * contain it.
+     *
+     * @param KeyValue the key.
+     *
+     * @return <code>true</code> if the record was removed, <code>false</code>
+     * if there is no such record.
+     */
+    public synchronized boolean Remove( byte[] KeyValue )
+    {
+        int nSlot = m_Index.Remove( KeyValue );
+        if( nSlot < 0 )
+            return false;
+
+        m_Version++;
+        m_DeletedAt[ nSlot >>> SEGMENT_SHIFT ].set( nSlot & SEGMENT_MASK, m_Version );
+        m_Size--;
+        if( (m_Snapshot != null) && (nSlot < m_Snapshot.getSlotCount()) )
+            m_bAppendOnly = false;
+        if( m_bCompacting && (nSlot < m_CompactionCount) )
+            Log( nSlot );
+
+        if( !m_bCompacting && (getTombstones() >= SEGMENT_SIZE) && (getTombstones() * 4L >= m_Count) )
+            StartCompaction();
+        return true;
+    }
+
+    /**
+     * Removes all records. The snapshots taken before keep them.
+     */
+    public synchronized void Clear()
+    {
+        m_Segments = new FtrIdentifyRecord[ 16 ][];
+        m_DeletedAt = new AtomicLongArray[ 16 ];
+        m_Index = new FtrKeyIndex();
+        m_Count = 0;
+        m_Size = 0;
+        m_Version++;
+        m_Generation++;
+        m_bAppendOnly = false;
+    }
+
+    /**
+     * Gets a snapshot of the current version. The same snapshot is returned
+     * until the gallery is modified.
+     */
+    public synchronized FtrGallerySnapshot getSnapshot()
+    {
+        if( (m_Snapshot != null) && (m_Snapshot.getVersion() == m_Version) )
+            return m_Snapshot;
+
+        FtrGallerySnapshot Previous = m_bAppendOnly ? m_Snapshot : null;
+        m_Snapshot = new FtrGallerySnapshot( m_Segments, m_DeletedAt, m_Count, m_Size, m_Version, Previous );
+        m_bAppendOnly = true;
+        return m_Snapshot;
+    }
+
+    /**
+     * Gets a copy of the template of the record with the key.
+     *
+     * @param KeyValue the key.
+     *
+     * @return a copy of the template or null, if there is no such record.
+     */
+    public synchronized byte[] getTemplate( byte[] KeyValue )
+    {
+        int nSlot = m_Index.IndexOf( KeyValue );
+        return (nSlot < 0) ? null : m_Segments[ nSlot >>> SEGMENT_SHIFT ][ nSlot & SEGMENT_MASK ].m_Template.clone();
+    }
+
+    /**
+     * Returns <code>true</code> if the gallery has a record with the key.
+     */
+    public synchronized boolean Contains( byte[] KeyValue )
+    {
+        return m_Index.IndexOf( KeyValue ) >= 0;
+    }
+
+    /**
+     * Gets the number of records.
+     */
+    public synchronized int getSize()
+    {
+        return m_Size;
+    }
+
+    /**
+     * Gets the version of the gallery. It changes on every modification.
+     */
+    public synchronized long getVersion()
+    {
+        return m_Version;
+    }
+
+    /**
+     * Gets the number of tombstones of removed records.
+     */
+    public synchronized int getTombstones()
+    {
+        return m_Count - m_Size;
+    }
+
+    /**
+     * Gets the number of finished compactions.
+     */
+    public synchronized long getCompactions()
+    {
+        return m_Compactions;
+    }
+
+    /**
+     * Gets the executor of the background compaction.
+     */
+    public synchronized Executor getCompactionExecutor()
+    {
+        return m_Executor;
+    }
+
+    /**
+     * Sets the executor of the background compaction.
+     *
+     * @param ExecutorService the executor. If it is NULL, the gallery is not
+     * compacted in the background, only by <code>Compact</code>.
+     */
+    public synchronized void setCompactionExecutor( Executor ExecutorService )
+    {
+        m_Executor = ExecutorService;
+    }
+
+    /**
+     * Compacts the gallery in the calling thread: the live records are
+     * copied to new segments without the tombstones. The order of the
+     * records is kept. Additions and removals may run meanwhile. The function
+     * does nothing if a compaction is already running.
+     */
+    public void Compact()
+    {
+        FtrIdentifyRecord[][] rgSegments;
+        AtomicLongArray[] rgDeletedAt;
+        int nCount;
+        long nVersion;
+        long nGeneration;
+        synchronized( this )
+        {
+            if( m_bCompacting || (m_Count == m_Size) )
+                return;
+            m_bCompacting = true;
+            m_CompactionCount = m_Count;
+            m_LogSize = 0;
+            rgSegments = m_Segments;
+            rgDeletedAt = m_DeletedAt;
+            nCount = m_Count;
+            nVersion = m_Version;
+            nGeneration = m_Generation;
+        }
+
+        try
+        {
+            // copy the records live at nVersion, without the lock
+            FtrLiveGallery Compacted = new FtrLiveGallery();
+            Compacted.m_Index = new FtrKeyIndex( nCount );
+            int[] rgNewSlots = new int[ nCount ];
+            for( int nSlot = 0; nSlot < nCount; nSlot++ )
+            {
+                long nDeletedAt = rgDeletedAt[ nSlot >>> SEGMENT_SHIFT ].get( nSlot & SEGMENT_MASK );
+                if( nDeletedAt <= nVersion )
+                {
+                    rgNewSlots[ nSlot ] = -1;
+                    continue;
+                }
+                FtrIdentifyRecord record = rgSegments[ nSlot >>> SEGMENT_SHIFT ][ nSlot & SEGMENT_MASK ];
+                rgNewSlots[ nSlot ] = Compacted.m_Count;
+                Compacted.m_Index.Put( record.m_KeyValue, Compacted.m_Count );
+                Compacted.Append( record, Long.MAX_VALUE );
+            }
+
+            synchronized( this )
+            {
+                if( m_Generation != nGeneration )
+                    return;
+
+                // the removals and additions made during the copying
+                for( int i = 0; i < m_LogSize; i++ )
+                {
+                    int nSlot = m_Log[i];
+                    int nNewSlot = rgNewSlots[ nSlot ];
+                    if( nNewSlot < 0 )
+                        continue;
+                    long nDeletedAt = m_DeletedAt[ nSlot >>> SEGMENT_SHIFT ].get( nSlot & SEGMENT_MASK );
+                    Compacted.m_DeletedAt[ nNewSlot >>> SEGMENT_SHIFT ].set( nNewSlot & SEGMENT_MASK, nDeletedAt );
+                    Compacted.m_Index.Remove( m_Segments[ nSlot >>> SEGMENT_SHIFT ][ nSlot & SEGMENT_MASK ].m_KeyValue );
+                }
+                for( int nSlot = nCount; nSlot < m_Count; nSlot++ )
+                {
+                    FtrIdentifyRecord record = m_Segments[ nSlot >>> SEGMENT_SHIFT ][ nSlot & SEGMENT_MASK ];
+                    long nDeletedAt = m_DeletedAt[ nSlot >>> SEGMENT_SHIFT ].get( nSlot & SEGMENT_MASK );
+                    if( nDeletedAt == Long.MAX_VALUE )
+                        Compacted.m_Index.Put( record.m_KeyValue, Compacted.m_Count );
+                    Compacted.Append( record, nDeletedAt );
+                }
+
+                m_Segments = Compacted.m_Segments;
+                m_DeletedAt = Compacted.m_DeletedAt;
+                m_Index = Compacted.m_Index;
+                m_Count = Compacted.m_Count;
+                m_Generation++;
+                m_Compactions++;
+                m_bAppendOnly = false;
+            }
+        }
+        finally
+        {
+            synchronized( this )
+            {
+                m_bCompacting = false;
+                m_Log = null;
+            }
+        }
+    }
+
+    /**
+     * Starts the compaction on the executor.
+     */
+    private void StartCompaction()
+    {
+        if( m_Executor == null )
+            return;
+        try
+        {
+            m_Executor.execute( new Runnable()
+            {
+                public void run()
+                {
+                    Compact();
+                }
+            } );
+        }
+        catch( RejectedExecutionException e )
+        {
+            // compacted after the next removal
+        }
+    }
+
+    /**
+     * Writes a record to the next slot.
+     */
+    private void Append( FtrIdentifyRecord record, long nDeletedAt )
+    {
+        int nSegment = m_Count >>> SEGMENT_SHIFT;
+        if( nSegment == m_Segments.length )
+        {
+            // snapshots keep the old arrays, they read only their segments
+            m_Segments = Arrays.copyOf( m_Segments, nSegment * 2 );
+            m_DeletedAt = Arrays.copyOf( m_DeletedAt, nSegment * 2 );
+        }
+        if( m_Segments[ nSegment ] == null )
+        {
+            m_Segments[ nSegment ] = new FtrIdentifyRecord[ SEGMENT_SIZE ];
+            m_DeletedAt[ nSegment ] = new AtomicLongArray( SEGMENT_SIZE );
+        }
+        int nOffset = m_Count & SEGMENT_MASK;
+        m_Segments[ nSegment ][ nOffset ] = record;
+        m_DeletedAt[ nSegment ].set( nOffset, nDeletedAt );
+        m_Count++;
+    }
+
+    /**
+     * Remembers a slot removed during the compaction.
+     */
+    private void Log( int nSlot )
+    {
+        if( m_Log == null )
+            m_Log = new int[ 64 ];
+        else if( m_LogSize == m_Log.length )
+            m_Log = Arrays.copyOf( m_Log, m_LogSize * 2 );
+        m_Log[ m_LogSize++ ] = nSlot;
+    }
+
+    public synchronized String toString()
+    {
+        return "FtrLiveGallery[version=" + m_Version + ", size=" + m_Size + ", tombstones=" + (m_Count - m_Size) +
+               ", compactions=" + m_Compactions + "]";
+    }
+
+    // The segments: the records and the version of their removal
+    // (Long.MAX_VALUE for a live record) by slot.
+
+    private FtrIdentifyRecord[][] m_Segments;
+    private AtomicLongArray[] m_DeletedAt;
+
+    /**
+     * Slots of the live records by key.
+     */
+    private FtrKeyIndex m_Index;
+
+    private Executor m_Executor;
+
+    /**
+     * Number of used slots, tombstones included.
+     */
+    private int m_Count;
+
+    /**
+     * Number of live records.
+     */
+    private int m_Size;
+
+    private long m_Version;
+
+    /**
+     * Changes when the slots are renumbered (compaction, clearing).
+     */
+    private long m_Generation;
+
+    private boolean m_bCompacting;
+
+    /**
+     * The number of slots copied by the running compaction.
+     */
+    private int m_CompactionCount;
+
+    /**
+     * The slots below m_CompactionCount removed during the compaction.
+     */
+    private int[] m_Log;
+    private int m_LogSize;
+
+    private long m_Compactions;
+
+    /**
+     * The last snapshot.
+     */
+    private FtrGallerySnapshot m_Snapshot;
+
+    /**
+     * <code>true</code> if no record of the last snapshot was removed and the
+     * slots were not renumbered since it.
+     */
+    private boolean m_bAppendOnly;
+}
@@ -0,0 +1,343 @@
+package br.com.biroska.futronic.sdkHelper.data.gallery;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+
+/**
+ * A gallery which keeps the keys and templates outside of the Java heap.
+ *
+ * The records are packed one after another (key, then template) into direct
+ * <code>ByteBuffer</code> chunks. The position and lengths of each record are
+ * kept in an offset table of primitive arrays, so the gallery has a few heap
+ * objects however many records it holds. A removed record is replaced by the
+ * last record (its number changes) and its space is reused after compaction,
+ * which runs when more than half of the used space is free. The record 
+ * numbers by key are kept in a <code>FtrKeyIndex</code>, without an object 
+ * per record.
+ *
+ * The off-heap storage saves heap only between identifications. The native
+ * matcher takes the records as a Java array, so <code>toRecords</code> copies
+ * every key and template onto the heap for each identification, and the
+ * backend marshals them all again. The array is not kept after the call.
+ *
+ * The class is thread-safe.
+ */
+public class FtrTemplateGallery implements ITemplateGallery
+{
+    /**
+     * The maximum key length (see <code>FtrIdentifyRecord.m_KeyValue</code>).
+     */
+    public static final int MAX_KEY_LENGTH = 16;
+
+    /**
+     * The default size of a memory chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Creates a new empty instance of FtrTemplateGallery with the default 
+     * chunk size.
+     */
+    public FtrTemplateGallery()
+    {
+        this( DEFAULT_CHUNK_SIZE );
+    }
+
+    /**
+     * Creates a new empty instance of FtrTemplateGallery.
+     *
+     * @param nChunkSize the size of a memory chunk in bytes. A record must 
+     * fit into one chunk.
+     *
+     * @exception IllegalArgumentException nChunkSize is less than 1024.
+     */
+    public FtrTemplateGallery( int nChunkSize )
+        throws IllegalArgumentException
+    {
+        if( nChunkSize < 1024 )
+            throw new IllegalArgumentException( "The argument nChunkSize has invalid value" );
+        m_ChunkSize = nChunkSize;
+        m_Chunks = new ArrayList<ByteBuffer>();
+        m_Locations = new long[ 16 ];
+        m_KeyLengths = new byte[ 16 ];
+        m_TemplateLengths = new int[ 16 ];
+        m_Size = 0;
+        m_UsedBytes = 0;
+        m_FreeBytes = 0;
+        m_Index = new FtrKeyIndex();
+        m_Version = 0;
+    }
+
+    /**
+     * Adds a record.
+     *
+     * @param KeyValue the key of 1 to 16 bytes (can not be NULL).
+     * @param Template the template (can not be NULL).
+     *
+     * @return the record number.
+     *
+     * @exception NullPointerException a null reference parameter KeyValue or 
+     * Template is passed to the function.
+     * @exception IllegalArgumentException the key has invalid length, the 
+     * record does not fit into a chunk or a record with the key already exists.
+     */
+    public synchronized int Add( byte[] KeyValue, byte[] Template )
+        throws NullPointerException, IllegalArgumentException
+    {
+        CheckRecord( KeyValue, Template );
+        if( m_Index.IndexOf( KeyValue ) >= 0 )
+            throw new IllegalArgumentException( "A record with the key already exists" );
+
+        int nIndex = m_Size;
+        EnsureCapacity( nIndex + 1 );
+        m_Locations[ nIndex ] = Write( KeyValue, Template );
+        m_KeyLengths[ nIndex ] = (byte)KeyValue.length;
+        m_TemplateLengths[ nIndex ] = Template.length;
+        m_Index.Put( KeyValue, nIndex );
+        m_Size++;
+        Modified();
+        return nIndex;
+    }
+
+    /**
+     * Removes the record with the key. The last record takes its number.
+     *
+     * @param KeyValue the key.
+     *
+     * @return <code>true</code> if the record was removed, <code>false</code>
+     * if there is no such record.
+     */
+    public synchronized boolean Remove( byte[] KeyValue )
+    {
+        if( KeyValue == null )
+            return false;
+        int nIndex = m_Index.Remove( KeyValue );
+        if( nIndex < 0 )
+            return false;
+
+        int nLast = m_Size - 1;
+        m_FreeBytes += m_KeyLengths[ nIndex ] + m_TemplateLengths[ nIndex ];
+        if( nIndex != nLast )
+        {
+            m_Locations[ nIndex ] = m_Locations[ nLast ];
+            m_KeyLengths[ nIndex ] = m_KeyLengths[ nLast ];
+            m_TemplateLengths[ nIndex ] = m_TemplateLengths[ nLast ];
+            m_Index.Move( nLast, nIndex );
+        }
+        m_Size--;
+        if( m_FreeBytes > m_UsedBytes / 2 )
+            Compact();
+        Modified();
+        return true;
+    }
+
+    /**
+     * Removes all records and releases the memory chunks.
+     */
+    public synchronized void Clear()
+    {
+        m_Chunks.clear();
+        m_Index.Clear();
+        m_Size = 0;
+        m_UsedBytes = 0;
+        m_FreeBytes = 0;
+        Modified();
+    }
+
+    /**
+     * Gets the template of the record with the key.
+     *
+     * @param KeyValue the key.
+     *
+     * @return a copy of the template or null, if there is no such record.
+     */
+    public synchronized byte[] getTemplate( byte[] KeyValue )
+    {
+        int nIndex = IndexOf( KeyValue );
+        return (nIndex < 0) ? null : getTemplate( nIndex );
+    }
+
+    public synchronized int getSize()
+    {
+        return m_Size;
+    }
+
+    public synchronized long getVersion()
+    {
+        return m_Version;
+    }
+
+    public synchronized byte[] getKey( int nIndex )
+    {
+        CheckIndex( nIndex );
+        byte[] KeyValue = new byte[ m_KeyLengths[ nIndex ] ];
+        Read( m_Locations[ nIndex ], KeyValue );
+        return KeyValue;
+    }
+
+    public synchronized byte[] getTemplate( int nIndex )
+    {
+        CheckIndex( nIndex );
+        byte[] Template = new byte[ m_TemplateLengths[ nIndex ] ];
+        Read( m_Locations[ nIndex ] + m_KeyLengths[ nIndex ], Template );
+        return Template;
+    }
+
+    public synchronized int IndexOf( byte[] KeyValue )
+    {
+        if( KeyValue == null )
+            return -1;
+        return m_Index.IndexOf( KeyValue );
+    }
+
+    /**
+     * Copies all records onto the heap. Every call builds a new array.
+     */
+    public synchronized FtrIdentifyRecord[] toRecords()
+    {
+        FtrIdentifyRecord[] rgRecords = new FtrIdentifyRecord[ m_Size ];
+        for( int i = 0; i < m_Size; i++ )
+        {
+            FtrIdentifyRecord record = new FtrIdentifyRecord();
+            record.m_KeyValue = getKey( i );
+            record.m_Template = getTemplate( i );
+            rgRecords[i] = record;
+        }
+        return rgRecords;
+    }
+
+    /**
+     * Gets the size of the allocated memory chunks in bytes.
+     */
+    public synchronized long getOffHeapSize()
+    {
+        return (long)m_Chunks.size() * m_ChunkSize;
+    }
+
+    /**
+     * Moves the records to new chunks without the space of removed records.
+     * The record numbers do not change.
+     */
+    public synchronized void Compact()
+    {
+        List<ByteBuffer> OldChunks = new ArrayList<ByteBuffer>( m_Chunks );
+        m_Chunks.clear();
+        m_UsedBytes = 0;
+        m_FreeBytes = 0;
+        for( int i = 0; i < m_Size; i++ )
+        {
+            byte[] Record = new byte[ m_KeyLengths[i] + m_TemplateLengths[i] ];
+            Read( OldChunks, m_Locations[i], Record );
+            m_Locations[i] = Write( Record, null );
+        }
+    }
+
+    private void CheckRecord( byte[] KeyValue, byte[] Template )
+    {
+        if( KeyValue == null )
+            throw new NullPointerException( "A null reference parameter KeyValue is passed to the function." );
+        if( Template == null )
+            throw new NullPointerException( "A null reference parameter Template is passed to the function." );
+        if( (KeyValue.length == 0) || (KeyValue.length > MAX_KEY_LENGTH) )
+            throw new IllegalArgumentException( "The argument KeyValue has invalid length" );
+        if( KeyValue.length + Template.length > m_ChunkSize )
+            throw new IllegalArgumentException( "The record does not fit into a chunk" );
+    }
+
+    private void CheckIndex( int nIndex )
+    {
+        if( (nIndex < 0) || (nIndex >= m_Size) )
+            throw new IndexOutOfBoundsException( "Record " + nIndex + " does not exist" );
+    }
+
+    private void EnsureCapacity( int nCapacity )
+    {
+        if( nCapacity <= m_Locations.length )
+            return;
+        int nNewCapacity = Math.max( nCapacity, m_Locations.length * 2 );
+        m_Locations = Arrays.copyOf( m_Locations, nNewCapacity );
+        m_KeyLengths = Arrays.copyOf( m_KeyLengths, nNewCapacity );
+        m_TemplateLengths = Arrays.copyOf( m_TemplateLengths, nNewCapacity );
+    }
+
+    /**
+     * Appends data to the last chunk or to a new chunk.
+     *
+     * @return the location: chunk number in the high 32 bits, offset in the 
+     * low 32 bits.
+     */
+    private long Write( byte[] First, byte[] Second )
+    {
+        int nLength = First.length + ((Second != null) ? Second.length : 0);
+        ByteBuffer chunk = m_Chunks.isEmpty() ? null : m_Chunks.get( m_Chunks.size() - 1 );
+        if( (chunk == null) || (chunk.remaining() < nLength) )
+        {
+            chunk = ByteBuffer.allocateDirect( m_ChunkSize );
+            m_Chunks.add( chunk );
+        }
+        long nLocation = ((long)(m_Chunks.size() - 1) << 32) | chunk.position();
+        chunk.put( First );
+        if( Second != null )
+            chunk.put( Second );
+        m_UsedBytes += nLength;
+        return nLocation;
+    }
+
+    private void Read( long nLocation, byte[] Data )
+    {
+        Read( m_Chunks, nLocation, Data );
+    }
+
+    private static void Read( List<ByteBuffer> Chunks, long nLocation, byte[] Data )
+    {
+        ByteBuffer view = Chunks.get( (int)(nLocation >>> 32) ).duplicate();
+        ((Buffer)view).position( (int)nLocation );
+        view.get( Data );
+    }
+
+    private void Modified()
+    {
+        m_Version++;
+    }
+
+    private final int m_ChunkSize;
+
+    /**
+     * The memory chunks. Records are appended to the last chunk.
+     */
+    private final List<ByteBuffer> m_Chunks;
+
+    // The offset table: location, key length and template length by record 
+    // number.
+
+    private long[] m_Locations;
+    private byte[] m_KeyLengths;
+    private int[] m_TemplateLengths;
+
+    /**
+     * Number of records.
+     */
+    private int m_Size;
+
+    /**
+     * Number of bytes written to the chunks.
+     */
+    private long m_UsedBytes;
+
+    /**
+     * Number of bytes of removed records.
+     */
+    private long m_FreeBytes;
+
+    /**
+     * Record numbers by key.
+     */
+    private final FtrKeyIndex m_Index;
+
+    private long m_Version;
+}
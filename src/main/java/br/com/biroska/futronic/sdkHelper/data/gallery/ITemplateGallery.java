@@ -0,0 +1,65 @@
+package br.com.biroska.futronic.sdkHelper.data.gallery;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+
+/**
+ * The interface specify a set of source templates for the identification
+ * operation (a gallery).
+ *
+ * Every record has a unique key of 1 to 16 bytes and a template. The records
+ * are numbered from 0 to <code>getSize() - 1</code>; the numbers may change
+ * when the gallery is modified. The version changes on every modification,
+ * so a record number is valid only together with the version it was read at.
+ */
+public interface ITemplateGallery
+{
+    /**
+     * Gets the number of records.
+     */
+    public int getSize();
+
+    /**
+     * Gets the version of the gallery. It changes on every modification.
+     */
+    public long getVersion();
+
+    /**
+     * Gets the key of a record.
+     *
+     * @param nIndex the record number.
+     *
+     * @return a copy of the key.
+     *
+     * @exception IndexOutOfBoundsException the record does not exist.
+     */
+    public byte[] getKey( int nIndex );
+
+    /**
+     * Gets the template of a record.
+     *
+     * @param nIndex the record number.
+     *
+     * @return a copy of the template.
+     *
+     * @exception IndexOutOfBoundsException the record does not exist.
+     */
+    public byte[] getTemplate( int nIndex );
+
+    /**
+     * Gets the number of the record with the key.
+     *
+     * @param KeyValue the key.
+     *
+     * @return the record number or -1, if there is no such record.
+     */
+    public int IndexOf( byte[] KeyValue );
+
+    /**
+     * Gets the records in the form used by <code>IdentifyProcess</code>.
+     *
+     * Depending on the gallery, the array is a new copy on every call or is
+     * shared by all callers of the same version, so it must not be modified.
+     * It is not changed by later modifications of the gallery.
+     */
+    public FtrIdentifyRecord[] toRecords();
+}
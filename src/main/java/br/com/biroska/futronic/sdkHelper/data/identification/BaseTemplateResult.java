@@ -0,0 +1,34 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import br.com.biroska.futronic.sdkHelper.data.proccess.FtrOperationResult;
+
+/**
+ * The immutable result of the enrollment operation for the identification 
+ * purpose.
+ */
+public class BaseTemplateResult extends FtrOperationResult
+{
+    /**
+     * Creates a new instance of BaseTemplateResult.
+     *
+     * @param nRetCode the Futronic SDK return code.
+     * @param BaseTemplate the base template or null. It is copied.
+     * @param nFARN the configured FARN value.
+     */
+    public BaseTemplateResult( int nRetCode, byte[] BaseTemplate, int nFARN )
+    {
+        super( nRetCode, nFARN );
+        m_BaseTemplate = Copy( BaseTemplate );
+    }
+
+    /**
+     * Returns a copy of the base template or null if the operation is 
+     * unsuccessful.
+     */
+    public byte[] getBaseTemplate()
+    {
+        return Copy( m_BaseTemplate );
+    }
+
+    private final byte[] m_BaseTemplate;
+}
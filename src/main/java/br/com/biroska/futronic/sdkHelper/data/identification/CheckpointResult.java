@@ -0,0 +1,62 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+/**
+ * The immutable result of one person at the pipelined checkpoint: the 
+ * capture of the base template and its identification.
+ */
+public class CheckpointResult
+{
+    /**
+     * Creates a new instance of CheckpointResult.
+     *
+     * @param nTicket the ticket number.
+     * @param Capture the result of the capture.
+     * @param Identification the result of the identification or null, if the
+     * capture is unsuccessful.
+     */
+    public CheckpointResult( long nTicket, BaseTemplateResult Capture, IdentificationResult Identification )
+    {
+        m_Ticket = nTicket;
+        m_Capture = Capture;
+        m_Identification = Identification;
+    }
+
+    /**
+     * Returns the ticket number.
+     */
+    public long getTicket()
+    {
+        return m_Ticket;
+    }
+
+    /**
+     * Returns the result of the capture.
+     */
+    public BaseTemplateResult getCapture()
+    {
+        return m_Capture;
+    }
+
+    /**
+     * Returns the result of the identification or null, if the capture is 
+     * unsuccessful.
+     */
+    public IdentificationResult getIdentification()
+    {
+        return m_Identification;
+    }
+
+    /**
+     * Returns <code>true</code> if a matching record is detected.
+     */
+    public boolean isMatched()
+    {
+        return (m_Identification != null) && m_Identification.isMatched();
+    }
+
+    private final long m_Ticket;
+
+    private final BaseTemplateResult m_Capture;
+
+    private final IdentificationResult m_Identification;
+}
@@ -0,0 +1,49 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The ticket of one person at the pipelined checkpoint. It correlates the 
+ * capture with the identification which completes later.
+ */
+public class CheckpointTicket
+{
+    CheckpointTicket( long nNumber, CompletableFuture<BaseTemplateResult> Capture, CompletableFuture<CheckpointResult> Result )
+    {
+        m_Number = nNumber;
+        m_Capture = Capture;
+        m_Result = Result;
+    }
+
+    /**
+     * Returns the ticket number. Numbers increase by one for every admitted
+     * person.
+     */
+    public long getNumber()
+    {
+        return m_Number;
+    }
+
+    /**
+     * Returns the future completed when the capture is completed. After that
+     * the next person may be admitted.
+     */
+    public CompletableFuture<BaseTemplateResult> getCapture()
+    {
+        return m_Capture;
+    }
+
+    /**
+     * Returns the future completed when the identification is completed.
+     */
+    public CompletableFuture<CheckpointResult> getResult()
+    {
+        return m_Result;
+    }
+
+    private final long m_Number;
+
+    private final CompletableFuture<BaseTemplateResult> m_Capture;
+
+    private final CompletableFuture<CheckpointResult> m_Result;
+}
@@ -0,0 +1,38 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+/**
+ * The class contains the result of the cascaded identification.
+ */
+public class FtrCascadeResult extends FtrIdentifyResult
+{
+    /** Creates a new instance of FtrCascadeResult */
+    public FtrCascadeResult()
+    {
+        m_ShortlistSize = 0;
+        m_bShortlistFull = false;
+        m_PrefilterTime = 0;
+        m_RefineTime = 0;
+    }
+
+    /**
+     * Number of records selected by stage 1.
+     */
+    public int m_ShortlistSize;
+
+    /**
+     * <code>true</code> if stage 1 stopped because the shortlist was full. 
+     * The records after the last shortlisted one were not checked, so a 
+     * matching record may have been missed.
+     */
+    public boolean m_bShortlistFull;
+
+    /**
+     * Time of stage 1 in nanoseconds.
+     */
+    public long m_PrefilterTime;
+
+    /**
+     * Time of stage 2 in nanoseconds.
+     */
+    public long m_RefineTime;
+}
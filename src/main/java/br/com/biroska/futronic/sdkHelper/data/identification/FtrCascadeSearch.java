@@ -0,0 +1,99 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.enums.OperationKind;
+import br.com.biroska.futronic.sdkHelper.enums.OperationPhase;
+
+/**
+ * The two stages of the cascaded identification (see 
+ * <code>FutronicIdentification.CascadedIdentification</code>).
+ *
+ * Stage 1 sweeps the whole set in fast mode with the shortlist FARN value 
+ * and collects the matching records into the shortlist. Stage 2 matches the
+ * shortlist with the settings of the operation. Both stages match with the
+ * operation: the stage 1 settings are passed with each match, so no other
+ * SDK object is created. The times of the stages are recorded as the 
+ * <code>prefilter</code> and <code>refine</code> phases.
+ */
+final class FtrCascadeSearch
+{
+    /**
+     * Creates a new instance of FtrCascadeSearch.
+     *
+     * @param Operation the identification operation.
+     * @param nShortlistFARN the FARN value of stage 1.
+     * @param nMaxShortlist the maximal shortlist size, at least 1.
+     */
+    FtrCascadeSearch( FutronicIdentification Operation, int nShortlistFARN, int nMaxShortlist )
+    {
+        m_Operation = Operation;
+        m_ShortlistFARN = nShortlistFARN;
+        m_MaxShortlist = nMaxShortlist;
+    }
+
+    /**
+     * Searches a set of source templates which is not empty.
+     *
+     * @param rgTemplates the set of source templates.
+     * @param Result receives the index of the matched record and the stage
+     * statistics. The caller clears it.
+     *
+     * @return the Futronic SDK return code.
+     */
+    int Search( FtrIdentifyRecord[] rgTemplates, FtrCascadeResult Result )
+    {
+        int[] rgShortlist = new int[ Math.min( m_MaxShortlist, rgTemplates.length ) ];
+        long nStart = System.nanoTime();
+
+        // stage 1: fast and permissive sweep of the whole set
+        int nResult = FutronicSdkBase.RETCODE_OK;
+        FtrIdentifyResult Hit = new FtrIdentifyResult();
+        int nFrom = 0;
+        while( nFrom < rgTemplates.length )
+        {
+            nResult = m_Operation.MatchFrom( rgTemplates, nFrom, m_ShortlistFARN, true, Hit );
+            if( (nResult != FutronicSdkBase.RETCODE_OK) || (Hit.m_Index < 0) )
+                break;
+            if( Result.m_ShortlistSize == rgShortlist.length )
+            {
+                Result.m_bShortlistFull = true;
+                break;
+            }
+            rgShortlist[ Result.m_ShortlistSize++ ] = Hit.m_Index;
+            nFrom = Hit.m_Index + 1;
+        }
+        long nPrefilterEnd = System.nanoTime();
+        Result.m_PrefilterTime = nPrefilterEnd - nStart;
+        m_Operation.RecordPhase( OperationKind.cascaded_identification, OperationPhase.prefilter, nResult, Result.m_PrefilterTime );
+
+        // stage 2: strict match of the shortlist
+        if( (nResult != FutronicSdkBase.RETCODE_OK) || (Result.m_ShortlistSize == 0) )
+            return nResult;
+
+        FtrIdentifyRecord[] rgCandidates = new FtrIdentifyRecord[ Result.m_ShortlistSize ];
+        for( int i = 0; i < rgCandidates.length; i++ )
+            rgCandidates[i] = rgTemplates[ rgShortlist[i] ];
+        nResult = FutronicSdkBase.RETCODE_INTERNAL_ERROR;
+        try
+        {
+            nResult = m_Operation.Match( rgCandidates, Hit );
+            if( (nResult == FutronicSdkBase.RETCODE_OK) && (Hit.m_Index >= 0) )
+            {
+                Result.m_Index = rgShortlist[ Hit.m_Index ];
+                Result.m_FARNValue = Hit.m_FARNValue;
+            }
+        }
+        finally
+        {
+            Result.m_RefineTime = System.nanoTime() - nPrefilterEnd;
+            m_Operation.RecordPhase( OperationKind.cascaded_identification, OperationPhase.refine, nResult, Result.m_RefineTime );
+        }
+        return nResult;
+    }
+
+    private final FutronicIdentification m_Operation;
+
+    private final int m_ShortlistFARN;
+
+    private final int m_MaxShortlist;
+}
@@ -0,0 +1,396 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import br.com.biroska.futronic.sdkHelper.data.gallery.ITemplateGallery;
+
+/**
+ * A bounded cache of identification results, for repeated scans of the same
+ * finger within seconds (see <code>FutronicIdentification.setResultCache</code>).
+ *
+ * An entry is found by a 64 bit hash of the base template, the gallery (by
+ * identity), the gallery version, the FARN value and the fast mode. On a hit
+ * the whole template is compared, so a hash collision is a miss. Results
+ * without a match are cached too, unless the negative caching is switched
+ * off. Only successful results are cached.
+ *
+ * An entry expires after the time to live; the least recently used entry is
+ * evicted when the cache is full. When a newer version of a gallery is seen,
+ * the entries of its older versions are dropped. The cache holds the
+ * galleries through weak references, so it does not keep them alive. For a
+ * <code>FtrLiveGallery</code> the cache works with its snapshots; the same
+ * snapshot is used until the gallery changes.
+ *
+ * The cache does not know the matcher (<code>setMatcher</code>): objects with
+ * different matchers must not share a cache. The class is thread-safe and
+ * may be shared by several identification objects.
+ */
+public class FtrIdentificationCache
+{
+    /**
+     * The default time to live of an entry in milliseconds.
+     */
+    public static final long DEFAULT_TTL = 5000;
+
+    /**
+     * Creates a new instance of FtrIdentificationCache with the default time
+     * to live.
+     *
+     * @param nMaxSize maximum number of entries.
+     *
+     * @exception IllegalArgumentException nMaxSize is less than 1.
+     */
+    public FtrIdentificationCache( int nMaxSize )
+        throws IllegalArgumentException
+    {
+        this( nMaxSize, DEFAULT_TTL );
+    }
+
+    /**
+     * Creates a new instance of FtrIdentificationCache.
+     *
+     * @param nMaxSize maximum number of entries.
+     * @param nTtl time to live of an entry in milliseconds.
+     *
+     * @exception IllegalArgumentException nMaxSize or nTtl is less than 1.
+     */
+    @SuppressWarnings("serial")
+    public FtrIdentificationCache( final int nMaxSize, long nTtl )
+        throws IllegalArgumentException
+    {
+        if( nMaxSize < 1 )
+            throw new IllegalArgumentException( "The argument nMaxSize has invalid value" );
+        if( nTtl < 1 )
+            throw new IllegalArgumentException( "The argument nTtl has invalid value" );
+        m_MaxSize = nMaxSize;
+        m_Ttl = nTtl;
+        m_bNegativeCaching = true;
+        m_Versions = new WeakHashMap<ITemplateGallery, Long>();
+        m_Entries = new LinkedHashMap<Key, CachedResult>( 16, 0.75f, true )
+        {
+            protected boolean removeEldestEntry( Map.Entry<Key, CachedResult> Eldest )
+            {
+                if( size() <= nMaxSize )
+                    return false;
+                m_Evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Removes the entries of a gallery.
+     *
+     * @param Gallery the gallery.
+     */
+    public synchronized void Invalidate( ITemplateGallery Gallery )
+    {
+        Iterator<Key> keys = m_Entries.keySet().iterator();
+        while( keys.hasNext() )
+        {
+            if( keys.next().m_Gallery.get() == Gallery )
+            {
+                keys.remove();
+                m_Invalidations++;
+            }
+        }
+        m_Versions.remove( Gallery );
+    }
+
+    /**
+     * Removes all entries. The counters are kept.
+     */
+    public synchronized void Clear()
+    {
+        m_Entries.clear();
+        m_Versions.clear();
+    }
+
+    /**
+     * Returns <code>true</code> if the results without a match are cached.
+     */
+    public synchronized boolean isNegativeCaching()
+    {
+        return m_bNegativeCaching;
+    }
+
+    /**
+     * Sets if the results without a match are cached. The default is
+     * <code>true</code>.
+     */
+    public synchronized void setNegativeCaching( boolean bNegativeCaching )
+    {
+        m_bNegativeCaching = bNegativeCaching;
+    }
+
+    /**
+     * Gets the maximum number of entries.
+     */
+    public int getMaxSize()
+    {
+        return m_MaxSize;
+    }
+
+    /**
+     * Gets the time to live of an entry in milliseconds.
+     */
+    public long getTtl()
+    {
+        return m_Ttl;
+    }
+
+    /**
+     * Gets the number of entries, the expired ones included.
+     */
+    public synchronized int getSize()
+    {
+        return m_Entries.size();
+    }
+
+    /**
+     * Gets the number of lookups answered by the cache.
+     */
+    public synchronized long getHits()
+    {
+        return m_Hits;
+    }
+
+    /**
+     * Gets the number of lookups not answered by the cache.
+     */
+    public synchronized long getMisses()
+    {
+        return m_Misses;
+    }
+
+    /**
+     * Gets the number of entries evicted because the cache was full.
+     */
+    public synchronized long getEvictions()
+    {
+        return m_Evictions;
+    }
+
+    /**
+     * Gets the number of entries found expired.
+     */
+    public synchronized long getExpirations()
+    {
+        return m_Expirations;
+    }
+
+    /**
+     * Gets the number of entries dropped because the gallery changed or was
+     * invalidated.
+     */
+    public synchronized long getInvalidations()
+    {
+        return m_Invalidations;
+    }
+
+    /**
+     * Returns the share of lookups answered by the cache, between 0 and 1.
+     */
+    public synchronized double getHitRate()
+    {
+        long nTotal = m_Hits + m_Misses;
+        return (nTotal == 0) ? 0 : (double)m_Hits / nTotal;
+    }
+
+    public synchronized String toString()
+    {
+        return String.format( "size=%d hits=%d misses=%d evictions=%d expirations=%d invalidations=%d hit=%.1f%%",
+                              m_Entries.size(), m_Hits, m_Misses, m_Evictions, m_Expirations,
+                              m_Invalidations, getHitRate() * 100 );
+    }
+
+    /**
+     * Computes the 64 bit hash of a template, eight bytes at a time.
+     */
+    public static long Hash( byte[] Template )
+    {
+        ByteBuffer Buffer = ByteBuffer.wrap( Template );
+        long h = 0xCBF29CE484222325L ^ Template.length;
+        int i = 0;
+        for( ; i + 8 <= Template.length; i += 8 )
+            h = Mix( h ^ Buffer.getLong( i ) );
+        long nTail = 0;
+        for( ; i < Template.length; i++ )
+            nTail = (nTail << 8) | (Template[i] & 0xFF);
+        h = Mix( h ^ nTail );
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Finds the result for a base template.
+     *
+     * @return the entry or null, if there is no such entry or it expired.
+     */
+    synchronized CachedResult Lookup( byte[] Probe, ITemplateGallery Gallery, long nVersion, int nFARN, boolean bFastMode )
+    {
+        Key key = new Key( Hash( Probe ), Gallery, nVersion, nFARN, bFastMode );
+        CachedResult entry = m_Entries.get( key );
+        if( entry != null )
+        {
+            if( entry.m_Expires - System.nanoTime() <= 0 )
+            {
+                m_Entries.remove( key );
+                m_Expirations++;
+                entry = null;
+            }
+            else if( !Arrays.equals( entry.m_Probe, Probe ) )
+            {
+                entry = null;
+            }
+        }
+        if( entry != null )
+            m_Hits++;
+        else
+            m_Misses++;
+        return entry;
+    }
+
+    /**
+     * Stores a successful result for a base template.
+     *
+     * @param nIndex the index of the matched record or -1.
+     * @param nFARNValue the achieved FARN value of the matched record.
+     * @param KeyValue the key of the matched record or null. It is not copied.
+     */
+    synchronized void Store( byte[] Probe, ITemplateGallery Gallery, long nVersion, int nFARN, boolean bFastMode,
+                             int nIndex, int nFARNValue, byte[] KeyValue )
+    {
+        if( (nIndex < 0) && !m_bNegativeCaching )
+            return;
+
+        Long nLatest = m_Versions.get( Gallery );
+        if( (nLatest != null) && (nLatest.longValue() > nVersion) )
+            return;
+        if( (nLatest != null) && (nLatest.longValue() < nVersion) )
+            DropVersionsBefore( Gallery, nVersion );
+        m_Versions.put( Gallery, Long.valueOf( nVersion ) );
+
+        long nExpires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( m_Ttl );
+        m_Entries.put( new Key( Hash( Probe ), Gallery, nVersion, nFARN, bFastMode ),
+                       new CachedResult( Probe.clone(), nIndex, nFARNValue, KeyValue, nExpires ) );
+    }
+
+    /**
+     * Removes the entries of the older versions of a gallery.
+     */
+    private void DropVersionsBefore( ITemplateGallery Gallery, long nVersion )
+    {
+        Iterator<Key> keys = m_Entries.keySet().iterator();
+        while( keys.hasNext() )
+        {
+            Key key = keys.next();
+            if( (key.m_Gallery.get() == Gallery) && (key.m_Version < nVersion) )
+            {
+                keys.remove();
+                m_Invalidations++;
+            }
+        }
+    }
+
+    private static long Mix( long h )
+    {
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * The key of an entry. The gallery is compared by identity.
+     */
+    private static final class Key
+    {
+        Key( long nHash, ITemplateGallery Gallery, long nVersion, int nFARN, boolean bFastMode )
+        {
+            m_Hash = nHash;
+            m_Gallery = new WeakReference<ITemplateGallery>( Gallery );
+            m_GalleryHash = System.identityHashCode( Gallery );
+            m_Version = nVersion;
+            m_FARN = nFARN;
+            m_bFastMode = bFastMode;
+        }
+
+        public int hashCode()
+        {
+            long h = m_Hash ^ (31L * m_GalleryHash) ^ (m_Version * 0x9E3779B97F4A7C15L) ^ m_FARN;
+            return (int)(h ^ (h >>> 32)) ^ (m_bFastMode ? 1 : 0);
+        }
+
+        public boolean equals( Object Other )
+        {
+            if( !(Other instanceof Key) )
+                return false;
+            Key key = (Key)Other;
+            Object Gallery = m_Gallery.get();
+            return (m_Hash == key.m_Hash) && (m_Version == key.m_Version) && (m_FARN == key.m_FARN) &&
+                   (m_bFastMode == key.m_bFastMode) && (Gallery != null) && (Gallery == key.m_Gallery.get());
+        }
+
+        final long m_Hash;
+        final WeakReference<ITemplateGallery> m_Gallery;
+        final int m_GalleryHash;
+        final long m_Version;
+        final int m_FARN;
+        final boolean m_bFastMode;
+    }
+
+    /**
+     * A cached result.
+     */
+    static final class CachedResult
+    {
+        CachedResult( byte[] Probe, int nIndex, int nFARNValue, byte[] KeyValue, long nExpires )
+        {
+            m_Probe = Probe;
+            m_Index = nIndex;
+            m_FARNValue = nFARNValue;
+            m_KeyValue = KeyValue;
+            m_Expires = nExpires;
+        }
+
+        /**
+         * A copy of the base template, compared on a hit.
+         */
+        final byte[] m_Probe;
+        final int m_Index;
+        final int m_FARNValue;
+        final byte[] m_KeyValue;
+
+        /**
+         * The expiry time, <code>System.nanoTime</code> based.
+         */
+        final long m_Expires;
+    }
+
+    private final int m_MaxSize;
+
+    private final long m_Ttl;
+
+    private boolean m_bNegativeCaching;
+
+    /**
+     * The entries in the access order, the least recently used first.
+     */
+    private final LinkedHashMap<Key, CachedResult> m_Entries;
+
+    /**
+     * The latest version stored by gallery.
+     */
+    private final WeakHashMap<ITemplateGallery, Long> m_Versions;
+
+    private long m_Hits;
+    private long m_Misses;
+    private long m_Evictions;
+    private long m_Expirations;
+    private long m_Invalidations;
+}
@@ -0,0 +1,71 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+/**
+ * The class contains the candidates of the top-K identification, ranked by
+ * the achieved FARN value (the best first).
+ */
+public class FtrIdentifyCandidates
+{
+    /** Creates a new instance of FtrIdentifyCandidates */
+    public FtrIdentifyCandidates()
+    {
+        m_Count = 0;
+        m_Indexes = new int[ 0 ];
+        m_FARNValues = new int[ 0 ];
+    }
+
+    /**
+     * Removes all candidates and prepares the arrays for at most nMaxCount
+     * candidates.
+     */
+    void Clear( int nMaxCount )
+    {
+        m_Count = 0;
+        if( m_Indexes.length != nMaxCount )
+        {
+            m_Indexes = new int[ nMaxCount ];
+            m_FARNValues = new int[ nMaxCount ];
+        }
+    }
+
+    /**
+     * Inserts a candidate by rank. A candidate with the same FARN value as a
+     * kept one is ranked after it. If the arrays are full, the worst 
+     * candidate is dropped.
+     *
+     * @return <code>true</code> if the candidate is kept.
+     */
+    boolean Insert( int nIndex, int nFARNValue )
+    {
+        int nPosition = m_Count;
+        while( (nPosition > 0) && (m_FARNValues[ nPosition - 1 ] < nFARNValue) )
+            nPosition--;
+        if( nPosition >= m_Indexes.length )
+            return false;
+
+        int nMove = Math.min( m_Count, m_Indexes.length - 1 ) - nPosition;
+        System.arraycopy( m_Indexes, nPosition, m_Indexes, nPosition + 1, nMove );
+        System.arraycopy( m_FARNValues, nPosition, m_FARNValues, nPosition + 1, nMove );
+        m_Indexes[ nPosition ] = nIndex;
+        m_FARNValues[ nPosition ] = nFARNValue;
+        m_Count = Math.min( m_Count + 1, m_Indexes.length );
+        return true;
+    }
+
+    /**
+     * Number of candidates.
+     */
+    public int m_Count;
+
+    /**
+     * Indexes of the candidate records, the first <code>m_Count</code> 
+     * elements are valid.
+     */
+    public int[] m_Indexes;
+
+    /**
+     * The FARN values achieved by the candidates (see 
+     * <code>FtrIdentifyResult.m_FARNValue</code>).
+     */
+    public int[] m_FARNValues;
+}
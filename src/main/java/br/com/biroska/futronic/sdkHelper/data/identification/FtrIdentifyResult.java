@@ -10,6 +10,7 @@ public class FtrIdentifyResult
     public FtrIdentifyResult()
     {
         m_Index = -1;
+        m_FARNValue = -1;
     }
 
     /**
@@ -18,4 +19,12 @@ public class FtrIdentifyResult
      * no matching source templates are detected.
      */
     public int m_Index;
+
+    /**
+     * The FARN value achieved by the matched record, or -1 if no record is 
+     * matched or the matcher does not report it. The native SDK reports only
+     * that the record matches, so the native backend sets the configured 
+     * FARN value, which is a lower bound of the achieved value.
+     */
+    public int m_FARNValue;
 }
@@ -0,0 +1,126 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.data.gallery.ITemplateGallery;
+
+/**
+ * The identification against several galleries (see 
+ * <code>FutronicIdentification.MultiIdentification</code>).
+ *
+ * Every gallery is searched in one piece by one task of a 
+ * <code>FtrTaskGroup</code>: the tasks run on the executor, and the calling
+ * thread runs the tasks which no worker has started yet. So the search does
+ * not depend on a free worker of the executor, also if the calling thread is
+ * a worker of the same executor (<code>MultiIdentificationAsync</code> on the
+ * common pool). If a gallery named in the short circuit set has a match, its
+ * task cancels the tasks of the other galleries. The search returns only when
+ * no gallery task runs any more, so no task uses the operation after it.
+ */
+final class FtrMultiSearch
+{
+    /**
+     * Creates a new instance of FtrMultiSearch.
+     *
+     * @param Operation the identification operation.
+     * @param ExecutorService executor that runs the gallery tasks. If it is 
+     * NULL, the common <code>ForkJoinPool</code> is used.
+     */
+    FtrMultiSearch( FutronicIdentification Operation, Executor ExecutorService )
+    {
+        m_Operation = Operation;
+        m_Executor = ExecutorService;
+    }
+
+    /**
+     * Searches the galleries.
+     *
+     * @param Galleries the galleries by name.
+     * @param ShortCircuit the names of the priority galleries or null.
+     *
+     * @return the results by gallery name.
+     */
+    MultiIdentificationResult Search( Map<String, ? extends ITemplateGallery> Galleries, final Set<String> ShortCircuit )
+    {
+        final List<String> Names = new ArrayList<String>( Galleries.keySet() );
+        final List<FtrIdentifyRecord[]> Records = new ArrayList<FtrIdentifyRecord[]>( Names.size() );
+        for( String szName : Names )
+            Records.add( Galleries.get( szName ).toRecords() );
+
+        final FtrIdentifyResult[] rgHits = new FtrIdentifyResult[ Names.size() ];
+        final int[] rgRetCodes = new int[ Names.size() ];
+        final AtomicInteger ShortCircuitedBy = new AtomicInteger( -1 );
+        final Runnable[] rgTasks = new Runnable[ Names.size() ];
+        final FtrTaskGroup Group = new FtrTaskGroup( m_Executor, rgTasks );
+
+        for( int i = 0; i < Names.size(); i++ )
+        {
+            final int nGallery = i;
+            rgHits[i] = new FtrIdentifyResult();
+            rgRetCodes[i] = FutronicSdkBase.RETCODE_CANCELED_BY_USER;
+            rgTasks[i] = new Runnable()
+            {
+                public void run()
+                {
+                    FtrIdentifyRecord[] rgTemplates = Records.get( nGallery );
+                    rgRetCodes[ nGallery ] = m_Operation.MatchRecords( rgTemplates, 0, rgTemplates.length, rgHits[ nGallery ] );
+
+                    if( (ShortCircuit != null) && (rgRetCodes[ nGallery ] == FutronicSdkBase.RETCODE_OK) && (rgHits[ nGallery ].m_Index >= 0)
+                        && ShortCircuit.contains( Names.get( nGallery ) ) && ShortCircuitedBy.compareAndSet( -1, nGallery ) )
+                    {
+                        for( int j = 0; j < rgTasks.length; j++ )
+                        {
+                            if( j != nGallery )
+                                Group.Cancel( j );
+                        }
+                    }
+                }
+            };
+        }
+
+        int nResult = FutronicSdkBase.RETCODE_OK;
+        Group.Start();
+        try
+        {
+            int nGallery;
+            while( (nGallery = Group.Next()) >= 0 )
+            {
+                int nRetCode = Group.isFailed( nGallery ) ? FutronicSdkBase.RETCODE_INTERNAL_ERROR : rgRetCodes[ nGallery ];
+                if( (nRetCode != FutronicSdkBase.RETCODE_OK) && (nResult == FutronicSdkBase.RETCODE_OK) )
+                    nResult = nRetCode;
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            nResult = FutronicSdkBase.RETCODE_CANCELED_BY_USER;
+        }
+        finally
+        {
+            Group.Stop();
+        }
+
+        Map<String, IdentificationResult> Results = new LinkedHashMap<String, IdentificationResult>();
+        for( int i = 0; i < Names.size(); i++ )
+        {
+            // a gallery stopped by the short circuit keeps the "canceled" code
+            int nRetCode = Group.isDone( i ) ? rgRetCodes[i] : FutronicSdkBase.RETCODE_CANCELED_BY_USER;
+            int nIndex = (nRetCode == FutronicSdkBase.RETCODE_OK) ? rgHits[i].m_Index : -1;
+            Results.put( Names.get( i ), m_Operation.ToResult( nRetCode, Records.get( i ), nIndex ) );
+        }
+        int nShortCircuitedBy = ShortCircuitedBy.get();
+        String szShortCircuitedBy = (nShortCircuitedBy >= 0) ? Names.get( nShortCircuitedBy ) : null;
+        return new MultiIdentificationResult( nResult, Results, szShortCircuitedBy, m_Operation.getFARN() );
+    }
+
+    private final FutronicIdentification m_Operation;
+
+    private final Executor m_Executor;
+}
@@ -0,0 +1,275 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+
+/**
+ * Splits a set of source templates into shards and matches the shards in
+ * parallel.
+ *
+ * The result is the same as the result of the sequential identification: the
+ * index of the first matched record. When a shard finds a match, all shards
+ * after it are cancelled; shards before it are still awaited, because one of
+ * them may contain an earlier match.
+ *
+ * The calling thread does not only wait for the shards: it runs the shards
+ * which no worker has started yet (see <code>FtrTaskGroup</code>). So the
+ * search does not deadlock when it runs on a worker of its own executor, for
+ * example in <code>IdentificationAsync</code> with the executor of the
+ * operation, and it waits on a fork/join pool through
+ * <code>ForkJoinPool.managedBlock</code>. It returns only when no shard runs
+ * any more, also if a later shard was cancelled after a match.
+ *
+ * The shards wait for each other if the matcher runs one match at a time
+ * (for example the native backend, see <code>FtrSdkLocks.getMatchConcurrency</code>):
+ * such a matcher should not be sharded.
+ */
+public class FtrShardedIdentify
+{
+    /**
+     * Creates a new instance of FtrShardedIdentify.
+     *
+     * @param Matcher the matcher used for every shard (can not be NULL).
+     * @param ExecutorService executor that runs the shards. If it is NULL, the
+     * common <code>ForkJoinPool</code> is used.
+     * @param nShardSize maximum number of records in one shard.
+     *
+     * @exception NullPointerException a null reference parameter Matcher is
+     * passed to the constructor.
+     * @exception IllegalArgumentException the argument nShardSize is less than 1.
+     */
+    public FtrShardedIdentify( IIdentifyMatcher Matcher, Executor ExecutorService, int nShardSize )
+        throws NullPointerException, IllegalArgumentException
+    {
+        if( Matcher == null )
+            throw new NullPointerException( "A null reference parameter Matcher is passed to the constructor." );
+        if( nShardSize < 1 )
+            throw new IllegalArgumentException( "The argument nShardSize has invalid value" );
+        m_Matcher = Matcher;
+        m_Executor = (ExecutorService != null) ? ExecutorService : ForkJoinPool.commonPool();
+        m_ShardSize = nShardSize;
+    }
+
+    /**
+     * Creates a new instance of FtrShardedIdentify for the range matchers
+     * (see <code>Identify( int, RangeMatcher, FtrIdentifyResult )</code>).
+     *
+     * @param ExecutorService executor that runs the shards. If it is NULL, the
+     * common <code>ForkJoinPool</code> is used.
+     * @param nShardSize maximum number of records in one shard.
+     *
+     * @exception IllegalArgumentException the argument nShardSize is less than 1.
+     */
+    FtrShardedIdentify( Executor ExecutorService, int nShardSize )
+        throws IllegalArgumentException
+    {
+        if( nShardSize < 1 )
+            throw new IllegalArgumentException( "The argument nShardSize has invalid value" );
+        m_Matcher = null;
+        m_Executor = (ExecutorService != null) ? ExecutorService : ForkJoinPool.commonPool();
+        m_ShardSize = nShardSize;
+    }
+
+    /**
+     * Compares the base template against a set of source templates shard by shard.
+     *
+     * @param BaseTemplate the base template.
+     * @param rgTemplates the set of source templates.
+     * @param Result If the function succeeds, field <code>m_Index</code> contains an
+     * index of the first matched record in <code>rgTemplates</code> or -1, if
+     * no matching source templates are detected.
+     *
+     * @return the Futronic SDK return code. If a shard fails, the return code of
+     * this shard is returned and the other shards are cancelled.
+     */
+    public int Identify( final byte[] BaseTemplate, final FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+    {
+        Result.m_Index = -1;
+        Result.m_FARNValue = -1;
+
+        if( rgTemplates.length <= m_ShardSize )
+            return m_Matcher.Identify( BaseTemplate, rgTemplates, Result );
+
+        return Identify( rgTemplates.length, new RangeMatcher()
+        {
+            public int Identify( int nFrom, int nCount, FtrIdentifyResult Result )
+            {
+                return m_Matcher.Identify( BaseTemplate, Arrays.copyOfRange( rgTemplates, nFrom, nFrom + nCount ), Result );
+            }
+        }, Result );
+    }
+
+    /**
+     * Matches a set of records shard by shard with a range matcher.
+     *
+     * @param nTotal the number of records.
+     * @param Matcher the matcher of one range.
+     * @param Result If the function succeeds, field <code>m_Index</code> contains an
+     * index of the first matched record or -1, if no matching source templates
+     * are detected.
+     *
+     * @return the Futronic SDK return code. If a shard fails, the return code of
+     * this shard is returned and the other shards are cancelled.
+     */
+    int Identify( int nTotal, RangeMatcher Matcher, FtrIdentifyResult Result )
+    {
+        Result.m_Index = -1;
+        Result.m_FARNValue = -1;
+
+        int nShards = (nTotal + m_ShardSize - 1) / m_ShardSize;
+        if( nShards <= 1 )
+            return Matcher.Identify( 0, nTotal, Result );
+
+        Shard[] rgShards = new Shard[ nShards ];
+        FtrTaskGroup Group = new FtrTaskGroup( m_Executor, rgShards );
+        for( int i = 0; i < nShards; i++ )
+        {
+            int nFrom = i * m_ShardSize;
+            int nTo = Math.min( nFrom + m_ShardSize, nTotal );
+            rgShards[i] = new Shard( i, Matcher, nFrom, nTo - nFrom, Group );
+        }
+        Group.Start();
+
+        int nResult = FutronicSdkBase.RETCODE_OK;
+        int nMatchedShard = nShards;
+        int nMatchedIndex = -1;
+        int nMatchedFARNValue = -1;
+        boolean[] rgDone = new boolean[ nShards ];
+
+        try
+        {
+            int nNumber;
+            while( (nNumber = Group.Next()) >= 0 )
+            {
+                Shard shard = rgShards[ nNumber ];
+                rgDone[ nNumber ] = true;
+
+                // shards after the matched one do not change the result
+                if( shard.m_Number > nMatchedShard )
+                    continue;
+
+                if( Group.isFailed( nNumber ) )
+                {
+                    nResult = FutronicSdkBase.RETCODE_INTERNAL_ERROR;
+                    break;
+                }
+
+                if( shard.m_RetCode != FutronicSdkBase.RETCODE_OK )
+                {
+                    nResult = shard.m_RetCode;
+                    break;
+                }
+
+                if( (shard.m_Result.m_Index >= 0) && (shard.m_Number < nMatchedShard) )
+                {
+                    nMatchedShard = shard.m_Number;
+                    nMatchedIndex = shard.m_Number * m_ShardSize + shard.m_Result.m_Index;
+                    nMatchedFARNValue = shard.m_Result.m_FARNValue;
+                }
+
+                if( AllDoneBefore( rgDone, nMatchedShard ) )
+                    break;
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            nResult = FutronicSdkBase.RETCODE_CANCELED_BY_USER;
+        }
+        finally
+        {
+            Group.Stop();
+        }
+
+        if( nResult == FutronicSdkBase.RETCODE_OK )
+        {
+            Result.m_Index = nMatchedIndex;
+            Result.m_FARNValue = nMatchedFARNValue;
+        }
+
+        return nResult;
+    }
+
+    /**
+     * Returns <code>true</code> if all shards before nShard are finished.
+     */
+    private static boolean AllDoneBefore( boolean[] rgDone, int nShard )
+    {
+        for( int i = 0; i < nShard && i < rgDone.length; i++ )
+        {
+            if( !rgDone[i] )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * One part of the source templates with its own result. A shard with a
+     * match cancels the shards after it at once, also if the calling thread
+     * is busy with another shard.
+     */
+    private static class Shard implements Runnable
+    {
+        Shard( int nNumber, RangeMatcher Matcher, int nFrom, int nCount, FtrTaskGroup Group )
+        {
+            m_Number = nNumber;
+            m_Matcher = Matcher;
+            m_From = nFrom;
+            m_Count = nCount;
+            m_Group = Group;
+            m_Result = new FtrIdentifyResult();
+            m_RetCode = FutronicSdkBase.RETCODE_INTERNAL_ERROR;
+        }
+
+        public void run()
+        {
+            m_RetCode = m_Matcher.Identify( m_From, m_Count, m_Result );
+            if( (m_RetCode == FutronicSdkBase.RETCODE_OK) && (m_Result.m_Index >= 0) )
+                m_Group.CancelAfter( m_Number );
+        }
+
+        final int m_Number;
+        final RangeMatcher m_Matcher;
+        final int m_From;
+        final int m_Count;
+        final FtrTaskGroup m_Group;
+        final FtrIdentifyResult m_Result;
+        int m_RetCode;
+    }
+
+    /**
+     * Matches a range of a set of records.
+     */
+    interface RangeMatcher
+    {
+        /**
+         * Compares the base template against a range of records.
+         *
+         * @param nFrom the number of the first record of the range.
+         * @param nCount the number of records in the range.
+         * @param Result If the function succeeds, field <code>m_Index</code>
+         * contains an index of the matched record relative to nFrom or -1.
+         *
+         * @return the Futronic SDK return code.
+         */
+        int Identify( int nFrom, int nCount, FtrIdentifyResult Result );
+    }
+
+    /**
+     * The matcher used for every shard, or null for the range matchers.
+     */
+    private final IIdentifyMatcher m_Matcher;
+
+    /**
+     * The executor that runs the shards.
+     */
+    private final Executor m_Executor;
+
+    /**
+     * Maximum number of records in one shard.
+     */
+    private final int m_ShardSize;
+}
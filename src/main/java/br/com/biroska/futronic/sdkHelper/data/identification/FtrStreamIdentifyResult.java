@@ -0,0 +1,39 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+/**
+ * The class contains the result of the streaming identification.
+ */
+public class FtrStreamIdentifyResult
+{
+    /** Creates a new instance of FtrStreamIdentifyResult */
+    public FtrStreamIdentifyResult()
+    {
+        m_Index = -1;
+        m_KeyValue = null;
+        m_FARNValue = -1;
+        m_RecordCount = 0;
+    }
+
+    /**
+     * If the identification succeeds, field contains the global index of the
+     * matched record in the stream (the first record has an index 0) or -1,
+     * if no matching source templates are detected.
+     */
+    public long m_Index;
+
+    /**
+     * A copy of the unique ID of the matched record or null.
+     */
+    public byte[] m_KeyValue;
+
+    /**
+     * The FARN value achieved by the matched record (see 
+     * <code>FtrIdentifyResult.m_FARNValue</code>).
+     */
+    public int m_FARNValue;
+
+    /**
+     * Number of records read from the stream.
+     */
+    public long m_RecordCount;
+}
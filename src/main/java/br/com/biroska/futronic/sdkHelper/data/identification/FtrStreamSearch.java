@@ -0,0 +1,151 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+
+/**
+ * The streaming identification (see 
+ * <code>FutronicIdentification.StreamIdentification</code>).
+ *
+ * The records are read in chunks on the reader executor. While a chunk is
+ * matched, the next chunk is read, so at most two chunks are in memory. The
+ * iterator is used by one thread at a time and is not used after 
+ * <code>Search</code> returns.
+ */
+final class FtrStreamSearch
+{
+    /**
+     * Creates a new instance of FtrStreamSearch.
+     *
+     * @param Operation the identification operation.
+     * @param Records the source records.
+     * @param nChunkSize number of records in one chunk, at least 1.
+     * @param Reader the executor that reads the chunks. If it is NULL, the 
+     * common <code>ForkJoinPool</code> is used.
+     */
+    FtrStreamSearch( FutronicIdentification Operation, Iterator<FtrIdentifyRecord> Records, int nChunkSize, Executor Reader )
+    {
+        m_Operation = Operation;
+        m_Records = Records;
+        m_ChunkSize = nChunkSize;
+        m_Reader = (Reader != null) ? Reader : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Matches the chunks until a record matches or the stream ends. An 
+     * exception thrown by the iterator is passed to the caller.
+     *
+     * @param Result receives the global index and the key of the matched 
+     * record. The caller clears it.
+     *
+     * @return the Futronic SDK return code.
+     */
+    int Search( FtrStreamIdentifyResult Result )
+    {
+        int nResult = FutronicSdkBase.RETCODE_OK;
+        CompletableFuture<FtrIdentifyRecord[]> next = ReadChunk();
+        try
+        {
+            FtrIdentifyResult Hit = new FtrIdentifyResult();
+            while( true )
+            {
+                FtrIdentifyRecord[] rgChunk = Join( next );
+                next = null;
+                if( rgChunk.length == 0 )
+                    break;
+                // a short chunk is the last one
+                if( rgChunk.length == m_ChunkSize )
+                    next = ReadChunk();
+
+                if( m_Operation.isStopRequested() )
+                {
+                    nResult = FutronicSdkBase.RETCODE_CANCELED_BY_USER;
+                    break;
+                }
+                long nBase = Result.m_RecordCount;
+                Result.m_RecordCount += rgChunk.length;
+                nResult = m_Operation.Match( rgChunk, Hit );
+                if( nResult != FutronicSdkBase.RETCODE_OK )
+                    break;
+                if( Hit.m_Index >= 0 )
+                {
+                    Result.m_Index = nBase + Hit.m_Index;
+                    Result.m_KeyValue = FutronicIdentification.CopyKey( rgChunk, Hit.m_Index );
+                    Result.m_FARNValue = Hit.m_FARNValue;
+                    break;
+                }
+                if( next == null )
+                    break;
+            }
+        }
+        finally
+        {
+            // the iterator must not be used after the return
+            if( next != null )
+            {
+                try
+                {
+                    next.join();
+                }
+                catch( RuntimeException e )
+                {
+                    // the chunk is not needed
+                }
+            }
+        }
+        return nResult;
+    }
+
+    /**
+     * Reads the next chunk of records on the reader executor. The returned 
+     * array is shorter than the chunk size only at the end of the stream.
+     */
+    private CompletableFuture<FtrIdentifyRecord[]> ReadChunk()
+    {
+        return CompletableFuture.supplyAsync( new Supplier<FtrIdentifyRecord[]>()
+        {
+            public FtrIdentifyRecord[] get()
+            {
+                FtrIdentifyRecord[] rgChunk = new FtrIdentifyRecord[ m_ChunkSize ];
+                int nCount = 0;
+                while( (nCount < m_ChunkSize) && m_Records.hasNext() )
+                    rgChunk[ nCount++ ] = m_Records.next();
+                return (nCount == m_ChunkSize) ? rgChunk : Arrays.copyOf( rgChunk, nCount );
+            }
+        }, m_Reader );
+    }
+
+    /**
+     * Waits for a chunk and passes an exception of the iterator to the caller.
+     */
+    private static FtrIdentifyRecord[] Join( CompletableFuture<FtrIdentifyRecord[]> chunk )
+    {
+        try
+        {
+            return chunk.join();
+        }
+        catch( CompletionException e )
+        {
+            if( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException)e.getCause();
+            if( e.getCause() instanceof Error )
+                throw (Error)e.getCause();
+            throw e;
+        }
+    }
+
+    private final FutronicIdentification m_Operation;
+
+    private final Iterator<FtrIdentifyRecord> m_Records;
+
+    private final int m_ChunkSize;
+
+    private final Executor m_Reader;
+}
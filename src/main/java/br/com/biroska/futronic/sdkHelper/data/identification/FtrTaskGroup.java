@@ -0,0 +1,321 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A group of tasks which run on an executor while the calling thread waits
+ * for them (the shards of <code>FtrShardedIdentify</code>, the galleries of
+ * <code>FtrMultiSearch</code>).
+ *
+ * Every task is submitted to the executor, but it is run by the first thread
+ * which claims it: a worker of the executor, or the calling thread while it
+ * waits in <code>Next</code>. The calling thread never waits for a task which
+ * is only queued, so the group completes even if the calling thread is itself
+ * a worker of the same executor and all other workers are busy. The calling
+ * thread waits for the tasks running on other threads with
+ * <code>ForkJoinPool.managedBlock</code>, so a fork/join pool can start a
+ * spare worker meanwhile.
+ *
+ * A task which has not started yet is cancelled without running; a running
+ * task is interrupted, also if the calling thread runs it. A cancelled task is
+ * not returned by <code>Next</code>. <code>Stop</code> cancels all tasks and
+ * waits until the running ones return, so no task runs after it.
+ */
+final class FtrTaskGroup
+{
+    /**
+     * Creates a new instance of FtrTaskGroup.
+     *
+     * @param ExecutorService executor that runs the tasks. If it is NULL, the
+     * common <code>ForkJoinPool</code> is used.
+     * @param rgTasks the tasks, by number. The array is not copied: it can be
+     * filled until <code>Start</code>.
+     */
+    FtrTaskGroup( Executor ExecutorService, Runnable[] rgTasks )
+    {
+        m_Executor = (ExecutorService != null) ? ExecutorService : ForkJoinPool.commonPool();
+        m_Tasks = rgTasks;
+        m_States = new int[ rgTasks.length ];
+        m_Threads = new Thread[ rgTasks.length ];
+        m_Interrupted = new boolean[ rgTasks.length ];
+        m_Finished = new ArrayDeque<Integer>( rgTasks.length );
+        m_Active = rgTasks.length;
+    }
+
+    /**
+     * Submits the tasks to the executor. A task rejected by the executor is
+     * left to the calling thread.
+     */
+    void Start()
+    {
+        for( int i = 0; i < m_Tasks.length; i++ )
+        {
+            final int nTask = i;
+            try
+            {
+                m_Executor.execute( new Runnable()
+                {
+                    public void run()
+                    {
+                        if( Claim( nTask ) )
+                            Run( nTask );
+                    }
+                } );
+            }
+            catch( RejectedExecutionException e )
+            {
+                // the calling thread runs it in Next
+            }
+        }
+    }
+
+    /**
+     * Waits for the next finished task. While no task is finished, the calling
+     * thread runs the first task which has not started yet.
+     *
+     * @return the number of the finished task, or -1 if all tasks are finished
+     * or cancelled.
+     *
+     * @exception InterruptedException the calling thread is interrupted.
+     */
+    int Next()
+        throws InterruptedException
+    {
+        while( true )
+        {
+            int nTask = -1;
+            synchronized( this )
+            {
+                if( !m_Finished.isEmpty() )
+                    return m_Finished.poll().intValue();
+                if( m_Active == 0 )
+                    return -1;
+                for( int i = 0; i < m_Tasks.length && nTask < 0; i++ )
+                {
+                    if( Claim( i ) )
+                        nTask = i;
+                }
+            }
+
+            if( nTask >= 0 )
+                Run( nTask );
+            else
+                ForkJoinPool.managedBlock( new Waiter( false ) );
+        }
+    }
+
+    /**
+     * Cancels a task. The task is not started any more; if it is running, its
+     * thread is interrupted. Can be called by any thread, also by a task.
+     *
+     * @param nTask the number of the task.
+     */
+    synchronized void Cancel( int nTask )
+    {
+        switch( m_States[ nTask ] )
+        {
+        case NEW:
+            m_States[ nTask ] = CANCELLED;
+            m_Active--;
+            notifyAll();
+            break;
+        case RUNNING:
+            m_States[ nTask ] = CANCELLING;
+            Thread thread = m_Threads[ nTask ];
+            if( (thread != Thread.currentThread()) && !thread.isInterrupted() )
+            {
+                thread.interrupt();
+                m_Interrupted[ nTask ] = true;
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Cancels all tasks after a task.
+     *
+     * @param nTask the number of the last task which is not cancelled.
+     */
+    void CancelAfter( int nTask )
+    {
+        for( int i = nTask + 1; i < m_Tasks.length; i++ )
+            Cancel( i );
+    }
+
+    /**
+     * Cancels all tasks and waits until the running ones return. An interrupt
+     * of the calling thread does not stop the wait; the interrupt status is
+     * kept.
+     */
+    void Stop()
+    {
+        CancelAfter( -1 );
+
+        boolean bInterrupted = false;
+        while( true )
+        {
+            try
+            {
+                ForkJoinPool.managedBlock( new Waiter( true ) );
+                break;
+            }
+            catch( InterruptedException e )
+            {
+                bInterrupted = true;
+            }
+        }
+        if( bInterrupted )
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Returns <code>true</code> if the task has returned normally and was not
+     * cancelled.
+     */
+    synchronized boolean isDone( int nTask )
+    {
+        return m_States[ nTask ] == DONE;
+    }
+
+    /**
+     * Returns <code>true</code> if the task has thrown an exception.
+     */
+    synchronized boolean isFailed( int nTask )
+    {
+        return m_States[ nTask ] == FAILED;
+    }
+
+    /**
+     * Marks a task as running on the current thread.
+     *
+     * @return <code>false</code> if the task is already claimed or cancelled.
+     */
+    private synchronized boolean Claim( int nTask )
+    {
+        if( m_States[ nTask ] != NEW )
+            return false;
+        m_States[ nTask ] = RUNNING;
+        m_Threads[ nTask ] = Thread.currentThread();
+        return true;
+    }
+
+    /**
+     * Runs a claimed task on the current thread.
+     */
+    private void Run( int nTask )
+    {
+        boolean bFailed = true;
+        try
+        {
+            m_Tasks[ nTask ].run();
+            bFailed = false;
+        }
+        catch( RuntimeException e )
+        {
+            // reported by isFailed
+        }
+        finally
+        {
+            boolean bInterrupted;
+            synchronized( this )
+            {
+                m_Threads[ nTask ] = null;
+                if( m_States[ nTask ] == CANCELLING )
+                {
+                    m_States[ nTask ] = CANCELLED;
+                }
+                else
+                {
+                    m_States[ nTask ] = bFailed ? FAILED : DONE;
+                    m_Finished.add( Integer.valueOf( nTask ) );
+                }
+                m_Active--;
+                bInterrupted = m_Interrupted[ nTask ];
+                notifyAll();
+            }
+
+            // the interrupt of Cancel was meant for the task, not for the thread
+            if( bInterrupted )
+                Thread.interrupted();
+        }
+    }
+
+    /**
+     * Waits for a finished task, or for all tasks if bAll is set.
+     */
+    private final class Waiter implements ForkJoinPool.ManagedBlocker
+    {
+        Waiter( boolean bAll )
+        {
+            m_bAll = bAll;
+        }
+
+        public boolean isReleasable()
+        {
+            synchronized( FtrTaskGroup.this )
+            {
+                return (m_Active == 0) || (!m_bAll && !m_Finished.isEmpty());
+            }
+        }
+
+        public boolean block()
+            throws InterruptedException
+        {
+            synchronized( FtrTaskGroup.this )
+            {
+                while( !isReleasable() )
+                    FtrTaskGroup.this.wait();
+            }
+            return true;
+        }
+
+        private final boolean m_bAll;
+    }
+
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int CANCELLING = 2;
+    private static final int CANCELLED = 3;
+    private static final int DONE = 4;
+    private static final int FAILED = 5;
+
+    /**
+     * The executor that runs the tasks.
+     */
+    private final Executor m_Executor;
+
+    /**
+     * The tasks, by number.
+     */
+    private final Runnable[] m_Tasks;
+
+    /**
+     * The state of every task. Guarded by this.
+     */
+    private final int[] m_States;
+
+    /**
+     * The thread of every running task. Guarded by this.
+     */
+    private final Thread[] m_Threads;
+
+    /**
+     * Set for the tasks whose thread was interrupted by Cancel. Guarded by this.
+     */
+    private final boolean[] m_Interrupted;
+
+    /**
+     * The numbers of the finished tasks not returned by Next yet. Guarded by this.
+     */
+    private final ArrayDeque<Integer> m_Finished;
+
+    /**
+     * The number of tasks which are not finished or cancelled. Guarded by this.
+     */
+    private int m_Active;
+}
@@ -0,0 +1,291 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import br.com.biroska.futronic.sdkHelper.callbacks.ICallBack;
+import br.com.biroska.futronic.sdkHelper.data.gallery.ITemplateGallery;
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * Pipelined capture and identification for a checkpoint.
+ *
+ * A single <code>FutronicIdentification</code> captures and identifies one
+ * person after another, so the next capture waits for the previous match. 
+ * The checkpoint captures on one object and matches on a set of other 
+ * objects: as soon as a base template is captured, it is handed to a free
+ * match object on the match executor and the next person may be admitted
+ * while the previous one is still being matched. Each admitted person gets 
+ * a ticket which correlates the capture with the identification result.
+ *
+ * <pre>
+ * FutronicCheckpoint checkpoint = new FutronicCheckpoint( capture, gallery, 2, null );
+ * while( open )
+ * {
+ *     CheckpointTicket ticket = checkpoint.Admit( callBack );
+ *     ticket.getResult().thenAccept( ... );
+ *     ticket.getCapture().join();
+ * }
+ * checkpoint.Dispose();
+ * </pre>
+ *
+ * The settings of the match objects (FARN, fast mode, version, matcher, 
+ * shard size, timeout) are copied from the capture object when the checkpoint is
+ * created. The match objects are not sharded if the executor of the capture
+ * object is the match executor: an identification waiting for its shards on
+ * the executor it runs on could take all its threads. The capture object 
+ * belongs to the caller and is not disposed by the checkpoint.
+ */
+public class FutronicCheckpoint implements AutoCloseable
+{
+    /**
+     * Creates a new instance of FutronicCheckpoint.
+     *
+     * @param Capture the configured object that captures the base templates
+     * (can not be NULL).
+     * @param Gallery the gallery searched for every person (can not be NULL).
+     * @param nMatchers number of identifications which may run at the same 
+     * time, at least 1.
+     * @param MatchExecutor the executor that runs the identifications. If it
+     * is NULL, the common <code>ForkJoinPool</code> is used.
+     *
+     * @exception FutronicException error occurs during SDK initialization. 
+     * @exception NullPointerException a null reference parameter Capture or 
+     * Gallery is passed to the constructor.
+     * @exception IllegalArgumentException nMatchers is less than 1.
+     */
+    public FutronicCheckpoint( FutronicIdentification Capture, ITemplateGallery Gallery, int nMatchers, Executor MatchExecutor )
+        throws FutronicException, NullPointerException, IllegalArgumentException
+    {
+        if( Capture == null )
+            throw new NullPointerException( "A null reference parameter Capture is passed to the constructor." );
+        if( Gallery == null )
+            throw new NullPointerException( "A null reference parameter Gallery is passed to the constructor." );
+        if( nMatchers < 1 )
+            throw new IllegalArgumentException( "The argument nMatchers has invalid value" );
+
+        m_Capture = Capture;
+        m_Gallery = Gallery;
+        m_MatchExecutor = (MatchExecutor != null) ? MatchExecutor : ForkJoinPool.commonPool();
+        m_Matchers = new ArrayList<FutronicIdentification>( nMatchers );
+        m_FreeMatchers = new ArrayBlockingQueue<FutronicIdentification>( nMatchers );
+        m_NextTicket = new AtomicLong( 1 );
+        m_Pending = new AtomicInteger();
+        m_bDispose = false;
+
+        Executor ShardExecutor = (Capture.getExecutor() != null) ? Capture.getExecutor() : ForkJoinPool.commonPool();
+        int nShardSize = (ShardExecutor != m_MatchExecutor) ? Capture.getShardSize() : 0;
+        try
+        {
+            for( int i = 0; i < nMatchers; i++ )
+            {
+                FutronicIdentification matcher = new FutronicIdentification();
+                m_Matchers.add( matcher );
+                matcher.setFARN( Capture.getFARN() );
+                matcher.setFastMode( Capture.getFastMode() );
+                matcher.setVersion( Capture.getVersion() );
+                matcher.setMatcher( Capture.getMatcher() );
+                matcher.setExecutor( Capture.getExecutor() );
+                matcher.setShardSize( nShardSize );
+                matcher.setMetrics( Capture.getMetrics() );
+                matcher.setTimeout( Capture.getTimeout() );
+                m_FreeMatchers.add( matcher );
+            }
+        }
+        catch( FutronicException e )
+        {
+            for( FutronicIdentification matcher : m_Matchers )
+                matcher.Dispose();
+            throw e;
+        }
+    }
+
+    /**
+     * Admits the next person: starts the capture of the base template on the
+     * scheduler of the capture object. When the capture is completed, the 
+     * identification is started on the match executor.
+     *
+     * @param callBack reference to call back interface of the capture or 
+     * null, if the caller does not need the events.
+     *
+     * @return the ticket of the person.
+     *
+     * @exception IllegalStateException the checkpoint is disposed or the 
+     * previous capture is not completed.
+     * @exception RejectedExecutionException the scheduler rejects the capture.
+     */
+    public CheckpointTicket Admit( ICallBack callBack )
+        throws IllegalStateException, RejectedExecutionException
+    {
+        if( m_bDispose )
+            throw new IllegalStateException( "The checkpoint is disposed." );
+
+        final long nTicket = m_NextTicket.getAndIncrement();
+        CompletableFuture<BaseTemplateResult> capture = m_Capture.GetBaseTemplateAsync( callBack, m_Capture.getScheduler() );
+        final CompletableFuture<CheckpointResult> result = new CompletableFuture<CheckpointResult>();
+        capture.whenComplete( new BiConsumer<BaseTemplateResult, Throwable>()
+        {
+            public void accept( BaseTemplateResult Capture, Throwable Failure )
+            {
+                if( Failure != null )
+                    result.completeExceptionally( Failure );
+                else if( !Capture.isSuccess() )
+                    result.complete( new CheckpointResult( nTicket, Capture, null ) );
+                else
+                    StartMatch( nTicket, Capture, result );
+            }
+        } );
+        return new CheckpointTicket( nTicket, capture, result );
+    }
+
+    /**
+     * Gets the number of identifications running or waiting for a match 
+     * object.
+     */
+    public int getPendingCount()
+    {
+        return m_Pending.get();
+    }
+
+    /**
+     * Disposes the match objects. The identifications which are running are
+     * completed first; the identifications which wait for a match object are
+     * completed with <code>IllegalStateException</code>.
+     */
+    public void Dispose()
+    {
+        if( m_bDispose )
+            return;
+        m_bDispose = true;
+        boolean bInterrupted = false;
+        for( int i = 0; i < m_Matchers.size(); i++ )
+        {
+            try
+            {
+                m_FreeMatchers.take().Dispose();
+            }
+            catch( InterruptedException e )
+            {
+                bInterrupted = true;
+                break;
+            }
+        }
+        if( bInterrupted )
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Disposes the checkpoint as <code>Dispose</code>, so it may be used with
+     * try-with-resources.
+     */
+    public void close()
+    {
+        Dispose();
+    }
+
+    private void StartMatch( final long nTicket, final BaseTemplateResult Capture, final CompletableFuture<CheckpointResult> result )
+    {
+        m_Pending.incrementAndGet();
+        try
+        {
+            m_MatchExecutor.execute( new Runnable()
+            {
+                public void run()
+                {
+                    IdentificationResult Identification = null;
+                    Exception Failure = null;
+                    try
+                    {
+                        Identification = Match( Capture.getBaseTemplate() );
+                    }
+                    catch( RuntimeException e )
+                    {
+                        Failure = e;
+                    }
+                    catch( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                        Failure = e;
+                    }
+                    m_Pending.decrementAndGet();
+                    if( Failure != null )
+                        result.completeExceptionally( Failure );
+                    else
+                        result.complete( new CheckpointResult( nTicket, Capture, Identification ) );
+                }
+            } );
+        }
+        catch( RejectedExecutionException e )
+        {
+            m_Pending.decrementAndGet();
+            result.completeExceptionally( e );
+        }
+    }
+
+    /**
+     * Identifies a base template on a free match object. Waits for a free 
+     * match object.
+     */
+    private IdentificationResult Match( byte[] BaseTemplate )
+        throws InterruptedException
+    {
+        FutronicIdentification matcher = null;
+        while( matcher == null )
+        {
+            if( m_bDispose )
+                throw new IllegalStateException( "The checkpoint is disposed." );
+            matcher = m_FreeMatchers.poll( 100, TimeUnit.MILLISECONDS );
+        }
+        try
+        {
+            matcher.setBaseTemplate( BaseTemplate );
+            FtrIdentifyRecord[] rgRecords = m_Gallery.toRecords();
+            FtrIdentifyResult Result = new FtrIdentifyResult();
+            int nResult = matcher.Identification( rgRecords, Result );
+            byte[] KeyValue = (Result.m_Index >= 0) ? rgRecords[ Result.m_Index ].m_KeyValue.clone() : null;
+            return new IdentificationResult( nResult, Result.m_Index, KeyValue, matcher.getFARN() );
+        }
+        finally
+        {
+            m_FreeMatchers.add( matcher );
+        }
+    }
+
+    /**
+     * The object that captures the base templates.
+     */
+    private final FutronicIdentification m_Capture;
+
+    private final ITemplateGallery m_Gallery;
+
+    private final Executor m_MatchExecutor;
+
+    /**
+     * All match objects.
+     */
+    private final List<FutronicIdentification> m_Matchers;
+
+    /**
+     * The match objects which are not used.
+     */
+    private final BlockingQueue<FutronicIdentification> m_FreeMatchers;
+
+    private final AtomicLong m_NextTicket;
+
+    /**
+     * Number of identifications running or waiting for a match object.
+     */
+    private final AtomicInteger m_Pending;
+
+    private volatile boolean m_bDispose;
+}
@@ -1,7 +1,26 @@
 package br.com.biroska.futronic.sdkHelper.data.identification;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import br.com.biroska.futronic.sdkHelper.base.FtrSdkLocks;
 import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.callbacks.ICallBack;
+import br.com.biroska.futronic.sdkHelper.callbacks.NullCallBack;
+import br.com.biroska.futronic.sdkHelper.data.gallery.ITemplateGallery;
 import br.com.biroska.futronic.sdkHelper.enums.EnrollmentState;
+import br.com.biroska.futronic.sdkHelper.enums.OperationKind;
+import br.com.biroska.futronic.sdkHelper.enums.OperationPhase;
 import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
 
 /**
@@ -10,6 +29,12 @@ import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
  */
 public class FutronicIdentification extends FutronicSdkBase implements Runnable
 {
+    /**
+     * The number of records matched at once by the identifications which go
+     * on after a match (candidates, cascade prefilter), unless the shards 
+     * need more.
+     */
+    private static final int MATCH_WINDOW = 16384;
     
     /** 
      * The FutronicIdentification class constructor.
@@ -22,13 +47,17 @@ public class FutronicIdentification extends FutronicSdkBase implements Runnable
         throws FutronicException
     {
         m_BaseTemplate = null;
+        m_Matcher = null;
+        m_Executor = null;
+        m_ShardSize = 0;
+        m_ResultCache = null;
     }
  
     /**
      * This function starts the "get base template" operation for the identification purpose.
      *
-     * The "get base template" operation starts in its own thread. To interact with 
-     * the enrollment operation caller must implement the <code>IIdentificationCallBack</code>
+     * The "get base template" operation runs on the scheduler (see 
+     * <code>setScheduler</code>). To interact with the enrollment operation caller must implement the <code>IIdentificationCallBack</code>
      * interface and should specify it. The interface methods denote following:
      * <table>
      * <thead>
@@ -78,9 +107,12 @@ public class FutronicIdentification extends FutronicSdkBase implements Runnable
      *
      * @exception NullPointerException a null reference parameter callBack is 
      * passed to the function.
+     *
+     * @exception RejectedExecutionException all workers of the scheduler are 
+     * busy and its queue is full.
      */
     public void GetBaseTemplate( IIdentificationCallBack callBack )
-        throws IllegalStateException, NullPointerException
+        throws IllegalStateException, NullPointerException, RejectedExecutionException
     {
         CheckDispose();
 
@@ -92,18 +124,110 @@ public class FutronicIdentification extends FutronicSdkBase implements Runnable
             throw new NullPointerException( "A null reference parameter callBack is passed to the function." );
 
         m_CallBack = callBack;
-        m_bCancel = false;
+        ResetCancel();
 
-        // run new thread
-        m_WorkedThread = new Thread( this, "Get base template operation" );
-        m_WorkedThread.start();
+        // run the operation on the scheduler
+        m_WorkedTask = m_Scheduler.Submit( this );
     }
     
+    /**
+     * This function starts the "get base template" operation on the executor
+     * and returns its future.
+     *
+     * The call-back interface receives the same events as in 
+     * <code>GetBaseTemplate</code>, except <code>OnGetBaseTemplateComplete</code>:
+     * the future is completed instead.
+     *
+     * @param callBack reference to call back interface or null if the caller 
+     * does not need the events.
+     * @param executor the executor that runs the operation (can not be NULL).
+     *
+     * @return the future completed with the base template result.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The identification operation or the 
+     * enrollment operation for the identification purpose is already started.
+     *
+     * @exception NullPointerException a null reference parameter executor is 
+     * passed to the function.
+     *
+     * @exception RejectedExecutionException the executor rejects the operation.
+     */
+    public CompletableFuture<BaseTemplateResult> GetBaseTemplateAsync( ICallBack callBack, Executor executor )
+        throws IllegalStateException, NullPointerException, RejectedExecutionException
+    {
+        CheckNotInProgress();
+
+        m_CallBack = (callBack != null) ? callBack : NullCallBack.INSTANCE;
+        return StartAsync( executor, EnrollmentState.process_in_progress, new Callable<BaseTemplateResult>()
+        {
+            public BaseTemplateResult call()
+            {
+                int nResult = DoGetBaseTemplate();
+                return new BaseTemplateResult( nResult, m_BaseTemplate, m_FARN );
+            }
+        } );
+    }
+
+    /**
+     * This function starts the identification operation on the executor and
+     * returns its future. See <code>Identification</code>.
+     *
+     * @param rgTemplates the set of source templates (can not be NULL). The 
+     * array must not be modified until the future is completed.
+     * @param executor the executor that runs the operation (can not be NULL).
+     *
+     * @return the future completed with the identification result.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
+     *
+     * @exception NullPointerException a null reference parameter rgTemplates 
+     * or executor are passed to the function.
+     *
+     * @exception RejectedExecutionException the executor rejects the operation.
+     */
+    public CompletableFuture<IdentificationResult> IdentificationAsync( final FtrIdentifyRecord[] rgTemplates, Executor executor )
+        throws IllegalStateException, NullPointerException, RejectedExecutionException
+    {
+        CheckDispose();
+
+        if( m_State != EnrollmentState.ready_to_continue )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "The enrollment operation for the identification purpose is not completed.");
+
+        if( rgTemplates == null )
+            throw new NullPointerException( "A null reference parameter rgTemplates is passed to the function." );
+
+        return StartAsync( executor, EnrollmentState.continue_in_progress, new Callable<IdentificationResult>()
+        {
+            public IdentificationResult call()
+            {
+                FtrIdentifyResult Result = new FtrIdentifyResult();
+                int nResult = DoIdentification( rgTemplates, Result );
+                return ToResult( nResult, rgTemplates, Result.m_Index );
+            }
+        } );
+    }
+
     /**
      * The function compares the base template against a set of source templates.
-     * The identification operation is stopped, when the first matched template 
+     * The identification operation is stopped, when the first matched template
      * is detected.
      *
+     * If the set of source templates is larger than the <code>ShardSize</code>
+     * property, the set is split into shards which are matched in parallel on
+     * the <code>Executor</code> by the <code>Matcher</code>, unless the 
+     * backend runs one match at a time (see <code>setShardSize</code>). The
+     * index of the first matched record is the same as without sharding.
+     *
      * @param rgTemplates the set of source templates (can not be NULL).
      * @param Result If the function succeeds, field <code>m_Index</code> contains an 
      * index of the matched record (the first element has an index 0) or -1, if
@@ -143,13 +267,11 @@ public class FutronicIdentification extends FutronicSdkBase implements Runnable
             return RETCODE_OK;
 
         m_State = EnrollmentState.continue_in_progress;
+        ResetCancel();
 
         try
         {
-            synchronized( m_SyncRoot )
-            {
-                nResult = IdentifyProcess( rgTemplates, Result );
-            }
+            nResult = DoIdentification( rgTemplates, Result );
         }
         finally
         {
@@ -161,91 +283,1322 @@ public class FutronicIdentification extends FutronicSdkBase implements Runnable
     }
 
     /**
-     * Get the base template. 
-     * Returns the base template. If enrollment operation for the identification 
-     * purpose is not completed, the return value is null.
+     * The function compares the base template against the records of a 
+     * gallery. See <code>Identification( FtrIdentifyRecord[], FtrIdentifyResult )</code>.
+     *
+     * The records are taken from <code>ITemplateGallery.toRecords</code>; an
+     * off-heap gallery copies all of them onto the heap for the call. If a result 
+     * cache is set (see <code>setResultCache</code>), a cached result for 
+     * the same base template and gallery version is returned without matching.
+     *
+     * @param Gallery the gallery (can not be NULL).
+     * @param Result If the function succeeds, field <code>m_Index</code> contains
+     * the number of the matched record in the gallery or -1, if no matching 
+     * source templates are detected. The number is valid for the version of 
+     * the gallery at the start of the identification. Parameter can not be NULL.
+     *
+     * @return the Futronic SDK return code.
      *
      * @exception IllegalStateException the class instance is disposed. Any 
      * calls are prohibited.
-     * @exception IllegalStateException the object is not in an appropriate state 
-     * for the requested operation. The identification operation or the enrollment 
-     * operation for the identification purpose is already started.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The identification operation or the 
+     * enrollment operation for the identification purpose is already started.
+     *
+     * @exception NullPointerException a null reference parameter Gallery 
+     * or Result are passed to the function.
      */
-    public byte[] getBaseTemplate()
-        throws IllegalStateException
+    public int Identification( ITemplateGallery Gallery, FtrIdentifyResult Result )
+        throws IllegalStateException, NullPointerException
     {
         CheckDispose();
+
         if( m_State != EnrollmentState.ready_to_continue )
             throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
-                                             "The identification operation or the enrollment operation for the identification purpose is already started." );
-        if( m_BaseTemplate == null )
-            return null;
-        return (byte[])m_BaseTemplate.clone();
+                                             "The enrollment operation for the identification purpose is not completed.");
+
+        if( Gallery == null )
+            throw new NullPointerException( "A null reference parameter Gallery is passed to the function." );
+
+        if( Result == null )
+            throw new NullPointerException( "A null reference parameter Result is passed to the function." );
+
+        m_State = EnrollmentState.continue_in_progress;
+        ResetCancel();
+
+        try
+        {
+            return DoIdentification( Gallery, Result ).getRetCode();
+        }
+        finally
+        {
+            m_State = EnrollmentState.ready_to_continue;
+            m_bCancel = false;
+        }
     }
 
     /**
-     * Set the base template.
+     * This function starts the identification operation against the records
+     * of a gallery on the executor and returns its future. The key of the 
+     * matched record is taken from the same version of the gallery as the 
+     * record number. If a result cache is set, a cached result is returned 
+     * without matching.
+     *
+     * @param Gallery the gallery (can not be NULL).
+     * @param executor the executor that runs the operation (can not be NULL).
+     *
+     * @return the future completed with the identification result.
      *
      * @exception IllegalStateException the class instance is disposed. Any 
      * calls are prohibited.
      *
-     * @exception NullPointerException a null reference parameter BaseTemplate is 
-     * passed to the function.
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
      *
-     * @exception IllegalStateException the object is not in an appropriate state 
-     * for the requested operation. The identification operation or the enrollment 
-     * operation for the identification purpose is already started.
+     * @exception NullPointerException a null reference parameter Gallery 
+     * or executor are passed to the function.
+     *
+     * @exception RejectedExecutionException the executor rejects the operation.
      */
-    public void setBaseTemplate( byte[] BaseTemplate )
-        throws IllegalStateException, NullPointerException
+    public CompletableFuture<IdentificationResult> IdentificationAsync( final ITemplateGallery Gallery, Executor executor )
+        throws IllegalStateException, NullPointerException, RejectedExecutionException
     {
         CheckDispose();
-        if( (m_State != EnrollmentState.ready_to_process) && (m_State != EnrollmentState.ready_to_continue) )
-            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" +
-                                             "The identification operation or the enrollment operation for the identification purpose is already started.");
 
-        if( BaseTemplate == null )
-            throw new NullPointerException( "A null reference parameter BaseTemplate is passed to the function." );
-        m_BaseTemplate = (byte[])BaseTemplate.clone();
-        m_State = EnrollmentState.ready_to_continue;
+        if( m_State != EnrollmentState.ready_to_continue )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "The enrollment operation for the identification purpose is not completed.");
+
+        if( Gallery == null )
+            throw new NullPointerException( "A null reference parameter Gallery is passed to the function." );
+
+        return StartAsync( executor, EnrollmentState.continue_in_progress, new Callable<IdentificationResult>()
+        {
+            public IdentificationResult call()
+            {
+                return DoIdentification( Gallery, new FtrIdentifyResult() );
+            }
+        } );
     }
-    
+
     /**
-     * The main thread of the enrollment operation for the identification purpose.
+     * The function finds the best candidates for the base template in a set
+     * of source templates (top-K identification).
      *
-     * Function prepares all necessary parameters for the enrollment 
-     * operation and calls the function from unmanaged code. This native 
-     * function sets all parameters for SDK and starts the enrollment operation.
+     * The set is searched from the beginning; after each matched record the
+     * search continues from the next record. The candidates are ranked by the
+     * achieved FARN value, the best first; candidates with the same value are
+     * ranked by index. The search stops early when <code>nMaxCandidates</code>
+     * candidates with a FARN value not less than <code>nStopFARN</code> are 
+     * found, otherwise it runs to the end of the set.
+     *
+     * The native SDK reports only the first match and not its score. With the
+     * native backend every candidate has the configured FARN value, each 
+     * continuation passes the rest of the set to the SDK again, and a 
+     * <code>nStopFARN</code> not greater than the configured value stops the
+     * search after <code>nMaxCandidates</code> matches. Backends which report 
+     * the score (like <code>FutronicSimulatedBackend</code>) rank by it.
+     *
+     * @param rgTemplates the set of source templates (can not be NULL).
+     * @param nMaxCandidates the maximal number of candidates (K), at least 1.
+     * @param nStopFARN the FARN value of a candidate which counts for the 
+     * early stop.
+     * @param Result receives the candidates (can not be NULL).
+     *
+     * @return the Futronic SDK return code.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
+     *
+     * @exception NullPointerException a null reference parameter rgTemplates 
+     * or Result are passed to the function.
+     *
+     * @exception IllegalArgumentException nMaxCandidates is less than 1.
      */
-    public void run()
+    public int Identification( FtrIdentifyRecord[] rgTemplates, int nMaxCandidates, int nStopFARN, FtrIdentifyCandidates Result )
+        throws IllegalStateException, NullPointerException, IllegalArgumentException
     {
         int nResult = RETCODE_INTERNAL_ERROR;
+        CheckDispose();
+
+        if( m_State != EnrollmentState.ready_to_continue )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "The enrollment operation for the identification purpose is not completed.");
+
+        if( Result == null )
+            throw new NullPointerException( "A null reference parameter Result is passed to the function." );
+
+        if( rgTemplates == null )
+            throw new NullPointerException( "A null reference parameter rgTemplates is passed to the function." );
+
+        if( nMaxCandidates < 1 )
+            throw new IllegalArgumentException( "The argument nMaxCandidates has invalid value" );
+
+        m_State = EnrollmentState.continue_in_progress;
+        ResetCancel();
 
         try
         {
-            synchronized( m_SyncRoot )
-            {
-                m_BaseTemplate = null;
-                nResult = GetBaseTemplateProcess();
-            }
+            nResult = DoIdentifyCandidates( rgTemplates, nMaxCandidates, nStopFARN, Result );
         }
         finally
         {
-            if( m_BaseTemplate != null )
+            m_State = EnrollmentState.ready_to_continue;
+            m_bCancel = false;
+        }
+
+        return nResult;
+    }
+
+    /**
+     * This function starts the top-K identification on the executor and 
+     * returns its future. See 
+     * <code>Identification( FtrIdentifyRecord[], int, int, FtrIdentifyCandidates )</code>.
+     *
+     * @param rgTemplates the set of source templates (can not be NULL). The 
+     * array must not be modified until the future is completed.
+     * @param nMaxCandidates the maximal number of candidates (K), at least 1.
+     * @param nStopFARN the FARN value of a candidate which counts for the 
+     * early stop.
+     * @param executor the executor that runs the operation (can not be NULL).
+     *
+     * @return the future completed with the candidates.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
+     *
+     * @exception NullPointerException a null reference parameter rgTemplates 
+     * or executor are passed to the function.
+     *
+     * @exception IllegalArgumentException nMaxCandidates is less than 1.
+     *
+     * @exception RejectedExecutionException the executor rejects the operation.
+     */
+    public CompletableFuture<IdentificationCandidatesResult> IdentificationCandidatesAsync( final FtrIdentifyRecord[] rgTemplates,
+                                                                                           final int nMaxCandidates,
+                                                                                           final int nStopFARN,
+                                                                                           Executor executor )
+        throws IllegalStateException, NullPointerException, IllegalArgumentException, RejectedExecutionException
+    {
+        CheckDispose();
+
+        if( m_State != EnrollmentState.ready_to_continue )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "The enrollment operation for the identification purpose is not completed.");
+
+        if( rgTemplates == null )
+            throw new NullPointerException( "A null reference parameter rgTemplates is passed to the function." );
+
+        if( nMaxCandidates < 1 )
+            throw new IllegalArgumentException( "The argument nMaxCandidates has invalid value" );
+
+        return StartAsync( executor, EnrollmentState.continue_in_progress, new Callable<IdentificationCandidatesResult>()
+        {
+            public IdentificationCandidatesResult call()
             {
-                m_State = EnrollmentState.ready_to_continue;
-            } else {
-                m_State = EnrollmentState.ready_to_process;
+                FtrIdentifyCandidates Result = new FtrIdentifyCandidates();
+                int nResult = DoIdentifyCandidates( rgTemplates, nMaxCandidates, nStopFARN, Result );
+                List<IdentificationCandidate> Candidates = new ArrayList<IdentificationCandidate>( Result.m_Count );
+                for( int i = 0; i < Result.m_Count; i++ )
+                {
+                    int nIndex = Result.m_Indexes[i];
+                    Candidates.add( new IdentificationCandidate( nIndex, rgTemplates[ nIndex ].m_KeyValue, Result.m_FARNValues[i] ) );
+                }
+                return new IdentificationCandidatesResult( nResult, Candidates, m_FARN );
             }
-            ((IIdentificationCallBack)m_CallBack).OnGetBaseTemplateComplete( nResult == RETCODE_OK, nResult );
+        } );
+    }
+
+    /**
+     * The function compares the base template against a set of source 
+     * templates in two stages (cascaded identification).
+     *
+     * Stage 1 sweeps the whole set in fast mode with the permissive 
+     * <code>nShortlistFARN</code> and collects the matching records into a 
+     * shortlist of at most <code>nMaxShortlist</code> records. Stage 2 
+     * matches only the shortlist with the configured FARN and fast mode. The
+     * result is the first record of the shortlist which matches in stage 2.
+     * 
+     * A lower <code>nShortlistFARN</code> or a larger shortlist improves the
+     * recall and costs time in stage 2; the times of both stages and the
+     * shortlist size are returned in the result and recorded as the 
+     * <code>prefilter</code> and <code>refine</code> phases and the 
+     * <code>cascaded_identification.shortlist_size</code> value of the 
+     * metrics. The native SDK reports one match per call, so stage 1 goes on
+     * after every shortlist entry with one more call over the next records.
+     * The stage 1 settings are passed to the matcher or the backend (see 
+     * <code>IFutronicBackend.Identify</code>); the native backend sets them 
+     * on this object for each stage 1 call and then restores them.
+     *
+     * @param rgTemplates the set of source templates (can not be NULL).
+     * @param nShortlistFARN the FARN value of stage 1, from 1 to 1000. It 
+     * should be lower (more permissive) than the configured FARN.
+     * @param nMaxShortlist the maximal shortlist size, at least 1.
+     * @param Result receives the index of the matched record and the stage
+     * statistics (can not be NULL).
+     *
+     * @return the Futronic SDK return code.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
+     *
+     * @exception NullPointerException a null reference parameter rgTemplates 
+     * or Result are passed to the function.
+     *
+     * @exception IllegalArgumentException nShortlistFARN or nMaxShortlist has
+     * invalid value.
+     */
+    public int CascadedIdentification( FtrIdentifyRecord[] rgTemplates, int nShortlistFARN, int nMaxShortlist, FtrCascadeResult Result )
+        throws IllegalStateException, NullPointerException, IllegalArgumentException
+    {
+        int nResult = RETCODE_INTERNAL_ERROR;
+        CheckCascade( rgTemplates, nShortlistFARN, nMaxShortlist );
+
+        if( Result == null )
+            throw new NullPointerException( "A null reference parameter Result is passed to the function." );
+
+        m_State = EnrollmentState.continue_in_progress;
+        ResetCancel();
+
+        try
+        {
+            nResult = DoCascadedIdentification( rgTemplates, nShortlistFARN, nMaxShortlist, Result );
+        }
+        finally
+        {
+            m_State = EnrollmentState.ready_to_continue;
             m_bCancel = false;
         }
+
+        return nResult;
     }
 
     /**
-     * The base template.
+     * This function starts the cascaded identification on the executor and 
+     * returns its future. See <code>CascadedIdentification</code>.
+     *
+     * @param rgTemplates the set of source templates (can not be NULL). The 
+     * array must not be modified until the future is completed.
+     * @param nShortlistFARN the FARN value of stage 1, from 1 to 1000.
+     * @param nMaxShortlist the maximal shortlist size, at least 1.
+     * @param executor the executor that runs the operation (can not be NULL).
+     *
+     * @return the future completed with the identification result.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
+     *
+     * @exception NullPointerException a null reference parameter rgTemplates 
+     * or executor are passed to the function.
+     *
+     * @exception IllegalArgumentException nShortlistFARN or nMaxShortlist has
+     * invalid value.
+     *
+     * @exception RejectedExecutionException the executor rejects the operation.
      */
-    private byte[]  m_BaseTemplate;
+    public CompletableFuture<IdentificationResult> CascadedIdentificationAsync( final FtrIdentifyRecord[] rgTemplates,
+                                                                              final int nShortlistFARN,
+                                                                              final int nMaxShortlist,
+                                                                              Executor executor )
+        throws IllegalStateException, NullPointerException, IllegalArgumentException, RejectedExecutionException
+    {
+        CheckCascade( rgTemplates, nShortlistFARN, nMaxShortlist );
+
+        return StartAsync( executor, EnrollmentState.continue_in_progress, new Callable<IdentificationResult>()
+        {
+            public IdentificationResult call()
+            {
+                FtrCascadeResult Result = new FtrCascadeResult();
+                int nResult = DoCascadedIdentification( rgTemplates, nShortlistFARN, nMaxShortlist, Result );
+                return ToResult( nResult, rgTemplates, Result.m_Index );
+            }
+        } );
+    }
+
+    /**
+     * The function compares the base template against a stream of source 
+     * templates which does not have to fit in memory (streaming 
+     * identification).
+     *
+     * The records are read from the iterator in chunks of 
+     * <code>nChunkSize</code> records on the <code>Reader</code> executor. 
+     * While a chunk is matched, the next chunk is read, so at most two chunks
+     * are in memory. The identification stops at the first matched record. 
+     * The iterator is used by one thread at a time and is not used after the
+     * function returns. An exception thrown by the iterator is passed to the
+     * caller.
+     *
+     * @param Records the source records (can not be NULL).
+     * @param nChunkSize number of records in one chunk, at least 1.
+     * @param Reader the executor that reads the chunks. If it is NULL, the 
+     * common <code>ForkJoinPool</code> is used; pass another executor if the
+     * iterator blocks on I/O, for example on a JDBC cursor.
+     * @param Result receives the global index and the key of the matched 
+     * record (can not be NULL).
+     *
+     * @return the Futronic SDK return code.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
+     *
+     * @exception NullPointerException a null reference parameter Records or 
+     * Result are passed to the function.
+     *
+     * @exception IllegalArgumentException nChunkSize is less than 1.
+     */
+    public int StreamIdentification( Iterator<FtrIdentifyRecord> Records, int nChunkSize, Executor Reader, FtrStreamIdentifyResult Result )
+        throws IllegalStateException, NullPointerException, IllegalArgumentException
+    {
+        int nResult = RETCODE_INTERNAL_ERROR;
+        CheckStream( Records, nChunkSize );
+
+        if( Result == null )
+            throw new NullPointerException( "A null reference parameter Result is passed to the function." );
+
+        m_State = EnrollmentState.continue_in_progress;
+        ResetCancel();
+
+        try
+        {
+            nResult = DoStreamIdentification( Records, nChunkSize, Reader, Result );
+        }
+        finally
+        {
+            m_State = EnrollmentState.ready_to_continue;
+            m_bCancel = false;
+        }
+
+        return nResult;
+    }
+
+    /**
+     * The function compares the base template against a stream of source 
+     * templates. See <code>StreamIdentification( Iterator, int, Executor, FtrStreamIdentifyResult )</code>.
+     *
+     * @param Records the source records (can not be NULL).
+     * @param nChunkSize number of records in one chunk, at least 1.
+     * @param Reader the executor that reads the chunks or NULL.
+     * @param Result receives the global index and the key of the matched 
+     * record (can not be NULL).
+     *
+     * @return the Futronic SDK return code.
+     */
+    public int StreamIdentification( Spliterator<FtrIdentifyRecord> Records, int nChunkSize, Executor Reader, FtrStreamIdentifyResult Result )
+        throws IllegalStateException, NullPointerException, IllegalArgumentException
+    {
+        if( Records == null )
+            throw new NullPointerException( "A null reference parameter Records is passed to the function." );
+        return StreamIdentification( Spliterators.iterator( Records ), nChunkSize, Reader, Result );
+    }
+
+    /**
+     * This function starts the streaming identification on the executor and 
+     * returns its future. See 
+     * <code>StreamIdentification( Iterator, int, Executor, FtrStreamIdentifyResult )</code>.
+     *
+     * @param Records the source records (can not be NULL).
+     * @param nChunkSize number of records in one chunk, at least 1.
+     * @param Reader the executor that reads the chunks or NULL.
+     * @param executor the executor that runs the operation (can not be NULL).
+     *
+     * @return the future completed with the identification result, or with
+     * the exception thrown by the iterator.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
+     *
+     * @exception NullPointerException a null reference parameter Records or 
+     * executor are passed to the function.
+     *
+     * @exception IllegalArgumentException nChunkSize is less than 1.
+     *
+     * @exception RejectedExecutionException the executor rejects the operation.
+     */
+    public CompletableFuture<StreamIdentificationResult> StreamIdentificationAsync( final Iterator<FtrIdentifyRecord> Records,
+                                                                                  final int nChunkSize,
+                                                                                  final Executor Reader,
+                                                                                  Executor executor )
+        throws IllegalStateException, NullPointerException, IllegalArgumentException, RejectedExecutionException
+    {
+        CheckStream( Records, nChunkSize );
+
+        return StartAsync( executor, EnrollmentState.continue_in_progress, new Callable<StreamIdentificationResult>()
+        {
+            public StreamIdentificationResult call()
+            {
+                FtrStreamIdentifyResult Result = new FtrStreamIdentifyResult();
+                int nResult = DoStreamIdentification( Records, nChunkSize, Reader, Result );
+                return new StreamIdentificationResult( nResult, Result, m_FARN );
+            }
+        } );
+    }
+
+    /**
+     * The function compares the base template against several galleries at
+     * the same time.
+     *
+     * Every gallery is searched as by <code>Identification( ITemplateGallery, 
+     * FtrIdentifyResult )</code> by one task on the <code>Executor</code>.
+     * The galleries are not sharded. The calling thread runs the gallery 
+     * tasks which no worker has started yet, so the search does not need a 
+     * free worker, also when it runs on the same executor. If a gallery 
+     * named in <code>ShortCircuit</code> (for example a watchlist) has a 
+     * match, the search of the other galleries is stopped and they get the
+     * <code>RETCODE_CANCELED_BY_USER</code> return code; a running match is
+     * interrupted, and the function returns when it has ended (a native
+     * match is not interruptible and runs to its end). The galleries share
+     * the match permits (see <code>FtrSdkLocks</code>), so with the native 
+     * backend they are matched one after another.
+     *
+     * @param Galleries the galleries by name (can not be NULL).
+     * @param ShortCircuit the names of the priority galleries or null.
+     *
+     * @return the results by gallery name. The return code is 
+     * <code>RETCODE_OK</code> unless a gallery fails; then it is the return
+     * code of the first failed gallery.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
+     *
+     * @exception NullPointerException a null reference parameter Galleries 
+     * is passed to the function.
+     */
+    public MultiIdentificationResult MultiIdentification( Map<String, ? extends ITemplateGallery> Galleries, Set<String> ShortCircuit )
+        throws IllegalStateException, NullPointerException
+    {
+        CheckMulti( Galleries );
+
+        m_State = EnrollmentState.continue_in_progress;
+        ResetCancel();
+
+        try
+        {
+            return DoMultiIdentification( Galleries, ShortCircuit );
+        }
+        finally
+        {
+            m_State = EnrollmentState.ready_to_continue;
+            m_bCancel = false;
+        }
+    }
+
+    /**
+     * This function starts the identification against several galleries on 
+     * the executor and returns its future. See <code>MultiIdentification</code>.
+     *
+     * @param Galleries the galleries by name (can not be NULL).
+     * @param ShortCircuit the names of the priority galleries or null.
+     * @param executor the executor that runs the operation (can not be NULL).
+     * The galleries are searched on the <code>Executor</code>, or on the 
+     * common pool if it is not set; the operation thread takes the gallery 
+     * tasks which are still queued, so both can be the same pool.
+     *
+     * @return the future completed with the results by gallery name.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation for the 
+     * identification purpose is not completed.
+     *
+     * @exception NullPointerException a null reference parameter Galleries 
+     * or executor are passed to the function.
+     *
+     * @exception RejectedExecutionException the executor rejects the operation.
+     */
+    public CompletableFuture<MultiIdentificationResult> MultiIdentificationAsync( final Map<String, ? extends ITemplateGallery> Galleries,
+                                                                                final Set<String> ShortCircuit,
+                                                                                Executor executor )
+        throws IllegalStateException, NullPointerException, RejectedExecutionException
+    {
+        CheckMulti( Galleries );
+
+        return StartAsync( executor, EnrollmentState.continue_in_progress, new Callable<MultiIdentificationResult>()
+        {
+            public MultiIdentificationResult call()
+            {
+                return DoMultiIdentification( Galleries, ShortCircuit );
+            }
+        } );
+    }
+
+    /**
+     * Compares the base template against the records of a gallery in the
+     * calling thread. The records are taken once, so the key of the matched
+     * record comes from the same version of the gallery as its number. If a
+     * result cache is set, a cached result is returned without matching.
+     *
+     * @param Gallery the gallery.
+     * @param Result receives the number of the matched record and its FARN
+     * value.
+     *
+     * @return the result with the key of the matched record.
+     */
+    protected IdentificationResult DoIdentification( ITemplateGallery Gallery, FtrIdentifyResult Result )
+    {
+        // the version read before and after: the records belong to it
+        FtrIdentificationCache Cache = m_ResultCache;
+        long nVersion = Gallery.getVersion();
+        FtrIdentifyRecord[] rgTemplates = Gallery.toRecords();
+        if( Gallery.getVersion() != nVersion )
+            Cache = null;
+
+        if( Cache != null )
+        {
+            FtrIdentificationCache.CachedResult entry = Cache.Lookup( m_BaseTemplate, Gallery, nVersion, m_FARN, m_bFastMode );
+            if( entry != null )
+            {
+                Result.m_Index = entry.m_Index;
+                Result.m_FARNValue = entry.m_FARNValue;
+                return new IdentificationResult( RETCODE_OK, entry.m_Index, entry.m_KeyValue, m_FARN );
+            }
+        }
+
+        int nResult = DoIdentification( rgTemplates, Result );
+        if( (Cache != null) && (nResult == RETCODE_OK) )
+        {
+            byte[] KeyValue = CopyKey( rgTemplates, Result.m_Index );
+            Cache.Store( m_BaseTemplate, Gallery, nVersion, m_FARN, m_bFastMode, Result.m_Index, Result.m_FARNValue, KeyValue );
+        }
+        return ToResult( nResult, rgTemplates, Result.m_Index );
+    }
+
+    /**
+     * Compares the base template against a set of source templates in the
+     * calling thread. The time is recorded as the <code>match</code> phase.
+     *
+     * @return the Futronic SDK return code.
+     */
+    protected int DoIdentification( FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+    {
+        Result.m_Index = -1;
+        if( rgTemplates.length == 0 )
+            return RETCODE_OK;
+
+        int nResult = RETCODE_INTERNAL_ERROR;
+        long nStart = System.nanoTime();
+        try
+        {
+            nResult = Match( rgTemplates, Result );
+        }
+        finally
+        {
+            RecordMatch( nResult, nStart );
+        }
+        return nResult;
+    }
+
+    /**
+     * Finds the best candidates in the calling thread. See 
+     * <code>Identification( FtrIdentifyRecord[], int, int, FtrIdentifyCandidates )</code>.
+     *
+     * @return the Futronic SDK return code.
+     */
+    protected int DoIdentifyCandidates( FtrIdentifyRecord[] rgTemplates, int nMaxCandidates, int nStopFARN, FtrIdentifyCandidates Result )
+    {
+        Result.Clear( nMaxCandidates );
+        int nResult = RETCODE_OK;
+        long nStart = System.nanoTime();
+        try
+        {
+            FtrIdentifyResult Hit = new FtrIdentifyResult();
+            int nStrong = 0;
+            int nFrom = 0;
+            while( nFrom < rgTemplates.length )
+            {
+                nResult = MatchFrom( rgTemplates, nFrom, m_FARN, m_bFastMode, Hit );
+                if( (nResult != RETCODE_OK) || (Hit.m_Index < 0) )
+                    break;
+
+                int nIndex = Hit.m_Index;
+                int nFARNValue = (Hit.m_FARNValue >= 0) ? Hit.m_FARNValue : m_FARN;
+                Result.Insert( nIndex, nFARNValue );
+                if( (nFARNValue >= nStopFARN) && (++nStrong >= nMaxCandidates) )
+                    break;
+                nFrom = nIndex + 1;
+            }
+        }
+        finally
+        {
+            RecordMatch( nResult, nStart );
+        }
+        return nResult;
+    }
+
+    /**
+     * Does the cascaded identification in the calling thread. See
+     * <code>CascadedIdentification</code> and <code>FtrCascadeSearch</code>.
+     *
+     * @return the Futronic SDK return code.
+     */
+    protected int DoCascadedIdentification( FtrIdentifyRecord[] rgTemplates, int nShortlistFARN, int nMaxShortlist, FtrCascadeResult Result )
+    {
+        Result.m_Index = -1;
+        Result.m_FARNValue = -1;
+        Result.m_ShortlistSize = 0;
+        Result.m_bShortlistFull = false;
+        Result.m_PrefilterTime = 0;
+        Result.m_RefineTime = 0;
+        if( rgTemplates.length == 0 )
+            return RETCODE_OK;
+
+        int nResult = RETCODE_INTERNAL_ERROR;
+        long nStart = System.nanoTime();
+        try
+        {
+            nResult = new FtrCascadeSearch( this, nShortlistFARN, nMaxShortlist ).Search( rgTemplates, Result );
+        }
+        finally
+        {
+            RecordLatency( OperationKind.cascaded_identification, OperationPhase.total, nResult, System.nanoTime() - nStart );
+            RecordValue( "cascaded_identification.shortlist_size", Result.m_ShortlistSize );
+        }
+        return nResult;
+    }
+
+    /**
+     * Does the streaming identification in the calling thread. See
+     * <code>StreamIdentification</code> and <code>FtrStreamSearch</code>.
+     *
+     * @return the Futronic SDK return code.
+     */
+    protected int DoStreamIdentification( Iterator<FtrIdentifyRecord> Records, int nChunkSize, Executor Reader, FtrStreamIdentifyResult Result )
+    {
+        Result.m_Index = -1;
+        Result.m_KeyValue = null;
+        Result.m_FARNValue = -1;
+        Result.m_RecordCount = 0;
+
+        int nResult = RETCODE_INTERNAL_ERROR;
+        long nStart = System.nanoTime();
+        try
+        {
+            nResult = new FtrStreamSearch( this, Records, nChunkSize, Reader ).Search( Result );
+        }
+        finally
+        {
+            RecordMatch( nResult, nStart );
+        }
+        return nResult;
+    }
+
+    /**
+     * Does the identification against several galleries. The calling thread
+     * helps while the galleries are searched on the <code>Executor</code>,
+     * each in one piece in its task. See <code>MultiIdentification</code> and
+     * <code>FtrMultiSearch</code>.
+     *
+     * @return the results by gallery name.
+     */
+    protected MultiIdentificationResult DoMultiIdentification( Map<String, ? extends ITemplateGallery> Galleries, Set<String> ShortCircuit )
+    {
+        MultiIdentificationResult Result = null;
+        long nStart = System.nanoTime();
+        try
+        {
+            Result = new FtrMultiSearch( this, m_Executor ).Search( Galleries, ShortCircuit );
+            return Result;
+        }
+        finally
+        {
+            RecordMatch( (Result != null) ? Result.getRetCode() : RETCODE_INTERNAL_ERROR, nStart );
+        }
+    }
+
+    /**
+     * Finds the first matching record with the matcher, sharded if the set 
+     * is larger than the shard size.
+     */
+    int Match( FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+    {
+        return MatchRange( rgTemplates, 0, rgTemplates.length, m_FARN, m_bFastMode, Result );
+    }
+
+    /**
+     * Finds the first matching record at or after nFrom, for the 
+     * identifications which go on after a match.
+     *
+     * The rest of the set is matched in windows of 
+     * <code>getMatchWindow</code> records, so finding a match costs the 
+     * records up to it, not the copy and the marshalling of the whole rest.
+     *
+     * @param nFARN the FARN value of the match.
+     * @param bFastMode the fast mode of the match.
+     * @param Result If the function succeeds, field <code>m_Index</code> 
+     * contains the index of the matched record in rgTemplates or -1.
+     *
+     * @return the Futronic SDK return code.
+     */
+    int MatchFrom( FtrIdentifyRecord[] rgTemplates, int nFrom, int nFARN, boolean bFastMode, FtrIdentifyResult Result )
+    {
+        Result.m_Index = -1;
+        Result.m_FARNValue = -1;
+        int nWindow = getMatchWindow();
+        while( nFrom < rgTemplates.length )
+        {
+            if( isStopRequested() )
+                return RETCODE_CANCELED_BY_USER;
+            int nCount = Math.min( nWindow, rgTemplates.length - nFrom );
+            int nResult = MatchRange( rgTemplates, nFrom, nCount, nFARN, bFastMode, Result );
+            if( nResult != RETCODE_OK )
+                return nResult;
+            if( Result.m_Index >= 0 )
+            {
+                Result.m_Index += nFrom;
+                return RETCODE_OK;
+            }
+            nFrom += nCount;
+        }
+        return RETCODE_OK;
+    }
+
+    /**
+     * Gets the number of records matched at once by <code>MatchFrom</code>:
+     * enough to keep all shards busy if the set is sharded.
+     */
+    private int getMatchWindow()
+    {
+        if( !IsSharded( Integer.MAX_VALUE ) )
+            return MATCH_WINDOW;
+        long nWindow = (long)m_ShardSize * Runtime.getRuntime().availableProcessors();
+        return (int)Math.min( Integer.MAX_VALUE, Math.max( MATCH_WINDOW, nWindow ) );
+    }
+
+    /**
+     * Finds the first matching record of a range, sharded if the range is 
+     * larger than the shard size.
+     *
+     * @param Result If the function succeeds, field <code>m_Index</code> 
+     * contains the index of the matched record relative to nFrom or -1.
+     *
+     * @return the Futronic SDK return code.
+     */
+    private int MatchRange( final FtrIdentifyRecord[] rgTemplates, final int nFrom, int nCount,
+                            final int nFARN, final boolean bFastMode, FtrIdentifyResult Result )
+    {
+        if( !IsSharded( nCount ) )
+            return MatchRecords( rgTemplates, nFrom, nCount, nFARN, bFastMode, Result );
+
+        return new FtrShardedIdentify( m_Executor, m_ShardSize ).Identify( nCount, new FtrShardedIdentify.RangeMatcher()
+        {
+            public int Identify( int nShardFrom, int nShardCount, FtrIdentifyResult Result )
+            {
+                return MatchRecords( rgTemplates, nFrom + nShardFrom, nShardCount, nFARN, bFastMode, Result );
+            }
+        }, Result );
+    }
+
+    /**
+     * Finds the first matching record of a range in the calling thread with
+     * the settings of the operation. See 
+     * <code>MatchRecords( FtrIdentifyRecord[], int, int, int, boolean, FtrIdentifyResult )</code>.
+     *
+     * @return the Futronic SDK return code.
+     */
+    int MatchRecords( FtrIdentifyRecord[] rgTemplates, int nFrom, int nCount, FtrIdentifyResult Result )
+    {
+        return MatchRecords( rgTemplates, nFrom, nCount, m_FARN, m_bFastMode, Result );
+    }
+
+    /**
+     * Finds the first matching record of a range in the calling thread, with
+     * the matcher or with the backend, and with the given FARN value and fast
+     * mode. The backend matches the range in place if it can (see 
+     * <code>IFutronicBackend.Identify</code>); it is called with a match 
+     * permit, not the capture lock, and gets the settings only if they are 
+     * not the settings of the operation. A matcher receives a copy of the 
+     * range.
+     *
+     * @return the Futronic SDK return code.
+     */
+    @SuppressWarnings("try")
+    private int MatchRecords( FtrIdentifyRecord[] rgTemplates, int nFrom, int nCount, int nFARN, boolean bFastMode, FtrIdentifyResult Result )
+    {
+        if( m_Matcher != null )
+        {
+            FtrIdentifyRecord[] rgRange = rgTemplates;
+            if( (nFrom != 0) || (nCount != rgTemplates.length) )
+                rgRange = Arrays.copyOfRange( rgTemplates, nFrom, nFrom + nCount );
+            return m_Matcher.Identify( m_BaseTemplate, rgRange, nFARN, bFastMode, Result );
+        }
+
+        if( isCancelRequested() )
+            return RETCODE_CANCELED_BY_USER;
+        try( FtrSdkLocks.Permit permit = FtrSdkLocks.Match() )
+        {
+            if( (nFARN == m_FARN) && (bFastMode == m_bFastMode) )
+                return m_Backend.Identify( this, rgTemplates, nFrom, nCount, Result );
+            return m_Backend.Identify( this, rgTemplates, nFrom, nCount, nFARN, bFastMode, Result );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return RETCODE_CANCELED_BY_USER;
+        }
+    }
+
+    /**
+     * Returns a copy of the key of a matched record, so the result does not
+     * share the array with the caller's gallery, or null if nIndex is -1.
+     */
+    static byte[] CopyKey( FtrIdentifyRecord[] rgTemplates, int nIndex )
+    {
+        return (nIndex >= 0) ? rgTemplates[ nIndex ].m_KeyValue.clone() : null;
+    }
+
+    /**
+     * Builds the result of an identification against rgTemplates. The result
+     * keeps a copy of the key of the matched record.
+     */
+    IdentificationResult ToResult( int nResult, FtrIdentifyRecord[] rgTemplates, int nIndex )
+    {
+        byte[] KeyValue = (nIndex >= 0) ? rgTemplates[ nIndex ].m_KeyValue : null;
+        return new IdentificationResult( nResult, nIndex, KeyValue, m_FARN );
+    }
+
+    /**
+     * Returns <code>true</code> if the current thread is interrupted or the
+     * operation is cancelled (see <code>isCancelRequested</code>).
+     */
+    boolean isStopRequested()
+    {
+        return Thread.currentThread().isInterrupted() || isCancelRequested();
+    }
+
+    /**
+     * Records the time of a phase of the identification; used by the 
+     * searches of this package, which can not call <code>RecordLatency</code>.
+     */
+    void RecordPhase( OperationKind Kind, OperationPhase Phase, int nRetCode, long nTime )
+    {
+        RecordLatency( Kind, Phase, nRetCode, nTime );
+    }
+
+    /**
+     * Records the time of an identification which started at nStart as its 
+     * <code>match</code> and <code>total</code> phases.
+     */
+    private void RecordMatch( int nResult, long nStart )
+    {
+        long nTime = System.nanoTime() - nStart;
+        RecordLatency( OperationKind.identification, OperationPhase.match, nResult, nTime );
+        RecordLatency( OperationKind.identification, OperationPhase.total, nResult, nTime );
+    }
+
+    /**
+     * Returns <code>true</code> if a set of nCount records is split into 
+     * shards. The backend matcher is not sharded if the backend runs one 
+     * match at a time (see <code>FtrSdkLocks.getMatchConcurrency</code>):
+     * the shards would only wait for each other's match permit.
+     */
+    private boolean IsSharded( int nCount )
+    {
+        if( (m_ShardSize == 0) || (nCount <= m_ShardSize) )
+            return false;
+        return (m_Matcher != null) || (FtrSdkLocks.getMatchConcurrency() > 1);
+    }
+
+    /**
+     * Does the enrollment operation for the identification purpose in the 
+     * calling thread.
+     *
+     * @return the Futronic SDK return code.
+     */
+    @SuppressWarnings("try")
+    protected int DoGetBaseTemplate()
+    {
+        try( FtrSdkLocks.Permit permit = FtrSdkLocks.Capture( m_FrameSource ) )
+        {
+            m_BaseTemplate = null;
+            int nResult = RETCODE_INTERNAL_ERROR;
+            BeginCapture();
+            try
+            {
+                nResult = m_Backend.GetBaseTemplate( this );
+            }
+            finally
+            {
+                EndCapture( OperationKind.base_template, nResult );
+            }
+            return nResult;
+        }
+    }
+
+    /**
+     * Restores the default settings, removes the base template and the 
+     * matcher. The executor, the shard size and the result cache are kept. See 
+     * <code>FutronicSdkBase.Reset</code>.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. An operation is running.
+     */
+    public void Reset()
+        throws IllegalStateException
+    {
+        super.Reset();
+        m_BaseTemplate = null;
+        m_Matcher = null;
+    }
+
+    /**
+     * Get the base template. 
+     * Returns the base template. If enrollment operation for the identification 
+     * purpose is not completed, the return value is null.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     * @exception IllegalStateException the object is not in an appropriate state 
+     * for the requested operation. The identification operation or the enrollment 
+     * operation for the identification purpose is already started.
+     */
+    public byte[] getBaseTemplate()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_continue )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "The identification operation or the enrollment operation for the identification purpose is already started." );
+        if( m_BaseTemplate == null )
+            return null;
+        return (byte[])m_BaseTemplate.clone();
+    }
+
+    /**
+     * Set the base template.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     *
+     * @exception NullPointerException a null reference parameter BaseTemplate is 
+     * passed to the function.
+     *
+     * @exception IllegalStateException the object is not in an appropriate state 
+     * for the requested operation. The identification operation or the enrollment 
+     * operation for the identification purpose is already started.
+     */
+    public void setBaseTemplate( byte[] BaseTemplate )
+        throws IllegalStateException, NullPointerException
+    {
+        CheckDispose();
+        if( (m_State != EnrollmentState.ready_to_process) && (m_State != EnrollmentState.ready_to_continue) )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" +
+                                             "The identification operation or the enrollment operation for the identification purpose is already started.");
+
+        if( BaseTemplate == null )
+            throw new NullPointerException( "A null reference parameter BaseTemplate is passed to the function." );
+        m_BaseTemplate = (byte[])BaseTemplate.clone();
+        m_State = EnrollmentState.ready_to_continue;
+    }
+    
+    /**
+     * get the matcher used by the identification operation.
+     * Returns null if the backend matcher is used.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public IIdentifyMatcher getMatcher()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_Matcher;
+    }
+
+    /**
+     * set the matcher used by the identification operation.
+     *
+     * @param Matcher new matcher. Set to null to use the backend matcher.
+     *
+     * @exception IllegalStateException the object is not in an appropriate
+     * state for the requested operation or the object disposed.
+     */
+    public void setMatcher( IIdentifyMatcher Matcher )
+        throws IllegalStateException
+    {
+        CheckNotInProgress();
+        m_Matcher = Matcher;
+    }
+
+    /**
+     * get the executor that runs the shards of the sharded identification and
+     * the galleries of the multi-gallery identification.
+     * Returns null if the common <code>ForkJoinPool</code> is used.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public Executor getExecutor()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_Executor;
+    }
+
+    /**
+     * set the executor that runs the shards of the sharded identification.
+     *
+     * @param ExecutorService new executor. Set to null to use the common
+     * <code>ForkJoinPool</code>.
+     *
+     * @exception IllegalStateException the object is not in an appropriate
+     * state for the requested operation or the object disposed.
+     */
+    public void setExecutor( Executor ExecutorService )
+        throws IllegalStateException
+    {
+        CheckNotInProgress();
+        m_Executor = ExecutorService;
+    }
+
+    /**
+     * get the maximum number of records in one shard.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public int getShardSize()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_ShardSize;
+    }
+
+    /**
+     * set the maximum number of records in one shard.
+     *
+     * If the set of source templates is larger than this value, the 
+     * identification operation splits it into shards and matches the shards
+     * in parallel. The value 0 disables the sharded identification.
+     *
+     * The backend matcher is sharded only if the backend runs several 
+     * matches at a time (see <code>FtrSdkLocks.getMatchConcurrency</code>).
+     * The native backend runs one, so with it the setting has no effect: 
+     * the shards would run one after another and only add thread hops. A 
+     * matcher set with <code>setMatcher</code> is always sharded.
+     *
+     * @param nShardSize new value
+     *
+     * @exception IllegalStateException the object is not in an appropriate
+     * state for the requested operation or the object disposed.
+     * @exception IllegalArgumentException the argument nShardSize is negative.
+     */
+    public void setShardSize( int nShardSize )
+        throws IllegalStateException, IllegalArgumentException
+    {
+        CheckNotInProgress();
+        if( nShardSize < 0 )
+            throw new IllegalArgumentException( "The argument nShardSize has invalid value" );
+        m_ShardSize = nShardSize;
+    }
+
+    /**
+     * get the result cache of the gallery identification.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public FtrIdentificationCache getResultCache()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_ResultCache;
+    }
+
+    /**
+     * set the result cache of the gallery identification.
+     *
+     * If a cache is set, <code>Identification( ITemplateGallery, ... )</code>
+     * and <code>IdentificationAsync( ITemplateGallery, ... )</code> return 
+     * the cached result for the same base template, gallery version, FARN 
+     * value and fast mode (see <code>FtrIdentificationCache</code>). The 
+     * cache can be shared by several objects with the same matcher.
+     *
+     * @param Cache new value. The value null disables the cache.
+     *
+     * @exception IllegalStateException the object is not in an appropriate
+     * state for the requested operation or the object disposed.
+     */
+    public void setResultCache( FtrIdentificationCache Cache )
+        throws IllegalStateException
+    {
+        CheckNotInProgress();
+        m_ResultCache = Cache;
+    }
+
+    /**
+     * Checks the state and the arguments of the multi-gallery identification.
+     */
+    private void CheckMulti( Map<String, ? extends ITemplateGallery> Galleries )
+        throws IllegalStateException, NullPointerException
+    {
+        CheckDispose();
+
+        if( m_State != EnrollmentState.ready_to_continue )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "The enrollment operation for the identification purpose is not completed.");
+
+        if( Galleries == null )
+            throw new NullPointerException( "A null reference parameter Galleries is passed to the function." );
+    }
+
+    /**
+     * Checks the state and the arguments of the streaming identification.
+     */
+    private void CheckStream( Iterator<FtrIdentifyRecord> Records, int nChunkSize )
+        throws IllegalStateException, NullPointerException, IllegalArgumentException
+    {
+        CheckDispose();
+
+        if( m_State != EnrollmentState.ready_to_continue )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "The enrollment operation for the identification purpose is not completed.");
+
+        if( Records == null )
+            throw new NullPointerException( "A null reference parameter Records is passed to the function." );
+
+        if( nChunkSize < 1 )
+            throw new IllegalArgumentException( "The argument nChunkSize has invalid value" );
+    }
+
+    /**
+     * Checks the state and the arguments of the cascaded identification.
+     */
+    private void CheckCascade( FtrIdentifyRecord[] rgTemplates, int nShortlistFARN, int nMaxShortlist )
+        throws IllegalStateException, NullPointerException, IllegalArgumentException
+    {
+        CheckDispose();
+
+        if( m_State != EnrollmentState.ready_to_continue )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "The enrollment operation for the identification purpose is not completed.");
+
+        if( rgTemplates == null )
+            throw new NullPointerException( "A null reference parameter rgTemplates is passed to the function." );
+
+        if( nShortlistFARN < 1 || nShortlistFARN > 1000 )
+            throw new IllegalArgumentException( "The argument nShortlistFARN has invalid value" );
+
+        if( nMaxShortlist < 1 )
+            throw new IllegalArgumentException( "The argument nMaxShortlist has invalid value" );
+    }
+
+    /**
+     * Raises an exception if the identification operation or the enrollment 
+     * operation for the identification purpose is started.
+     */
+    private void CheckNotInProgress()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( (m_State != EnrollmentState.ready_to_process) && (m_State != EnrollmentState.ready_to_continue) )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation." +
+                                             "The identification operation or the enrollment operation for the identification purpose is already started.");
+    }
+
+    /**
+     * The main thread of the enrollment operation for the identification purpose.
+     *
+     * Function prepares all necessary parameters for the enrollment 
+     * operation and calls the function from unmanaged code. This native 
+     * function sets all parameters for SDK and starts the enrollment operation.
+     */
+    public void run()
+    {
+        int nResult = RETCODE_INTERNAL_ERROR;
+
+        try
+        {
+            nResult = DoGetBaseTemplate();
+        }
+        finally
+        {
+            if( m_BaseTemplate != null )
+            {
+                m_State = EnrollmentState.ready_to_continue;
+            } else {
+                m_State = EnrollmentState.ready_to_process;
+            }
+            FlushCallBacks();
+            ((IIdentificationCallBack)m_CallBack).OnGetBaseTemplateComplete( nResult == RETCODE_OK, nResult );
+            m_bCancel = false;
+        }
+    }
+
+    /**
+     * The identification can go on after an operation if the base template 
+     * is set.
+     */
+    protected EnrollmentState getIdleState()
+    {
+        return (m_BaseTemplate != null) ? EnrollmentState.ready_to_continue : EnrollmentState.ready_to_process;
+    }
+
+    protected byte[] getProcessTemplate()
+    {
+        return m_BaseTemplate;
+    }
+
+    protected void setProcessTemplate( byte[] Template, int Quality )
+    {
+        m_BaseTemplate = Template;
+    }
+
+    /**
+     * The base template.
+     */
+    private byte[]  m_BaseTemplate;
+
+    /**
+     * The matcher used by the identification operation. If it is null, the
+     * backend matcher is used.
+     */
+    private IIdentifyMatcher m_Matcher;
+
+    /**
+     * The executor that runs the shards. If it is null, the common 
+     * <code>ForkJoinPool</code> is used.
+     */
+    private Executor m_Executor;
+
+    /**
+     * Maximum number of records in one shard. The value 0 disables the 
+     * sharded identification.
+     */
+    private int m_ShardSize;
+
+    /**
+     * The cache of the gallery identification results or null.
+     */
+    private FtrIdentificationCache m_ResultCache;
     
 }
 
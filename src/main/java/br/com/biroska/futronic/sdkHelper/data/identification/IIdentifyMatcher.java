@@ -0,0 +1,49 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+/**
+ * The interface specify the 1:N matcher used by the identification operation.
+ *
+ * The default matcher of <code>FutronicIdentification</code> calls the native
+ * SDK. Other implementations may be plugged in with
+ * <code>FutronicIdentification.setMatcher</code>, for example to test the
+ * sharded identification without the scanner. An implementation used by the
+ * sharded identification is called from several threads at the same time and
+ * must be thread-safe. It should also check the interrupted state of the
+ * current thread: a shard is interrupted when another shard has found a match.
+ */
+public interface IIdentifyMatcher
+{
+    /**
+     * Compares the base template against a set of source templates.
+     *
+     * @param BaseTemplate the base template.
+     * @param rgTemplates the set of source templates.
+     * @param Result If the function succeeds, field <code>m_Index</code> contains an
+     * index of the matched record in <code>rgTemplates</code> (the first element
+     * has an index 0) or -1, if no matching source templates are detected.
+     *
+     * @return the Futronic SDK return code.
+     */
+    public int Identify( byte[] BaseTemplate, FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result );
+
+    /**
+     * Compares the base template against a set of source templates with the
+     * given FARN value and fast mode, for example in a stage of the cascaded
+     * identification.
+     *
+     * The default implementation ignores the settings and calls 
+     * <code>Identify( byte[], FtrIdentifyRecord[], FtrIdentifyResult )</code>.
+     *
+     * @param BaseTemplate the base template.
+     * @param rgTemplates the set of source templates.
+     * @param nFARN the FARN value of the match.
+     * @param bFastMode the fast mode of the match.
+     * @param Result receives the index of the matched record or -1.
+     *
+     * @return the Futronic SDK return code.
+     */
+    public default int Identify( byte[] BaseTemplate, FtrIdentifyRecord[] rgTemplates, int nFARN, boolean bFastMode, FtrIdentifyResult Result )
+    {
+        return Identify( BaseTemplate, rgTemplates, Result );
+    }
+}
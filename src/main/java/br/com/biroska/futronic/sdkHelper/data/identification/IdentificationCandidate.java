@@ -0,0 +1,51 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+/**
+ * An immutable candidate of the top-K identification.
+ */
+public class IdentificationCandidate
+{
+    /**
+     * Creates a new instance of IdentificationCandidate.
+     *
+     * @param nIndex the index of the record.
+     * @param KeyValue the unique ID of the record. It is copied.
+     * @param nFARNValue the achieved FARN value.
+     */
+    public IdentificationCandidate( int nIndex, byte[] KeyValue, int nFARNValue )
+    {
+        m_Index = nIndex;
+        m_KeyValue = (KeyValue != null) ? KeyValue.clone() : null;
+        m_FARNValue = nFARNValue;
+    }
+
+    /**
+     * Returns the index of the record (the first element has an index 0).
+     */
+    public int getIndex()
+    {
+        return m_Index;
+    }
+
+    /**
+     * Returns a copy of the unique ID of the record.
+     */
+    public byte[] getKeyValue()
+    {
+        return (m_KeyValue != null) ? m_KeyValue.clone() : null;
+    }
+
+    /**
+     * Returns the achieved FARN value (see <code>FtrIdentifyResult.m_FARNValue</code>).
+     */
+    public int getFARNValue()
+    {
+        return m_FARNValue;
+    }
+
+    private final int m_Index;
+
+    private final byte[] m_KeyValue;
+
+    private final int m_FARNValue;
+}
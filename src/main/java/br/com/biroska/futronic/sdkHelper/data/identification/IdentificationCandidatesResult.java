@@ -0,0 +1,45 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import br.com.biroska.futronic.sdkHelper.data.proccess.FtrOperationResult;
+
+/**
+ * The immutable result of the top-K identification operation.
+ */
+public class IdentificationCandidatesResult extends FtrOperationResult
+{
+    /**
+     * Creates a new instance of IdentificationCandidatesResult.
+     *
+     * @param nRetCode the Futronic SDK return code.
+     * @param Candidates the candidates, the best first. The list is copied.
+     * @param nFARN the configured FARN value.
+     */
+    public IdentificationCandidatesResult( int nRetCode, List<IdentificationCandidate> Candidates, int nFARN )
+    {
+        super( nRetCode, nFARN );
+        m_Candidates = Collections.unmodifiableList( new ArrayList<IdentificationCandidate>( Candidates ) );
+    }
+
+    /**
+     * Returns the unmodifiable list of candidates, the best first.
+     */
+    public List<IdentificationCandidate> getCandidates()
+    {
+        return m_Candidates;
+    }
+
+    /**
+     * Returns <code>true</code> if the operation succeeds and at least one 
+     * candidate is detected.
+     */
+    public boolean isMatched()
+    {
+        return isSuccess() && !m_Candidates.isEmpty();
+    }
+
+    private final List<IdentificationCandidate> m_Candidates;
+}
@@ -0,0 +1,54 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import br.com.biroska.futronic.sdkHelper.data.proccess.FtrOperationResult;
+
+/**
+ * The immutable result of the identification operation.
+ */
+public class IdentificationResult extends FtrOperationResult
+{
+    /**
+     * Creates a new instance of IdentificationResult.
+     *
+     * @param nRetCode the Futronic SDK return code.
+     * @param nIndex the index of the matched record or -1.
+     * @param KeyValue the unique ID of the matched record or null. It is copied.
+     * @param nFARN the configured FARN value.
+     */
+    public IdentificationResult( int nRetCode, int nIndex, byte[] KeyValue, int nFARN )
+    {
+        super( nRetCode, nFARN );
+        m_Index = nIndex;
+        m_KeyValue = Copy( KeyValue );
+    }
+
+    /**
+     * Returns the index of the matched record (the first element has an 
+     * index 0) or -1, if no matching source templates are detected.
+     */
+    public int getIndex()
+    {
+        return m_Index;
+    }
+
+    /**
+     * Returns <code>true</code> if the operation succeeds and a matching 
+     * record is detected.
+     */
+    public boolean isMatched()
+    {
+        return isSuccess() && (m_Index >= 0);
+    }
+
+    /**
+     * Returns a copy of the unique ID of the matched record or null.
+     */
+    public byte[] getKeyValue()
+    {
+        return Copy( m_KeyValue );
+    }
+
+    private final int m_Index;
+
+    private final byte[] m_KeyValue;
+}
@@ -0,0 +1,75 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import br.com.biroska.futronic.sdkHelper.data.proccess.FtrOperationResult;
+
+/**
+ * The immutable result of the identification against several galleries.
+ */
+public class MultiIdentificationResult extends FtrOperationResult
+{
+    /**
+     * Creates a new instance of MultiIdentificationResult.
+     *
+     * @param nRetCode the Futronic SDK return code of the whole search.
+     * @param Results the results by gallery name. The map is copied.
+     * @param szShortCircuitedBy the name of the priority gallery which 
+     * stopped the search or null.
+     * @param nFARN the configured FARN value.
+     */
+    public MultiIdentificationResult( int nRetCode, Map<String, IdentificationResult> Results, String szShortCircuitedBy, int nFARN )
+    {
+        super( nRetCode, nFARN );
+        m_Results = Collections.unmodifiableMap( new LinkedHashMap<String, IdentificationResult>( Results ) );
+        m_ShortCircuitedBy = szShortCircuitedBy;
+    }
+
+    /**
+     * Returns the unmodifiable map of results by gallery name, in the order
+     * of the galleries passed to the search.
+     */
+    public Map<String, IdentificationResult> getResults()
+    {
+        return m_Results;
+    }
+
+    /**
+     * Returns the result of a gallery or null, if there is no such gallery.
+     */
+    public IdentificationResult getResult( String szName )
+    {
+        return m_Results.get( szName );
+    }
+
+    /**
+     * Returns the name of the priority gallery whose match stopped the search
+     * of the other galleries, or null if all galleries were searched. The 
+     * stopped galleries have the <code>RETCODE_CANCELED_BY_USER</code> 
+     * return code.
+     */
+    public String getShortCircuitedBy()
+    {
+        return m_ShortCircuitedBy;
+    }
+
+    /**
+     * Returns <code>true</code> if a matching record is detected in any 
+     * gallery.
+     */
+    public boolean isMatched()
+    {
+        for( IdentificationResult Result : m_Results.values() )
+        {
+            if( Result.isMatched() )
+                return true;
+        }
+        return false;
+    }
+
+    private final Map<String, IdentificationResult> m_Results;
+
+    private final String m_ShortCircuitedBy;
+}
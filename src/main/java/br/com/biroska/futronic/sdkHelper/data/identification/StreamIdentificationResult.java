@@ -0,0 +1,64 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import br.com.biroska.futronic.sdkHelper.data.proccess.FtrOperationResult;
+
+/**
+ * The immutable result of the streaming identification operation.
+ */
+public class StreamIdentificationResult extends FtrOperationResult
+{
+    /**
+     * Creates a new instance of StreamIdentificationResult.
+     *
+     * @param nRetCode the Futronic SDK return code.
+     * @param Result the result of the streaming identification. It is copied.
+     * @param nFARN the configured FARN value.
+     */
+    public StreamIdentificationResult( int nRetCode, FtrStreamIdentifyResult Result, int nFARN )
+    {
+        super( nRetCode, nFARN );
+        m_Index = Result.m_Index;
+        m_KeyValue = Copy( Result.m_KeyValue );
+        m_RecordCount = Result.m_RecordCount;
+    }
+
+    /**
+     * Returns the global index of the matched record in the stream or -1, if 
+     * no matching source templates are detected.
+     */
+    public long getIndex()
+    {
+        return m_Index;
+    }
+
+    /**
+     * Returns <code>true</code> if the operation succeeds and a matching 
+     * record is detected.
+     */
+    public boolean isMatched()
+    {
+        return isSuccess() && (m_Index >= 0);
+    }
+
+    /**
+     * Returns a copy of the unique ID of the matched record or null.
+     */
+    public byte[] getKeyValue()
+    {
+        return Copy( m_KeyValue );
+    }
+
+    /**
+     * Returns the number of records read from the stream.
+     */
+    public long getRecordCount()
+    {
+        return m_RecordCount;
+    }
+
+    private final long m_Index;
+
+    private final byte[] m_KeyValue;
+
+    private final long m_RecordCount;
+}
@@ -0,0 +1,67 @@
+package br.com.biroska.futronic.sdkHelper.data.proccess;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+
+/**
+ * Base class for the immutable results of the future-based operations.
+ */
+public abstract class FtrOperationResult
+{
+    /**
+     * Creates a new instance of FtrOperationResult.
+     *
+     * @param nRetCode the Futronic SDK return code.
+     * @param nFARN the FARN value: the achieved value for the verification, 
+     * the configured value for other operations.
+     */
+    protected FtrOperationResult( int nRetCode, int nFARN )
+    {
+        m_RetCode = nRetCode;
+        m_FARN = nFARN;
+    }
+
+    /**
+     * Gets the Futronic SDK return code.
+     */
+    public int getRetCode()
+    {
+        return m_RetCode;
+    }
+
+    /**
+     * Returns <code>true</code> if the operation succeeds.
+     */
+    public boolean isSuccess()
+    {
+        return m_RetCode == FutronicSdkBase.RETCODE_OK;
+    }
+
+    /**
+     * Gets the description of the return code.
+     */
+    public String getMessage()
+    {
+        return FutronicSdkBase.SdkRetCode2Message( m_RetCode );
+    }
+
+    /**
+     * Gets the FARN value: the achieved value for the verification, the 
+     * configured value for other operations.
+     */
+    public int getFARN()
+    {
+        return m_FARN;
+    }
+
+    /**
+     * Returns a copy of a template or null.
+     */
+    protected static byte[] Copy( byte[] Template )
+    {
+        return (Template != null) ? Template.clone() : null;
+    }
+
+    private final int m_RetCode;
+
+    private final int m_FARN;
+}
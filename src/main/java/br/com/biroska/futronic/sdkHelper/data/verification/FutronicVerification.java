@@ -1,7 +1,16 @@
 package br.com.biroska.futronic.sdkHelper.data.verification;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import br.com.biroska.futronic.sdkHelper.base.FtrSdkLocks;
 import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.callbacks.ICallBack;
+import br.com.biroska.futronic.sdkHelper.callbacks.NullCallBack;
 import br.com.biroska.futronic.sdkHelper.enums.EnrollmentState;
+import br.com.biroska.futronic.sdkHelper.enums.OperationKind;
 import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
 
 /**
@@ -39,8 +48,8 @@ public class FutronicVerification extends FutronicSdkBase implements Runnable
     /**
      * This function starts the verification operation. 
      *
-     * The verification operation starts in its own thread. To interact with 
-     * the verification operation caller must implement the <code>IVerificationCallBack</code>
+     * The verification operation runs on the scheduler (see <code>setScheduler</code>).
+     * To interact with the verification operation caller must implement the <code>IVerificationCallBack</code>
      * interface and should specify it. The interface methods denote following:
      * <table>
      * <thead>
@@ -83,9 +92,12 @@ public class FutronicVerification extends FutronicSdkBase implements Runnable
      *
      * @exception NullPointerException a null reference parameter callBack is 
      * passed to the function.
+     *
+     * @exception RejectedExecutionException all workers of the scheduler are 
+     * busy and its queue is full.
      */
     public void Verification( IVerificationCallBack callBack )
-        throws IllegalStateException, NullPointerException
+        throws IllegalStateException, NullPointerException, RejectedExecutionException
     {
         CheckDispose();
 
@@ -97,11 +109,102 @@ public class FutronicVerification extends FutronicSdkBase implements Runnable
 
         m_State = EnrollmentState.process_in_progress;
         m_CallBack = callBack;
-        m_bCancel = false;
+        ResetCancel();
+
+        // run the operation on the scheduler
+        try
+        {
+            m_WorkedTask = m_Scheduler.Submit( this );
+        }
+        catch( RejectedExecutionException e )
+        {
+            m_State = EnrollmentState.ready_to_process;
+            throw e;
+        }
+    }
+
+    /**
+     * This function starts the verification operation on the executor and 
+     * returns its future.
+     *
+     * The call-back interface receives the same events as in 
+     * <code>Verification</code>, except <code>OnVerificationComplete</code>: 
+     * the future is completed instead.
+     *
+     * @param callBack reference to call back interface or null if the caller 
+     * does not need the events.
+     * @param executor the executor that runs the operation (can not be NULL).
+     *
+     * @return the future completed with the verification result.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     *
+     * @exception NullPointerException a null reference parameter executor is 
+     * passed to the function.
+     *
+     * @exception RejectedExecutionException the executor rejects the operation.
+     */
+    public CompletableFuture<VerificationResult> VerificationAsync( ICallBack callBack, Executor executor )
+        throws IllegalStateException, NullPointerException, RejectedExecutionException
+    {
+        CheckDispose();
+
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
 
-        // run new thread
-        m_WorkedThread = new Thread( this, "Verification operation" );
-        m_WorkedThread.start();
+        m_CallBack = (callBack != null) ? callBack : NullCallBack.INSTANCE;
+        return StartAsync( executor, EnrollmentState.process_in_progress, new Callable<VerificationResult>()
+        {
+            public VerificationResult call()
+            {
+                int nResult = DoVerification();
+                return new VerificationResult( nResult, m_bResult, m_FARNValue );
+            }
+        } );
+    }
+
+    /**
+     * Sets the source template, so the object may be reused to verify another
+     * user.
+     *
+     * @param Template the source template (can not be NULL). It is copied.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     *
+     * @exception NullPointerException a null reference parameter Template is 
+     * passed to the function.
+     */
+    public void setTemplate( byte[] Template )
+        throws IllegalStateException, NullPointerException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+        if( Template == null )
+            throw new NullPointerException( "A null reference parameter Template is passed to the function." );
+        m_Template = Template.clone();
+        m_bResult = false;
+        m_FARNValue = 1;
+    }
+
+    /**
+     * Restores the default settings and clears the last verification result.
+     * The source template is kept; set the template of the next user with 
+     * <code>setTemplate</code>. See <code>FutronicSdkBase.Reset</code>.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. An operation is running.
+     */
+    public void Reset()
+        throws IllegalStateException
+    {
+        super.Reset();
+        m_bResult = false;
+        m_FARNValue = 1;
     }
 
     /**
@@ -140,6 +243,51 @@ public class FutronicVerification extends FutronicSdkBase implements Runnable
         return m_FARNValue;
     }
 
+    protected byte[] getProcessTemplate()
+    {
+        return m_Template;
+    }
+
+    protected void setVerificationResult( boolean bResult, int FARNValue )
+    {
+        m_bResult = bResult;
+        m_FARNValue = FARNValue;
+    }
+
+    /**
+     * Does the verification operation in the calling thread.
+     *
+     * The native verification captures and then matches, so it takes the 
+     * capture lock and a match permit.
+     *
+     * @return the Futronic SDK return code.
+     */
+    @SuppressWarnings("try")
+    protected int DoVerification()
+    {
+        m_bResult = false;
+        try( FtrSdkLocks.Permit permit = FtrSdkLocks.Capture( m_FrameSource );
+             FtrSdkLocks.Permit match = FtrSdkLocks.Match() )
+        {
+            int nResult = RETCODE_INTERNAL_ERROR;
+            BeginCapture();
+            try
+            {
+                nResult = m_Backend.Verify( this );
+            }
+            finally
+            {
+                EndCapture( OperationKind.verification, nResult );
+            }
+            return nResult;
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return RETCODE_CANCELED_BY_USER;
+        }
+    }
+
     /**
      * The main thread of the verification operation.
      * Function prepares all necessary parameters for the verification
@@ -153,14 +301,11 @@ public class FutronicVerification extends FutronicSdkBase implements Runnable
 
         try
         {
-            synchronized( m_SyncRoot )
-            {
-                m_bResult = false;
-                nResult = VerificationProcess();
-            }
+            nResult = DoVerification();
         }
         finally
         {
+            FlushCallBacks();
             m_State = EnrollmentState.ready_to_process;
 
             ((IVerificationCallBack)m_CallBack).OnVerificationComplete( nResult == RETCODE_OK, nResult, m_bResult );
@@ -0,0 +1,33 @@
+package br.com.biroska.futronic.sdkHelper.data.verification;
+
+import br.com.biroska.futronic.sdkHelper.data.proccess.FtrOperationResult;
+
+/**
+ * The immutable result of the verification operation.
+ */
+public class VerificationResult extends FtrOperationResult
+{
+    /**
+     * Creates a new instance of VerificationResult.
+     *
+     * @param nRetCode the Futronic SDK return code.
+     * @param bVerified <code>true</code> if the captured template is matched.
+     * @param nFARNValue the achieved FARN value.
+     */
+    public VerificationResult( int nRetCode, boolean bVerified, int nFARNValue )
+    {
+        super( nRetCode, nFARNValue );
+        m_bVerified = bVerified;
+    }
+
+    /**
+     * Returns <code>true</code> if the operation succeeds and the captured 
+     * template is matched with the source template.
+     */
+    public boolean isVerified()
+    {
+        return isSuccess() && m_bVerified;
+    }
+
+    private final boolean m_bVerified;
+}
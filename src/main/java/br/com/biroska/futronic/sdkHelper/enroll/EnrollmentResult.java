@@ -0,0 +1,98 @@
+package br.com.biroska.futronic.sdkHelper.enroll;
+
+import br.com.biroska.futronic.sdkHelper.data.proccess.FtrOperationResult;
+
+/**
+ * The immutable result of the enrollment operation.
+ */
+public class EnrollmentResult extends FtrOperationResult
+{
+    /**
+     * Creates a new instance of EnrollmentResult.
+     *
+     * @param nRetCode the Futronic SDK return code.
+     * @param Template the created template or null. It is copied.
+     * @param nQuality the template quality, from 1 to 10, or 0.
+     * @param nFARN the configured FARN value.
+     */
+    public EnrollmentResult( int nRetCode, byte[] Template, int nQuality, int nFARN )
+    {
+        this( nRetCode, Template, nQuality, nFARN, null, FutronicEnrollment.DUPLICATE_CHECK_NOT_RUN );
+    }
+
+    /**
+     * Creates a new instance of EnrollmentResult with the result of the 
+     * duplicate check.
+     *
+     * @param nRetCode the Futronic SDK return code.
+     * @param Template the created template or null. It is copied.
+     * @param nQuality the template quality, from 1 to 10, or 0.
+     * @param nFARN the configured FARN value.
+     * @param DuplicateKey the key of the matching record of the duplicate 
+     * gallery or null. It is copied.
+     * @param nDuplicateCheckResult the return code of the duplicate check or
+     * <code>FutronicEnrollment.DUPLICATE_CHECK_NOT_RUN</code>.
+     */
+    public EnrollmentResult( int nRetCode, byte[] Template, int nQuality, int nFARN,
+                             byte[] DuplicateKey, int nDuplicateCheckResult )
+    {
+        super( nRetCode, nFARN );
+        m_Template = Copy( Template );
+        m_Quality = nQuality;
+        m_DuplicateKey = Copy( DuplicateKey );
+        m_DuplicateCheckResult = nDuplicateCheckResult;
+    }
+
+    /**
+     * Returns a copy of the created template or null if the operation is 
+     * unsuccessful.
+     */
+    public byte[] getTemplate()
+    {
+        return Copy( m_Template );
+    }
+
+    /**
+     * Returns the template quality: 1 (the lowest quality) to 10 (best 
+     * quality), or 0 if the operation is unsuccessful.
+     */
+    public int getQuality()
+    {
+        return m_Quality;
+    }
+
+    /**
+     * Returns <code>true</code> if the new template matches a record of the
+     * duplicate gallery.
+     */
+    public boolean isDuplicate()
+    {
+        return m_DuplicateKey != null;
+    }
+
+    /**
+     * Returns a copy of the key of the matching record of the duplicate 
+     * gallery or null (see <code>FutronicEnrollment.getDuplicateKey</code>).
+     */
+    public byte[] getDuplicateKey()
+    {
+        return Copy( m_DuplicateKey );
+    }
+
+    /**
+     * Returns the return code of the duplicate check or 
+     * <code>FutronicEnrollment.DUPLICATE_CHECK_NOT_RUN</code>.
+     */
+    public int getDuplicateCheckResult()
+    {
+        return m_DuplicateCheckResult;
+    }
+
+    private final byte[] m_Template;
+
+    private final int m_Quality;
+
+    private final byte[] m_DuplicateKey;
+
+    private final int m_DuplicateCheckResult;
+}
@@ -1,7 +1,20 @@
 package br.com.biroska.futronic.sdkHelper.enroll;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import br.com.biroska.futronic.sdkHelper.base.FtrSdkLocks;
 import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.callbacks.ICallBack;
+import br.com.biroska.futronic.sdkHelper.callbacks.NullCallBack;
+import br.com.biroska.futronic.sdkHelper.data.gallery.ITemplateGallery;
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyResult;
+import br.com.biroska.futronic.sdkHelper.data.identification.FutronicIdentification;
+import br.com.biroska.futronic.sdkHelper.data.identification.IdentificationResult;
 import br.com.biroska.futronic.sdkHelper.enums.EnrollmentState;
+import br.com.biroska.futronic.sdkHelper.enums.OperationKind;
 import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
 
 /**
@@ -12,6 +25,16 @@ public class FutronicEnrollment extends FutronicSdkBase implements Runnable
     protected static int MinModelsValue = 1;
     protected static int MaxModelsValue = 10;
     protected static int DefaultModelsValue = 5;
+
+    /**
+     * The duplicate check result when no duplicate check was run.
+     */
+    public static final int DUPLICATE_CHECK_NOT_RUN = -1;
+
+    /**
+     * The default number of records in one shard of the duplicate check.
+     */
+    public static final int DEFAULT_DUPLICATE_SHARD_SIZE = 10000;
     
     /**
      * The FutronicEnrollment class constructor.
@@ -29,13 +52,19 @@ public class FutronicEnrollment extends FutronicSdkBase implements Runnable
         m_Template = null;
         m_Quality = 0;
         m_MaxModels = DefaultModelsValue;
+        m_DuplicateGallery = null;
+        m_DuplicateExecutor = null;
+        m_DuplicateShardSize = DEFAULT_DUPLICATE_SHARD_SIZE;
+        m_DuplicateKey = null;
+        m_DuplicateCheckResult = DUPLICATE_CHECK_NOT_RUN;
+        m_DuplicateSearch = null;
     }
     
     /**
      * This function starts the enrollment operation.
      *
-     * The enrollment operation starts in its own thread. To interact with the 
-     * enrollment operation caller must implement the <code>IEnrollmentCallBack</code>
+     * The enrollment operation runs on the scheduler (see <code>setScheduler</code>).
+     * To interact with the enrollment operation caller must implement the <code>IEnrollmentCallBack</code>
      * interface and should specify it. The interface methods denote following:
      * <table>
      * <thead>
@@ -72,6 +101,11 @@ public class FutronicEnrollment extends FutronicSdkBase implements Runnable
      * template. The next call of the enrollment operation removes the last 
      * created template.
      *
+     * If a duplicate gallery is set (see <code>setDuplicateGallery</code>), 
+     * the new template is searched in it before 
+     * <code>OnEnrollmentComplete</code> is signaled, and the key of the found
+     * record is available from <code>getDuplicateKey</code>.
+     *
      * @param callBack reference to call back interface (can not be NULL)
      *
      * @exception IllegalStateException the object is not in an appropriate 
@@ -79,9 +113,12 @@ public class FutronicEnrollment extends FutronicSdkBase implements Runnable
      *
      * @exception NullPointerException a null reference parameter callBack is 
      * passed to the function.
+     *
+     * @exception RejectedExecutionException all workers of the scheduler are 
+     * busy and its queue is full.
      */
     public void Enrollment( IEnrollmentCallBack callBack )
-        throws IllegalStateException, NullPointerException
+        throws IllegalStateException, NullPointerException, RejectedExecutionException
     {
         CheckDispose();
 
@@ -93,13 +130,85 @@ public class FutronicEnrollment extends FutronicSdkBase implements Runnable
 
         m_State = EnrollmentState.process_in_progress;
         m_CallBack = callBack;
-        m_bCancel = false;
+        ResetCancel();
         
-        // run new thread
-        m_WorkedThread = new Thread( this, "Enrollment operation" );
-        m_WorkedThread.start();
+        // run the operation on the scheduler
+        try
+        {
+            m_WorkedTask = m_Scheduler.Submit( this );
+        }
+        catch( RejectedExecutionException e )
+        {
+            m_State = EnrollmentState.ready_to_process;
+            throw e;
+        }
     }
         
+    /**
+     * This function starts the enrollment operation on the executor and 
+     * returns its future.
+     *
+     * The call-back interface receives the same events as in 
+     * <code>Enrollment</code>, except <code>OnEnrollmentComplete</code>: the 
+     * future is completed instead.
+     *
+     * @param callBack reference to call back interface or null if the caller 
+     * does not need the events.
+     * @param executor the executor that runs the operation (can not be NULL).
+     *
+     * @return the future completed with the enrollment result.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     *
+     * @exception NullPointerException a null reference parameter executor is 
+     * passed to the function.
+     *
+     * @exception RejectedExecutionException the executor rejects the operation.
+     */
+    public CompletableFuture<EnrollmentResult> EnrollmentAsync( ICallBack callBack, Executor executor )
+        throws IllegalStateException, NullPointerException, RejectedExecutionException
+    {
+        CheckDispose();
+
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+
+        m_CallBack = (callBack != null) ? callBack : NullCallBack.INSTANCE;
+        return StartAsync( executor, EnrollmentState.process_in_progress, new Callable<EnrollmentResult>()
+        {
+            public EnrollmentResult call()
+            {
+                int nResult = DoEnrollment();
+                return new EnrollmentResult( nResult, m_Template, m_Quality, m_FARN, m_DuplicateKey, m_DuplicateCheckResult );
+            }
+        } );
+    }
+
+    /**
+     * Restores the default settings, removes the last created template and
+     * the duplicate gallery. See <code>FutronicSdkBase.Reset</code>.
+     *
+     * @exception IllegalStateException the class instance is disposed. Any 
+     * calls are prohibited.
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. An operation is running.
+     */
+    public void Reset()
+        throws IllegalStateException
+    {
+        super.Reset();
+        m_bMIOTControlOff = true;
+        m_Template = null;
+        m_Quality = 0;
+        m_MaxModels = DefaultModelsValue;
+        m_DuplicateGallery = null;
+        m_DuplicateExecutor = null;
+        m_DuplicateShardSize = DEFAULT_DUPLICATE_SHARD_SIZE;
+        m_DuplicateKey = null;
+        m_DuplicateCheckResult = DUPLICATE_CHECK_NOT_RUN;
+    }
+
     /**
      * get the MIOT mode setting
      *
@@ -210,22 +319,289 @@ public class FutronicEnrollment extends FutronicSdkBase implements Runnable
     }
     
     /**
-     * The main thread of the enrollment operation.
+     * get the gallery searched for duplicates of the new template, or null 
+     * if the duplicate check is off.
+     *
+     * @exception IllegalStateException the object disposed.
      */
-    public void run()
+    public ITemplateGallery getDuplicateGallery()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_DuplicateGallery;
+    }
+
+    /**
+     * set the gallery searched for duplicates of the new template.
+     *
+     * After a successful capture the enrollment operation searches the new 
+     * template in the gallery, in parallel shards (see 
+     * <code>setDuplicateShardSize</code>), with the FARN value and the fast 
+     * mode of this object. The search runs before <code>OnEnrollmentComplete</code>
+     * is signaled or the future is completed, so its time adds to the 
+     * enrollment time instead of a later batch comparison of all templates.
+     * The result does not change the return code of the enrollment, except 
+     * a cancelled search or a failed capture of the base template (see 
+     * below): see <code>getDuplicateKey</code> and 
+     * <code>getDuplicateCheckResult</code>.
+     *
+     * The new template is an enrollment template. Backends which compare the
+     * templates directly (like <code>FutronicSimulatedBackend</code>) search
+     * it as it is. The native SDK expects a base template created for the 
+     * identification purpose and rejects the enrollment template with 
+     * <code>RETCODE_INVALID_PURPOSE</code>: then the enrollment operation 
+     * captures such a base template of the same finger (the call-back 
+     * interface gets one more "put on" and "take off") and searches it 
+     * instead; later enrollments capture it at once. If this capture fails, 
+     * the enrollment fails with its return code, so a duplicate check which 
+     * could not run is never reported as "no duplicate".
+     *
+     * @param Gallery new value. The value null switches the duplicate check off.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     */
+    public void setDuplicateGallery( ITemplateGallery Gallery )
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+        m_DuplicateGallery = Gallery;
+    }
+
+    /**
+     * get the executor that runs the shards of the duplicate check.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public Executor getDuplicateExecutor()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_DuplicateExecutor;
+    }
+
+    /**
+     * set the executor that runs the shards of the duplicate check.
+     *
+     * @param ExecutorService new value. If it is null, the common 
+     * <code>ForkJoinPool</code> is used.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     */
+    public void setDuplicateExecutor( Executor ExecutorService )
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+        m_DuplicateExecutor = ExecutorService;
+    }
+
+    /**
+     * get the maximum number of records in one shard of the duplicate check.
+     *
+     * @exception IllegalStateException the object disposed.
+     */
+    public int getDuplicateShardSize()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        return m_DuplicateShardSize;
+    }
+
+    /**
+     * set the maximum number of records in one shard of the duplicate check
+     * (see <code>FutronicIdentification.setShardSize</code>). The value 0 
+     * searches the gallery in one piece.
+     *
+     * @param nShardSize new value
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation or the object disposed.
+     * @exception IllegalArgumentException the argument nShardSize is negative.
+     */
+    public void setDuplicateShardSize( int nShardSize )
+        throws IllegalStateException, IllegalArgumentException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation" );
+        if( nShardSize < 0 )
+            throw new IllegalArgumentException( "The argument nShardSize has invalid value" );
+        m_DuplicateShardSize = nShardSize;
+    }
+
+    /**
+     * Returns the key of the record of the duplicate gallery which matches 
+     * the template of the last enrollment operation.
+     *
+     * Returns a copy of the key, or null if no record matches or the 
+     * duplicate check was not run or failed (see 
+     * <code>getDuplicateCheckResult</code>).
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation is started. 
+     * @exception IllegalStateException the object disposed.
+     */
+    public byte[] getDuplicateKey()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation. The enrollment operation is started" );
+        return (m_DuplicateKey != null) ? m_DuplicateKey.clone() : null;
+    }
+
+    /**
+     * Returns the Futronic SDK return code of the duplicate check of the 
+     * last enrollment operation, or <code>DUPLICATE_CHECK_NOT_RUN</code> if 
+     * no duplicate gallery is set or the enrollment failed.
+     *
+     * @exception IllegalStateException the object is not in an appropriate 
+     * state for the requested operation. The enrollment operation is started. 
+     * @exception IllegalStateException the object disposed.
+     */
+    public int getDuplicateCheckResult()
+        throws IllegalStateException
+    {
+        CheckDispose();
+        if( m_State != EnrollmentState.ready_to_process )
+            throw new IllegalStateException( "The object is not in an appropriate state for the requested operation. The enrollment operation is started" );
+        return m_DuplicateCheckResult;
+    }
+
+    protected byte[] getProcessTemplate()
+    {
+        return m_Template;
+    }
+
+    protected void setProcessTemplate( byte[] Template, int Quality )
+    {
+        m_Template = Template;
+        m_Quality = Quality;
+    }
+
+    /**
+     * Does the enrollment operation in the calling thread.
+     *
+     * @return the Futronic SDK return code.
+     */
+    @SuppressWarnings("try")
+    protected int DoEnrollment()
     {
         int nResult = RETCODE_INTERNAL_ERROR;
+        m_DuplicateKey = null;
+        m_DuplicateCheckResult = DUPLICATE_CHECK_NOT_RUN;
+        try( FtrSdkLocks.Permit permit = FtrSdkLocks.Capture( m_FrameSource ) )
+        {
+            m_Template = null;
+            m_Quality = 0;
+            BeginCapture();
+            try
+            {
+                nResult = m_Backend.Enroll( this );
+            }
+            finally
+            {
+                EndCapture( OperationKind.enrollment, nResult );
+            }
+        }
+
+        // the capture lock is released, the search takes match permits
+        if( (nResult == RETCODE_OK) && (m_DuplicateGallery != null) )
+            nResult = DoDuplicateCheck();
+        return nResult;
+    }
+
+    /**
+     * Searches the new template in the duplicate gallery in the calling 
+     * thread. If the backend rejects the enrollment template, a base template
+     * for the identification purpose is captured and searched instead.
+     *
+     * @return <code>RETCODE_CANCELED_BY_USER</code> if the enrollment was 
+     * cancelled during the search, the return code of the failed capture of
+     * the base template, otherwise <code>RETCODE_OK</code>.
+     */
+    protected int DoDuplicateCheck()
+    {
+        if( isCancelRequested() )
+        {
+            m_DuplicateCheckResult = RETCODE_CANCELED_BY_USER;
+            return RETCODE_CANCELED_BY_USER;
+        }
+
         try
         {
-            synchronized( m_SyncRoot )
+            if( m_DuplicateSearch == null )
+                m_DuplicateSearch = new DuplicateSearch( this );
+        }
+        catch( FutronicException e )
+        {
+            m_DuplicateCheckResult = e.getErrorCode();
+            return RETCODE_OK;
+        }
+
+        DuplicateSearch search = m_DuplicateSearch;
+        IdentificationResult Found = null;
+        if( !search.m_bCaptureBase )
+        {
+            Found = search.Search( m_DuplicateGallery, m_Template );
+            search.m_bCaptureBase = (Found.getRetCode() == RETCODE_INVALID_PURPOSE);
+        }
+        if( search.m_bCaptureBase )
+        {
+            // the backend matches only base templates of the identification purpose
+            FlushCallBacks();
+            int nResult = search.CaptureBaseTemplate();
+            if( nResult != RETCODE_OK )
+            {
+                m_DuplicateCheckResult = nResult;
+                return nResult;
+            }
+            Found = search.Search( m_DuplicateGallery, null );
+            if( Found.getRetCode() == RETCODE_INVALID_PURPOSE )
             {
-                m_Template = null;
-                m_Quality = 0;
-                nResult = FutronicEnroll();
+                m_DuplicateCheckResult = RETCODE_INVALID_PURPOSE;
+                return RETCODE_INVALID_PURPOSE;
             }
         }
+
+        m_DuplicateCheckResult = Found.getRetCode();
+        if( m_DuplicateCheckResult == RETCODE_OK )
+            m_DuplicateKey = Found.getKeyValue();
+        return (m_DuplicateCheckResult == RETCODE_CANCELED_BY_USER) ? RETCODE_CANCELED_BY_USER : RETCODE_OK;
+    }
+
+    /**
+     * Releases the duplicate check search together with the operation. See
+     * <code>FutronicSdkBase.Dispose</code>.
+     */
+    public void Dispose( long nTimeout )
+        throws IllegalArgumentException
+    {
+        super.Dispose( nTimeout );
+        DuplicateSearch search = m_DuplicateSearch;
+        m_DuplicateSearch = null;
+        if( search != null )
+            search.Dispose( nTimeout );
+    }
+
+    /**
+     * The main thread of the enrollment operation.
+     */
+    public void run()
+    {
+        int nResult = RETCODE_INTERNAL_ERROR;
+        try
+        {
+            nResult = DoEnrollment();
+        }
         finally
         {
+            FlushCallBacks();
             m_State = EnrollmentState.ready_to_process;
             ((IEnrollmentCallBack)m_CallBack).OnEnrollmentComplete( nResult == RETCODE_OK, nResult );
         }
@@ -256,4 +632,129 @@ public class FutronicEnrollment extends FutronicSdkBase implements Runnable
      */
     private int         m_MaxModels;
 
+    /**
+     * The gallery searched for duplicates, or null.
+     */
+    private ITemplateGallery m_DuplicateGallery;
+
+    /**
+     * The executor of the duplicate check shards, or null for the common pool.
+     */
+    private Executor    m_DuplicateExecutor;
+
+    /**
+     * Maximum number of records in one shard of the duplicate check.
+     */
+    private int         m_DuplicateShardSize;
+
+    /**
+     * The key of the duplicate found by the last enrollment operation, or null.
+     */
+    private byte[]      m_DuplicateKey;
+
+    /**
+     * The return code of the last duplicate check.
+     */
+    private int         m_DuplicateCheckResult;
+
+    /**
+     * The search of the duplicate check, created on first use and reused by
+     * the next enrollments.
+     */
+    private DuplicateSearch m_DuplicateSearch;
+
+    /**
+     * The identification of the new template in the duplicate gallery. It 
+     * is cancelled together with the enrollment operation, by 
+     * <code>OnCalcel</code> or by the deadline.
+     */
+    private static final class DuplicateSearch extends FutronicIdentification
+    {
+        DuplicateSearch( FutronicEnrollment Owner )
+            throws FutronicException
+        {
+            m_Owner = Owner;
+            m_bCaptureBase = false;
+        }
+
+        /**
+         * Searches a template in the gallery with the current settings of the
+         * owner, through the gallery identification.
+         *
+         * @param Gallery the gallery.
+         * @param Template the template, or null to search the captured base 
+         * template.
+         *
+         * @return the result with the key of the matched record.
+         */
+        IdentificationResult Search( ITemplateGallery Gallery, byte[] Template )
+        {
+            // the setters need the ready_to_process state; the search follows
+            // the settings of the owner
+            m_FarnLevel = m_Owner.m_FarnLevel;
+            m_FARN = m_Owner.m_FARN;
+            m_bFastMode = m_Owner.m_bFastMode;
+            setExecutor( m_Owner.m_DuplicateExecutor );
+            setShardSize( m_Owner.m_DuplicateShardSize );
+            if( Template != null )
+                setBaseTemplate( Template );
+
+            m_State = EnrollmentState.continue_in_progress;
+            ResetCancel();
+            try
+            {
+                return DoIdentification( Gallery, new FtrIdentifyResult() );
+            }
+            finally
+            {
+                m_State = EnrollmentState.ready_to_continue;
+                m_bCancel = false;
+            }
+        }
+
+        /**
+         * Captures a base template for the identification purpose with the 
+         * capture settings and the call-back interface of the owner.
+         *
+         * @return the Futronic SDK return code.
+         */
+        int CaptureBaseTemplate()
+        {
+            m_bFakeDetection = m_Owner.m_bFakeDetection;
+            m_bFFDControl = m_Owner.m_bFFDControl;
+            m_Version = m_Owner.m_Version;
+            m_InternalVersion = m_Owner.m_InternalVersion;
+            m_CallBack = m_Owner.m_CallBack;
+
+            int nResult = RETCODE_INTERNAL_ERROR;
+            m_State = EnrollmentState.process_in_progress;
+            ResetCancel();
+            try
+            {
+                nResult = DoGetBaseTemplate();
+                return nResult;
+            }
+            finally
+            {
+                FlushCallBacks();
+                m_CallBack = null;
+                m_State = (nResult == RETCODE_OK) ? EnrollmentState.ready_to_continue : EnrollmentState.ready_to_process;
+                m_bCancel = false;
+            }
+        }
+
+        protected boolean isCancelRequested()
+        {
+            return super.isCancelRequested() || m_Owner.isCancelRequested();
+        }
+
+        private final FutronicEnrollment m_Owner;
+
+        /**
+         * Set when the backend rejected the enrollment template: the search
+         * needs a captured base template.
+         */
+        boolean m_bCaptureBase;
+    }
+
 }
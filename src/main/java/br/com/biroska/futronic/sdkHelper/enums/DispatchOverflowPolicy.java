@@ -0,0 +1,22 @@
+package br.com.biroska.futronic.sdkHelper.enums;
+
+/**
+ * The overflow policies of the asynchronous call-back dispatch.
+ *
+ * The "put on" and "take off" events are never dropped with any policy; only
+ * frames are dropped.
+ */
+public enum DispatchOverflowPolicy
+{
+    /**
+     * Frames are kept in a bounded ring. When the ring is full, the oldest 
+     * frame is dropped.
+     */
+    drop_oldest_frame,
+
+    /**
+     * Only the latest frame is kept. Each new frame replaces the frame which 
+     * is not delivered yet.
+     */
+    latest_frame_only
+}
@@ -0,0 +1,34 @@
+package br.com.biroska.futronic.sdkHelper.enums;
+
+/**
+ * The operation kinds used by the metrics.
+ */
+public enum OperationKind
+{
+    /**
+     * The enrollment operation (<code>FutronicEnrollment</code>).
+     */
+    enrollment,
+
+    /**
+     * The verification operation (<code>FutronicVerification</code>).
+     */
+    verification,
+
+    /**
+     * The enrollment operation for the identification purpose 
+     * (<code>FutronicIdentification.GetBaseTemplate</code>).
+     */
+    base_template,
+
+    /**
+     * The identification operation (<code>FutronicIdentification.Identification</code>).
+     */
+    identification,
+
+    /**
+     * The cascaded identification operation 
+     * (<code>FutronicIdentification.CascadedIdentification</code>).
+     */
+    cascaded_identification
+}
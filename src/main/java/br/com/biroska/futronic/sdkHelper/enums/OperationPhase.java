@@ -0,0 +1,75 @@
+package br.com.biroska.futronic.sdkHelper.enums;
+
+/**
+ * The phases of an operation measured by the metrics.
+ *
+ * The SDK does not report the end of the capture or the extraction, so the
+ * phases of a capture are derived from the call-back events:
+ * <table>
+ * <thead>
+ *  <tr>
+ *      <td>Phase</td>
+ *      <td>Time</td>
+ *  </tr>
+ * </thead>
+ * <tr>
+ *      <td>wait_for_finger</td>
+ *      <td>From each <code>OnPutOn</code> event to the next <code>OnTakeOff</code>
+ *      event. It depends on the user.</td>
+ *  </tr>
+ * <tr>
+ *      <td>capture</td>
+ *      <td>From the start of the native call to the last frame, without the
+ *      wait for the finger.</td>
+ *  </tr>
+ * <tr>
+ *      <td>extraction</td>
+ *      <td>From the last frame to the end of the native call. For the 
+ *      verification it includes the comparison with the source template.</td>
+ *  </tr>
+ * <tr>
+ *      <td>match</td>
+ *      <td>The comparison with a set of source templates (identification 
+ *      only), including the wait for a match permit.</td>
+ *  </tr>
+ * <tr>
+ *      <td>prefilter</td>
+ *      <td>Stage 1 of the cascaded identification: the fast, permissive 
+ *      sweep of the whole set which builds the shortlist.</td>
+ *  </tr>
+ * <tr>
+ *      <td>refine</td>
+ *      <td>Stage 2 of the cascaded identification: the strict match of the
+ *      shortlist.</td>
+ *  </tr>
+ * <tr>
+ *      <td>cancellation</td>
+ *      <td>From the cancellation request (<code>OnCalcel</code> or the 
+ *      deadline) to the end of the operation. It is recorded only for the
+ *      cancelled operations.</td>
+ *  </tr>
+ * <tr>
+ *      <td>total</td>
+ *      <td>The whole native call (capture operations) or match 
+ *      (identification).</td>
+ *  </tr>
+ * </table>
+ */
+public enum OperationPhase
+{
+    wait_for_finger,
+
+    capture,
+
+    extraction,
+
+    match,
+
+    prefilter,
+
+    refine,
+
+    cancellation,
+
+    total
+}
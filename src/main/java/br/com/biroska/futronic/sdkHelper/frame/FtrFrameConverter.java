@@ -0,0 +1,112 @@
+package br.com.biroska.futronic.sdkHelper.frame;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts the frames received from the scanner to gray scale images.
+ *
+ * The frame data is copied into the image raster with one
+ * <code>System.arraycopy</code>. If the image reuse is enabled, the converter 
+ * keeps one image per resolution and returns the same image for every frame 
+ * of that resolution, so no memory is allocated after the first frame. The 
+ * reused image is valid only until the next conversion.
+ *
+ * The class is not thread-safe; each operation has its own converter.
+ */
+public class FtrFrameConverter
+{
+    /**
+     * Creates a new instance of FtrFrameConverter.
+     *
+     * @param bReuseImage <code>true</code> to return the same image for 
+     * every frame of the same resolution.
+     */
+    public FtrFrameConverter( boolean bReuseImage )
+    {
+        m_bReuseImage = bReuseImage;
+        m_Images = new HashMap<Long, BufferedImage>();
+        m_LastImage = null;
+    }
+
+    /**
+     * Converts a frame to a gray scale image.
+     *
+     * @param pBitmap the frame data, one byte per pixel, row by row.
+     * @param Width the frame width.
+     * @param Height the frame height.
+     *
+     * @return the image with the frame.
+     */
+    public BufferedImage Convert( byte[] pBitmap, int Width, int Height )
+    {
+        BufferedImage hImage = getImage( Width, Height );
+        byte[] rgData = ((DataBufferByte)hImage.getRaster().getDataBuffer()).getData();
+        System.arraycopy( pBitmap, 0, rgData, 0, Math.min( pBitmap.length, rgData.length ) );
+        return hImage;
+    }
+
+    /**
+     * get the image reuse setting.
+     */
+    public boolean getReuseImage()
+    {
+        return m_bReuseImage;
+    }
+
+    /**
+     * set the image reuse setting. Disabling the reuse releases the kept images.
+     *
+     * @param bReuseImage new value
+     */
+    public void setReuseImage( boolean bReuseImage )
+    {
+        m_bReuseImage = bReuseImage;
+        if( !bReuseImage )
+        {
+            m_Images.clear();
+            m_LastImage = null;
+        }
+    }
+
+    /**
+     * Returns an image for the frame: the kept one if reuse is enabled, 
+     * otherwise a new image.
+     */
+    private BufferedImage getImage( int Width, int Height )
+    {
+        if( !m_bReuseImage )
+            return new BufferedImage( Width, Height, BufferedImage.TYPE_BYTE_GRAY );
+
+        if( (m_LastImage != null) && (m_LastImage.getWidth() == Width) && (m_LastImage.getHeight() == Height) )
+            return m_LastImage;
+
+        Long nKey = Long.valueOf( ((long)Width << 32) | (Height & 0xFFFFFFFFL) );
+        BufferedImage hImage = m_Images.get( nKey );
+        if( hImage == null )
+        {
+            hImage = new BufferedImage( Width, Height, BufferedImage.TYPE_BYTE_GRAY );
+            m_Images.put( nKey, hImage );
+        }
+        m_LastImage = hImage;
+        return hImage;
+    }
+
+    /**
+     * <code>true</code> if the same image is returned for every frame of the 
+     * same resolution.
+     */
+    private boolean m_bReuseImage;
+
+    /**
+     * The kept images by resolution.
+     */
+    private final Map<Long, BufferedImage> m_Images;
+
+    /**
+     * The last returned image.
+     */
+    private BufferedImage m_LastImage;
+}
@@ -0,0 +1,169 @@
+package br.com.biroska.futronic.sdkHelper.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe latency histogram with log-linear buckets.
+ *
+ * Each power of two is split into 8 linear buckets, so a value read from the
+ * histogram is at most 12.5% above the recorded value. Latencies are in 
+ * nanoseconds; the histogram may also hold other non-negative values, like
+ * the shortlist sizes of the cascaded identification. Recording is 
+ * lock-free and does not allocate memory.
+ */
+public final class FtrLatencyHistogram
+{
+    /**
+     * Number of bits of the linear part of a bucket.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    /**
+     * Creates a new empty instance of FtrLatencyHistogram.
+     */
+    public FtrLatencyHistogram()
+    {
+        m_Counts = new AtomicLongArray( BUCKET_COUNT );
+        m_Count = new AtomicLong();
+        m_Sum = new AtomicLong();
+        m_Max = new AtomicLong();
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param nValue the value in nanoseconds.
+     */
+    public void Record( long nValue )
+    {
+        if( nValue < 0 )
+            nValue = 0;
+        m_Counts.incrementAndGet( BucketIndex( nValue ) );
+        m_Sum.addAndGet( nValue );
+        long nMax = m_Max.get();
+        while( (nValue > nMax) && !m_Max.compareAndSet( nMax, nValue ) )
+            nMax = m_Max.get();
+        m_Count.incrementAndGet();
+    }
+
+    /**
+     * get the number of recorded values.
+     */
+    public long getCount()
+    {
+        return m_Count.get();
+    }
+
+    /**
+     * get the sum of recorded values in nanoseconds.
+     */
+    public long getSum()
+    {
+        return m_Sum.get();
+    }
+
+    /**
+     * get the maximal recorded value in nanoseconds.
+     */
+    public long getMax()
+    {
+        return m_Max.get();
+    }
+
+    /**
+     * get the mean of recorded values in nanoseconds or 0, if the histogram
+     * is empty.
+     */
+    public double getMean()
+    {
+        long nCount = m_Count.get();
+        return (nCount == 0) ? 0 : (double)m_Sum.get() / nCount;
+    }
+
+    /**
+     * get the value at the percentile.
+     *
+     * @param dPercentile the percentile from 0 to 100.
+     *
+     * @return the upper bound of the bucket that contains the value, but not
+     * more than the maximal value, in nanoseconds. Returns 0, if the histogram
+     * is empty.
+     */
+    public long getValueAtPercentile( double dPercentile )
+    {
+        long nTotal = 0;
+        for( int i = 0; i < BUCKET_COUNT; i++ )
+            nTotal += m_Counts.get( i );
+        if( nTotal == 0 )
+            return 0;
+
+        long nRank = (long)Math.ceil( Math.min( 100.0, Math.max( 0.0, dPercentile ) ) / 100.0 * nTotal );
+        if( nRank < 1 )
+            nRank = 1;
+        long nSeen = 0;
+        for( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            nSeen += m_Counts.get( i );
+            if( nSeen >= nRank )
+                return Math.min( BucketUpperBound( i ), m_Max.get() );
+        }
+        return m_Max.get();
+    }
+
+    /**
+     * Removes all recorded values. The values recorded at the same time may
+     * be lost partly.
+     */
+    public void Reset()
+    {
+        for( int i = 0; i < BUCKET_COUNT; i++ )
+            m_Counts.set( i, 0 );
+        m_Count.set( 0 );
+        m_Sum.set( 0 );
+        m_Max.set( 0 );
+    }
+
+    public String toString()
+    {
+        return String.format( "count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+                              getCount(), getMean() / 1000.0,
+                              getValueAtPercentile( 50 ) / 1000.0,
+                              getValueAtPercentile( 99 ) / 1000.0,
+                              getMax() / 1000.0 );
+    }
+
+    private static int BucketIndex( long nValue )
+    {
+        if( nValue < SUB_BUCKET_COUNT )
+            return (int)nValue;
+        int nExponent = 63 - Long.numberOfLeadingZeros( nValue );
+        int nSub = (int)(nValue >>> (nExponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (nExponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + nSub;
+    }
+
+    private static long BucketUpperBound( int nIndex )
+    {
+        if( nIndex < SUB_BUCKET_COUNT )
+            return nIndex;
+        int nShift = nIndex / SUB_BUCKET_COUNT - 1;
+        long nSub = nIndex % SUB_BUCKET_COUNT;
+        long nBound = ((SUB_BUCKET_COUNT + nSub + 1) << nShift) - 1;
+        return (nBound < 0) ? Long.MAX_VALUE : nBound;
+    }
+
+    /**
+     * Number of values per bucket.
+     */
+    private final AtomicLongArray m_Counts;
+
+    private final AtomicLong m_Count;
+
+    private final AtomicLong m_Sum;
+
+    private final AtomicLong m_Max;
+}
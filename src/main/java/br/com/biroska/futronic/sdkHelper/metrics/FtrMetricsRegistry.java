@@ -0,0 +1,273 @@
+package br.com.biroska.futronic.sdkHelper.metrics;
+
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import br.com.biroska.futronic.sdkHelper.enums.OperationKind;
+import br.com.biroska.futronic.sdkHelper.enums.OperationPhase;
+
+/**
+ * Keeps the latency histograms of the operations by operation kind, phase 
+ * and return code.
+ *
+ * Every operation records into the default registry unless another registry
+ * is set with <code>FutronicSdkBase.setMetrics</code>. For each kind and 
+ * phase there is one histogram for all return codes and one histogram per
+ * return code. The number of operations with a return code is the count of 
+ * its <code>total</code> histogram.
+ *
+ * <pre>
+ * FtrLatencyHistogram h = FtrMetricsRegistry.getDefault().getHistogram( 
+ *         OperationKind.verification, OperationPhase.wait_for_finger );
+ * long p99 = h.getValueAtPercentile( 99 );
+ * </pre>
+ */
+public class FtrMetricsRegistry
+{
+    /**
+     * The default registry.
+     */
+    private static final FtrMetricsRegistry m_Default = new FtrMetricsRegistry();
+
+    /**
+     * Gets the default registry.
+     */
+    public static FtrMetricsRegistry getDefault()
+    {
+        return m_Default;
+    }
+
+    /**
+     * Creates a new empty instance of FtrMetricsRegistry.
+     */
+    public FtrMetricsRegistry()
+    {
+        int nKinds = OperationKind.values().length;
+        int nPhases = OperationPhase.values().length;
+        m_Totals = new FtrLatencyHistogram[ nKinds ][ nPhases ];
+        for( int i = 0; i < nKinds; i++ )
+            for( int j = 0; j < nPhases; j++ )
+                m_Totals[i][j] = new FtrLatencyHistogram();
+        m_ByRetCode = new ConcurrentHashMap<Long, FtrLatencyHistogram>();
+        m_Values = new ConcurrentHashMap<String, FtrLatencyHistogram>();
+        m_bEnabled = true;
+    }
+
+    /**
+     * Returns <code>true</code> if the operations record their latencies.
+     */
+    public boolean isEnabled()
+    {
+        return m_bEnabled;
+    }
+
+    /**
+     * Enables or disables the recording. The recorded values are kept.
+     *
+     * @param bEnabled new value
+     */
+    public void setEnabled( boolean bEnabled )
+    {
+        m_bEnabled = bEnabled;
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param Kind the operation kind.
+     * @param Phase the phase.
+     * @param nRetCode the return code of the operation.
+     * @param nNanos the latency in nanoseconds.
+     */
+    public void Record( OperationKind Kind, OperationPhase Phase, int nRetCode, long nNanos )
+    {
+        if( !m_bEnabled )
+            return;
+        m_Totals[ Kind.ordinal() ][ Phase.ordinal() ].Record( nNanos );
+        Long nKey = Long.valueOf( Key( Kind, Phase, nRetCode ) );
+        FtrLatencyHistogram histogram = m_ByRetCode.get( nKey );
+        if( histogram == null )
+        {
+            FtrLatencyHistogram newHistogram = new FtrLatencyHistogram();
+            histogram = m_ByRetCode.putIfAbsent( nKey, newHistogram );
+            if( histogram == null )
+                histogram = newHistogram;
+        }
+        histogram.Record( nNanos );
+    }
+
+    /**
+     * Records a value which is not a latency, like a shortlist size.
+     *
+     * @param szName the name of the value.
+     * @param nValue the value.
+     */
+    public void RecordValue( String szName, long nValue )
+    {
+        if( !m_bEnabled )
+            return;
+        FtrLatencyHistogram histogram = m_Values.get( szName );
+        if( histogram == null )
+        {
+            FtrLatencyHistogram newHistogram = new FtrLatencyHistogram();
+            histogram = m_Values.putIfAbsent( szName, newHistogram );
+            if( histogram == null )
+                histogram = newHistogram;
+        }
+        histogram.Record( nValue );
+    }
+
+    /**
+     * Gets the histogram of a value recorded with <code>RecordValue</code>.
+     *
+     * @param szName the name of the value.
+     *
+     * @return the histogram or null, if the value was not recorded.
+     */
+    public FtrLatencyHistogram getValueHistogram( String szName )
+    {
+        return m_Values.get( szName );
+    }
+
+    /**
+     * Gets the histogram of a phase for all return codes.
+     *
+     * @param Kind the operation kind.
+     * @param Phase the phase.
+     */
+    public FtrLatencyHistogram getHistogram( OperationKind Kind, OperationPhase Phase )
+    {
+        return m_Totals[ Kind.ordinal() ][ Phase.ordinal() ];
+    }
+
+    /**
+     * Gets the histogram of a phase for one return code.
+     *
+     * @param Kind the operation kind.
+     * @param Phase the phase.
+     * @param nRetCode the return code.
+     *
+     * @return the histogram or null, if no operation has completed with the 
+     * return code.
+     */
+    public FtrLatencyHistogram getHistogram( OperationKind Kind, OperationPhase Phase, int nRetCode )
+    {
+        return m_ByRetCode.get( Long.valueOf( Key( Kind, Phase, nRetCode ) ) );
+    }
+
+    /**
+     * Gets the number of completed operations of a kind.
+     *
+     * @param Kind the operation kind.
+     */
+    public long getOperationCount( OperationKind Kind )
+    {
+        return getHistogram( Kind, OperationPhase.total ).getCount();
+    }
+
+    /**
+     * Gets the number of operations of a kind completed with a return code.
+     *
+     * @param Kind the operation kind.
+     * @param nRetCode the return code.
+     */
+    public long getOperationCount( OperationKind Kind, int nRetCode )
+    {
+        FtrLatencyHistogram histogram = getHistogram( Kind, OperationPhase.total, nRetCode );
+        return (histogram == null) ? 0 : histogram.getCount();
+    }
+
+    /**
+     * Gets the return codes of the completed operations of a kind in 
+     * ascending order.
+     *
+     * @param Kind the operation kind.
+     */
+    public int[] getRetCodes( OperationKind Kind )
+    {
+        TreeSet<Integer> RetCodes = new TreeSet<Integer>();
+        for( Long nKey : m_ByRetCode.keySet() )
+        {
+            long nValue = nKey.longValue();
+            if( (int)(nValue >>> 40) == Kind.ordinal() )
+                RetCodes.add( Integer.valueOf( (int)nValue ) );
+        }
+        int[] rgRetCodes = new int[ RetCodes.size() ];
+        int i = 0;
+        for( Integer nRetCode : RetCodes )
+            rgRetCodes[ i++ ] = nRetCode.intValue();
+        return rgRetCodes;
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void Reset()
+    {
+        for( FtrLatencyHistogram[] rgHistograms : m_Totals )
+            for( FtrLatencyHistogram histogram : rgHistograms )
+                histogram.Reset();
+        m_ByRetCode.clear();
+        m_Values.clear();
+    }
+
+    /**
+     * Returns the non-empty histograms, one per line.
+     */
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for( OperationKind Kind : OperationKind.values() )
+        {
+            for( OperationPhase Phase : OperationPhase.values() )
+            {
+                FtrLatencyHistogram histogram = getHistogram( Kind, Phase );
+                if( histogram.getCount() == 0 )
+                    continue;
+                sb.append( Kind ).append( '.' ).append( Phase ).append( ": " ).append( histogram ).append( '\n' );
+                for( Map.Entry<Long, FtrLatencyHistogram> entry : m_ByRetCode.entrySet() )
+                {
+                    long nKey = entry.getKey().longValue();
+                    if( nKey >>> 32 == Key( Kind, Phase, 0 ) >>> 32 )
+                        sb.append( "  retcode " ).append( (int)nKey ).append( ": " ).append( entry.getValue() ).append( '\n' );
+                }
+            }
+        }
+        for( Map.Entry<String, FtrLatencyHistogram> entry : m_Values.entrySet() )
+        {
+            FtrLatencyHistogram histogram = entry.getValue();
+            sb.append( entry.getKey() ).append( ": " )
+              .append( String.format( "count=%d mean=%.1f p50=%d p99=%d max=%d",
+                                      histogram.getCount(), histogram.getMean(),
+                                      histogram.getValueAtPercentile( 50 ),
+                                      histogram.getValueAtPercentile( 99 ),
+                                      histogram.getMax() ) )
+              .append( '\n' );
+        }
+        return sb.toString();
+    }
+
+    private static long Key( OperationKind Kind, OperationPhase Phase, int nRetCode )
+    {
+        return ((long)Kind.ordinal() << 40) | ((long)Phase.ordinal() << 32) | (nRetCode & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The histograms for all return codes by kind and phase.
+     */
+    private final FtrLatencyHistogram[][] m_Totals;
+
+    /**
+     * The histograms by kind, phase and return code.
+     */
+    private final ConcurrentMap<Long, FtrLatencyHistogram> m_ByRetCode;
+
+    /**
+     * The histograms of other values by name.
+     */
+    private final ConcurrentMap<String, FtrLatencyHistogram> m_Values;
+
+    private volatile boolean m_bEnabled;
+}
@@ -0,0 +1,56 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the worker threads of the operation scheduler.
+ *
+ * This is the Java 21 version from META-INF/versions/21. Like the Java 8 
+ * version it creates named daemon platform threads by default. Set the system
+ * property <code>futronic.virtualThreads</code> to <code>true</code> to use 
+ * virtual threads.
+ *
+ * Most of the work of the workers is captures, which wait for a finger in a 
+ * native call (<code>FutronicEnroll</code>, <code>GetBaseTemplateProcess</code>).
+ * A virtual thread in a native call is pinned to its carrier thread, and the 
+ * default number of workers may reach the number of carriers, so the captures
+ * could stall all other virtual threads of the JVM. Virtual threads only pay
+ * off with a backend which does not block in native code, for example 
+ * <code>FutronicSimulatedBackend</code>.
+ */
+final class FtrOperationThreads
+{
+    private static final boolean VIRTUAL = Boolean.getBoolean( "futronic.virtualThreads" );
+
+    private FtrOperationThreads()
+    {
+    }
+
+    /**
+     * Returns <code>true</code> if the workers are virtual threads.
+     */
+    static boolean IsVirtual()
+    {
+        return VIRTUAL;
+    }
+
+    /**
+     * Creates a factory of named threads.
+     *
+     * @param szName the thread name prefix. The threads are named 
+     * "szName-1", "szName-2" and so on.
+     */
+    static ThreadFactory NewThreadFactory( final String szName )
+    {
+        if( VIRTUAL )
+            return Thread.ofVirtual().name( szName + "-", 1 ).factory();
+
+        final AtomicInteger nCounter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread( r, szName + "-" + nCounter.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.lang.ref.Cleaner;
+
+/**
+ * Runs a clean-up action when an object becomes unreachable.
+ *
+ * This is the Java 21 version from META-INF/versions/21: it uses 
+ * <code>java.lang.ref.Cleaner</code> with one daemon thread.
+ *
+ * The action must not refer to the tracked object, otherwise the object 
+ * never becomes unreachable.
+ */
+final class FtrResourceCleaner
+{
+    private static final Cleaner CLEANER = Cleaner.create( r -> {
+        Thread thread = new Thread( r, "Futronic cleaner" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    private FtrResourceCleaner()
+    {
+    }
+
+    /**
+     * Registers an object and its clean-up action.
+     *
+     * @param Owner the tracked object.
+     * @param Action the action run when the object becomes unreachable.
+     *
+     * @return the registration. Running it runs the action at most once and
+     * stops tracking the object.
+     */
+    static Runnable Register( Object Owner, Runnable Action )
+    {
+        return CLEANER.register( Owner, Action )::clean;
+    }
+}
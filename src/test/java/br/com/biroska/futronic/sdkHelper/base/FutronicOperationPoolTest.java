@@ -0,0 +1,203 @@
+package br.com.biroska.futronic.sdkHelper.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import br.com.biroska.futronic.sdkHelper.data.verification.FutronicVerification;
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * Tests of the operation pool with the simulated backend: reuse of the
+ * released objects and rejection of a second release.
+ */
+public class FutronicOperationPoolTest extends TestCase
+{
+    protected void setUp()
+    {
+        FutronicSdkBase.setBackend( new FutronicSimulatedBackend() );
+        m_Executor = Executors.newFixedThreadPool( 10 );
+        m_Pool = new FutronicOperationPool<FutronicVerification>( new IOperationFactory<FutronicVerification>()
+        {
+            public FutronicVerification Create()
+                throws FutronicException
+            {
+                return new FutronicVerification( new byte[ 0 ] );
+            }
+        }, 4 );
+        m_Taken = new ArrayList<FutronicVerification>();
+    }
+
+    protected void tearDown()
+        throws InterruptedException
+    {
+        // the objects still in use, so the next test can select its backend
+        for( FutronicVerification Operation : m_Taken )
+        {
+            try
+            {
+                m_Pool.Release( Operation );
+            }
+            catch( IllegalArgumentException e )
+            {
+                // released by the test
+            }
+        }
+        m_Pool.Dispose();
+        m_Executor.shutdownNow();
+        m_Executor.awaitTermination( 10, TimeUnit.SECONDS );
+    }
+
+    /**
+     * A released object is given out again.
+     */
+    public void testReleasedObjectIsReused()
+        throws FutronicException
+    {
+        FutronicVerification Operation = Acquire();
+        m_Pool.Release( Operation );
+
+        assertSame( Operation, Acquire() );
+        assertEquals( 1, m_Pool.getCreatedCount() );
+        assertEquals( 1, m_Pool.getReusedCount() );
+        assertEquals( 1, m_Pool.getActiveCount() );
+        assertEquals( 0, m_Pool.getIdleCount() );
+    }
+
+    /**
+     * A second release of an object is rejected, so the object is kept once
+     * and is not given to two users.
+     */
+    public void testDoubleReleaseIsRejected()
+        throws FutronicException
+    {
+        FutronicVerification Operation = Acquire();
+        m_Pool.Release( Operation );
+        try
+        {
+            m_Pool.Release( Operation );
+            fail();
+        }
+        catch( IllegalArgumentException e )
+        {
+        }
+
+        assertEquals( 1, m_Pool.getIdleCount() );
+        assertEquals( 0, m_Pool.getDiscardedCount() );
+        assertNotSame( Acquire(), Acquire() );
+    }
+
+    /**
+     * An object which is not taken from the pool is rejected and not
+     * disposed by it.
+     */
+    public void testForeignObjectIsRejected()
+        throws FutronicException
+    {
+        FutronicVerification Foreign = new FutronicVerification( new byte[ 0 ] );
+        try
+        {
+            m_Pool.Release( Foreign );
+            fail();
+        }
+        catch( IllegalArgumentException e )
+        {
+        }
+        finally
+        {
+            Foreign.Dispose();
+        }
+
+        assertEquals( 0, m_Pool.getIdleCount() );
+        assertEquals( 0, m_Pool.getDiscardedCount() );
+    }
+
+    /**
+     * Of the threads which release the same object at the same time, only
+     * one succeeds.
+     */
+    public void testConcurrentDoubleRelease()
+        throws Exception
+    {
+        final int nThreads = 8;
+        for( int nRound = 0; nRound < 100; nRound++ )
+        {
+            final FutronicVerification Operation = Acquire();
+            final CountDownLatch start = new CountDownLatch( 1 );
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for( int i = 0; i < nThreads; i++ )
+            {
+                futures.add( m_Executor.submit( new Callable<Boolean>()
+                {
+                    public Boolean call()
+                        throws InterruptedException
+                    {
+                        start.await();
+                        try
+                        {
+                            m_Pool.Release( Operation );
+                            return Boolean.TRUE;
+                        }
+                        catch( IllegalArgumentException e )
+                        {
+                            return Boolean.FALSE;
+                        }
+                    }
+                } ) );
+            }
+            start.countDown();
+
+            int nReleased = 0;
+            for( Future<Boolean> future : futures )
+            {
+                if( future.get( 10, TimeUnit.SECONDS ).booleanValue() )
+                    nReleased++;
+            }
+            assertEquals( 1, nReleased );
+            assertEquals( 1, m_Pool.getIdleCount() );
+            assertEquals( 0, m_Pool.getActiveCount() );
+        }
+        assertEquals( 1, m_Pool.getCreatedCount() );
+    }
+
+    /**
+     * The objects released when the pool is full are disposed.
+     */
+    public void testReleaseToFullPoolDisposes()
+        throws FutronicException
+    {
+        List<FutronicVerification> Operations = new ArrayList<FutronicVerification>();
+        for( int i = 0; i < 6; i++ )
+            Operations.add( Acquire() );
+        for( FutronicVerification Operation : Operations )
+            m_Pool.Release( Operation );
+
+        assertEquals( 4, m_Pool.getIdleCount() );
+        assertEquals( 2, m_Pool.getDiscardedCount() );
+    }
+
+    /**
+     * Takes an object from the pool; it is released by tearDown if the test
+     * does not release it.
+     */
+    private FutronicVerification Acquire()
+        throws FutronicException
+    {
+        FutronicVerification Operation = m_Pool.Acquire();
+        m_Taken.add( Operation );
+        return Operation;
+    }
+
+    private FutronicOperationPool<FutronicVerification> m_Pool;
+
+    private List<FutronicVerification> m_Taken;
+
+    private ExecutorService m_Executor;
+}
@@ -0,0 +1,280 @@
+package br.com.biroska.futronic.sdkHelper.data.gallery;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+import br.com.biroska.futronic.sdkHelper.enums.VersionCompatible;
+
+/**
+ * Tests of the gallery file: reading a saved file back, and the checks of
+ * the header, the index and the templates of a corrupted file.
+ *
+ * The keys are "000" to "099", so the records are stored in the order they
+ * are given; the template of record i has i + 1 bytes of the value i.
+ */
+public class FtrGalleryFileTest extends TestCase
+{
+    protected void setUp()
+        throws IOException
+    {
+        m_File = File.createTempFile( "gallery", ".ftr" );
+        VersionCompatible[] rgVersions = new VersionCompatible[ COUNT ];
+        Arrays.fill( rgVersions, VersionCompatible.ftr_version_current );
+        rgVersions[ 1 ] = VersionCompatible.ftr_version_previous;
+        FtrGalleryFile.Save( m_File, Records( COUNT ), rgVersions );
+    }
+
+    protected void tearDown()
+    {
+        m_File.delete();
+    }
+
+    /**
+     * A saved file is read back with its keys, templates and versions.
+     */
+    public void testSaveAndOpen()
+        throws IOException
+    {
+        FtrGalleryFile Gallery = FtrGalleryFile.Open( m_File );
+        try
+        {
+            assertEquals( COUNT, Gallery.getSize() );
+            assertEquals( -1, Gallery.Verify() );
+            FtrIdentifyRecord[] rgRecords = Gallery.toRecords();
+            for( int i = 0; i < COUNT; i++ )
+            {
+                assertTrue( Arrays.equals( Key( i ), Gallery.getKey( i ) ) );
+                assertTrue( Arrays.equals( Template( i ), Gallery.getTemplate( i ) ) );
+                assertTrue( Arrays.equals( Template( i ), rgRecords[i].m_Template ) );
+                assertEquals( i, Gallery.IndexOf( Key( i ) ) );
+            }
+            assertEquals( -1, Gallery.IndexOf( "100".getBytes() ) );
+            assertEquals( VersionCompatible.ftr_version_previous, Gallery.getTemplateVersion( 1 ) );
+            assertEquals( VersionCompatible.ftr_version_current, Gallery.getTemplateVersion( 2 ) );
+            assertNotSame( rgRecords, Gallery.toRecords() );
+        }
+        finally
+        {
+            Gallery.close();
+        }
+    }
+
+    /**
+     * Every opened gallery has its own version, also the same file opened
+     * twice.
+     */
+    public void testVersionIsUniquePerOpen()
+        throws IOException
+    {
+        FtrGalleryFile First = FtrGalleryFile.Open( m_File );
+        FtrGalleryFile Second = FtrGalleryFile.Open( m_File );
+        try
+        {
+            assertTrue( First.getVersion() != Second.getVersion() );
+        }
+        finally
+        {
+            First.close();
+            Second.close();
+        }
+    }
+
+    /**
+     * A file shorter than the header or with another magic is rejected.
+     */
+    public void testNotAGalleryFile()
+        throws IOException
+    {
+        Write( 0, new byte[] { 'f' } );
+        AssertRejected( "The file is not a gallery file" );
+
+        RandomAccessFile raf = new RandomAccessFile( m_File, "rw" );
+        try
+        {
+            raf.setLength( 10 );
+        }
+        finally
+        {
+            raf.close();
+        }
+        AssertRejected( "The file is not a gallery file" );
+    }
+
+    /**
+     * A changed header byte is found by the header checksum.
+     */
+    public void testHeaderChecksum()
+        throws IOException
+    {
+        Write( 15, new byte[] { COUNT + 1 } );
+        AssertRejected( "The header checksum is wrong" );
+    }
+
+    /**
+     * A format version with a valid header checksum is still rejected if it
+     * is not supported.
+     */
+    public void testUnsupportedFormatVersion()
+        throws IOException
+    {
+        Write( 11, new byte[] { FtrGalleryFile.FORMAT_VERSION + 1 } );
+        UpdateHeaderChecksum();
+        AssertRejected( "Unsupported format version " + (FtrGalleryFile.FORMAT_VERSION + 1) );
+    }
+
+    /**
+     * A changed byte of the key index is found by the index checksum.
+     */
+    public void testIndexChecksum()
+        throws IOException
+    {
+        // the last byte of the key of the record 5
+        Write( 64 + 5 * 40 + 24 + 2, new byte[] { '6' } );
+        AssertRejected( "The index checksum is wrong" );
+    }
+
+    /**
+     * A file without the end of its blob is rejected.
+     */
+    public void testTruncatedFile()
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile( m_File, "rw" );
+        try
+        {
+            raf.setLength( raf.length() - 1 );
+        }
+        finally
+        {
+            raf.close();
+        }
+        AssertRejected( "The file is truncated or too large" );
+    }
+
+    /**
+     * A changed template byte does not prevent opening the file; it is found
+     * by Verify and when the template is read.
+     */
+    public void testTemplateChecksum()
+        throws IOException
+    {
+        // the first byte of the last template
+        Write( m_File.length() - COUNT, new byte[] { 0 } );
+
+        FtrGalleryFile Gallery = FtrGalleryFile.Open( m_File );
+        try
+        {
+            assertEquals( COUNT - 1, Gallery.Verify() );
+            assertTrue( Arrays.equals( Template( 0 ), Gallery.getTemplate( 0 ) ) );
+            try
+            {
+                Gallery.getTemplate( COUNT - 1 );
+                fail();
+            }
+            catch( IllegalStateException e )
+            {
+            }
+            try
+            {
+                Gallery.toRecords();
+                fail();
+            }
+            catch( IllegalStateException e )
+            {
+            }
+        }
+        finally
+        {
+            Gallery.close();
+        }
+    }
+
+    /**
+     * Checks that opening the file fails with the message.
+     */
+    private void AssertRejected( String Message )
+    {
+        try
+        {
+            FtrGalleryFile.Open( m_File ).close();
+            fail();
+        }
+        catch( IOException e )
+        {
+            assertEquals( Message, e.getMessage() );
+        }
+    }
+
+    /**
+     * Overwrites bytes of the file.
+     */
+    private void Write( long nOffset, byte[] Data )
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile( m_File, "rw" );
+        try
+        {
+            raf.seek( nOffset );
+            raf.write( Data );
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Computes the header checksum again after a change of the header.
+     */
+    private void UpdateHeaderChecksum()
+        throws IOException
+    {
+        byte[] Header = new byte[ 44 ];
+        RandomAccessFile raf = new RandomAccessFile( m_File, "rw" );
+        try
+        {
+            raf.readFully( Header );
+            CRC32 crc = new CRC32();
+            crc.update( Header, 0, Header.length );
+            raf.writeInt( (int)crc.getValue() );
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private static FtrIdentifyRecord[] Records( int nCount )
+    {
+        FtrIdentifyRecord[] rgRecords = new FtrIdentifyRecord[ nCount ];
+        for( int i = 0; i < nCount; i++ )
+        {
+            rgRecords[i] = new FtrIdentifyRecord();
+            rgRecords[i].m_KeyValue = Key( i );
+            rgRecords[i].m_Template = Template( i );
+        }
+        return rgRecords;
+    }
+
+    private static byte[] Key( int nNumber )
+    {
+        return String.format( "%03d", nNumber ).getBytes();
+    }
+
+    private static byte[] Template( int nNumber )
+    {
+        byte[] Template = new byte[ nNumber + 1 ];
+        Arrays.fill( Template, (byte)nNumber );
+        return Template;
+    }
+
+    private static final int COUNT = 100;
+
+    private File m_File;
+}
@@ -0,0 +1,278 @@
+package br.com.biroska.futronic.sdkHelper.data.gallery;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the key index: insertion, search, removal, reuse of tombstones
+ * and growth of the hash table.
+ */
+public class FtrKeyIndexTest extends TestCase
+{
+    /**
+     * Every inserted key is found by its key and by its slot.
+     */
+    public void testPutAndFind()
+    {
+        FtrKeyIndex index = new FtrKeyIndex();
+        for( int i = 0; i < 1000; i++ )
+            index.Put( Key( i ), i );
+
+        assertEquals( 1000, index.getSize() );
+        for( int i = 0; i < 1000; i++ )
+        {
+            assertEquals( i, index.IndexOf( Key( i ) ) );
+            assertTrue( Arrays.equals( Key( i ), index.getKey( i ) ) );
+        }
+        assertEquals( -1, index.IndexOf( Key( 1000 ) ) );
+        assertNull( index.getKey( 1000 ) );
+    }
+
+    /**
+     * Keys which differ only by trailing zero bytes, or only in the second
+     * half of 16 bytes, are different keys.
+     */
+    public void testKeysOfDifferentLength()
+    {
+        FtrKeyIndex index = new FtrKeyIndex();
+        byte[] Long1 = new byte[ 16 ];
+        byte[] Long2 = new byte[ 16 ];
+        Long2[ 15 ] = 1;
+        index.Put( new byte[] { 1 }, 0 );
+        index.Put( new byte[] { 1, 0 }, 1 );
+        index.Put( Long1, 2 );
+        index.Put( Long2, 3 );
+
+        assertEquals( 0, index.IndexOf( new byte[] { 1 } ) );
+        assertEquals( 1, index.IndexOf( new byte[] { 1, 0 } ) );
+        assertEquals( 2, index.IndexOf( Long1 ) );
+        assertEquals( 3, index.IndexOf( Long2 ) );
+        assertTrue( Arrays.equals( new byte[] { 1, 0 }, index.getKey( 1 ) ) );
+        assertTrue( Arrays.equals( Long2, index.getKey( 3 ) ) );
+    }
+
+    /**
+     * Invalid keys and used slots are rejected by Put and not found by the
+     * other methods.
+     */
+    public void testInvalidArguments()
+    {
+        FtrKeyIndex index = new FtrKeyIndex();
+        index.Put( Key( 1 ), 1 );
+
+        try
+        {
+            index.Put( null, 0 );
+            fail();
+        }
+        catch( NullPointerException e )
+        {
+        }
+        AssertRejected( index, new byte[ 0 ], 0 );
+        AssertRejected( index, new byte[ FtrKeyIndex.MAX_KEY_LENGTH + 1 ], 0 );
+        AssertRejected( index, Key( 2 ), -1 );
+        AssertRejected( index, Key( 2 ), 1 );
+        AssertRejected( index, Key( 1 ), 2 );
+
+        assertEquals( -1, index.IndexOf( null ) );
+        assertEquals( -1, index.Remove( new byte[ 0 ] ) );
+        assertEquals( 1, index.getSize() );
+    }
+
+    /**
+     * A removed key leaves a tombstone; the keys after it in a probe sequence
+     * are still found, and its slot can be used again.
+     */
+    public void testRemove()
+    {
+        FtrKeyIndex index = new FtrKeyIndex();
+        for( int i = 0; i < 1000; i++ )
+            index.Put( Key( i ), i );
+        int nCapacity = index.getCapacity();
+
+        for( int i = 0; i < 1000; i += 2 )
+            assertEquals( i, index.Remove( Key( i ) ) );
+        assertEquals( -1, index.Remove( Key( 0 ) ) );
+
+        assertEquals( 500, index.getSize() );
+        assertEquals( 500, index.getTombstones() );
+        assertEquals( nCapacity, index.getCapacity() );
+        for( int i = 0; i < 1000; i++ )
+        {
+            assertEquals( (i % 2 == 0) ? -1 : i, index.IndexOf( Key( i ) ) );
+            assertEquals( i % 2 == 0, index.getKey( i ) == null );
+        }
+
+        index.Put( Key( 5000 ), 0 );
+        assertEquals( 0, index.IndexOf( Key( 5000 ) ) );
+    }
+
+    /**
+     * The removed keys are inserted again into their tombstones, without
+     * growing the table.
+     */
+    public void testReinsertThroughTombstones()
+    {
+        FtrKeyIndex index = new FtrKeyIndex();
+        for( int i = 0; i < 1000; i++ )
+            index.Put( Key( i ), i );
+        int nCapacity = index.getCapacity();
+
+        for( int i = 0; i < 1000; i += 3 )
+            index.Remove( Key( i ) );
+        int nTombstones = index.getTombstones();
+        for( int i = 0; i < 1000; i += 3 )
+        {
+            index.Put( Key( i ), i );
+            assertEquals( --nTombstones, index.getTombstones() );
+        }
+
+        assertEquals( 0, index.getTombstones() );
+        assertEquals( 1000, index.getSize() );
+        assertEquals( nCapacity, index.getCapacity() );
+        for( int i = 0; i < 1000; i++ )
+            assertEquals( i, index.IndexOf( Key( i ) ) );
+    }
+
+    /**
+     * Removing and inserting different keys at a constant size drops the
+     * tombstones by rebuilding the table, which grows at most once.
+     */
+    public void testChurnDoesNotGrowTable()
+    {
+        FtrKeyIndex index = new FtrKeyIndex( 100 );
+        for( int i = 0; i < 100; i++ )
+            index.Put( Key( i ), i );
+        int nCapacity = 2 * index.getCapacity();
+
+        for( int i = 100; i < 100000; i++ )
+        {
+            assertEquals( i % 100, index.Remove( Key( i - 100 ) ) );
+            index.Put( Key( i ), i % 100 );
+            assertTrue( index.getCapacity() <= nCapacity );
+        }
+
+        assertEquals( 100, index.getSize() );
+        assertTrue( index.getSize() + index.getTombstones() <= index.getCapacity() * 3 / 4 );
+        for( int i = 99900; i < 100000; i++ )
+            assertEquals( i % 100, index.IndexOf( Key( i ) ) );
+    }
+
+    /**
+     * The table doubles when it is 3/4 full and keeps all keys; the slots
+     * grow past the expected size.
+     */
+    public void testResize()
+    {
+        FtrKeyIndex index = new FtrKeyIndex( 0 );
+        assertEquals( 16, index.getCapacity() );
+
+        for( int i = 0; i < 12; i++ )
+            index.Put( Key( i ), i );
+        assertEquals( 16, index.getCapacity() );
+        index.Put( Key( 12 ), 12 );
+        assertEquals( 32, index.getCapacity() );
+
+        for( int i = 13; i < 100000; i++ )
+            index.Put( Key( i ), 3 * i );
+        assertEquals( 262144, index.getCapacity() );
+        for( int i = 0; i < 100000; i++ )
+        {
+            int nSlot = (i < 13) ? i : 3 * i;
+            assertEquals( nSlot, index.IndexOf( Key( i ) ) );
+            assertTrue( Arrays.equals( Key( i ), index.getKey( nSlot ) ) );
+        }
+    }
+
+    /**
+     * A key moves to a free slot and is found there.
+     */
+    public void testMove()
+    {
+        FtrKeyIndex index = new FtrKeyIndex();
+        index.Put( Key( 1 ), 1 );
+        index.Put( Key( 2 ), 2 );
+
+        index.Move( 1, 100 );
+        assertEquals( 100, index.IndexOf( Key( 1 ) ) );
+        assertNull( index.getKey( 1 ) );
+        assertTrue( Arrays.equals( Key( 1 ), index.getKey( 100 ) ) );
+
+        try
+        {
+            index.Move( 100, 2 );
+            fail();
+        }
+        catch( IllegalArgumentException e )
+        {
+        }
+        try
+        {
+            index.Move( 1, 3 );
+            fail();
+        }
+        catch( IllegalArgumentException e )
+        {
+        }
+    }
+
+    /**
+     * Clear removes all keys and keeps the table.
+     */
+    public void testClear()
+    {
+        FtrKeyIndex index = new FtrKeyIndex();
+        for( int i = 0; i < 100; i++ )
+            index.Put( Key( i ), i );
+        index.Remove( Key( 0 ) );
+        int nCapacity = index.getCapacity();
+
+        index.Clear();
+        assertEquals( 0, index.getSize() );
+        assertEquals( 0, index.getTombstones() );
+        assertEquals( nCapacity, index.getCapacity() );
+        assertEquals( -1, index.IndexOf( Key( 1 ) ) );
+
+        index.Put( Key( 1 ), 0 );
+        assertEquals( 0, index.IndexOf( Key( 1 ) ) );
+    }
+
+    /**
+     * A million 8 byte keys take 21 bytes per table position (2^21) and 4
+     * bytes per slot, less than 50 MB (the class documentation gives 46 MB).
+     */
+    public void testMemoryPerMillionKeys()
+    {
+        FtrKeyIndex index = new FtrKeyIndex( 1000000 );
+        for( int i = 0; i < 1000000; i++ )
+            index.Put( Key( i ), i );
+
+        assertEquals( 1 << 21, index.getCapacity() );
+        assertEquals( 21L * (1 << 21) + 4L * 1000000, index.getMemorySize() );
+        assertTrue( index.getMemorySize() < 50L * 1000 * 1000 );
+    }
+
+    private static void AssertRejected( FtrKeyIndex index, byte[] KeyValue, int nSlot )
+    {
+        try
+        {
+            index.Put( KeyValue, nSlot );
+            fail();
+        }
+        catch( IllegalArgumentException e )
+        {
+        }
+    }
+
+    /**
+     * Returns an 8 byte key, big endian.
+     */
+    private static byte[] Key( long nValue )
+    {
+        byte[] KeyValue = new byte[ 8 ];
+        for( int i = 0; i < 8; i++ )
+            KeyValue[i] = (byte)(nValue >>> (56 - 8 * i));
+        return KeyValue;
+    }
+}
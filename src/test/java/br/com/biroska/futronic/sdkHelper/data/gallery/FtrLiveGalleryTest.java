@@ -0,0 +1,263 @@
+package br.com.biroska.futronic.sdkHelper.data.gallery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import br.com.biroska.futronic.sdkHelper.data.identification.FtrIdentifyRecord;
+
+/**
+ * Tests of the copy-on-write snapshots of the live gallery.
+ *
+ * A key has the number of its writer in the first byte and the number of
+ * the record of the writer in the last four bytes; the template is the key.
+ */
+public class FtrLiveGalleryTest extends TestCase
+{
+    protected void setUp()
+    {
+        m_Executor = Executors.newFixedThreadPool( 10 );
+    }
+
+    protected void tearDown()
+        throws InterruptedException
+    {
+        m_Executor.shutdownNow();
+        m_Executor.awaitTermination( 10, TimeUnit.SECONDS );
+    }
+
+    /**
+     * A snapshot keeps the records of its version after later additions and
+     * removals, also if its record array is built after them.
+     */
+    public void testSnapshotIsNotChangedByLaterModifications()
+    {
+        FtrLiveGallery gallery = new FtrLiveGallery();
+        for( int i = 0; i < 10; i++ )
+            gallery.Add( Key( 0, i ), Key( 0, i ) );
+        FtrGallerySnapshot Built = gallery.getSnapshot();
+        Built.toRecords();
+        FtrGallerySnapshot Lazy = gallery.getSnapshot();
+        assertSame( Built, Lazy );
+
+        gallery.Remove( Key( 0, 3 ) );
+        gallery.Add( Key( 0, 10 ), Key( 0, 10 ) );
+        FtrGallerySnapshot Current = gallery.getSnapshot();
+
+        AssertKeys( Built, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 );
+        AssertKeys( Lazy, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 );
+        AssertKeys( Current, 0, 1, 2, 4, 5, 6, 7, 8, 9, 10 );
+        assertEquals( 3, Built.IndexOf( Key( 0, 3 ) ) );
+        assertEquals( -1, Current.IndexOf( Key( 0, 3 ) ) );
+        assertTrue( Current.getVersion() > Built.getVersion() );
+    }
+
+    /**
+     * The same snapshot is returned until the gallery is modified.
+     */
+    public void testSameSnapshotUntilModified()
+    {
+        FtrLiveGallery gallery = new FtrLiveGallery();
+        gallery.Add( Key( 0, 0 ), Key( 0, 0 ) );
+        FtrGallerySnapshot Snapshot = gallery.getSnapshot();
+
+        assertSame( Snapshot, gallery.getSnapshot() );
+        assertFalse( gallery.Remove( Key( 0, 1 ) ) );
+        assertSame( Snapshot, gallery.getSnapshot() );
+        gallery.Remove( Key( 0, 0 ) );
+        assertNotSame( Snapshot, gallery.getSnapshot() );
+    }
+
+    /**
+     * The snapshot after additions only shares the records of the previous
+     * one, and a removal from an earlier snapshot is not seen by it.
+     */
+    public void testAppendedSnapshot()
+    {
+        FtrLiveGallery gallery = new FtrLiveGallery();
+        for( int i = 0; i < 5; i++ )
+            gallery.Add( Key( 0, i ), Key( 0, i ) );
+        FtrIdentifyRecord[] rgFirst = gallery.getSnapshot().toRecords();
+        for( int i = 5; i < 10; i++ )
+            gallery.Add( Key( 0, i ), Key( 0, i ) );
+        FtrIdentifyRecord[] rgSecond = gallery.getSnapshot().toRecords();
+
+        assertEquals( 10, rgSecond.length );
+        for( int i = 0; i < rgFirst.length; i++ )
+            assertSame( rgFirst[i], rgSecond[i] );
+
+        gallery.Remove( Key( 0, 0 ) );
+        gallery.Add( Key( 0, 10 ), Key( 0, 10 ) );
+        AssertKeys( gallery.getSnapshot(), 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 );
+    }
+
+    /**
+     * A compaction drops the tombstones, keeps the order of the records and
+     * does not change the snapshots taken before it.
+     */
+    public void testCompactionKeepsSnapshots()
+    {
+        FtrLiveGallery gallery = new FtrLiveGallery();
+        gallery.setCompactionExecutor( null );
+        int nCount = 3 * FtrLiveGallery.SEGMENT_SIZE;
+        for( int i = 0; i < nCount; i++ )
+            gallery.Add( Key( 0, i ), Key( 0, i ) );
+        FtrGallerySnapshot Before = gallery.getSnapshot();
+        for( int i = 0; i < nCount; i += 2 )
+            gallery.Remove( Key( 0, i ) );
+        FtrGallerySnapshot Removed = gallery.getSnapshot();
+        assertEquals( nCount / 2, gallery.getTombstones() );
+
+        gallery.Compact();
+        gallery.Add( Key( 0, nCount ), Key( 0, nCount ) );
+
+        assertEquals( 1, gallery.getCompactions() );
+        assertEquals( 0, gallery.getTombstones() );
+        assertEquals( nCount, Before.toRecords().length );
+        assertEquals( nCount / 2, Removed.toRecords().length );
+        FtrIdentifyRecord[] rgRecords = gallery.getSnapshot().toRecords();
+        assertEquals( nCount / 2 + 1, rgRecords.length );
+        for( int i = 0; i < nCount / 2; i++ )
+            assertEquals( 2 * i + 1, Number( rgRecords[i].m_KeyValue ) );
+        assertEquals( nCount, Number( rgRecords[ nCount / 2 ].m_KeyValue ) );
+        assertTrue( Arrays.equals( Key( 0, 5 ), gallery.getTemplate( Key( 0, 5 ) ) ) );
+        assertNull( gallery.getTemplate( Key( 0, 4 ) ) );
+    }
+
+    /**
+     * Writers add and remove records while readers take snapshots, and the
+     * gallery is compacted in the background. Every snapshot, whenever its
+     * record array is built, holds for every writer a consecutive run of its
+     * records, in order.
+     */
+    public void testSnapshotsUnderConcurrentAddRemove()
+        throws Exception
+    {
+        final int nWriters = 4;
+        final int nRecords = 5000;
+        final int nLive = 50;
+        final FtrLiveGallery gallery = new FtrLiveGallery();
+        gallery.setCompactionExecutor( m_Executor );
+        final CountDownLatch writing = new CountDownLatch( nWriters );
+        final ConcurrentLinkedQueue<FtrGallerySnapshot> Unbuilt = new ConcurrentLinkedQueue<FtrGallerySnapshot>();
+
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for( int w = 0; w < nWriters; w++ )
+        {
+            final int nWriter = w;
+            futures.add( m_Executor.submit( new Callable<Void>()
+            {
+                public Void call()
+                {
+                    try
+                    {
+                        for( int i = 0; i < nRecords; i++ )
+                        {
+                            gallery.Add( Key( nWriter, i ), Key( nWriter, i ) );
+                            if( i >= nLive )
+                                assertTrue( gallery.Remove( Key( nWriter, i - nLive ) ) );
+                        }
+                    }
+                    finally
+                    {
+                        writing.countDown();
+                    }
+                    return null;
+                }
+            } ) );
+        }
+        for( int r = 0; r < 2; r++ )
+        {
+            futures.add( m_Executor.submit( new Callable<Void>()
+            {
+                public Void call()
+                {
+                    for( int n = 0; writing.getCount() > 0; n++ )
+                    {
+                        FtrGallerySnapshot Snapshot = gallery.getSnapshot();
+                        if( n % 10 == 0 )
+                            Unbuilt.add( Snapshot );
+                        else
+                            CheckSnapshot( Snapshot, nWriters, nLive );
+                    }
+                    return null;
+                }
+            } ) );
+        }
+        for( Future<?> future : futures )
+            future.get( 60, TimeUnit.SECONDS );
+
+        assertFalse( Unbuilt.isEmpty() );
+        for( FtrGallerySnapshot Snapshot : Unbuilt )
+            CheckSnapshot( Snapshot, nWriters, nLive );
+
+        assertEquals( nWriters * nLive, gallery.getSize() );
+        CheckSnapshot( gallery.getSnapshot(), nWriters, nLive );
+        for( int i = 0; (i < 100) && (gallery.getCompactions() == 0); i++ )
+            Thread.sleep( 100 );
+        assertTrue( gallery.getCompactions() > 0 );
+    }
+
+    /**
+     * Checks the records of a snapshot written by testSnapshotsUnderConcurrentAddRemove.
+     */
+    static void CheckSnapshot( FtrGallerySnapshot Snapshot, int nWriters, int nLive )
+    {
+        FtrIdentifyRecord[] rgRecords = Snapshot.toRecords();
+        assertEquals( Snapshot.getSize(), rgRecords.length );
+
+        int[] rgLast = new int[ nWriters ];
+        int[] rgCount = new int[ nWriters ];
+        Arrays.fill( rgLast, -1 );
+        for( int i = 0; i < rgRecords.length; i++ )
+        {
+            int nWriter = rgRecords[i].m_KeyValue[0];
+            int nNumber = Number( rgRecords[i].m_KeyValue );
+            if( rgLast[ nWriter ] >= 0 )
+                assertEquals( rgLast[ nWriter ] + 1, nNumber );
+            rgLast[ nWriter ] = nNumber;
+            rgCount[ nWriter ]++;
+            assertTrue( Arrays.equals( rgRecords[i].m_KeyValue, rgRecords[i].m_Template ) );
+            assertEquals( i, Snapshot.IndexOf( rgRecords[i].m_KeyValue ) );
+        }
+        for( int nWriter = 0; nWriter < nWriters; nWriter++ )
+            assertTrue( rgCount[ nWriter ] <= nLive + 1 );
+    }
+
+    /**
+     * Checks the record numbers of a snapshot of writer 0.
+     */
+    static void AssertKeys( FtrGallerySnapshot Snapshot, int... rgNumbers )
+    {
+        assertEquals( rgNumbers.length, Snapshot.getSize() );
+        FtrIdentifyRecord[] rgRecords = Snapshot.toRecords();
+        assertEquals( rgNumbers.length, rgRecords.length );
+        for( int i = 0; i < rgNumbers.length; i++ )
+        {
+            assertEquals( rgNumbers[i], Number( rgRecords[i].m_KeyValue ) );
+            assertTrue( Arrays.equals( Key( 0, rgNumbers[i] ), Snapshot.getKey( i ) ) );
+        }
+    }
+
+    static byte[] Key( int nWriter, int nNumber )
+    {
+        return new byte[] { (byte)nWriter, 0, 0, 0,
+                            (byte)(nNumber >>> 24), (byte)(nNumber >>> 16), (byte)(nNumber >>> 8), (byte)nNumber };
+    }
+
+    static int Number( byte[] KeyValue )
+    {
+        return ((KeyValue[4] & 0xFF) << 24) | ((KeyValue[5] & 0xFF) << 16) | ((KeyValue[6] & 0xFF) << 8) | (KeyValue[7] & 0xFF);
+    }
+
+    private ExecutorService m_Executor;
+}
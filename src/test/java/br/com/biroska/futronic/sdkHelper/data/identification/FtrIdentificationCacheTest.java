@@ -0,0 +1,177 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import junit.framework.TestCase;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.base.FutronicSimulatedBackend;
+import br.com.biroska.futronic.sdkHelper.data.gallery.FtrTemplateGallery;
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * Tests of the identification result cache: lookup keys, time to live, LRU
+ * eviction and invalidation by the gallery version.
+ */
+public class FtrIdentificationCacheTest extends TestCase
+{
+    protected void setUp()
+    {
+        m_Gallery = new FtrTemplateGallery();
+    }
+
+    protected void tearDown()
+    {
+        if( m_Identification != null )
+            m_Identification.Dispose();
+    }
+
+    /**
+     * An entry is found only by the same template, gallery, version, FARN
+     * and fast mode.
+     */
+    public void testLookupKey()
+    {
+        FtrIdentificationCache Cache = new FtrIdentificationCache( 10 );
+        Cache.Store( Probe( 1 ), m_Gallery, 1, 100, false, 7, 20, KEY );
+
+        FtrIdentificationCache.CachedResult Entry = Cache.Lookup( Probe( 1 ), m_Gallery, 1, 100, false );
+        assertNotNull( Entry );
+        assertEquals( 7, Entry.m_Index );
+        assertEquals( 20, Entry.m_FARNValue );
+        assertSame( KEY, Entry.m_KeyValue );
+
+        assertNull( Cache.Lookup( Probe( 2 ), m_Gallery, 1, 100, false ) );
+        assertNull( Cache.Lookup( Probe( 1 ), new FtrTemplateGallery(), 1, 100, false ) );
+        assertNull( Cache.Lookup( Probe( 1 ), m_Gallery, 1, 200, false ) );
+        assertNull( Cache.Lookup( Probe( 1 ), m_Gallery, 1, 100, true ) );
+        assertEquals( 1, Cache.getHits() );
+        assertEquals( 4, Cache.getMisses() );
+        assertEquals( 0.2, Cache.getHitRate(), 1e-9 );
+    }
+
+    /**
+     * The results without a match are cached unless the negative caching is
+     * switched off.
+     */
+    public void testNegativeCaching()
+    {
+        FtrIdentificationCache Cache = new FtrIdentificationCache( 10 );
+        Cache.Store( Probe( 1 ), m_Gallery, 1, 100, false, -1, 0, null );
+        assertEquals( -1, Cache.Lookup( Probe( 1 ), m_Gallery, 1, 100, false ).m_Index );
+
+        Cache.setNegativeCaching( false );
+        Cache.Store( Probe( 2 ), m_Gallery, 1, 100, false, -1, 0, null );
+        assertNull( Cache.Lookup( Probe( 2 ), m_Gallery, 1, 100, false ) );
+        assertEquals( 1, Cache.getSize() );
+    }
+
+    /**
+     * An entry expires after the time to live and is removed by the lookup.
+     */
+    public void testTtl()
+        throws InterruptedException
+    {
+        FtrIdentificationCache Cache = new FtrIdentificationCache( 10, 100 );
+        Cache.Store( Probe( 1 ), m_Gallery, 1, 100, false, 7, 20, KEY );
+        assertNotNull( Cache.Lookup( Probe( 1 ), m_Gallery, 1, 100, false ) );
+
+        Thread.sleep( 200 );
+        Cache.Store( Probe( 2 ), m_Gallery, 1, 100, false, 8, 20, KEY );
+        assertNull( Cache.Lookup( Probe( 1 ), m_Gallery, 1, 100, false ) );
+        assertNotNull( Cache.Lookup( Probe( 2 ), m_Gallery, 1, 100, false ) );
+        assertEquals( 1, Cache.getExpirations() );
+        assertEquals( 1, Cache.getSize() );
+    }
+
+    /**
+     * The least recently used entry is evicted when the cache is full; a
+     * lookup counts as a use.
+     */
+    public void testLruEviction()
+    {
+        FtrIdentificationCache Cache = new FtrIdentificationCache( 3 );
+        for( int i = 1; i <= 3; i++ )
+            Cache.Store( Probe( i ), m_Gallery, 1, 100, false, i, 20, KEY );
+        assertNotNull( Cache.Lookup( Probe( 1 ), m_Gallery, 1, 100, false ) );
+
+        Cache.Store( Probe( 4 ), m_Gallery, 1, 100, false, 4, 20, KEY );
+        assertEquals( 3, Cache.getSize() );
+        assertEquals( 1, Cache.getEvictions() );
+        assertNull( Cache.Lookup( Probe( 2 ), m_Gallery, 1, 100, false ) );
+        assertNotNull( Cache.Lookup( Probe( 1 ), m_Gallery, 1, 100, false ) );
+        assertNotNull( Cache.Lookup( Probe( 3 ), m_Gallery, 1, 100, false ) );
+        assertNotNull( Cache.Lookup( Probe( 4 ), m_Gallery, 1, 100, false ) );
+    }
+
+    /**
+     * A newer version of a gallery drops the entries of its older versions,
+     * and a result of an older version is not stored any more. The entries
+     * of other galleries are kept.
+     */
+    public void testVersionInvalidation()
+    {
+        FtrTemplateGallery Other = new FtrTemplateGallery();
+        FtrIdentificationCache Cache = new FtrIdentificationCache( 10 );
+        Cache.Store( Probe( 1 ), m_Gallery, 1, 100, false, 1, 20, KEY );
+        Cache.Store( Probe( 2 ), m_Gallery, 1, 100, false, 2, 20, KEY );
+        Cache.Store( Probe( 1 ), Other, 1, 100, false, 3, 20, KEY );
+
+        Cache.Store( Probe( 3 ), m_Gallery, 2, 100, false, 4, 20, KEY );
+        assertEquals( 2, Cache.getInvalidations() );
+        assertEquals( 2, Cache.getSize() );
+        assertNull( Cache.Lookup( Probe( 1 ), m_Gallery, 1, 100, false ) );
+        assertNotNull( Cache.Lookup( Probe( 3 ), m_Gallery, 2, 100, false ) );
+        assertNotNull( Cache.Lookup( Probe( 1 ), Other, 1, 100, false ) );
+
+        Cache.Store( Probe( 4 ), m_Gallery, 1, 100, false, 5, 20, KEY );
+        assertNull( Cache.Lookup( Probe( 4 ), m_Gallery, 1, 100, false ) );
+        assertEquals( 2, Cache.getSize() );
+
+        Cache.Invalidate( m_Gallery );
+        assertEquals( 3, Cache.getInvalidations() );
+        assertNull( Cache.Lookup( Probe( 3 ), m_Gallery, 2, 100, false ) );
+        assertNotNull( Cache.Lookup( Probe( 1 ), Other, 1, 100, false ) );
+    }
+
+    /**
+     * The identification answers a repeated search from the cache, and
+     * searches again when the gallery changed.
+     */
+    public void testIdentificationAfterGalleryChange()
+        throws FutronicException
+    {
+        FutronicSdkBase.setBackend( new FutronicSimulatedBackend() );
+        m_Identification = new FutronicIdentification();
+        m_Identification.setBaseTemplate( FutronicSimulatedBackend.SyntheticTemplate( 1000 ) );
+        FtrIdentificationCache Cache = new FtrIdentificationCache( 10 );
+        m_Identification.setResultCache( Cache );
+        for( int i = 0; i < 100; i++ )
+            m_Gallery.Add( Integer.toString( i ).getBytes(), FutronicSimulatedBackend.SyntheticTemplate( i ) );
+
+        FtrIdentifyResult Result = new FtrIdentifyResult();
+        assertEquals( FutronicSdkBase.RETCODE_OK, m_Identification.Identification( m_Gallery, Result ) );
+        assertEquals( -1, Result.m_Index );
+        assertEquals( FutronicSdkBase.RETCODE_OK, m_Identification.Identification( m_Gallery, Result ) );
+        assertEquals( -1, Result.m_Index );
+        assertEquals( 1, Cache.getHits() );
+
+        m_Gallery.Add( "1000".getBytes(), FutronicSimulatedBackend.SyntheticTemplate( 1000 ) );
+        Result = new FtrIdentifyResult();
+        assertEquals( FutronicSdkBase.RETCODE_OK, m_Identification.Identification( m_Gallery, Result ) );
+        assertEquals( 100, Result.m_Index );
+        assertEquals( 1, Cache.getHits() );
+        assertEquals( 1, Cache.getInvalidations() );
+    }
+
+    private static byte[] Probe( int nNumber )
+    {
+        byte[] Probe = new byte[ 64 ];
+        Probe[ 0 ] = (byte)nNumber;
+        return Probe;
+    }
+
+    private static final byte[] KEY = { 1, 2, 3 };
+
+    private FtrTemplateGallery m_Gallery;
+
+    private FutronicIdentification m_Identification;
+}
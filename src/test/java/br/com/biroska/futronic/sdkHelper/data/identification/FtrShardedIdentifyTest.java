@@ -0,0 +1,272 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+
+/**
+ * Tests of the sharded identification with a stub matcher, without the
+ * scanner and the native library.
+ *
+ * A record matches if the first byte of its template is 1; the second byte
+ * is the number of the record, which the stub returns as the FARN value.
+ */
+public class FtrShardedIdentifyTest extends TestCase
+{
+    protected void setUp()
+    {
+        m_Executor = Executors.newFixedThreadPool( 10 );
+    }
+
+    protected void tearDown()
+        throws InterruptedException
+    {
+        m_Executor.shutdownNow();
+        m_Executor.awaitTermination( 10, TimeUnit.SECONDS );
+    }
+
+    /**
+     * The index of a match in a shard is remapped to the whole set, and the
+     * first match wins even if a later shard finishes before it.
+     */
+    public void testFirstHitIsRemappedAcrossShards()
+    {
+        final FtrIdentifyRecord[] rgRecords = Records( 100, 37, 85 );
+        IIdentifyMatcher matcher = new IIdentifyMatcher()
+        {
+            public int Identify( byte[] BaseTemplate, FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+            {
+                // the earlier shards are slower
+                Sleep( (100 - rgTemplates[0].m_Template[1]) / 2 );
+                return Scan( rgTemplates, Result );
+            }
+        };
+
+        FtrIdentifyResult Result = new FtrIdentifyResult();
+        int nResult = new FtrShardedIdentify( matcher, m_Executor, 10 ).Identify( new byte[ 1 ], rgRecords, Result );
+
+        assertEquals( FutronicSdkBase.RETCODE_OK, nResult );
+        assertEquals( 37, Result.m_Index );
+        assertEquals( 37, Result.m_FARNValue );
+    }
+
+    /**
+     * A set without matches returns -1.
+     */
+    public void testNoMatch()
+    {
+        FtrIdentifyResult Result = new FtrIdentifyResult();
+        int nResult = new FtrShardedIdentify( new ScanMatcher(), m_Executor, 7 ).Identify( new byte[ 1 ], Records( 50 ), Result );
+
+        assertEquals( FutronicSdkBase.RETCODE_OK, nResult );
+        assertEquals( -1, Result.m_Index );
+    }
+
+    /**
+     * The shards after the matched one are interrupted, and the search
+     * returns when they have stopped.
+     */
+    public void testLaterShardsAreCancelled()
+        throws InterruptedException
+    {
+        final int nShards = 10;
+        final CountDownLatch started = new CountDownLatch( nShards - 1 );
+        final CountDownLatch finished = new CountDownLatch( nShards - 1 );
+        final AtomicInteger interrupted = new AtomicInteger();
+        IIdentifyMatcher matcher = new IIdentifyMatcher()
+        {
+            public int Identify( byte[] BaseTemplate, FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+            {
+                if( rgTemplates[0].m_Template[1] == 0 )
+                {
+                    // the first shard matches when all others are running
+                    Await( started );
+                    return Scan( rgTemplates, Result );
+                }
+                started.countDown();
+                try
+                {
+                    Thread.sleep( 30000 );
+                }
+                catch( InterruptedException e )
+                {
+                    interrupted.incrementAndGet();
+                    return FutronicSdkBase.RETCODE_CANCELED_BY_USER;
+                }
+                finally
+                {
+                    finished.countDown();
+                }
+                return Scan( rgTemplates, Result );
+            }
+        };
+
+        long nStart = System.nanoTime();
+        FtrIdentifyResult Result = new FtrIdentifyResult();
+        int nResult = new FtrShardedIdentify( matcher, m_Executor, 10 ).Identify( new byte[ 1 ], Records( nShards * 10, 3 ), Result );
+
+        assertEquals( FutronicSdkBase.RETCODE_OK, nResult );
+        assertEquals( 3, Result.m_Index );
+        assertTrue( System.nanoTime() - nStart < TimeUnit.SECONDS.toNanos( 10 ) );
+        assertTrue( finished.await( 10, TimeUnit.SECONDS ) );
+        assertEquals( nShards - 1, interrupted.get() );
+    }
+
+    /**
+     * The return code of a failed shard is returned and the other shards
+     * are cancelled.
+     */
+    public void testFailedShardReturnsItsCode()
+    {
+        IIdentifyMatcher matcher = new IIdentifyMatcher()
+        {
+            public int Identify( byte[] BaseTemplate, FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+            {
+                if( rgTemplates[0].m_Template[1] == 20 )
+                    return FutronicSdkBase.RETCODE_DEVICE_FAILURE;
+                return Scan( rgTemplates, Result );
+            }
+        };
+
+        FtrIdentifyResult Result = new FtrIdentifyResult();
+        int nResult = new FtrShardedIdentify( matcher, m_Executor, 10 ).Identify( new byte[ 1 ], Records( 100 ), Result );
+
+        assertEquals( FutronicSdkBase.RETCODE_DEVICE_FAILURE, nResult );
+        assertEquals( -1, Result.m_Index );
+    }
+
+    /**
+     * A failed shard before the matched one wins over the match: the match
+     * is not the first one in the set any more.
+     */
+    public void testFailedShardBeforeMatch()
+    {
+        IIdentifyMatcher matcher = new IIdentifyMatcher()
+        {
+            public int Identify( byte[] BaseTemplate, FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+            {
+                if( rgTemplates[0].m_Template[1] == 10 )
+                {
+                    Sleep( 50 );
+                    return FutronicSdkBase.RETCODE_INVALID_ARG;
+                }
+                return Scan( rgTemplates, Result );
+            }
+        };
+
+        FtrIdentifyResult Result = new FtrIdentifyResult();
+        int nResult = new FtrShardedIdentify( matcher, m_Executor, 10 ).Identify( new byte[ 1 ], Records( 100, 55 ), Result );
+
+        assertEquals( FutronicSdkBase.RETCODE_INVALID_ARG, nResult );
+        assertEquals( -1, Result.m_Index );
+    }
+
+    /**
+     * A search which runs on the only worker of its own executor does not
+     * wait for its queued shards: the calling thread runs them.
+     */
+    public void testSearchOnWorkerOfSameExecutor()
+        throws Exception
+    {
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<Integer> future = single.submit( new Callable<Integer>()
+            {
+                public Integer call()
+                {
+                    FtrIdentifyResult Result = new FtrIdentifyResult();
+                    int nResult = new FtrShardedIdentify( new ScanMatcher(), single, 10 ).Identify( new byte[ 1 ], Records( 100, 64 ), Result );
+                    return Integer.valueOf( (nResult == FutronicSdkBase.RETCODE_OK) ? Result.m_Index : -2 );
+                }
+            } );
+
+            assertEquals( 64, future.get( 10, TimeUnit.SECONDS ).intValue() );
+        }
+        finally
+        {
+            single.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds a set of records; the records with the given numbers match.
+     */
+    static FtrIdentifyRecord[] Records( int nCount, int... rgMatches )
+    {
+        FtrIdentifyRecord[] rgRecords = new FtrIdentifyRecord[ nCount ];
+        for( int i = 0; i < nCount; i++ )
+        {
+            rgRecords[i] = new FtrIdentifyRecord();
+            rgRecords[i].m_KeyValue = new byte[] { (byte)i };
+            rgRecords[i].m_Template = new byte[] { 0, (byte)i };
+        }
+        for( int nMatch : rgMatches )
+            rgRecords[ nMatch ].m_Template[0] = 1;
+        return rgRecords;
+    }
+
+    /**
+     * Finds the first matching record like a sequential matcher.
+     */
+    static int Scan( FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+    {
+        Result.m_Index = -1;
+        Result.m_FARNValue = -1;
+        for( int i = 0; i < rgTemplates.length; i++ )
+        {
+            if( rgTemplates[i].m_Template[0] == 1 )
+            {
+                Result.m_Index = i;
+                Result.m_FARNValue = rgTemplates[i].m_Template[1] & 0xFF;
+                break;
+            }
+        }
+        return FutronicSdkBase.RETCODE_OK;
+    }
+
+    private static void Sleep( long nMillis )
+    {
+        try
+        {
+            Thread.sleep( nMillis );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void Await( CountDownLatch latch )
+    {
+        try
+        {
+            latch.await( 10, TimeUnit.SECONDS );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The stub matcher without delays.
+     */
+    static class ScanMatcher implements IIdentifyMatcher
+    {
+        public int Identify( byte[] BaseTemplate, FtrIdentifyRecord[] rgTemplates, FtrIdentifyResult Result )
+        {
+            return Scan( rgTemplates, Result );
+        }
+    }
+
+    private ExecutorService m_Executor;
+}
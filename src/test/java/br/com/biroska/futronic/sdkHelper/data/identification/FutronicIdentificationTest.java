@@ -0,0 +1,163 @@
+package br.com.biroska.futronic.sdkHelper.data.identification;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import br.com.biroska.futronic.sdkHelper.base.FutronicSdkBase;
+import br.com.biroska.futronic.sdkHelper.base.FutronicSimulatedBackend;
+import br.com.biroska.futronic.sdkHelper.data.gallery.FtrTemplateGallery;
+import br.com.biroska.futronic.sdkHelper.exception.FutronicException;
+
+/**
+ * Tests of the sharded identification with the simulated backend.
+ */
+public class FutronicIdentificationTest extends TestCase
+{
+    protected void tearDown()
+        throws InterruptedException
+    {
+        if( m_Identification != null )
+            m_Identification.Dispose();
+        if( m_Executor != null )
+        {
+            m_Executor.shutdownNow();
+            m_Executor.awaitTermination( 10, TimeUnit.SECONDS );
+        }
+    }
+
+    /**
+     * The sharded identification finds the same record as the sequential one.
+     */
+    public void testShardedMatchesSequential()
+        throws FutronicException
+    {
+        Open( new FutronicSimulatedBackend(), 3210 );
+        FtrIdentifyRecord[] rgRecords = Gallery( 5000, 3210, 4000 );
+
+        FtrIdentifyResult Result = new FtrIdentifyResult();
+        assertEquals( FutronicSdkBase.RETCODE_OK, m_Identification.Identification( rgRecords, Result ) );
+        assertEquals( 3210, Result.m_Index );
+
+        m_Identification.setShardSize( 256 );
+        m_Identification.setExecutor( m_Executor );
+        Result = new FtrIdentifyResult();
+        assertEquals( FutronicSdkBase.RETCODE_OK, m_Identification.Identification( rgRecords, Result ) );
+        assertEquals( 3210, Result.m_Index );
+    }
+
+    /**
+     * A backend which runs one match at a time is matched in the calling
+     * thread in one piece, whatever the shard size.
+     */
+    public void testSingleMatchBackendIsNotSharded()
+        throws FutronicException
+    {
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger foreign = new AtomicInteger();
+        Open( new FutronicSimulatedBackend()
+        {
+            public int Identify( FutronicSdkBase Operation, FtrIdentifyRecord[] rgTemplates, int nFrom, int nCount, FtrIdentifyResult Result )
+            {
+                calls.incrementAndGet();
+                if( Thread.currentThread() != caller )
+                    foreign.incrementAndGet();
+                return super.Identify( Operation, rgTemplates, nFrom, nCount, Result );
+            }
+
+            public int getMatchConcurrency()
+            {
+                return 1;
+            }
+        }, 1500 );
+        m_Identification.setShardSize( 100 );
+        m_Identification.setExecutor( m_Executor );
+
+        FtrIdentifyResult Result = new FtrIdentifyResult();
+        assertEquals( FutronicSdkBase.RETCODE_OK, m_Identification.Identification( Gallery( 2000, 1500 ), Result ) );
+        assertEquals( 1500, Result.m_Index );
+        assertEquals( 1, calls.get() );
+        assertEquals( 0, foreign.get() );
+    }
+
+    /**
+     * The multi-gallery search completes when the operation and the gallery
+     * tasks share the only worker of one executor.
+     */
+    public void testMultiIdentificationOnSameExecutor()
+        throws Exception
+    {
+        Open( new FutronicSimulatedBackend(), 700 );
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try
+        {
+            m_Identification.setExecutor( single );
+            Map<String, FtrTemplateGallery> Galleries = new LinkedHashMap<String, FtrTemplateGallery>();
+            Galleries.put( "watchlist", Gallery( Gallery( 500, 0 ) ) );
+            Galleries.put( "citizens", Gallery( Gallery( 1000, 700 ) ) );
+
+            MultiIdentificationResult Result = m_Identification.MultiIdentificationAsync( Galleries, null, single ).get( 10, TimeUnit.SECONDS );
+
+            assertEquals( FutronicSdkBase.RETCODE_OK, Result.getRetCode() );
+            assertEquals( -1, Result.getResult( "watchlist" ).getIndex() );
+            assertEquals( 700, Result.getResult( "citizens" ).getIndex() );
+        }
+        finally
+        {
+            single.shutdownNow();
+        }
+    }
+
+    /**
+     * Selects the backend and creates the identification object with the
+     * template of a finger as the base template.
+     */
+    private void Open( FutronicSimulatedBackend Backend, long nFingerId )
+        throws FutronicException
+    {
+        FutronicSdkBase.setBackend( Backend );
+        m_Executor = Executors.newFixedThreadPool( 4 );
+        m_Identification = new FutronicIdentification();
+        m_Identification.setBaseTemplate( FutronicSimulatedBackend.SyntheticTemplate( nFingerId ) );
+    }
+
+    /**
+     * Builds a gallery with the synthetic templates of the fingers 0 to
+     * nCount - 1, and the template of the finger nFingerId at the indexes
+     * rgCopies.
+     */
+    private static FtrIdentifyRecord[] Gallery( int nCount, long nFingerId, int... rgCopies )
+    {
+        FtrIdentifyRecord[] rgRecords = new FtrIdentifyRecord[ nCount ];
+        for( int i = 0; i < nCount; i++ )
+        {
+            rgRecords[i] = new FtrIdentifyRecord();
+            rgRecords[i].m_KeyValue = Integer.toString( i ).getBytes();
+            rgRecords[i].m_Template = FutronicSimulatedBackend.SyntheticTemplate( i );
+        }
+        for( int nCopy : rgCopies )
+            rgRecords[ nCopy ].m_Template = FutronicSimulatedBackend.SyntheticTemplate( nFingerId );
+        return rgRecords;
+    }
+
+    /**
+     * Copies a set of records into a template gallery.
+     */
+    private static FtrTemplateGallery Gallery( FtrIdentifyRecord[] rgRecords )
+    {
+        FtrTemplateGallery Gallery = new FtrTemplateGallery();
+        for( FtrIdentifyRecord Record : rgRecords )
+            Gallery.Add( Record.m_KeyValue, Record.m_Template );
+        return Gallery;
+    }
+
+    private FutronicIdentification m_Identification;
+
+    private ExecutorService m_Executor;
+}